@@ -1,6 +1,24 @@
 const AWS = require('aws-sdk');
 var docClient = new AWS.DynamoDB.DocumentClient();
 
+// secondary index keys, as query.OrderIndexes derives them
+const indexShards = parseInt(process.env.INDEX_SHARDS || '0', 10);
+const indexedStatuses = (process.env.INDEXED_STATUSES || '').split(',').filter(s => s);
+
+function addIndexKeys(item) {
+    if (!indexShards || typeof item.orderDateTime !== 'string' || item.orderDateTime.length < 10) {
+        return;
+    }
+    var suffix = item.orderDateTime.substring(0, 10) + '#' + (((item.orderId % indexShards) + indexShards) % indexShards);
+    item.orderDayKey = suffix;
+    if (indexedStatuses.indexOf(item.orderStatus) >= 0) {
+        item.statusDayKey = item.orderStatus + '#' + suffix;
+    }
+    if (typeof item.shipToState === 'string') {
+        item.stateDayKey = item.shipToState + '#' + suffix;
+    }
+}
+
 // console.log('Loading function');
 
 exports.main = async (event) => {
@@ -16,7 +34,7 @@ exports.main = async (event) => {
         
         
         var db_params = {
-        TableName:"OrderEnriched",
+        TableName:process.env.TABLE_NAME,
             Item:{
                 "orderId": jto.orderId,
                 "itemId": jto.itemId,
@@ -37,6 +55,7 @@ exports.main = async (event) => {
 
             }
         };
+        addIndexKeys(db_params.Item);
 
         return docClient
             .put(db_params)
@@ -49,7 +68,8 @@ exports.main = async (event) => {
             .catch((error) => {
                 console.log('ERROR: ')
                 console.log(error)
-                return error
+                // rethrow so the event source mapping retries the batch instead of checkpointing it
+                throw error
             })
     })
 
@@ -0,0 +1,99 @@
+package com.amazonaws.samples.cdk.templates.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.amazonaws.samples.cdk.templates.kpl.AggregatedRecordBuilder;
+import com.amazonaws.samples.cdk.templates.kpl.UserRecord;
+import com.amazonaws.samples.cdk.templates.producer.OrderRecord;
+import com.amazonaws.samples.cdk.templates.producer.OrderRecordCodec;
+import com.amazonaws.samples.cdk.templates.schema.Compression;
+import com.amazonaws.samples.cdk.templates.schema.RecordBatchCodec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The producer's side for batchSize order records: encoding each as JSON
+ * or binary, packing the JSON payloads into one KPL aggregated record, and
+ * encoding all of them as one binary batch, plain or LZ4.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AggregationBenchmark {
+
+	@Param({ "1", "25", "100", "500" })
+	public int batchSize;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AggregatedRecordBuilder builder = new AggregatedRecordBuilder(AggregatedRecordBuilder.KINESIS_MAX_RECORD_BYTES);
+	private final RecordBatchCodec plain = new RecordBatchCodec(OrderRecordCodec.BINARY, Compression.NONE);
+	private final RecordBatchCodec lz4 = new RecordBatchCodec(OrderRecordCodec.BINARY, Compression.LZ4);
+	private List<OrderRecord> orders;
+	private List<UserRecord> records;
+	private List<Object[]> values;
+
+	@Setup
+	public void setup() throws JsonProcessingException {
+		orders = OrderPayloads.orders(batchSize);
+		records = new ArrayList<UserRecord>(batchSize);
+		values = new ArrayList<Object[]>(batchSize);
+		for (OrderRecord order : orders) {
+			records.add(new UserRecord(Integer.toString(order.getOrderId()), objectMapper.writeValueAsBytes(order)));
+			values.add(OrderRecordCodec.toValues(order));
+		}
+	}
+
+	@Benchmark
+	public void jsonEncode(final Blackhole blackhole) throws JsonProcessingException {
+		for (OrderRecord order : orders) {
+			blackhole.consume(objectMapper.writeValueAsBytes(order));
+		}
+	}
+
+	@Benchmark
+	public void binaryEncode(final Blackhole blackhole) {
+		for (OrderRecord order : orders) {
+			blackhole.consume(OrderRecordCodec.toBinary(order));
+		}
+	}
+
+	@Benchmark
+	public UserRecord kplAggregate() {
+		builder.reset();
+		for (UserRecord record : records) {
+			if (!builder.tryAdd(record)) {
+				throw new IllegalStateException("aggregated record full");
+			}
+		}
+		return builder.build();
+	}
+
+	@Benchmark
+	public byte[] binaryBatch() {
+		return plain.encode(values);
+	}
+
+	@Benchmark
+	public byte[] binaryBatchLz4() {
+		return lz4.encode(values);
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.amazonaws.samples.cdk.templates.bench;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.amazonaws.samples.cdk.templates.query.OrderIndexes;
+import com.amazonaws.samples.cdk.templates.sink.OrderItemMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * OrderItemMapper.toItem from payload bytes to DynamoDB items for
+ * batchSize items: one JSON or binary payload per item, and JSON with the
+ * secondary index keys added.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ItemMappingBenchmark {
+
+	@Param({ "1", "25", "100", "500" })
+	public int batchSize;
+
+	private final OrderItemMapper mapper = new OrderItemMapper(new ObjectMapper(), null);
+	private final OrderItemMapper indexedMapper = new OrderItemMapper(new ObjectMapper(), OrderIndexes.of(4, "NEW,PAID"));
+	private List<byte[]> json;
+	private List<byte[]> binary;
+
+	@Setup
+	public void setup() {
+		List<Object[]> items = OrderPayloads.items(batchSize, 0);
+		json = OrderPayloads.json(items);
+		binary = OrderPayloads.binary(items);
+	}
+
+	@Benchmark
+	public void json(final Blackhole blackhole) throws IOException {
+		for (byte[] payload : json) {
+			blackhole.consume(mapper.toItem(payload));
+		}
+	}
+
+	@Benchmark
+	public void jsonWithIndexKeys(final Blackhole blackhole) throws IOException {
+		for (byte[] payload : json) {
+			blackhole.consume(indexedMapper.toItem(payload));
+		}
+	}
+
+	@Benchmark
+	public void binary(final Blackhole blackhole) throws IOException {
+		for (byte[] payload : binary) {
+			blackhole.consume(mapper.toItem(payload));
+		}
+	}
+
+}
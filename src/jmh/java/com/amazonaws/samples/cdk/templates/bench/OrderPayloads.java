@@ -0,0 +1,89 @@
+package com.amazonaws.samples.cdk.templates.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.flink.EventTimestamps;
+import com.amazonaws.samples.cdk.templates.producer.OrderRecord;
+import com.amazonaws.samples.cdk.templates.producer.OrderRecordCodec;
+import com.amazonaws.samples.cdk.templates.producer.SyntheticOrderGenerator;
+import com.amazonaws.samples.cdk.templates.schema.BinaryRecordCodec;
+import com.amazonaws.samples.cdk.templates.schema.OrderSchema;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Benchmark inputs: SyntheticOrderGenerator's records in the 14 columns of
+ * OrderSchema.ORDER_COLUMNS, and the enriched items the sink reads, which
+ * add productName and event_ts (ENRICHED_COLUMNS). The same seed gives the
+ * same payloads in every run.
+ */
+final class OrderPayloads {
+
+	static final BinaryRecordCodec ENRICHED_BINARY = new BinaryRecordCodec(OrderSchema.ENRICHED_COLUMNS);
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final long EVENT_TIME = 1585699200000L;
+
+	private OrderPayloads() {
+	}
+
+	/** count records, ORDER headers and their ITEM records, as the producer sends them. */
+	static List<OrderRecord> orders(final int count) {
+		return new SyntheticOrderGenerator(42, 3, 1000).nextRecords(count);
+	}
+
+	/** count enriched ITEM records in ENRICHED_COLUMNS order; version shifts event_ts by that many ms. */
+	static List<Object[]> items(final int count, final int version) {
+		SyntheticOrderGenerator generator = new SyntheticOrderGenerator(42, 3, 1000);
+		int orderColumns = OrderSchema.ORDER_COLUMNS.size();
+		List<Object[]> items = new ArrayList<Object[]>(count);
+		while (items.size() < count) {
+			for (OrderRecord order : generator.nextOrder()) {
+				if ("ITEM".equals(order.getRecordType()) && items.size() < count) {
+					Object[] values = Arrays.copyOf(OrderRecordCodec.toValues(order), OrderSchema.ENRICHED_COLUMNS.size());
+					values[orderColumns] = "product-" + order.getItemId();
+					values[orderColumns + 1] = EventTimestamps.format(EVENT_TIME + version);
+					items.add(values);
+				}
+			}
+		}
+		return items;
+	}
+
+	static byte[] json(final Object[] item) {
+		Map<String, Object> fields = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < item.length; i++) {
+			fields.put(OrderSchema.ENRICHED_COLUMNS.get(i).getName(), item[i]);
+		}
+		try {
+			return MAPPER.writeValueAsBytes(fields);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static List<byte[]> json(final List<Object[]> items) {
+		List<byte[]> payloads = new ArrayList<byte[]>(items.size());
+		for (Object[] item : items) {
+			payloads.add(json(item));
+		}
+		return payloads;
+	}
+
+	static List<byte[]> binary(final List<Object[]> items) {
+		List<byte[]> payloads = new ArrayList<byte[]>(items.size());
+		for (Object[] item : items) {
+			payloads.add(ENRICHED_BINARY.encode(item));
+		}
+		return payloads;
+	}
+
+	static String partitionKey(final Object[] item) {
+		return item[0].toString();
+	}
+
+}
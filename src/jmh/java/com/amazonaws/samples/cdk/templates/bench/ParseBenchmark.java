@@ -0,0 +1,75 @@
+package com.amazonaws.samples.cdk.templates.bench;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.amazonaws.samples.cdk.templates.producer.OrderRecord;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Parsing batchSize enriched items, one payload each: into a JsonNode tree
+ * (what OrderItemMapper does), bound to OrderRecord (what
+ * direct.OrderEnricher does), and as binary records.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+	@Param({ "1", "25", "100", "500" })
+	public int batchSize;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final ObjectReader orderReader = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+			.readerFor(OrderRecord.class);
+	private List<byte[]> json;
+	private List<byte[]> binary;
+
+	@Setup
+	public void setup() {
+		List<Object[]> items = OrderPayloads.items(batchSize, 0);
+		json = OrderPayloads.json(items);
+		binary = OrderPayloads.binary(items);
+	}
+
+	@Benchmark
+	public void jsonTree(final Blackhole blackhole) throws IOException {
+		for (byte[] payload : json) {
+			blackhole.consume(objectMapper.readTree(payload));
+		}
+	}
+
+	@Benchmark
+	public void jsonOrderRecord(final Blackhole blackhole) throws IOException {
+		for (byte[] payload : json) {
+			blackhole.consume(orderReader.readValue(payload));
+		}
+	}
+
+	@Benchmark
+	public void binaryRecord(final Blackhole blackhole) {
+		for (byte[] payload : binary) {
+			blackhole.consume(OrderPayloads.ENRICHED_BINARY.decode(payload));
+		}
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.amazonaws.samples.cdk.templates.bench;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.samples.cdk.templates.kpl.AggregatedRecordBuilder;
+import com.amazonaws.samples.cdk.templates.kpl.Deaggregator;
+import com.amazonaws.samples.cdk.templates.kpl.UserRecord;
+import com.amazonaws.samples.cdk.templates.schema.Compression;
+import com.amazonaws.samples.cdk.templates.schema.RecordBatchCodec;
+
+/**
+ * Unpacking one Kinesis record that carries batchSize items, before any
+ * parsing: KPL de-aggregation (MD5 check included) of JSON items, and
+ * splitting a binary batch, plain or LZ4, into value arrays.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayloadDecodeBenchmark {
+
+	@Param({ "1", "25", "100", "500" })
+	public int batchSize;
+
+	private ByteBuffer aggregated;
+	private RecordBatchCodec plain;
+	private RecordBatchCodec lz4;
+	private byte[] plainBatch;
+	private byte[] lz4Batch;
+
+	@Setup
+	public void setup() {
+		List<Object[]> items = OrderPayloads.items(batchSize, 0);
+		AggregatedRecordBuilder builder = new AggregatedRecordBuilder(AggregatedRecordBuilder.KINESIS_MAX_RECORD_BYTES);
+		for (Object[] item : items) {
+			if (!builder.tryAdd(new UserRecord(OrderPayloads.partitionKey(item), OrderPayloads.json(item)))) {
+				throw new IllegalStateException(batchSize + " items do not fit one aggregated record");
+			}
+		}
+		aggregated = ByteBuffer.wrap(builder.build().getData());
+		plain = new RecordBatchCodec(OrderPayloads.ENRICHED_BINARY, Compression.NONE);
+		lz4 = new RecordBatchCodec(OrderPayloads.ENRICHED_BINARY, Compression.LZ4);
+		plainBatch = plain.encode(items);
+		lz4Batch = lz4.encode(items);
+	}
+
+	@Benchmark
+	public List<UserRecord> kplDeaggregate() {
+		return Deaggregator.deaggregate("0", aggregated);
+	}
+
+	@Benchmark
+	public List<Object[]> binaryBatch() {
+		return plain.decode(plainBatch);
+	}
+
+	@Benchmark
+	public List<Object[]> binaryBatchLz4() {
+		return lz4.decode(lz4Batch);
+	}
+
+}
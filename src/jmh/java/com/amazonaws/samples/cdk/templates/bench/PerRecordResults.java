@@ -0,0 +1,74 @@
+package com.amazonaws.samples.cdk.templates.bench;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Turns JMH's JSON results (-rf json, run with -prof gc) into per-record
+ * figures: every benchmark here handles batchSize records per operation, so
+ * ns/op and gc.alloc.rate.norm (bytes/op) are divided by it. The output is
+ * one JSON document per run, tagged with the project version and JDK, to
+ * compare across releases:
+ *
+ *   {"version": "...", "jdk": "...", "results": [{"benchmark": "ParseBenchmark.jsonTree",
+ *     "batchSize": 100, "nsPerRecord": ..., "nsPerRecordError": ..., "bytesPerRecord": ...,
+ *     "allocMbPerSecond": ...}, ...]}
+ *
+ * Usage: PerRecordResults --results target/jmh-results.json --out target/jmh-per-record.json [--version 1.0]
+ */
+public class PerRecordResults {
+
+	public static void main(final String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+		JsonNode runs = objectMapper.readTree(new File(options.getOrDefault("results", "target/jmh-results.json")));
+
+		ObjectNode report = objectMapper.createObjectNode();
+		report.put("version", options.getOrDefault("version", "unknown"));
+		report.put("jdk", runs.size() == 0 ? "" : runs.get(0).path("jdkVersion").asText() + " " + runs.get(0).path("vmName").asText());
+		ArrayNode results = report.putArray("results");
+
+		System.out.printf("%-44s %6s %12s %12s %14s%n", "benchmark", "batch", "ns/record", "B/record", "alloc MB/s");
+		for (JsonNode run : runs) {
+			String benchmark = run.path("benchmark").asText();
+			benchmark = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+			int batchSize = run.path("params").path("batchSize").asInt(1);
+			JsonNode primary = run.path("primaryMetric");
+			if (!"ns/op".equals(primary.path("scoreUnit").asText())) {
+				throw new IllegalArgumentException(benchmark + " reports " + primary.path("scoreUnit").asText() + ", expected ns/op");
+			}
+			JsonNode secondary = run.path("secondaryMetrics");
+			double bytesPerOp = secondaryScore(secondary, "gc.alloc.rate.norm");
+
+			ObjectNode result = results.addObject();
+			result.put("benchmark", benchmark);
+			result.put("batchSize", batchSize);
+			result.put("nsPerRecord", primary.path("score").asDouble() / batchSize);
+			result.put("nsPerRecordError", primary.path("scoreError").asDouble(0) / batchSize);
+			result.put("bytesPerRecord", bytesPerOp / batchSize);
+			result.put("allocMbPerSecond", secondaryScore(secondary, "gc.alloc.rate"));
+			System.out.printf("%-44s %6d %12.1f %12.1f %14.1f%n", benchmark, batchSize, result.get("nsPerRecord").asDouble(),
+					result.get("bytesPerRecord").asDouble(), result.get("allocMbPerSecond").asDouble());
+		}
+		String out = options.getOrDefault("out", "target/jmh-per-record.json");
+		objectMapper.writeValue(new File(out), report);
+		System.out.println("wrote " + out);
+	}
+
+	//recent JMH releases prefix profiler metrics with a middle dot (U+00B7)
+	private static double secondaryScore(final JsonNode secondary, final String name) {
+		JsonNode metric = secondary.has(name) ? secondary.get(name) : secondary.path("\u00b7" + name);
+		return metric.path("score").asDouble(Double.NaN);
+	}
+
+}
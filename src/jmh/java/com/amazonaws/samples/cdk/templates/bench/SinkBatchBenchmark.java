@@ -0,0 +1,111 @@
+package com.amazonaws.samples.cdk.templates.bench;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.samples.cdk.templates.hotkeys.HotKeyTracker;
+import com.amazonaws.samples.cdk.templates.sink.BatchItemWriter;
+import com.amazonaws.samples.cdk.templates.sink.DedupeFilter;
+import com.amazonaws.samples.cdk.templates.sink.OrderEnrichmentSinkHandler;
+import com.amazonaws.samples.cdk.templates.sink.OrderItemMapper;
+import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+
+/**
+ * One OrderEnrichmentSinkHandler invocation on a Kinesis event of
+ * batchSize JSON items: decoding, collapsing per key, the dedupe filter,
+ * hot key counting, EMF metrics and BatchItemWriter's 25-item requests,
+ * against a DynamoDbClient that accepts every request without I/O.
+ *
+ * The events cycle through VERSIONS event_ts values and the dedupe filter
+ * only remembers the last few batches, so every batch is written as new.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SinkBatchBenchmark {
+
+	private static final int VERSIONS = 64;
+
+	@Param({ "1", "25", "100", "500" })
+	public int batchSize;
+
+	private OrderEnrichmentSinkHandler handler;
+	private KinesisEvent[] events;
+	private int next;
+	private long metricLines;
+
+	@Setup
+	public void setup() {
+		handler = new OrderEnrichmentSinkHandler(new BatchItemWriter(new AcceptingDynamoDbClient(), "OrderEnriched"),
+				OrderEnrichmentSinkHandler.enrichedRecords(new OrderItemMapper(new ObjectMapper(), null)),
+				metrics -> metricLines++, new DedupeFilter(1, batchSize * 8), new HotKeyTracker(60000));
+		events = new KinesisEvent[VERSIONS];
+		for (int version = 0; version < VERSIONS; version++) {
+			List<KinesisEvent.KinesisEventRecord> records = new ArrayList<KinesisEvent.KinesisEventRecord>(batchSize);
+			int sequence = 0;
+			for (Object[] item : OrderPayloads.items(batchSize, version)) {
+				KinesisEvent.Record kinesis = new KinesisEvent.Record();
+				kinesis.setPartitionKey(OrderPayloads.partitionKey(item));
+				kinesis.setSequenceNumber(Integer.toString(sequence));
+				kinesis.setApproximateArrivalTimestamp(new Date());
+				kinesis.setData(ByteBuffer.wrap(OrderPayloads.json(item)));
+				KinesisEvent.KinesisEventRecord record = new KinesisEvent.KinesisEventRecord();
+				record.setEventID("shardId-000000000000:" + sequence++);
+				record.setKinesis(kinesis);
+				records.add(record);
+			}
+			events[version] = new KinesisEvent();
+			events[version].setRecords(records);
+		}
+	}
+
+	@Benchmark
+	public StreamsEventResponse handleRequest() {
+		KinesisEvent event = events[next];
+		next = (next + 1) % VERSIONS;
+		return handler.handleRequest(event, null);
+	}
+
+	private static final class AcceptingDynamoDbClient implements DynamoDbClient {
+
+		@Override
+		public BatchWriteItemResponse batchWriteItem(final BatchWriteItemRequest request) {
+			return BatchWriteItemResponse.builder().build();
+		}
+
+		@Override
+		public String serviceName() {
+			return SERVICE_NAME;
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
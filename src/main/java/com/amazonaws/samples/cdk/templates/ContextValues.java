@@ -0,0 +1,43 @@
+package com.amazonaws.samples.cdk.templates;
+
+import software.amazon.awscdk.core.Construct;
+
+/**
+ * Typed access to synth-time context. Values from cdk.json arrive as JSON
+ * types while -c key=value overrides arrive as strings, so both are accepted.
+ */
+public final class ContextValues {
+
+	private ContextValues() {
+	}
+
+	public static String getString(final Construct scope, final String key, final String defaultValue) {
+		Object value = scope.getNode().tryGetContext(key);
+		return value == null ? defaultValue : value.toString();
+	}
+
+	public static int getInt(final Construct scope, final String key, final int defaultValue) {
+		Object value = scope.getNode().tryGetContext(key);
+		if (value instanceof Number) {
+			return ((Number) value).intValue();
+		}
+		return value == null ? defaultValue : Integer.parseInt(value.toString().trim());
+	}
+
+	public static double getDouble(final Construct scope, final String key, final double defaultValue) {
+		Object value = scope.getNode().tryGetContext(key);
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		return value == null ? defaultValue : Double.parseDouble(value.toString().trim());
+	}
+
+	public static boolean getBoolean(final Construct scope, final String key, final boolean defaultValue) {
+		Object value = scope.getNode().tryGetContext(key);
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		}
+		return value == null ? defaultValue : Boolean.parseBoolean(value.toString().trim());
+	}
+
+}
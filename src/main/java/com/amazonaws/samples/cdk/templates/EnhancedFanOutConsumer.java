@@ -0,0 +1,93 @@
+package com.amazonaws.samples.cdk.templates;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import software.amazon.awscdk.core.Construct;
+import software.amazon.awscdk.services.iam.Grant;
+import software.amazon.awscdk.services.iam.GrantOnPrincipalOptions;
+import software.amazon.awscdk.services.iam.IGrantable;
+import software.amazon.awscdk.services.kinesis.CfnStreamConsumer;
+import software.amazon.awscdk.services.kinesis.Stream;
+
+/**
+ * Registers an enhanced fan-out consumer on a stream. Every consumer gets its
+ * own 2 MB/s per shard read throughput with push delivery (SubscribeToShard),
+ * so each downstream reader opts in independently by creating its own
+ * consumer and pointing its event source mapping at getConsumerArn().
+ */
+public class EnhancedFanOutConsumer extends Construct {
+
+	private final Stream stream;
+	private final CfnStreamConsumer consumer;
+
+	private EnhancedFanOutConsumer(final Construct scope, final String id, final Builder props) {
+		super(scope, id);
+
+		this.stream = props.stream;
+		this.consumer = CfnStreamConsumer.Builder.create(this, "Consumer")
+				.streamArn(stream.getStreamArn())
+				.consumerName(props.consumerName)
+				.build();
+	}
+
+	public String getConsumerArn() {
+		return consumer.getAttrConsumerArn();
+	}
+
+	public CfnStreamConsumer getConsumer() {
+		return consumer;
+	}
+
+	/** Grants what a Lambda event source mapping needs to read through this consumer, and nothing on other consumers. */
+	public Grant grantSubscribe(final IGrantable grantee) {
+		Grant.addToPrincipal(GrantOnPrincipalOptions.builder()
+				.grantee(grantee)
+				.actions(Arrays.asList("kinesis:DescribeStreamSummary", "kinesis:ListShards"))
+				.resourceArns(Collections.singletonList(stream.getStreamArn()))
+				.build());
+
+		return Grant.addToPrincipal(GrantOnPrincipalOptions.builder()
+				.grantee(grantee)
+				.actions(Arrays.asList("kinesis:SubscribeToShard", "kinesis:DescribeStreamConsumer"))
+				.resourceArns(Collections.singletonList(getConsumerArn()))
+				.build());
+	}
+
+	public static final class Builder {
+
+		private final Construct scope;
+		private final String id;
+
+		private Stream stream;
+		private String consumerName;
+
+		private Builder(final Construct scope, final String id) {
+			this.scope = scope;
+			this.id = id;
+		}
+
+		public static Builder create(final Construct scope, final String id) {
+			return new Builder(scope, id);
+		}
+
+		public Builder stream(final Stream stream) {
+			this.stream = stream;
+			return this;
+		}
+
+		public Builder consumerName(final String consumerName) {
+			this.consumerName = consumerName;
+			return this;
+		}
+
+		public EnhancedFanOutConsumer build() {
+			if (stream == null || consumerName == null) {
+				throw new IllegalArgumentException("stream and consumerName are required");
+			}
+			return new EnhancedFanOutConsumer(scope, id, this);
+		}
+
+	}
+
+}
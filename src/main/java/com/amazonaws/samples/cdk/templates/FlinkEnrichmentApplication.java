@@ -0,0 +1,240 @@
+package com.amazonaws.samples.cdk.templates;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.flink.OrderEnrichmentJob;
+
+import software.amazon.awscdk.core.Construct;
+import software.amazon.awscdk.core.Duration;
+import software.amazon.awscdk.core.Stack;
+import software.amazon.awscdk.services.iam.Effect;
+import software.amazon.awscdk.services.iam.PolicyStatement;
+import software.amazon.awscdk.services.iam.Role;
+import software.amazon.awscdk.services.iam.ServicePrincipal;
+import software.amazon.awscdk.services.kinesis.Stream;
+import software.amazon.awscdk.services.kinesisanalytics.CfnApplicationV2;
+import software.amazon.awscdk.services.s3.Bucket;
+import software.amazon.awscdk.services.s3.assets.Asset;
+
+/**
+ * Kinesis Data Analytics for Apache Flink application running
+ * flink.OrderEnrichmentJob from target/flink/order-enrichment-flink.jar
+ * (mvn package). The application gets parallelism subtasks packed
+ * parallelismPerKpu to a KPU, exactly-once checkpoints every
+ * checkpointInterval, and the job settings as the OrderEnrichment property
+ * group. The role can read the input stream and the products object and
+ * write the output stream.
+ */
+public class FlinkEnrichmentApplication extends Construct {
+
+	//built by the flink-package shade execution in pom.xml (mvn package)
+	public static final String JOB_JAR = "target/flink/order-enrichment-flink.jar";
+
+	private final CfnApplicationV2 application;
+	private final Role role;
+
+	private FlinkEnrichmentApplication(final Construct scope, final String id, final Builder props) {
+		super(scope, id);
+
+		Asset jobJar = Asset.Builder.create(this, "JobJar").path(JOB_JAR).build();
+
+		role = Role.Builder.create(this, "Role")
+				.assumedBy(new ServicePrincipal("kinesisanalytics.amazonaws.com"))
+				.build();
+		props.inputStream.grantRead(role);
+		props.outputStream.grantWrite(role);
+		props.productsBucket.grantRead(role, props.productsKey);
+		jobJar.grantRead(role);
+		role.addToPolicy(PolicyStatement.Builder.create()
+				.effect(Effect.ALLOW)
+				.actions(Arrays.asList("kinesis:ListShards", "kinesis:DescribeStreamSummary"))
+				.resources(Arrays.asList(props.inputStream.getStreamArn(), props.outputStream.getStreamArn()))
+				.build());
+		//the Kinesis producer library publishes its own metrics
+		role.addToPolicy(PolicyStatement.Builder.create()
+				.effect(Effect.ALLOW)
+				.actions(Collections.singletonList("cloudwatch:PutMetricData"))
+				.resources(Collections.singletonList("*"))
+				.build());
+
+		Map<String, String> jobProperties = new HashMap<String, String>();
+		jobProperties.put("Region", Stack.of(this).getRegion());
+		jobProperties.put("InputStreamName", props.inputStream.getStreamName());
+		jobProperties.put("OutputStreamName", props.outputStream.getStreamName());
+		jobProperties.put("ProductsBucket", props.productsBucket.getBucketName());
+		jobProperties.put("ProductsKey", props.productsKey);
+		jobProperties.put("ProductRefreshSeconds", Long.toString(props.productRefresh.toSeconds().longValue()));
+		jobProperties.put("AsyncTimeoutMillis", Long.toString(props.asyncTimeout.toMilliseconds().longValue()));
+		jobProperties.put("AsyncCapacity", Integer.toString(props.asyncCapacity));
+
+		long checkpointMillis = props.checkpointInterval.toMilliseconds().longValue();
+
+		CfnApplicationV2.ApplicationConfigurationProperty configuration = CfnApplicationV2.ApplicationConfigurationProperty.builder()
+				.applicationCodeConfiguration(CfnApplicationV2.ApplicationCodeConfigurationProperty.builder()
+						.codeContentType("ZIPFILE")
+						.codeContent(CfnApplicationV2.CodeContentProperty.builder()
+								.s3ContentLocation(CfnApplicationV2.S3ContentLocationProperty.builder()
+										.bucketArn(jobJar.getBucket().getBucketArn())
+										.fileKey(jobJar.getS3ObjectKey())
+										.build())
+								.build())
+						.build())
+				.flinkApplicationConfiguration(CfnApplicationV2.FlinkApplicationConfigurationProperty.builder()
+						.parallelismConfiguration(CfnApplicationV2.ParallelismConfigurationProperty.builder()
+								.configurationType("CUSTOM")
+								.parallelism(props.parallelism)
+								.parallelismPerKpu(props.parallelismPerKpu)
+								.autoScalingEnabled(props.autoScaling)
+								.build())
+						.checkpointConfiguration(CfnApplicationV2.CheckpointConfigurationProperty.builder()
+								.configurationType("CUSTOM")
+								.checkpointingEnabled(true)
+								.checkpointInterval(checkpointMillis)
+								.minPauseBetweenCheckpoints(checkpointMillis / 2)
+								.build())
+						.monitoringConfiguration(CfnApplicationV2.MonitoringConfigurationProperty.builder()
+								.configurationType("CUSTOM")
+								.metricsLevel("OPERATOR")
+								.logLevel("INFO")
+								.build())
+						.build())
+				.environmentProperties(CfnApplicationV2.EnvironmentPropertiesProperty.builder()
+						.propertyGroups(Collections.<Object>singletonList(CfnApplicationV2.PropertyGroupProperty.builder()
+								.propertyGroupId(OrderEnrichmentJob.PROPERTY_GROUP)
+								.propertyMap(jobProperties)
+								.build()))
+						.build())
+				.applicationSnapshotConfiguration(CfnApplicationV2.ApplicationSnapshotConfigurationProperty.builder()
+						.snapshotsEnabled(true)
+						.build())
+				.build();
+
+		application = CfnApplicationV2.Builder.create(this, "Application")
+				.applicationName(props.applicationName)
+				.applicationDescription("Order enrichment (Apache Flink)")
+				.runtimeEnvironment(props.runtimeEnvironment)
+				.serviceExecutionRole(role.getRoleArn())
+				.applicationConfiguration(configuration)
+				.build();
+		application.getNode().addDependency(role);
+	}
+
+	public CfnApplicationV2 getApplication() {
+		return application;
+	}
+
+	public Role getRole() {
+		return role;
+	}
+
+	public static final class Builder {
+
+		private final Construct scope;
+		private final String id;
+
+		private String applicationName;
+		private String runtimeEnvironment = "FLINK-1_13";
+		private Stream inputStream;
+		private Stream outputStream;
+		private Bucket productsBucket;
+		private String productsKey = "products/products.json";
+		private int parallelism = 1;
+		private int parallelismPerKpu = 1;
+		private boolean autoScaling;
+		private Duration checkpointInterval = Duration.minutes(1);
+		private Duration productRefresh = Duration.minutes(5);
+		private Duration asyncTimeout = Duration.seconds(5);
+		private int asyncCapacity = 100;
+
+		private Builder(final Construct scope, final String id) {
+			this.scope = scope;
+			this.id = id;
+		}
+
+		public static Builder create(final Construct scope, final String id) {
+			return new Builder(scope, id);
+		}
+
+		public Builder applicationName(final String applicationName) {
+			this.applicationName = applicationName;
+			return this;
+		}
+
+		public Builder runtimeEnvironment(final String runtimeEnvironment) {
+			this.runtimeEnvironment = runtimeEnvironment;
+			return this;
+		}
+
+		public Builder inputStream(final Stream inputStream) {
+			this.inputStream = inputStream;
+			return this;
+		}
+
+		public Builder outputStream(final Stream outputStream) {
+			this.outputStream = outputStream;
+			return this;
+		}
+
+		public Builder productsBucket(final Bucket productsBucket) {
+			this.productsBucket = productsBucket;
+			return this;
+		}
+
+		public Builder productsKey(final String productsKey) {
+			this.productsKey = productsKey;
+			return this;
+		}
+
+		/** Total subtasks; usually the input stream's shard count. */
+		public Builder parallelism(final int parallelism) {
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		/** Subtasks per KPU (1 vCPU, 4 GB); the application runs ceil(parallelism / parallelismPerKpu) KPUs. */
+		public Builder parallelismPerKpu(final int parallelismPerKpu) {
+			this.parallelismPerKpu = parallelismPerKpu;
+			return this;
+		}
+
+		public Builder autoScaling(final boolean autoScaling) {
+			this.autoScaling = autoScaling;
+			return this;
+		}
+
+		public Builder checkpointInterval(final Duration checkpointInterval) {
+			this.checkpointInterval = checkpointInterval;
+			return this;
+		}
+
+		public Builder productRefresh(final Duration productRefresh) {
+			this.productRefresh = productRefresh;
+			return this;
+		}
+
+		public Builder asyncTimeout(final Duration asyncTimeout) {
+			this.asyncTimeout = asyncTimeout;
+			return this;
+		}
+
+		public Builder asyncCapacity(final int asyncCapacity) {
+			this.asyncCapacity = asyncCapacity;
+			return this;
+		}
+
+		public FlinkEnrichmentApplication build() {
+			if (applicationName == null || inputStream == null || outputStream == null || productsBucket == null) {
+				throw new IllegalArgumentException("applicationName, inputStream, outputStream and productsBucket are required");
+			}
+			if (parallelism < 1 || parallelismPerKpu < 1) {
+				throw new IllegalArgumentException("parallelism and parallelismPerKpu must be at least 1");
+			}
+			return new FlinkEnrichmentApplication(scope, id, this);
+		}
+
+	}
+
+}
@@ -3,10 +3,18 @@ package com.amazonaws.samples.cdk.templates;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.amazonaws.samples.cdk.templates.cells.CellRouter;
+import com.amazonaws.samples.cdk.templates.planning.CapacityPlan;
+import com.amazonaws.samples.cdk.templates.query.OrderIndexes;
+import com.amazonaws.samples.cdk.templates.schema.ColumnDefinition;
+import com.amazonaws.samples.cdk.templates.schema.OrderSchema;
+
 import software.amazon.awscdk.core.CfnParameter;
 import software.amazon.awscdk.core.ConcreteDependable;
 import software.amazon.awscdk.core.Construct;
@@ -23,16 +31,33 @@ import software.amazon.awscdk.services.iam.Role;
 import software.amazon.awscdk.services.iam.ServicePrincipal;
 import software.amazon.awscdk.services.kinesis.Stream;
 import software.amazon.awscdk.services.kinesisanalytics.*;
+import software.amazon.awscdk.services.lambda.Alias;
+import software.amazon.awscdk.services.lambda.CfnEventSourceMapping;
+import software.amazon.awscdk.services.lambda.CfnFunction;
 import software.amazon.awscdk.services.lambda.Code;
+import software.amazon.awscdk.services.lambda.EventSourceMapping;
+import software.amazon.awscdk.services.lambda.EventSourceMappingOptions;
 import software.amazon.awscdk.services.lambda.Function;
 import software.amazon.awscdk.services.lambda.FunctionProps;
 import software.amazon.awscdk.services.lambda.IEventSource;
+import software.amazon.awscdk.services.lambda.IEventSourceDlq;
+import software.amazon.awscdk.services.lambda.IFunction;
 import software.amazon.awscdk.services.lambda.Runtime;
+import software.amazon.awscdk.services.lambda.RuntimeFamily;
 import software.amazon.awscdk.services.lambda.StartingPosition;
 import software.amazon.awscdk.services.lambda.eventsources.KinesisEventSource;
+import software.amazon.awscdk.services.lambda.eventsources.SnsDlq;
+import software.amazon.awscdk.services.lambda.eventsources.SqsDlq;
 import software.amazon.awscdk.services.s3.Bucket;
+import software.amazon.awscdk.services.sns.Topic;
+import software.amazon.awscdk.services.sqs.Queue;
 import software.amazon.awscdk.services.dynamodb.Attribute;
 import software.amazon.awscdk.services.dynamodb.AttributeType;
+import software.amazon.awscdk.services.dynamodb.BillingMode;
+import software.amazon.awscdk.services.dynamodb.GlobalSecondaryIndexProps;
+import software.amazon.awscdk.services.dynamodb.ProjectionType;
+import software.amazon.awscdk.services.dynamodb.EnableScalingProps;
+import software.amazon.awscdk.services.dynamodb.UtilizationScalingProps;
 import software.amazon.awscdk.services.dynamodb.Table;
 import software.amazon.awscdk.services.dynamodb.TableProps;
 
@@ -46,35 +71,37 @@ public class KinesisStreamETLStack extends Stack {
 	}
 
 	public KinesisStreamETLStack(final Construct parent, final String id, final StackProps props) {
+		this(parent, id, props, CapacityPlan.defaults());
+	}
+
+	public KinesisStreamETLStack(final Construct parent, final String id, final StackProps props, final CapacityPlan plan) {
+		this(parent, id, props, plan, null);
+	}
+
+	//cellName suffixes every fixed resource name so several cells can share an account/region; null keeps the plain names
+	public KinesisStreamETLStack(final Construct parent, final String id, final StackProps props, final CapacityPlan plan, final String cellName) {
 		super(parent, id, props);
 		
+		String applicationName = CellRouter.resourceName("KDA-OrderETL", cellName);
+		
 		
 		CfnParameter orderStreamName = CfnParameter.Builder.create(this, "orderStreamName")
 		        .type("String")
-		        .description("The name of the kinesis order stream").defaultValue("OrderStream")
+		        .description("The name of the kinesis order stream").defaultValue(CellRouter.resourceName("OrderStream", cellName))
 		        .build();
 		
 		CfnParameter orderStreamShards = CfnParameter.Builder.create(this, "orderStreamShards")
 		        .type("Number")
-		        .description("Number of shards for kinesis order stream").defaultValue(2)
+		        .description("Number of shards for kinesis order stream").defaultValue(plan.getOrderStreamShards())
 		        .build();
 		
-		CfnParameter orderEStreamName = CfnParameter.Builder.create(this, "orderEnrichedStreamName")
-		        .type("String")
-		        .description("The name of the kinesis order enriched stream").defaultValue("OrderEnrichedStream")
-		        .build();
-		
-		CfnParameter orderEStreamShards = CfnParameter.Builder.create(this, "orderEnrichedStreamShards")
-		        .type("Number")
-		        .description("Number of shards for kinesis order enriched stream").defaultValue(2)
-		        .build();
 		
 		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd-hh-mm-ss");
 		 
 		
 		CfnParameter productsBucket = CfnParameter.Builder.create(this, "productsBucket")
 		        .type("String")
-		        .description("S3 Products Bucket Name").defaultValue("kinesis-stream-etl-" +LocalDateTime.now().format(formatter))
+		        .description("S3 Products Bucket Name").defaultValue(CellRouter.resourceName("kinesis-stream-etl", cellName) + "-" + LocalDateTime.now().format(formatter))
 		        .build();
 		
 		
@@ -87,10 +114,420 @@ public class KinesisStreamETLStack extends Stack {
 		//create kinesis streams
 
 		Stream orderStream = Stream.Builder.create(this, "OrderStreamId").streamName(orderStreamName.getValueAsString()).shardCount(orderStreamShards.getValueAsNumber()).build();
-		Stream orderEStream = Stream.Builder.create(this, "OrderEnrichedStreamId").streamName(orderEStreamName.getValueAsString()).shardCount(orderEStreamShards.getValueAsNumber()).build();
 		
+		//pipelineTopology "enriched" (default): OrderStream -> enrichment application -> OrderEnrichedStream -> sink;
+		//"direct": the sink reads OrderStream and enriches from products.json itself
+		boolean directTopology = "direct".equals(ContextValues.getString(this, "pipelineTopology", "enriched"));
 		
+		Stream orderEStream = null;
+		if (!directTopology) {
+			CfnParameter orderEStreamName = CfnParameter.Builder.create(this, "orderEnrichedStreamName")
+			        .type("String")
+			        .description("The name of the kinesis order enriched stream").defaultValue(CellRouter.resourceName("OrderEnrichedStream", cellName))
+			        .build();
+			
+			CfnParameter orderEStreamShards = CfnParameter.Builder.create(this, "orderEnrichedStreamShards")
+			        .type("Number")
+			        .description("Number of shards for kinesis order enriched stream").defaultValue(plan.getOrderEnrichedStreamShards())
+			        .build();
+			
+			orderEStream = Stream.Builder.create(this, "OrderEnrichedStreamId").streamName(orderEStreamName.getValueAsString()).shardCount(orderEStreamShards.getValueAsNumber()).build();
+		}
 		
+		//streamCapacityMode ON_DEMAND or shardAutoscaling=true replace the static shard counts
+		boolean onDemandStreams = "ON_DEMAND".equals(ContextValues.getString(this, "streamCapacityMode", "PROVISIONED"));
+		boolean shardAutoscaling = !onDemandStreams && ContextValues.getBoolean(this, "shardAutoscaling", false);
+		int minShards = ContextValues.getInt(this, "minShards", 1);
+		int maxShards = ContextValues.getInt(this, "maxShards", 64);
+		if (onDemandStreams || shardAutoscaling) {
+			StreamShardAutoscaler.Builder.create(this, "OrderStreamAutoscaler").stream(orderStream).onDemand(onDemandStreams).minShards(minShards).maxShards(maxShards).build();
+			if (orderEStream != null) {
+				StreamShardAutoscaler.Builder.create(this, "OrderEnrichedStreamAutoscaler").stream(orderEStream).onDemand(onDemandStreams).minShards(minShards).maxShards(maxShards).build();
+			}
+		}
+		
+		
+		
+		//pipelineTopology direct drops the enrichment application and the enriched stream; the sink enriches itself
+		if (!directTopology) {
+			enrichmentApplication(plan, applicationName, bucket, orderStream, orderEStream);
+		}
+		
+		
+		
+		
+		
+		 // final Bucket bucket2 = new Bucket(this, "OrderEnrichmentSinkStore");
+		  Bucket bucket2 = Bucket.Builder.create(this, "OrderEnrichmentSinkStore").removalPolicy(RemovalPolicy.DESTROY).build();
+
+		  
+		 
+	      
+	      //tableBillingMode PAY_PER_REQUEST (on-demand) or PROVISIONED with target tracking between the min/max capacities
+	      boolean onDemandTable = "PAY_PER_REQUEST".equals(ContextValues.getString(this, "tableBillingMode", "PROVISIONED"));
+	      int tableMinReadCapacity = ContextValues.getInt(this, "tableMinReadCapacity", plan.getTableReadCapacity());
+	      int tableMaxReadCapacity = ContextValues.getInt(this, "tableMaxReadCapacity", Math.max(500, plan.getTableReadCapacity() * 4));
+	      int tableMinWriteCapacity = ContextValues.getInt(this, "tableMinWriteCapacity", plan.getTableWriteCapacity());
+	      int tableMaxWriteCapacity = ContextValues.getInt(this, "tableMaxWriteCapacity", Math.max(500, plan.getTableWriteCapacity() * 4));
+	      int tableTargetUtilization = ContextValues.getInt(this, "tableTargetUtilization", 70);
+	      if (!onDemandTable && tableMaxWriteCapacity < plan.getTableWriteCapacity()) {
+	    	  throw new IllegalArgumentException("tableMaxWriteCapacity " + tableMaxWriteCapacity + " is below the planned " + plan.getTableWriteCapacity() + " WCU");
+	      }
+	      
+	      TableProps tableProps;
+	        Attribute partitionKey = Attribute.builder()
+	                .name("orderId")
+	                .type(AttributeType.NUMBER)
+	                .build();
+	        Attribute sortKey = Attribute.builder()
+	                .name("itemId")
+	                .type(AttributeType.NUMBER)
+	                .build();
+	        tableProps = TableProps.builder()
+	                .tableName(CellRouter.resourceName("OrderEnriched", cellName))
+	                .partitionKey(partitionKey)
+	                .sortKey(sortKey)
+	                .billingMode(onDemandTable ? BillingMode.PAY_PER_REQUEST : BillingMode.PROVISIONED)
+	                .readCapacity(onDemandTable ? null : tableMinReadCapacity)
+	                .writeCapacity(onDemandTable ? null : tableMinWriteCapacity)
+	                // The default removal policy is RETAIN, which means that cdk destroy will not attempt to delete
+	                // the new table, and it will remain in your account until manually deleted. By setting the policy to
+	                // DESTROY, cdk destroy will delete the table (even if it has data in it)
+	                .removalPolicy(RemovalPolicy.DESTROY)
+	                .build();
+	        
+	        Table dynamodbTable = new Table(this, "OrderEnriched", tableProps);
+	        
+	        if (!onDemandTable) {
+	        	dynamodbTable.autoScaleReadCapacity(EnableScalingProps.builder().minCapacity(tableMinReadCapacity).maxCapacity(tableMaxReadCapacity).build())
+	        		.scaleOnUtilization(UtilizationScalingProps.builder().targetUtilizationPercent(tableTargetUtilization).build());
+	        	dynamodbTable.autoScaleWriteCapacity(EnableScalingProps.builder().minCapacity(tableMinWriteCapacity).maxCapacity(tableMaxWriteCapacity).build())
+	        		.scaleOnUtilization(UtilizationScalingProps.builder().targetUtilizationPercent(tableTargetUtilization).build());
+	        }
+	        
+	        //tableIndexes adds the OrderIndexes GSIs: orders by day, by open status (sparse) and by ship-to state, keys sharded
+	        //by orderId and only the dashboard attributes projected; the Java sinks derive the keys from INDEX_SHARDS/INDEXED_STATUSES.
+	        //CloudFormation creates or deletes one GSI per table update, so on an existing table tableIndexNames grows by one index per deploy
+	        OrderIndexes orderIndexes = null;
+	        if (ContextValues.getBoolean(this, "tableIndexes", false)) {
+	        	orderIndexes = OrderIndexes.of(ContextValues.getInt(this, "indexShards", 4), ContextValues.getString(this, "indexedStatuses", "NEW,PAID"));
+	        	String[][] gsis = {
+	        			{ OrderIndexes.DATE_INDEX, OrderIndexes.DATE_KEY },
+	        			{ OrderIndexes.STATUS_INDEX, OrderIndexes.STATUS_KEY },
+	        			{ OrderIndexes.STATE_INDEX, OrderIndexes.STATE_KEY } };
+	        	List<String> indexNames = new ArrayList<String>();
+	        	for (String name : ContextValues.getString(this, "tableIndexNames",
+	        			String.join(",", OrderIndexes.DATE_INDEX, OrderIndexes.STATUS_INDEX, OrderIndexes.STATE_INDEX)).split(",")) {
+	        		if (!name.trim().isEmpty()) {
+	        			indexNames.add(name.trim());
+	        		}
+	        	}
+	        	for (String name : indexNames) {
+	        		if (!Arrays.asList(OrderIndexes.DATE_INDEX, OrderIndexes.STATUS_INDEX, OrderIndexes.STATE_INDEX).contains(name)) {
+	        			throw new IllegalArgumentException("tableIndexNames: unknown index " + name);
+	        		}
+	        	}
+	        	for (String[] gsi : gsis) {
+	        		if (!indexNames.contains(gsi[0])) {
+	        			continue;
+	        		}
+	        		dynamodbTable.addGlobalSecondaryIndex(GlobalSecondaryIndexProps.builder()
+	        				.indexName(gsi[0])
+	        				.partitionKey(Attribute.builder().name(gsi[1]).type(AttributeType.STRING).build())
+	        				.sortKey(Attribute.builder().name(OrderIndexes.SORT_KEY).type(AttributeType.STRING).build())
+	        				.projectionType(ProjectionType.INCLUDE)
+	        				.nonKeyAttributes(OrderIndexes.PROJECTED_ATTRIBUTES)
+	        				.readCapacity(onDemandTable ? null : tableMinReadCapacity)
+	        				.writeCapacity(onDemandTable ? null : tableMinWriteCapacity)
+	        				.build());
+	        		if (!onDemandTable) {
+	        			dynamodbTable.autoScaleGlobalSecondaryIndexReadCapacity(gsi[0], EnableScalingProps.builder().minCapacity(tableMinReadCapacity).maxCapacity(tableMaxReadCapacity).build())
+	        				.scaleOnUtilization(UtilizationScalingProps.builder().targetUtilizationPercent(tableTargetUtilization).build());
+	        			dynamodbTable.autoScaleGlobalSecondaryIndexWriteCapacity(gsi[0], EnableScalingProps.builder().minCapacity(tableMinWriteCapacity).maxCapacity(tableMaxWriteCapacity).build())
+	        				.scaleOnUtilization(UtilizationScalingProps.builder().targetUtilizationPercent(tableTargetUtilization).build());
+	        		}
+	        	}
+	        }
+	        
+	        //contributor insights surfaces the most accessed and most throttled orderId keys
+	        if (ContextValues.getBoolean(this, "tableContributorInsights", false)) {
+	        	CfnTable cfnTable = (CfnTable) dynamodbTable.getNode().getDefaultChild();
+	        	cfnTable.addPropertyOverride("ContributorInsightsSpecification.Enabled", true);
+	        }
+	        
+	        
+	        Map<String, String> lambdaEnvMap = new HashMap<String, String>();
+			  lambdaEnvMap.put("BUCKET", bucket.getBucketName());
+			  lambdaEnvMap.put("TABLE_NAME", dynamodbTable.getTableName());
+		      lambdaEnvMap.put("PRIMARY_KEY","orderId");
+		      lambdaEnvMap.put("SORT_KEY","itemId");
+		      if (orderIndexes != null) {
+		    	  orderIndexes.addEnvironment(lambdaEnvMap);
+		      }
+		      
+		    
+	      
+		  List<IEventSource> events= new ArrayList<>();
+		  
+		  
+		  
+		  //a failing batch is split in halves until the poison record is alone, retried sinkRetryAttempts times
+		  //and its batch metadata parked on sinkFailureDestination, so the rest of the shard keeps flowing
+		  boolean sinkBisectOnError = ContextValues.getBoolean(this, "sinkBisectOnError", true);
+		  int sinkRetryAttempts = ContextValues.getInt(this, "sinkRetryAttempts", 5);
+		  int sinkMaxRecordAgeSeconds = ContextValues.getInt(this, "sinkMaxRecordAgeSeconds", 3600);
+		  String sinkFailureDestination = ContextValues.getString(this, "sinkFailureDestination", "sqs");
+		  
+		  Queue sinkFailureQueue = null;
+		  Topic sinkFailureTopic = null;
+		  IEventSourceDlq sinkOnFailure = null;
+		  if ("sqs".equals(sinkFailureDestination)) {
+			  sinkFailureQueue = Queue.Builder.create(this, "OrderEnrichmentSinkFailures")
+					  .retentionPeriod(Duration.days(14))
+					  .build();
+			  sinkOnFailure = new SqsDlq(sinkFailureQueue);
+		  } else if ("sns".equals(sinkFailureDestination)) {
+			  sinkFailureTopic = Topic.Builder.create(this, "OrderEnrichmentSinkFailures").build();
+			  sinkOnFailure = new SnsDlq(sinkFailureTopic);
+		  } else if (!"none".equals(sinkFailureDestination)) {
+			  throw new IllegalArgumentException("sinkFailureDestination must be sqs, sns or none");
+		  }
+		  //negative values keep the mapping's defaults: retry until the record expires
+		  Number sinkRetries = sinkRetryAttempts >= 0 ? sinkRetryAttempts : null;
+		  Duration sinkMaxRecordAge = sinkMaxRecordAgeSeconds > 0 ? Duration.seconds(sinkMaxRecordAgeSeconds) : null;
+		  
+		  //the direct sink reads the order stream itself, with one poller per order shard
+		  Stream sinkSourceStream = directTopology ? orderStream : orderEStream;
+		  int sinkShards = directTopology ? plan.getOrderStreamShards() : plan.getOrderEnrichedStreamShards();
+		  
+		  KinesisEventSource.Builder keb =  KinesisEventSource.Builder.create(sinkSourceStream);
+		  keb.parallelizationFactor(plan.getSinkParallelizationFactor());
+		  keb.batchSize(plan.getSinkBatchSize());
+		  keb.startingPosition(StartingPosition.LATEST);
+		  if (plan.getSinkBatchingWindowSeconds() > 0) {
+			  keb.maxBatchingWindow(Duration.seconds(plan.getSinkBatchingWindowSeconds()));
+		  }
+		  keb.bisectBatchOnError(sinkBisectOnError);
+		  keb.retryAttempts(sinkRetries);
+		  keb.maxRecordAge(sinkMaxRecordAge);
+		  keb.onFailure(sinkOnFailure);
+
+		  events.add(keb.build());
+		  
+		  //sinkRuntime context selects the nodejs sink (default), the batching java sink, or java-snapstart:
+		  //the java sink primed at init on arm64/java17 with SnapStart, invoked through the "live" alias.
+		  //The direct topology always runs direct.DirectEnrichmentHandler on java11
+		  String sinkRuntime = ContextValues.getString(this, "sinkRuntime", "nodejs");
+		  boolean snapStartSink = !directTopology && "java-snapstart".equals(sinkRuntime);
+		  boolean javaSink = directTopology || "java".equals(sinkRuntime) || snapStartSink;
+		  
+		  //sinkEnhancedFanOut gives the sink its own dedicated-throughput consumer on the enriched stream
+		  boolean sinkEnhancedFanOut = ContextValues.getBoolean(this, "sinkEnhancedFanOut", false);
+		  
+		  //sinkProvisionedConcurrency keeps shards x parallelization factor environments initialized on the alias
+		  boolean sinkProvisionedConcurrency = ContextValues.getBoolean(this, "sinkProvisionedConcurrency", false);
+		  boolean aliasSink = snapStartSink || sinkProvisionedConcurrency;
+		  //Lambda rejects provisioned concurrency on SnapStart versions: with both, java-snapstart keeps the primed
+		  //arm64/C1 handler and provisioned concurrency runs its init ahead of time instead of a snapshot
+		  boolean snapStart = snapStartSink && !sinkProvisionedConcurrency;
+		  
+		  //sinkWriteMode: "conditional" puts only newer event_ts versions, "batch" uses unconditional BatchWriteItem
+		  if (javaSink) {
+			  lambdaEnvMap.put("WRITE_MODE", ContextValues.getString(this, "sinkWriteMode", "conditional"));
+			  //hotKeyWindowSeconds: how often the sink reports its hottest orderIds and shard skew, 0 turns it off
+			  lambdaEnvMap.put("HOT_KEY_WINDOW_SECONDS", Integer.toString(ContextValues.getInt(this, "hotKeyWindowSeconds", 60)));
+		  }
+		  
+		  //productsIndex "mapped" keeps the products in a memory-mapped index swapped on ETag change, "heap" in a HashMap;
+		  //productsKey may name an index compiled by reference.ProductIndexCompiler instead of the JSON (mapped only)
+		  if (directTopology) {
+			  lambdaEnvMap.put("PRODUCTS_KEY", ContextValues.getString(this, "productsKey", "products/products.json"));
+			  lambdaEnvMap.put("PRODUCTS_REFRESH_SECONDS", Integer.toString(ContextValues.getInt(this, "productsRefreshSeconds", 300)));
+			  lambdaEnvMap.put("PRODUCTS_INDEX", ContextValues.getString(this, "productsIndex", "mapped"));
+		  }
+		  
+		  if (snapStartSink) {
+			  //C1 only: the sink's batches are short and mostly I/O bound
+			  lambdaEnvMap.put("JAVA_TOOL_OPTIONS", "-XX:+TieredCompilation -XX:TieredStopAtLevel=1");
+		  }
+		  
+		  Function.Builder sinkBldr = Function.Builder.create(this, "OrderEnrichmentSinkHandler")
+		            .timeout(Duration.seconds(plan.getSinkTimeoutSeconds()))
+		            .memorySize(plan.getSinkMemoryMb())
+		            .environment(lambdaEnvMap);
+		  
+		  if (directTopology) {
+			  sinkBldr.code(LambdaAssets.javaHandlers())
+			  	.handler("com.amazonaws.samples.cdk.templates.direct.DirectEnrichmentHandler::handleRequest")
+			  	.runtime(Runtime.JAVA_11);
+		  } else if (snapStartSink) {
+			  sinkBldr.code(LambdaAssets.javaHandlers())
+			  	.handler("com.amazonaws.samples.cdk.templates.sink.PrimedSinkHandler::handleRequest")
+			  	.runtime(new Runtime("java17", RuntimeFamily.JAVA));
+		  } else if (javaSink) {
+			  sinkBldr.code(LambdaAssets.javaHandlers())
+			  	.handler("com.amazonaws.samples.cdk.templates.sink.OrderEnrichmentSinkHandler::handleRequest")
+			  	.runtime(Runtime.JAVA_11);
+		  } else {
+			  sinkBldr.code(Code.fromAsset("resources"))
+			  	.handler("order_enrichment_sink.main")
+			  	.runtime(Runtime.NODEJS_12_X);
+		  }
+		  
+		  if (!javaSink && !sinkEnhancedFanOut && !aliasSink) {
+			  sinkBldr.events(events);
+		  }
+		  
+		  Function lambdaFunction = sinkBldr.build();
+		  
+		  if (snapStartSink) {
+			  CfnFunction cfnSink = (CfnFunction) lambdaFunction.getNode().getDefaultChild();
+			  cfnSink.addPropertyOverride("Architectures", Collections.singletonList("arm64"));
+			  if (snapStart) {
+				  cfnSink.addPropertyOverride("SnapStart.ApplyOn", "PublishedVersions");
+			  }
+		  }
+		  
+		  //SnapStart and provisioned concurrency each only apply to published versions, so the mapping targets an alias
+		  IFunction sinkTarget = lambdaFunction;
+		  if (aliasSink) {
+			  sinkTarget = Alias.Builder.create(this, "OrderEnrichmentSinkLive")
+					  .aliasName("live")
+					  .version(lambdaFunction.getCurrentVersion())
+					  .provisionedConcurrentExecutions(sinkProvisionedConcurrency ? sinkShards * plan.getSinkParallelizationFactor() : null)
+					  .build();
+		  }
+		  
+		  if (javaSink || sinkEnhancedFanOut || aliasSink) {
+			  //KinesisEventSource can neither read through a stream consumer nor report partial batch failures
+			  String sinkSourceArn = sinkSourceStream.getStreamArn();
+			  sinkSourceStream.grantRead(lambdaFunction);
+			  
+			  if (sinkEnhancedFanOut) {
+				  EnhancedFanOutConsumer sinkConsumer = EnhancedFanOutConsumer.Builder.create(this, "OrderEnrichmentSinkConsumer")
+						  .stream(sinkSourceStream)
+						  .consumerName("OrderEnrichmentSink")
+						  .build();
+				  sinkConsumer.grantSubscribe(lambdaFunction);
+				  sinkSourceArn = sinkConsumer.getConsumerArn();
+			  }
+			  
+			  EventSourceMapping sinkMapping = sinkTarget.addEventSourceMapping("OrderEnrichedStreamMapping",
+					  EventSourceMappingOptions.builder()
+					  .eventSourceArn(sinkSourceArn)
+					  .batchSize(plan.getSinkBatchSize())
+					  .parallelizationFactor(plan.getSinkParallelizationFactor())
+					  .maxBatchingWindow(plan.getSinkBatchingWindowSeconds() > 0 ? Duration.seconds(plan.getSinkBatchingWindowSeconds()) : null)
+					  .startingPosition(StartingPosition.LATEST)
+					  .bisectBatchOnError(sinkBisectOnError)
+					  .retryAttempts(sinkRetries)
+					  .maxRecordAge(sinkMaxRecordAge)
+					  .onFailure(sinkOnFailure)
+					  .build());
+			  
+			  if (javaSink) {
+				  CfnEventSourceMapping cfnSinkMapping = (CfnEventSourceMapping) sinkMapping.getNode().getDefaultChild();
+				  cfnSinkMapping.addPropertyOverride("FunctionResponseTypes", Collections.singletonList("ReportBatchItemFailures"));
+			  }
+		  }
+
+
+	        bucket2.grantReadWrite(lambdaFunction);
+	        dynamodbTable.grantReadWriteData(lambdaFunction);
+	        if (directTopology) {
+	        	bucket.grantRead(lambdaFunction, ContextValues.getString(this, "productsKey", "products/products.json"));
+	        }
+	        
+	        //the archive and the backfill replay enriched records, which only the enriched topology has
+	        if (directTopology && (ContextValues.getBoolean(this, "enrichedArchive", false) || ContextValues.getBoolean(this, "sinkBackfill", false))) {
+	        	throw new IllegalArgumentException("enrichedArchive and sinkBackfill need pipelineTopology enriched");
+	        }
+
+	        //enrichedArchive adds a second reader on the enriched stream that writes partitioned parquet to bucket2
+	        if (ContextValues.getBoolean(this, "enrichedArchive", false)) {
+	        	long archiveTargetFileBytes = ContextValues.getInt(this, "archiveTargetFileMb", 64) * 1024L * 1024L;
+	        	int archiveBatchingWindowSeconds = ContextValues.getInt(this, "archiveBatchingWindowSeconds", 300);
+
+	        	Map<String, String> archiveEnvMap = new HashMap<String, String>();
+	        	archiveEnvMap.put("BUCKET", bucket2.getBucketName());
+	        	archiveEnvMap.put("ARCHIVE_PREFIX", "orders-enriched");
+	        	archiveEnvMap.put("TARGET_FILE_BYTES", Long.toString(archiveTargetFileBytes));
+
+	        	Function archiveFunction = Function.Builder.create(this, "OrderArchiveHandler")
+	        			.code(LambdaAssets.javaHandlers())
+	        			.handler("com.amazonaws.samples.cdk.templates.archive.OrderArchiveHandler::handleRequest")
+	        			.runtime(Runtime.JAVA_11)
+	        			.memorySize(1024)
+	        			.timeout(Duration.minutes(5))
+	        			.environment(archiveEnvMap)
+	        			.build();
+	        	bucket2.grantPut(archiveFunction);
+	        	orderEStream.grantRead(archiveFunction);
+
+	        	String archiveSourceArn = orderEStream.getStreamArn();
+	        	if (ContextValues.getBoolean(this, "archiveEnhancedFanOut", false)) {
+	        		EnhancedFanOutConsumer archiveConsumer = EnhancedFanOutConsumer.Builder.create(this, "OrderArchiveConsumer")
+	        				.stream(orderEStream)
+	        				.consumerName("OrderArchive")
+	        				.build();
+	        		archiveConsumer.grantSubscribe(archiveFunction);
+	        		archiveSourceArn = archiveConsumer.getConsumerArn();
+	        	}
+
+	        	//few large invocations -> few large files; the handler rolls everything before returning
+	        	archiveFunction.addEventSourceMapping("OrderEnrichedArchiveMapping",
+	        			EventSourceMappingOptions.builder()
+	        			.eventSourceArn(archiveSourceArn)
+	        			.batchSize(10000)
+	        			.maxBatchingWindow(archiveBatchingWindowSeconds > 0 ? Duration.seconds(archiveBatchingWindowSeconds) : null)
+	        			.startingPosition(StartingPosition.TRIM_HORIZON)
+	        			.build());
+	        }
+
+	        //sinkBackfill replays what orderEStream still retains into the table while the live sink keeps running;
+	        //its budget is a share of the autoscaling ceiling, conditional by default so it never overwrites newer versions
+	        if (ContextValues.getBoolean(this, "sinkBackfill", false)) {
+	        	double backfillWriteShare = ContextValues.getDouble(this, "backfillWriteShare", 0.5);
+	        	OrderEnrichedBackfill.Builder.create(this, "OrderEnrichedBackfill")
+	        			.stream(orderEStream)
+	        			.table(dynamodbTable)
+	        			.from(ContextValues.getString(this, "backfillFrom", "TRIM_HORIZON"))
+	        			.writeCapacity(onDemandTable ? 0 : tableMaxWriteCapacity * backfillWriteShare)
+	        			.writeMode(ContextValues.getString(this, "backfillWriteMode", "conditional"))
+	        			.indexes(orderIndexes)
+	        			.build();
+	        }
+
+	        //thresholds follow the deployed capacity: planned shards, or maxShards when autoscaling, 0 when on-demand
+	        int orderStreamCapacity = onDemandStreams ? 0 : shardAutoscaling ? maxShards : plan.getOrderStreamShards();
+	        int orderEStreamCapacity = onDemandStreams ? 0 : shardAutoscaling ? maxShards : plan.getOrderEnrichedStreamShards();
+	        PipelineMonitoring.Builder monitoring = PipelineMonitoring.Builder.create(this, "PipelineMonitoring")
+	        		.dashboardName(getStackName())
+	        		.stream(orderStream, orderStreamCapacity);
+	        if (!directTopology) {
+	        	monitoring.stream(orderEStream, orderEStreamCapacity);
+	        	if ("flink".equals(ContextValues.getString(this, "enrichmentRuntime", "sql"))) {
+	        		monitoring.flinkApplication(applicationName);
+	        	} else {
+	        		monitoring.analyticsApplication(applicationName);
+	        	}
+	        }
+	        int sinkSourceCapacity = directTopology ? orderStreamCapacity : orderEStreamCapacity;
+	        monitoring.sinkFunction(lambdaFunction, Duration.seconds(plan.getSinkTimeoutSeconds()), sinkSourceCapacity * plan.getSinkParallelizationFactor())
+	        		.table(dynamodbTable, onDemandTable ? 0 : tableMaxReadCapacity, onDemandTable ? 0 : tableMaxWriteCapacity)
+	        		.sinkFailureQueue(sinkFailureQueue)
+	        		.sinkFailureTopic(sinkFailureTopic)
+	        		.build();
+
+	        
+	       
+		 
+		
+	}
+	
+	//KDA SQL (or Flink) application reading orderStream, joining products.json and writing orderEStream
+	private void enrichmentApplication(final CapacityPlan plan, final String applicationName, final Bucket bucket, final Stream orderStream,
+			final Stream orderEStream) {
 		//setup iam role and policies
 		
 		List<String> actionList = new ArrayList<String>();
@@ -165,214 +602,127 @@ public class KinesisStreamETLStack extends Stack {
 		
 		
 		
-		CfnApplication.InputSchemaProperty.Builder  kdaInputSchema = new CfnApplication.InputSchemaProperty.Builder();
-		
-		
-		CfnApplication.RecordColumnProperty rcpOrderId = new CfnApplication.RecordColumnProperty.Builder().name("orderId").sqlType("INT").mapping("$.orderId").build();
-		CfnApplication.RecordColumnProperty rcpItemId = new CfnApplication.RecordColumnProperty.Builder().name("itemId").sqlType("INT").mapping("$.itemId").build();
-		CfnApplication.RecordColumnProperty rcpItemQty = new CfnApplication.RecordColumnProperty.Builder().name("itemQuantity").sqlType("INT").mapping("$.itemQuantity").build();
-		CfnApplication.RecordColumnProperty rcpItemAmt = new CfnApplication.RecordColumnProperty.Builder().name("itemAmount").sqlType("REAL").mapping("$.itemAmount").build();
-		CfnApplication.RecordColumnProperty rcpItemStatus = new CfnApplication.RecordColumnProperty.Builder().name("itemStatus").sqlType("VARCHAR(8)").mapping("$.itemStatus").build();
-		CfnApplication.RecordColumnProperty rcpOrderDtTm = new CfnApplication.RecordColumnProperty.Builder().name("orderDateTime").sqlType("TIMESTAMP").mapping("$.orderDateTime").build();
-		
-		CfnApplication.RecordColumnProperty rcpRecordType = new CfnApplication.RecordColumnProperty.Builder().name("recordType").sqlType("VARCHAR(16)").mapping("$.recordType").build();
-		CfnApplication.RecordColumnProperty rcpOrderAmount = new CfnApplication.RecordColumnProperty.Builder().name("orderAmount").sqlType("DOUBLE").mapping("$.orderAmount").build();
-		CfnApplication.RecordColumnProperty rcpOrderStatus = new CfnApplication.RecordColumnProperty.Builder().name("orderStatus").sqlType("VARCHAR(8)").mapping("$.orderStatus").build();
-		CfnApplication.RecordColumnProperty rcpShipToName = new CfnApplication.RecordColumnProperty.Builder().name("shipToName").sqlType("VARCHAR(32)").mapping("$.shipToName").build();
+		//enrichmentRuntime flink replaces the SQL application with flink.OrderEnrichmentJob on a Flink runtime
+		boolean flinkEnrichment = "flink".equals(ContextValues.getString(this, "enrichmentRuntime", "sql"));
 		
-		CfnApplication.RecordColumnProperty rcpShipToAddress = new CfnApplication.RecordColumnProperty.Builder().name("shipToAddress").sqlType("VARCHAR(32)").mapping("$.shipToAddress").build();
-		CfnApplication.RecordColumnProperty rcpShipToCity = new CfnApplication.RecordColumnProperty.Builder().name("shipToCity").sqlType("VARCHAR(32)").mapping("$.shipToCity").build();
-		CfnApplication.RecordColumnProperty rcpShipToState = new CfnApplication.RecordColumnProperty.Builder().name("shipToState").sqlType("VARCHAR(16)").mapping("$.shipToState").build();
-		CfnApplication.RecordColumnProperty rcpShipToZip = new CfnApplication.RecordColumnProperty.Builder().name("shipToZip").sqlType("VARCHAR(16)").mapping("$.shipToZip").build();
+		if (flinkEnrichment) {
+			FlinkEnrichmentApplication.Builder.create(this, "FlinkEnrichment")
+					.applicationName(applicationName)
+					.inputStream(orderStream)
+					.outputStream(orderEStream)
+					.productsBucket(bucket)
+					.parallelism(ContextValues.getInt(this, "flinkParallelism", plan.getOrderStreamShards()))
+					.parallelismPerKpu(ContextValues.getInt(this, "flinkParallelismPerKpu", 1))
+					.autoScaling(ContextValues.getBoolean(this, "flinkAutoScaling", false))
+					.checkpointInterval(Duration.seconds(ContextValues.getInt(this, "flinkCheckpointIntervalSeconds", 60)))
+					.build();
+		} else {
+			CfnApplication.InputSchemaProperty.Builder  kdaInputSchema = new CfnApplication.InputSchemaProperty.Builder();
 		
 		
-		List<Object> rcpList = new ArrayList<Object>();
+			//columns come from OrderSchema so the binary wire format and the SQL schema stay in step
+			List<Object> rcpList = new ArrayList<Object>();
 		
-		rcpList.add(rcpOrderId);
-		rcpList.add(rcpItemId);
-		rcpList.add(rcpItemQty);
-		rcpList.add(rcpItemAmt);
-		rcpList.add(rcpItemStatus);
-		rcpList.add(rcpOrderDtTm);
-		rcpList.add(rcpRecordType);
-		rcpList.add(rcpOrderAmount);
-		rcpList.add(rcpOrderStatus);
-		rcpList.add(rcpShipToName);
-		rcpList.add(rcpShipToAddress);
-		rcpList.add(rcpShipToCity);
-		rcpList.add(rcpShipToState);
-		rcpList.add(rcpShipToZip);
+			for (ColumnDefinition column : OrderSchema.ORDER_COLUMNS) {
+				rcpList.add(new CfnApplication.RecordColumnProperty.Builder().name(column.getName()).sqlType(column.getSqlType()).mapping(column.getMapping()).build());
+			}
 		
 		
-		kdaInputSchema.recordColumns(rcpList);
+			kdaInputSchema.recordColumns(rcpList);
 		
-		CfnApplication.KinesisStreamsInputProperty.Builder ksiBuilder = new CfnApplication.KinesisStreamsInputProperty.Builder();
-		//ksiBuilder.roleArn("arn:aws:iam::716664005094:role/service-role/kinesis-analytics-KDA-OrderProcess-us-east-1");
-		ksiBuilder.roleArn(kdaOrderRole.getRoleArn());
-		ksiBuilder.resourceArn(orderStream.getStreamArn());
+			CfnApplication.KinesisStreamsInputProperty.Builder ksiBuilder = new CfnApplication.KinesisStreamsInputProperty.Builder();
+			//ksiBuilder.roleArn("arn:aws:iam::716664005094:role/service-role/kinesis-analytics-KDA-OrderProcess-us-east-1");
+			ksiBuilder.roleArn(kdaOrderRole.getRoleArn());
+			ksiBuilder.resourceArn(orderStream.getStreamArn());
 		
-		CfnApplication.RecordFormatProperty.Builder rfBuilder = new CfnApplication.RecordFormatProperty.Builder();
-		rfBuilder.recordFormatType("JSON");
+			CfnApplication.RecordFormatProperty.Builder rfBuilder = new CfnApplication.RecordFormatProperty.Builder();
+			rfBuilder.recordFormatType("JSON");
 		
-		CfnApplication.MappingParametersProperty.Builder mpBuilder = new CfnApplication.MappingParametersProperty.Builder();
-		//mpBuilder.
+			CfnApplication.MappingParametersProperty.Builder mpBuilder = new CfnApplication.MappingParametersProperty.Builder();
+			//mpBuilder.
 		
-		CfnApplication.JSONMappingParametersProperty.Builder jmpBuilder = new CfnApplication.JSONMappingParametersProperty.Builder();
-		jmpBuilder.recordRowPath("$");
+			CfnApplication.JSONMappingParametersProperty.Builder jmpBuilder = new CfnApplication.JSONMappingParametersProperty.Builder();
+			jmpBuilder.recordRowPath("$");
 		
-		mpBuilder.jsonMappingParameters(jmpBuilder.build());
+			mpBuilder.jsonMappingParameters(jmpBuilder.build());
 		
-		kdaInputSchema.recordFormat(rfBuilder.build());
+			kdaInputSchema.recordFormat(rfBuilder.build());
 
 		
 
-		CfnApplication.InputProperty.Builder inputBuilder = new CfnApplication.InputProperty.Builder();
+			CfnApplication.InputProperty.Builder inputBuilder = new CfnApplication.InputProperty.Builder();
 		
-		inputBuilder.inputSchema(kdaInputSchema.build());
-		inputBuilder.namePrefix("SOURCE_SQL_STREAM");
-		inputBuilder.kinesisStreamsInput(ksiBuilder.build());
+			inputBuilder.inputSchema(kdaInputSchema.build());
+			inputBuilder.namePrefix("SOURCE_SQL_STREAM");
+			inputBuilder.kinesisStreamsInput(ksiBuilder.build());
 		
-		List<Object> inputs = new ArrayList<Object>();
-		inputs.add(inputBuilder.build());
+			List<Object> inputs = new ArrayList<Object>();
+			inputs.add(inputBuilder.build());
 		
-		CfnApplicationOutput.KinesisStreamsOutputProperty.Builder ksoBuilder = new CfnApplicationOutput.KinesisStreamsOutputProperty.Builder();
-		ksoBuilder.roleArn(kdaOrderRole.getRoleArn());
-		ksoBuilder.resourceArn(orderEStream.getStreamArn());
+			CfnApplicationOutput.KinesisStreamsOutputProperty.Builder ksoBuilder = new CfnApplicationOutput.KinesisStreamsOutputProperty.Builder();
+			ksoBuilder.roleArn(kdaOrderRole.getRoleArn());
+			ksoBuilder.resourceArn(orderEStream.getStreamArn());
 		
 		
-		CfnApplicationOutput.DestinationSchemaProperty.Builder dsp = CfnApplicationOutput.DestinationSchemaProperty.builder();
-		dsp.recordFormatType("JSON");
+			CfnApplicationOutput.DestinationSchemaProperty.Builder dsp = CfnApplicationOutput.DestinationSchemaProperty.builder();
+			dsp.recordFormatType("JSON");
 		
 		
-		CfnApplicationOutput.OutputProperty.Builder outputBuilder = new CfnApplicationOutput.OutputProperty.Builder();
-		outputBuilder.kinesisStreamsOutput(ksoBuilder.build());
-		outputBuilder.destinationSchema(dsp.build());
+			CfnApplicationOutput.OutputProperty.Builder outputBuilder = new CfnApplicationOutput.OutputProperty.Builder();
+			outputBuilder.kinesisStreamsOutput(ksoBuilder.build());
+			outputBuilder.destinationSchema(dsp.build());
 		
 		
 		
 		
-		CfnApplication appConstruct = CfnApplication.Builder.create(this, "KDA-OrderETLAppId")
-		.applicationName("KDA-OrderETL")
-		.applicationDescription("ETL for orders")
-		.inputs(inputs)
-		.build();
+			CfnApplication appConstruct = CfnApplication.Builder.create(this, "KDA-OrderETLAppId")
+			.applicationName(applicationName)
+			.applicationDescription("ETL for orders")
+			.inputs(inputs)
+			.build();
 		
 		
 		
-		CfnApplicationOutput appOutConstruct = CfnApplicationOutput.Builder.create(this, "KDA-OrderETLAppId2")
-		 .applicationName("KDA-OrderETL")
-		 .output(outputBuilder.build())
-		 .build();
+			CfnApplicationOutput appOutConstruct = CfnApplicationOutput.Builder.create(this, "KDA-OrderETLAppId2")
+			 .applicationName(applicationName)
+			 .output(outputBuilder.build())
+			 .build();
 		
-		appOutConstruct.addDependsOn(appConstruct);
+			appOutConstruct.addDependsOn(appConstruct);
 		
-		CfnApplicationReferenceDataSource.S3ReferenceDataSourceProperty.Builder	s3Ref = new CfnApplicationReferenceDataSource.S3ReferenceDataSourceProperty.Builder();	
-		s3Ref.bucketArn(bucket.getBucketArn());
-		s3Ref.referenceRoleArn(kdaOrderRole.getRoleArn());
-		s3Ref.fileKey("products/products.json");
+			CfnApplicationReferenceDataSource.S3ReferenceDataSourceProperty.Builder	s3Ref = new CfnApplicationReferenceDataSource.S3ReferenceDataSourceProperty.Builder();	
+			s3Ref.bucketArn(bucket.getBucketArn());
+			s3Ref.referenceRoleArn(kdaOrderRole.getRoleArn());
+			s3Ref.fileKey("products/products.json");
 		
 		
-		CfnApplicationReferenceDataSource.RecordColumnProperty rcpPrdId = new CfnApplicationReferenceDataSource.RecordColumnProperty.Builder().name("productId").sqlType("INT").mapping("$.productId").build();
-		CfnApplicationReferenceDataSource.RecordColumnProperty rcpPrdNm = new CfnApplicationReferenceDataSource.RecordColumnProperty.Builder().name("productName").sqlType("VARCHAR(32)").mapping("$.productName").build();
-		CfnApplicationReferenceDataSource.RecordColumnProperty rcpPrdPrice = new CfnApplicationReferenceDataSource.RecordColumnProperty.Builder().name("productPrice").sqlType("REAL").mapping("$.productPrice").build();
+			List<Object> rcpPrdList = new ArrayList<Object>();
 		
-		List<Object> rcpPrdList = new ArrayList<Object>();
-		rcpPrdList.add(rcpPrdId);
-		rcpPrdList.add(rcpPrdNm);
-		rcpPrdList.add(rcpPrdPrice);
+			for (ColumnDefinition column : OrderSchema.PRODUCT_COLUMNS) {
+				rcpPrdList.add(new CfnApplicationReferenceDataSource.RecordColumnProperty.Builder().name(column.getName()).sqlType(column.getSqlType()).mapping(column.getMapping()).build());
+			}
 		
-		CfnApplicationReferenceDataSource.RecordFormatProperty.Builder rfpB = new CfnApplicationReferenceDataSource.RecordFormatProperty.Builder();
-		rfpB.recordFormatType("JSON");
+			CfnApplicationReferenceDataSource.RecordFormatProperty.Builder rfpB = new CfnApplicationReferenceDataSource.RecordFormatProperty.Builder();
+			rfpB.recordFormatType("JSON");
 		
-		CfnApplicationReferenceDataSource.ReferenceSchemaProperty.Builder rfsB = new CfnApplicationReferenceDataSource.ReferenceSchemaProperty.Builder();
-		rfsB.recordColumns(rcpPrdList);
-		rfsB.recordFormat(rfpB.build());
+			CfnApplicationReferenceDataSource.ReferenceSchemaProperty.Builder rfsB = new CfnApplicationReferenceDataSource.ReferenceSchemaProperty.Builder();
+			rfsB.recordColumns(rcpPrdList);
+			rfsB.recordFormat(rfpB.build());
 		
-		CfnApplicationReferenceDataSource.ReferenceDataSourceProperty.Builder refDs = new CfnApplicationReferenceDataSource.ReferenceDataSourceProperty.Builder();
-		refDs.s3ReferenceDataSource(s3Ref.build());
-		refDs.referenceSchema(rfsB.build());
-		refDs.tableName("products");
+			CfnApplicationReferenceDataSource.ReferenceDataSourceProperty.Builder refDs = new CfnApplicationReferenceDataSource.ReferenceDataSourceProperty.Builder();
+			refDs.s3ReferenceDataSource(s3Ref.build());
+			refDs.referenceSchema(rfsB.build());
+			refDs.tableName("products");
 		
 		
-		CfnApplicationReferenceDataSource.Builder appRefDsb = CfnApplicationReferenceDataSource.Builder.create(this, "s3RefDs");
-		appRefDsb.applicationName("KDA-OrderETL");
-		appRefDsb.referenceDataSource(refDs.build());
+			CfnApplicationReferenceDataSource.Builder appRefDsb = CfnApplicationReferenceDataSource.Builder.create(this, "s3RefDs");
+			appRefDsb.applicationName(applicationName);
+			appRefDsb.referenceDataSource(refDs.build());
 		
 		
-		CfnApplicationReferenceDataSource appDs = appRefDsb.build();
-		appDs.addDependsOn(appConstruct);
-		
-		
-		
-		
-		
-		 // final Bucket bucket2 = new Bucket(this, "OrderEnrichmentSinkStore");
-		  Bucket bucket2 = Bucket.Builder.create(this, "OrderEnrichmentSinkStore").removalPolicy(RemovalPolicy.DESTROY).build();
-
-		  
-		 
-	      
-	      TableProps tableProps;
-	        Attribute partitionKey = Attribute.builder()
-	                .name("orderId")
-	                .type(AttributeType.NUMBER)
-	                .build();
-	        Attribute sortKey = Attribute.builder()
-	                .name("itemId")
-	                .type(AttributeType.NUMBER)
-	                .build();
-	        tableProps = TableProps.builder()
-	                .tableName("OrderEnriched")
-	                .partitionKey(partitionKey)
-	                .sortKey(sortKey)
-	                // The default removal policy is RETAIN, which means that cdk destroy will not attempt to delete
-	                // the new table, and it will remain in your account until manually deleted. By setting the policy to
-	                // DESTROY, cdk destroy will delete the table (even if it has data in it)
-	                .removalPolicy(RemovalPolicy.DESTROY)
-	                .build();
-	        
-	        Table dynamodbTable = new Table(this, "OrderEnriched", tableProps);
-	        
-	        
-	        Map<String, String> lambdaEnvMap = new HashMap<String, String>();
-			  lambdaEnvMap.put("BUCKET", bucket.getBucketName());
-			  lambdaEnvMap.put("TABLE_NAME", dynamodbTable.getTableName());
-		      lambdaEnvMap.put("PRIMARY_KEY","orderId");
-		      lambdaEnvMap.put("SORT_KEY","itemId");
-		      
-		    
-	      
-		  List<IEventSource> events= new ArrayList<>();
-		  
-		  
-		  
-		  KinesisEventSource.Builder keb =  KinesisEventSource.Builder.create(orderEStream);
-		  keb.parallelizationFactor(5);
-		  keb.batchSize(500);
-		  keb.startingPosition(StartingPosition.LATEST);
-
-		  events.add(keb.build());
-		  
-		  Function lambdaFunction =
-			        Function.Builder.create(this, "OrderEnrichmentSinkHandler")
-			            .code(Code.fromAsset("resources"))
-			            .handler("order_enrichment_sink.main")
-			            .timeout(Duration.seconds(300))
-			            .memorySize(512)
-			            .events(events)
-			            .runtime(Runtime.NODEJS_12_X)
-			            .environment(lambdaEnvMap)
-			            .build();
-
-
-	        bucket2.grantReadWrite(lambdaFunction);
-	        dynamodbTable.grantReadWriteData(lambdaFunction);
-	        
-	        
-	       
-		 
-		
+			CfnApplicationReferenceDataSource appDs = appRefDsb.build();
+			appDs.addDependsOn(appConstruct);
+		}
 	}
-	
-	
+
 }
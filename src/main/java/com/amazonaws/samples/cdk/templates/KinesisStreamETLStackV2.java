@@ -6,6 +6,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
+import com.amazonaws.samples.cdk.templates.planning.CapacityPlan;
+import com.amazonaws.samples.cdk.templates.schema.ColumnDefinition;
+import com.amazonaws.samples.cdk.templates.schema.OrderSchema;
+import com.amazonaws.samples.cdk.templates.schema.OrderWindowSql;
+
 import software.amazon.awscdk.core.CfnParameter;
 import software.amazon.awscdk.core.Construct;
 import software.amazon.awscdk.core.Stack;
@@ -29,6 +34,10 @@ public class KinesisStreamETLStackV2 extends Stack {
 	}
 
 	public KinesisStreamETLStackV2(final Construct parent, final String id, final StackProps props) {
+		this(parent, id, props, CapacityPlan.defaults());
+	}
+
+	public KinesisStreamETLStackV2(final Construct parent, final String id, final StackProps props, final CapacityPlan plan) {
 		super(parent, id, props);
 		
 		
@@ -39,7 +48,7 @@ public class KinesisStreamETLStackV2 extends Stack {
 		
 		CfnParameter orderStreamShards = CfnParameter.Builder.create(this, "orderStreamShards")
 		        .type("Number")
-		        .description("Number of shards for kinesis order stream").defaultValue(2)
+		        .description("Number of shards for kinesis order stream").defaultValue(plan.getOrderStreamShards())
 		        .build();
 		
 		CfnParameter orderEStreamName = CfnParameter.Builder.create(this, "orderEnrichedStreamName")
@@ -49,7 +58,7 @@ public class KinesisStreamETLStackV2 extends Stack {
 		
 		CfnParameter orderEStreamShards = CfnParameter.Builder.create(this, "orderEnrichedStreamShards")
 		        .type("Number")
-		        .description("Number of shards for kinesis order enriched stream").defaultValue(2)
+		        .description("Number of shards for kinesis order enriched stream").defaultValue(plan.getOrderEnrichedStreamShards())
 		        .build();
 		
 		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd-hh-mm-ss");
@@ -72,6 +81,16 @@ public class KinesisStreamETLStackV2 extends Stack {
 		Stream orderStream = Stream.Builder.create(this, "OrderStreamId").streamName(orderStreamName.getValueAsString()).shardCount(orderStreamShards.getValueAsNumber()).build();
 		Stream orderEStream = Stream.Builder.create(this, "OrderEnrichedStreamId").streamName(orderEStreamName.getValueAsString()).shardCount(orderEStreamShards.getValueAsNumber()).build();
 		
+		//streamCapacityMode ON_DEMAND or shardAutoscaling=true replace the static shard counts
+		boolean onDemandStreams = "ON_DEMAND".equals(ContextValues.getString(this, "streamCapacityMode", "PROVISIONED"));
+		boolean shardAutoscaling = !onDemandStreams && ContextValues.getBoolean(this, "shardAutoscaling", false);
+		int minShards = ContextValues.getInt(this, "minShards", 1);
+		int maxShards = ContextValues.getInt(this, "maxShards", 64);
+		if (onDemandStreams || shardAutoscaling) {
+			StreamShardAutoscaler.Builder.create(this, "OrderStreamAutoscaler").stream(orderStream).onDemand(onDemandStreams).minShards(minShards).maxShards(maxShards).build();
+			StreamShardAutoscaler.Builder.create(this, "OrderEnrichedStreamAutoscaler").stream(orderEStream).onDemand(onDemandStreams).minShards(minShards).maxShards(maxShards).build();
+		}
+		
 		
 		
 		//setup iam role and policies
@@ -156,39 +175,12 @@ public class KinesisStreamETLStackV2 extends Stack {
 		CfnApplicationV2.InputSchemaProperty.Builder  kdaInputSchema = new CfnApplicationV2.InputSchemaProperty.Builder();
 		
 		
-		CfnApplicationV2.RecordColumnProperty rcpOrderId = new CfnApplicationV2.RecordColumnProperty.Builder().name("orderId").sqlType("INT").mapping("$.orderId").build();
-		CfnApplicationV2.RecordColumnProperty rcpItemId = new CfnApplicationV2.RecordColumnProperty.Builder().name("itemId").sqlType("INT").mapping("$.orderId").build();
-		CfnApplicationV2.RecordColumnProperty rcpItemQty = new CfnApplicationV2.RecordColumnProperty.Builder().name("itemQuantity").sqlType("INT").mapping("$.itemQuantity").build();
-		CfnApplicationV2.RecordColumnProperty rcpItemAmt = new CfnApplicationV2.RecordColumnProperty.Builder().name("itemAmount").sqlType("REAL").mapping("$.itemAmount").build();
-		CfnApplicationV2.RecordColumnProperty rcpItemStatus = new CfnApplicationV2.RecordColumnProperty.Builder().name("itemStatus").sqlType("VARCHAR(8)").mapping("$.itemStatus").build();
-		CfnApplicationV2.RecordColumnProperty rcpOrderDtTm = new CfnApplicationV2.RecordColumnProperty.Builder().name("orderDateTime").sqlType("TIMESTAMP").mapping("$.orderDateTime").build();
-		
-		CfnApplicationV2.RecordColumnProperty rcpRecordType = new CfnApplicationV2.RecordColumnProperty.Builder().name("recordType").sqlType("VARCHAR(16)").mapping("$.recordType").build();
-		CfnApplicationV2.RecordColumnProperty rcpOrderAmount = new CfnApplicationV2.RecordColumnProperty.Builder().name("orderAmount").sqlType("DOUBLE").mapping("$.orderAmount").build();
-		CfnApplicationV2.RecordColumnProperty rcpOrderStatus = new CfnApplicationV2.RecordColumnProperty.Builder().name("orderStatus").sqlType("VARCHAR(8)").mapping("$.orderStatus").build();
-		CfnApplicationV2.RecordColumnProperty rcpShipToName = new CfnApplicationV2.RecordColumnProperty.Builder().name("shipToName").sqlType("VARCHAR(32)").mapping("$.shipToName").build();
-		
-		CfnApplicationV2.RecordColumnProperty rcpShipToAddress = new CfnApplicationV2.RecordColumnProperty.Builder().name("shipToAddress").sqlType("VARCHAR(32)").mapping("$.shipToAddress").build();
-		CfnApplicationV2.RecordColumnProperty rcpShipToCity = new CfnApplicationV2.RecordColumnProperty.Builder().name("shipToCity").sqlType("VARCHAR(32)").mapping("$.shipToCity").build();
-		CfnApplicationV2.RecordColumnProperty rcpShipToState = new CfnApplicationV2.RecordColumnProperty.Builder().name("shipToState").sqlType("VARCHAR(16)").mapping("$.shipToState").build();
-		CfnApplicationV2.RecordColumnProperty rcpShipToZip = new CfnApplicationV2.RecordColumnProperty.Builder().name("shipToZip").sqlType("VARCHAR(16)").mapping("$.shipToZip").build();
-		
-		
+		//columns come from OrderSchema, as in KinesisStreamETLStack
 		List<Object> rcpList = new ArrayList<Object>();
 		
-		rcpList.add(rcpOrderId);
-		rcpList.add(rcpItemId);
-		rcpList.add(rcpItemQty);
-		rcpList.add(rcpItemAmt);
-		rcpList.add(rcpItemStatus);
-		rcpList.add(rcpOrderDtTm);
-		rcpList.add(rcpRecordType);
-		rcpList.add(rcpOrderStatus);
-		rcpList.add(rcpShipToName);
-		rcpList.add(rcpShipToAddress);
-		rcpList.add(rcpShipToCity);
-		rcpList.add(rcpShipToState);
-		rcpList.add(rcpShipToZip);
+		for (ColumnDefinition column : OrderSchema.ORDER_COLUMNS) {
+			rcpList.add(new CfnApplicationV2.RecordColumnProperty.Builder().name(column.getName()).sqlType(column.getSqlType()).mapping(column.getMapping()).build());
+		}
 		
 		
 		kdaInputSchema.recordColumns(rcpList);
@@ -226,18 +218,12 @@ public class KinesisStreamETLStackV2 extends Stack {
 		
 		
 		
+		//orderWindow TUMBLING collapses each order's items into one row per orderWindowSeconds, SLIDING adds running totals per item
+		OrderWindowSql.WindowType orderWindow = OrderWindowSql.WindowType.valueOf(ContextValues.getString(this, "orderWindow", "TUMBLING"));
+		int orderWindowSeconds = ContextValues.getInt(this, "orderWindowSeconds", 60);
+		
 		CfnApplicationV2.CodeContentProperty.Builder ccBldr = new CfnApplicationV2.CodeContentProperty.Builder();	
-		ccBldr.textContent("CREATE OR REPLACE STREAM \"ORDERSTREAM\"(\n" + 
-				"   \"orderId\" INTEGER, \n" + 
-				"   \"orderAmount\" DECIMAL(5,2),\n" + 
-				"   \"orderStatus\" VARCHAR(8),\n" + 
-				"   \"orderDateTime\" TIMESTAMP,\n" + 
-				"   \"shipToName\" VARCHAR(32),\n" + 
-				"   \"shipToAddress\" VARCHAR(32),\n" + 
-				"   \"shipToCity\" VARCHAR(32),\n" + 
-				"   \"shipToState\" VARCHAR(16),\n" + 
-				"   \"shipToZip\" VARCHAR(16),\n" + 
-				"   \"recordType\" VARCHAR(16));");
+		ccBldr.textContent(new OrderWindowSql("ord_001", orderWindow, orderWindowSeconds).toSql());
 		
 		CfnApplicationV2.ApplicationCodeConfigurationProperty.Builder appcodeBldr = new CfnApplicationV2.ApplicationCodeConfigurationProperty.Builder();
 		appcodeBldr.codeContent(ccBldr.build());
@@ -252,7 +238,7 @@ public class KinesisStreamETLStackV2 extends Stack {
 		
 		
 		
-		CfnApplicationV2.Builder.create(this, "KDA-OrderETLAppId")
+		CfnApplicationV2 appConstruct = CfnApplicationV2.Builder.create(this, "KDA-OrderETLAppId")
 		.applicationName("KDA-OrderETL")
 		.applicationDescription("ETL for orders")
 		.applicationConfiguration(appConfBldr.build())
@@ -260,6 +246,33 @@ public class KinesisStreamETLStackV2 extends Stack {
 		.runtimeEnvironment("SQL-1_0")
 		.build();
 		
+		//order-level totals go to the enriched stream
+		CfnApplicationOutputV2.KinesisStreamsOutputProperty.Builder ksoBuilder = new CfnApplicationOutputV2.KinesisStreamsOutputProperty.Builder();
+		ksoBuilder.resourceArn(orderEStream.getStreamArn());
+		
+		CfnApplicationOutputV2.DestinationSchemaProperty.Builder dsp = new CfnApplicationOutputV2.DestinationSchemaProperty.Builder();
+		dsp.recordFormatType("JSON");
+		
+		CfnApplicationOutputV2.OutputProperty.Builder outputBuilder = new CfnApplicationOutputV2.OutputProperty.Builder();
+		outputBuilder.name(OrderWindowSql.OUTPUT_STREAM);
+		outputBuilder.kinesisStreamsOutput(ksoBuilder.build());
+		outputBuilder.destinationSchema(dsp.build());
+		
+		CfnApplicationOutputV2 appOutConstruct = CfnApplicationOutputV2.Builder.create(this, "KDA-OrderETLAppOutput")
+		.applicationName("KDA-OrderETL")
+		.output(outputBuilder.build())
+		.build();
+		
+		appOutConstruct.addDependsOn(appConstruct);
+		
+		//thresholds follow the deployed capacity: planned shards, or maxShards when autoscaling, 0 when on-demand
+		PipelineMonitoring.Builder.create(this, "PipelineMonitoring")
+				.dashboardName(getStackName())
+				.stream(orderStream, onDemandStreams ? 0 : shardAutoscaling ? maxShards : plan.getOrderStreamShards())
+				.stream(orderEStream, onDemandStreams ? 0 : shardAutoscaling ? maxShards : plan.getOrderEnrichedStreamShards())
+				.analyticsApplication("KDA-OrderETL")
+				.build();
+		
 	}
 
 }
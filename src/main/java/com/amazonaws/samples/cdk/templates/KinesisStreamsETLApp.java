@@ -2,6 +2,15 @@ package com.amazonaws.samples.cdk.templates;
 
 
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.samples.cdk.templates.cells.CellRouter;
+import com.amazonaws.samples.cdk.templates.planning.CapacityPlan;
+import com.amazonaws.samples.cdk.templates.planning.CapacityPlanner;
+import com.amazonaws.samples.cdk.templates.planning.PipelineLoad;
+
 import software.amazon.awscdk.core.App;
 
 public class KinesisStreamsETLApp {
@@ -9,9 +18,58 @@ public class KinesisStreamsETLApp {
 	public static void main(final String[] args) {
         App app = new App();
 
-        new KinesisStreamETLStack(app, "KinesisStreamETLStack");
+        //cellCount > 1 stamps independent cells, each sized for its share of targetOrdersPerSecond
+        int cellCount = ContextValues.getInt(app, "cellCount", 1);
+        if (cellCount <= 1) {
+            new KinesisStreamETLStack(app, "KinesisStreamETLStack", null, capacityPlan(app, 1));
+        } else {
+            CapacityPlan plan = capacityPlan(app, cellCount);
+            for (int cell : selectedCells(app, cellCount)) {
+                String cellName = CellRouter.cellName(cell);
+                new KinesisStreamETLStack(app, "KinesisStreamETLStack-" + cellName, null, plan, cellName);
+            }
+        }
 
         app.synth();
+
+        //SYNTH_TIMING reports JVM start to synth completion on stderr, see bin/synth-benchmark
+        if (System.getenv("SYNTH_TIMING") != null) {
+            System.err.println("synth-timing-ms " + (System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime()));
+        }
     }
 
+	//sized from targetOrdersPerSecond when set, otherwise the historical fixed sizing
+	static CapacityPlan capacityPlan(final App app, final int cellCount) {
+		double ordersPerSecond = ContextValues.getDouble(app, "targetOrdersPerSecond", 0) / cellCount;
+		if (ordersPerSecond <= 0) {
+			return CapacityPlan.defaults();
+		}
+		PipelineLoad load = new PipelineLoad(ordersPerSecond,
+				ContextValues.getInt(app, "itemsPerOrder", 3),
+				ContextValues.getInt(app, "averageRecordBytes", 300),
+				ContextValues.getInt(app, "latencySloMillis", 5000));
+		return new CapacityPlanner(ContextValues.getString(app, "sinkWriteMode", CapacityPlanner.WRITE_MODE_CONDITIONAL))
+				.plan(load, ContextValues.getString(app, "pipelineTopology", CapacityPlanner.TOPOLOGY_ENRICHED));
+	}
+
+	//cellSelection (e.g. "0,3") synthesizes only those cells, so a per-cell pipeline does not build every stack
+	static List<Integer> selectedCells(final App app, final int cellCount) {
+		String selection = ContextValues.getString(app, "cellSelection", "");
+		List<Integer> cells = new ArrayList<Integer>();
+		if (selection.trim().isEmpty()) {
+			for (int cell = 0; cell < cellCount; cell++) {
+				cells.add(cell);
+			}
+			return cells;
+		}
+		for (String part : selection.split(",")) {
+			int cell = Integer.parseInt(part.trim());
+			if (cell < 0 || cell >= cellCount) {
+				throw new IllegalArgumentException("cellSelection " + cell + " is outside 0.." + (cellCount - 1));
+			}
+			cells.add(cell);
+		}
+		return cells;
+	}
+
 }
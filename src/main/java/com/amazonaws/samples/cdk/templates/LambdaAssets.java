@@ -0,0 +1,17 @@
+package com.amazonaws.samples.cdk.templates;
+
+import software.amazon.awscdk.services.lambda.Code;
+
+public final class LambdaAssets {
+
+	//built by the lambda-package shade execution in pom.xml (mvn package)
+	public static final String JAVA_HANDLERS_JAR = "target/lambda/order-etl-lambda.jar";
+
+	private LambdaAssets() {
+	}
+
+	public static Code javaHandlers() {
+		return Code.fromAsset(JAVA_HANDLERS_JAR);
+	}
+
+}
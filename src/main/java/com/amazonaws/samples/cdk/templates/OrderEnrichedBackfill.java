@@ -0,0 +1,171 @@
+package com.amazonaws.samples.cdk.templates;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.query.OrderIndexes;
+
+import software.amazon.awscdk.core.Construct;
+import software.amazon.awscdk.core.Duration;
+import software.amazon.awscdk.core.RemovalPolicy;
+import software.amazon.awscdk.services.dynamodb.Attribute;
+import software.amazon.awscdk.services.dynamodb.AttributeType;
+import software.amazon.awscdk.services.dynamodb.BillingMode;
+import software.amazon.awscdk.services.dynamodb.Table;
+import software.amazon.awscdk.services.events.Rule;
+import software.amazon.awscdk.services.events.Schedule;
+import software.amazon.awscdk.services.events.targets.LambdaFunction;
+import software.amazon.awscdk.services.iam.Effect;
+import software.amazon.awscdk.services.iam.PolicyStatement;
+import software.amazon.awscdk.services.kinesis.Stream;
+import software.amazon.awscdk.services.lambda.Function;
+import software.amazon.awscdk.services.lambda.Runtime;
+
+/**
+ * Deployed form of backfill.StreamBackfill: rebuilds the table from what the
+ * enriched stream retains, next to the live sink. A scheduled function
+ * (one at a time) reads every shard from the start position, writes with
+ * conditional PutItem (or BatchWriteItem in "batch" mode) paced to
+ * writeCapacity units per second and keeps its
+ * checkpoints in a small on-demand table, so each run continues where the
+ * last one stopped. Once the job is complete the runs return immediately;
+ * a new start position starts a new job.
+ */
+public class OrderEnrichedBackfill extends Construct {
+
+	private final Function backfillFunction;
+	private final Table checkpointTable;
+
+	private OrderEnrichedBackfill(final Construct scope, final String id, final Builder props) {
+		super(scope, id);
+
+		checkpointTable = Table.Builder.create(this, "Checkpoints")
+				.partitionKey(Attribute.builder().name("jobId").type(AttributeType.STRING).build())
+				.sortKey(Attribute.builder().name("shardId").type(AttributeType.STRING).build())
+				.billingMode(BillingMode.PAY_PER_REQUEST)
+				.removalPolicy(RemovalPolicy.DESTROY)
+				.build();
+
+		Map<String, String> envMap = new HashMap<String, String>();
+		envMap.put("STREAM_NAME", props.stream.getStreamName());
+		envMap.put("TABLE_NAME", props.table.getTableName());
+		envMap.put("CHECKPOINT_TABLE", checkpointTable.getTableName());
+		envMap.put("BACKFILL_FROM", props.from);
+		envMap.put("BACKFILL_WCU", Double.toString(props.writeCapacity));
+		envMap.put("WRITE_MODE", props.writeMode);
+		if (props.indexes != null) {
+			props.indexes.addEnvironment(envMap);
+		}
+
+		backfillFunction = Function.Builder.create(this, "BackfillHandler")
+				.code(LambdaAssets.javaHandlers())
+				.handler("com.amazonaws.samples.cdk.templates.backfill.BackfillHandler::handleRequest")
+				.runtime(Runtime.JAVA_11)
+				.memorySize(1024)
+				.timeout(props.runTimeout)
+				.reservedConcurrentExecutions(1)
+				.environment(envMap)
+				.build();
+
+		props.stream.grantRead(backfillFunction);
+		backfillFunction.addToRolePolicy(PolicyStatement.Builder.create()
+				.effect(Effect.ALLOW)
+				.actions(Arrays.asList("kinesis:ListShards", "kinesis:DescribeStreamSummary"))
+				.resources(Collections.singletonList(props.stream.getStreamArn()))
+				.build());
+		props.table.grantWriteData(backfillFunction);
+		checkpointTable.grantReadWriteData(backfillFunction);
+
+		Rule.Builder.create(this, "BackfillSchedule")
+				.schedule(Schedule.rate(props.schedule))
+				.targets(Collections.singletonList(new LambdaFunction(backfillFunction)))
+				.build();
+	}
+
+	public Function getBackfillFunction() {
+		return backfillFunction;
+	}
+
+	public Table getCheckpointTable() {
+		return checkpointTable;
+	}
+
+	public static final class Builder {
+
+		private final Construct scope;
+		private final String id;
+
+		private Stream stream;
+		private Table table;
+		private String from = "TRIM_HORIZON";
+		private double writeCapacity;
+		private String writeMode = "conditional";
+		private OrderIndexes indexes;
+		private Duration runTimeout = Duration.minutes(15);
+		private Duration schedule = Duration.minutes(15);
+
+		private Builder(final Construct scope, final String id) {
+			this.scope = scope;
+			this.id = id;
+		}
+
+		public static Builder create(final Construct scope, final String id) {
+			return new Builder(scope, id);
+		}
+
+		public Builder stream(final Stream stream) {
+			this.stream = stream;
+			return this;
+		}
+
+		public Builder table(final Table table) {
+			this.table = table;
+			return this;
+		}
+
+		/** TRIM_HORIZON or an ISO-8601 instant for AT_TIMESTAMP. */
+		public Builder from(final String from) {
+			this.from = from;
+			return this;
+		}
+
+		/** Write capacity units per second the backfill may use; 0 for an on-demand table. */
+		public Builder writeCapacity(final double writeCapacity) {
+			this.writeCapacity = writeCapacity;
+			return this;
+		}
+
+		/** "conditional" (PutItem on newer event_ts, the default) or "batch" (BatchWriteItem). */
+		public Builder writeMode(final String writeMode) {
+			this.writeMode = writeMode;
+			return this;
+		}
+
+		/** The table's secondary indexes, whose keys the backfill writes like the sink; null for none. */
+		public Builder indexes(final OrderIndexes indexes) {
+			this.indexes = indexes;
+			return this;
+		}
+
+		public Builder runTimeout(final Duration runTimeout) {
+			this.runTimeout = runTimeout;
+			return this;
+		}
+
+		public Builder schedule(final Duration schedule) {
+			this.schedule = schedule;
+			return this;
+		}
+
+		public OrderEnrichedBackfill build() {
+			if (stream == null || table == null) {
+				throw new IllegalArgumentException("stream and table are required");
+			}
+			return new OrderEnrichedBackfill(scope, id, this);
+		}
+
+	}
+
+}
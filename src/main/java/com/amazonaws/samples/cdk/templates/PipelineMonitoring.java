@@ -0,0 +1,348 @@
+package com.amazonaws.samples.cdk.templates;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import software.amazon.awscdk.core.Construct;
+import software.amazon.awscdk.core.Duration;
+import software.amazon.awscdk.services.cloudwatch.Alarm;
+import software.amazon.awscdk.services.cloudwatch.ComparisonOperator;
+import software.amazon.awscdk.services.cloudwatch.Dashboard;
+import software.amazon.awscdk.services.cloudwatch.GraphWidget;
+import software.amazon.awscdk.services.cloudwatch.HorizontalAnnotation;
+import software.amazon.awscdk.services.cloudwatch.IMetric;
+import software.amazon.awscdk.services.cloudwatch.MathExpression;
+import software.amazon.awscdk.services.cloudwatch.Metric;
+import software.amazon.awscdk.services.cloudwatch.TreatMissingData;
+import software.amazon.awscdk.services.dynamodb.Table;
+import software.amazon.awscdk.services.kinesis.Stream;
+import software.amazon.awscdk.services.lambda.Function;
+import software.amazon.awscdk.services.sns.Topic;
+import software.amazon.awscdk.services.sqs.Queue;
+
+/**
+ * Dashboard and alarms for the ETL pipeline. Thresholds are derived from the
+ * capacity each resource was deployed with rather than hand-tuned: stream
+ * throughput alarms fire at utilizationThreshold of shards x 1 MiB/s and
+ * 1000 records/s, table alarms at utilizationThreshold of the provisioned
+ * (or autoscaling ceiling) capacity, and the sink concurrency alarm when
+ * every shard x parallelization slot has been busy for five minutes. A
+ * batch on the sink's failure queue or topic alarms at once.
+ *
+ * A capacity of 0 means on-demand; only the throttle and lag alarms are
+ * created for those resources. Alarms have no actions; attach them through
+ * getAlarms().
+ */
+public class PipelineMonitoring extends Construct {
+
+	private static final Duration PERIOD = Duration.minutes(1);
+	private static final long SHARD_BYTES_PER_SECOND = 1024 * 1024;
+	private static final long SHARD_RECORDS_PER_SECOND = 1000;
+
+	private final Dashboard dashboard;
+	private final List<Alarm> alarms = new ArrayList<Alarm>();
+
+	private PipelineMonitoring(final Construct scope, final String id, final Builder props) {
+		super(scope, id);
+
+		dashboard = Dashboard.Builder.create(this, "Dashboard")
+				.dashboardName(props.dashboardName)
+				.build();
+
+		long iteratorAgeMillis = props.iteratorAgeThreshold.toMilliseconds().longValue();
+
+		for (MonitoredStream monitored : props.streams) {
+			String name = monitored.stream.getNode().getId();
+			Map<String, Object> dimensions = Collections.<String, Object>singletonMap("StreamName", monitored.stream.getStreamName());
+
+			Metric incomingBytes = metric("AWS/Kinesis", "IncomingBytes", dimensions, "Sum");
+			Metric incomingRecords = metric("AWS/Kinesis", "IncomingRecords", dimensions, "Sum");
+			Metric iteratorAge = metric("AWS/Kinesis", "GetRecords.IteratorAgeMilliseconds", dimensions, "Maximum");
+			Metric writeThrottles = metric("AWS/Kinesis", "WriteProvisionedThroughputExceeded", dimensions, "Sum");
+			Metric readThrottles = metric("AWS/Kinesis", "ReadProvisionedThroughputExceeded", dimensions, "Sum");
+
+			List<HorizontalAnnotation> byteLimits = new ArrayList<HorizontalAnnotation>();
+			if (monitored.shards > 0) {
+				double bytesThreshold = props.utilizationThreshold * monitored.shards * SHARD_BYTES_PER_SECOND * PERIOD.toSeconds().longValue();
+				double recordsThreshold = props.utilizationThreshold * monitored.shards * SHARD_RECORDS_PER_SECOND * PERIOD.toSeconds().longValue();
+				alarm(name + "IncomingBytes", incomingBytes, bytesThreshold, 3,
+						name + " IncomingBytes above " + percent(props.utilizationThreshold) + " of " + monitored.shards + " shards");
+				alarm(name + "IncomingRecords", incomingRecords, recordsThreshold, 3,
+						name + " IncomingRecords above " + percent(props.utilizationThreshold) + " of " + monitored.shards + " shards");
+				byteLimits.add(HorizontalAnnotation.builder().value(bytesThreshold).label("alarm").build());
+			}
+			alarm(name + "IteratorAge", iteratorAge, iteratorAgeMillis, 3,
+					name + " consumers more than " + iteratorAgeMillis + " ms behind");
+			alarm(name + "WriteThrottles", writeThrottles, 0, 3, name + " PutRecord(s) throttled for 3 minutes");
+
+			dashboard.addWidgets(
+					graph(name + " incoming bytes / min", Collections.<IMetric>singletonList(incomingBytes), byteLimits),
+					graph(name + " incoming records / min", Collections.<IMetric>singletonList(incomingRecords), null),
+					graph(name + " iterator age (ms)", Collections.<IMetric>singletonList(iteratorAge),
+							Collections.singletonList(HorizontalAnnotation.builder().value(iteratorAgeMillis).label("alarm").build())),
+					graph(name + " throttles", Arrays.<IMetric>asList(writeThrottles, readThrottles), null));
+		}
+
+		if (props.analyticsApplication != null) {
+			Metric millisBehind;
+			if (props.flinkApplication) {
+				//the Flink Kinesis consumer's lag, reported at application level with only the Application dimension
+				millisBehind = metric("AWS/KinesisAnalytics", "millisBehindLatest",
+						Collections.<String, Object>singletonMap("Application", props.analyticsApplication), "Maximum");
+			} else {
+				Map<String, Object> dimensions = new HashMap<String, Object>();
+				dimensions.put("Application", props.analyticsApplication);
+				dimensions.put("Flow", "Input");
+				//CloudWatch matches the full dimension set; the application's single input is published as Id 1.1
+				dimensions.put("Id", "1.1");
+				millisBehind = metric("AWS/KinesisAnalytics", "MillisBehindLatest", dimensions, "Maximum");
+			}
+			Metric kpus = metric("AWS/KinesisAnalytics", "KPUs", Collections.<String, Object>singletonMap("Application", props.analyticsApplication), "Maximum");
+
+			alarm("AnalyticsMillisBehindLatest", millisBehind, iteratorAgeMillis, 3,
+					props.analyticsApplication + " more than " + iteratorAgeMillis + " ms behind its input");
+
+			dashboard.addWidgets(
+					graph(props.analyticsApplication + " millis behind latest", Collections.<IMetric>singletonList(millisBehind),
+							Collections.singletonList(HorizontalAnnotation.builder().value(iteratorAgeMillis).label("alarm").build())),
+					graph(props.analyticsApplication + " KPUs", Collections.<IMetric>singletonList(kpus), null));
+		}
+
+		if (props.sinkFunction != null) {
+			Map<String, Object> dimensions = Collections.<String, Object>singletonMap("FunctionName", props.sinkFunction.getFunctionName());
+			Metric durationP50 = metric("AWS/Lambda", "Duration", dimensions, "p50");
+			Metric durationP99 = metric("AWS/Lambda", "Duration", dimensions, "p99");
+			Metric errors = metric("AWS/Lambda", "Errors", dimensions, "Sum");
+			Metric throttles = metric("AWS/Lambda", "Throttles", dimensions, "Sum");
+			Metric concurrency = metric("AWS/Lambda", "ConcurrentExecutions", dimensions, "Maximum");
+			Metric sinkIteratorAge = metric("AWS/Lambda", "IteratorAge", dimensions, "Maximum");
+
+			double durationThreshold = props.utilizationThreshold * props.sinkTimeout.toMilliseconds().longValue();
+			alarm("SinkDuration", durationP99, durationThreshold, 3,
+					"sink p99 duration above " + percent(props.utilizationThreshold) + " of its timeout");
+			alarm("SinkErrors", errors, 0, 3, "sink invocations failing for 3 minutes");
+			alarm("SinkThrottles", throttles, 0, 3, "sink invocations throttled for 3 minutes");
+
+			List<HorizontalAnnotation> concurrencyLimit = null;
+			if (props.sinkMaxConcurrency > 0) {
+				//pinned at shards x parallelization means the sink cannot go any wider
+				alarm("SinkConcurrencySaturated", concurrency, props.sinkMaxConcurrency - 1, 5,
+						"sink at its maximum concurrency of " + props.sinkMaxConcurrency + " for 5 minutes");
+				concurrencyLimit = Collections.singletonList(HorizontalAnnotation.builder().value(props.sinkMaxConcurrency).label("max").build());
+			}
+
+			dashboard.addWidgets(
+					graph("sink duration (ms)", Arrays.<IMetric>asList(durationP50, durationP99),
+							Collections.singletonList(HorizontalAnnotation.builder().value(durationThreshold).label("alarm").build())),
+					graph("sink errors / throttles", Arrays.<IMetric>asList(errors, throttles), null),
+					graph("sink concurrency", Collections.<IMetric>singletonList(concurrency), concurrencyLimit),
+					graph("sink iterator age (ms)", Collections.<IMetric>singletonList(sinkIteratorAge), null));
+		}
+
+		//every message on the failure destination is a batch the sink gave up on; see RedriveTool
+		if (props.sinkFailureQueue != null) {
+			Map<String, Object> dimensions = Collections.<String, Object>singletonMap("QueueName", props.sinkFailureQueue.getQueueName());
+			Metric parked = metric("AWS/SQS", "ApproximateNumberOfMessagesVisible", dimensions, "Maximum");
+			alarm("SinkFailedBatches", parked, 0, 1, "sink batches parked on the failure queue");
+			dashboard.addWidgets(graph("sink failed batches", Collections.<IMetric>singletonList(parked), null));
+		}
+		if (props.sinkFailureTopic != null) {
+			Map<String, Object> dimensions = Collections.<String, Object>singletonMap("TopicName", props.sinkFailureTopic.getTopicName());
+			Metric parked = metric("AWS/SNS", "NumberOfMessagesPublished", dimensions, "Sum");
+			alarm("SinkFailedBatches", parked, 0, 1, "sink batches published to the failure topic");
+			dashboard.addWidgets(graph("sink failed batches", Collections.<IMetric>singletonList(parked), null));
+		}
+
+		if (props.table != null) {
+			Map<String, Object> dimensions = Collections.<String, Object>singletonMap("TableName", props.table.getTableName());
+			IMetric consumedRead = perSecond(metric("AWS/DynamoDB", "ConsumedReadCapacityUnits", dimensions, "Sum"), "consumed RCU/s");
+			IMetric consumedWrite = perSecond(metric("AWS/DynamoDB", "ConsumedWriteCapacityUnits", dimensions, "Sum"), "consumed WCU/s");
+			Metric provisionedRead = metric("AWS/DynamoDB", "ProvisionedReadCapacityUnits", dimensions, "Average");
+			Metric provisionedWrite = metric("AWS/DynamoDB", "ProvisionedWriteCapacityUnits", dimensions, "Average");
+			Metric readThrottles = metric("AWS/DynamoDB", "ReadThrottleEvents", dimensions, "Sum");
+			Metric writeThrottles = metric("AWS/DynamoDB", "WriteThrottleEvents", dimensions, "Sum");
+
+			if (props.tableWriteCapacity > 0) {
+				alarm("TableWriteCapacity", consumedWrite, props.utilizationThreshold * props.tableWriteCapacity, 3,
+						"table writes above " + percent(props.utilizationThreshold) + " of " + props.tableWriteCapacity + " WCU");
+			}
+			if (props.tableReadCapacity > 0) {
+				alarm("TableReadCapacity", consumedRead, props.utilizationThreshold * props.tableReadCapacity, 3,
+						"table reads above " + percent(props.utilizationThreshold) + " of " + props.tableReadCapacity + " RCU");
+			}
+			alarm("TableWriteThrottles", writeThrottles, 0, 3, "table writes throttled for 3 minutes");
+			alarm("TableReadThrottles", readThrottles, 0, 3, "table reads throttled for 3 minutes");
+
+			dashboard.addWidgets(
+					graph("table write capacity", Arrays.<IMetric>asList(consumedWrite, provisionedWrite), null),
+					graph("table read capacity", Arrays.<IMetric>asList(consumedRead, provisionedRead), null),
+					graph("table throttles", Arrays.<IMetric>asList(writeThrottles, readThrottles), null));
+		}
+	}
+
+	public Dashboard getDashboard() {
+		return dashboard;
+	}
+
+	public List<Alarm> getAlarms() {
+		return Collections.unmodifiableList(alarms);
+	}
+
+	private static Metric metric(final String namespace, final String metricName, final Map<String, Object> dimensions, final String statistic) {
+		return Metric.Builder.create()
+				.namespace(namespace)
+				.metricName(metricName)
+				.dimensions(dimensions)
+				.statistic(statistic)
+				.period(PERIOD)
+				.label(metricName + " " + statistic)
+				.build();
+	}
+
+	private static IMetric perSecond(final Metric sum, final String label) {
+		return MathExpression.Builder.create()
+				.expression("m / " + PERIOD.toSeconds().longValue())
+				.usingMetrics(Collections.<String, IMetric>singletonMap("m", sum))
+				.label(label)
+				.period(PERIOD)
+				.build();
+	}
+
+	private void alarm(final String id, final IMetric metric, final double threshold, final int evaluationPeriods, final String description) {
+		alarms.add(Alarm.Builder.create(this, id + "Alarm")
+				.metric(metric)
+				.threshold(threshold)
+				.evaluationPeriods(evaluationPeriods)
+				.comparisonOperator(ComparisonOperator.GREATER_THAN_THRESHOLD)
+				.treatMissingData(TreatMissingData.NOT_BREACHING)
+				.alarmDescription(description)
+				.build());
+	}
+
+	private static GraphWidget graph(final String title, final List<IMetric> metrics, final List<HorizontalAnnotation> annotations) {
+		return GraphWidget.Builder.create()
+				.title(title)
+				.left(metrics)
+				.leftAnnotations(annotations)
+				.width(6)
+				.build();
+	}
+
+	private static String percent(final double fraction) {
+		return Math.round(fraction * 100) + "%";
+	}
+
+	private static final class MonitoredStream {
+		final Stream stream;
+		final int shards;
+
+		MonitoredStream(final Stream stream, final int shards) {
+			this.stream = stream;
+			this.shards = shards;
+		}
+	}
+
+	public static final class Builder {
+
+		private final Construct scope;
+		private final String id;
+
+		private String dashboardName;
+		private final List<MonitoredStream> streams = new ArrayList<MonitoredStream>();
+		private String analyticsApplication;
+		private boolean flinkApplication;
+		private Function sinkFunction;
+		private Duration sinkTimeout;
+		private int sinkMaxConcurrency;
+		private Table table;
+		private int tableReadCapacity;
+		private int tableWriteCapacity;
+		private Queue sinkFailureQueue;
+		private Topic sinkFailureTopic;
+		private Duration iteratorAgeThreshold = Duration.minutes(1);
+		private double utilizationThreshold = 0.8;
+
+		private Builder(final Construct scope, final String id) {
+			this.scope = scope;
+			this.id = id;
+		}
+
+		public static Builder create(final Construct scope, final String id) {
+			return new Builder(scope, id);
+		}
+
+		public Builder dashboardName(final String dashboardName) {
+			this.dashboardName = dashboardName;
+			return this;
+		}
+
+		/** shards is the provisioned (or autoscaling maximum) shard count, 0 for on-demand. */
+		public Builder stream(final Stream stream, final int shards) {
+			this.streams.add(new MonitoredStream(stream, shards));
+			return this;
+		}
+
+		public Builder analyticsApplication(final String analyticsApplication) {
+			this.analyticsApplication = analyticsApplication;
+			this.flinkApplication = false;
+			return this;
+		}
+
+		/** A Kinesis Data Analytics for Apache Flink application, which publishes a different lag metric than SQL applications. */
+		public Builder flinkApplication(final String flinkApplication) {
+			this.analyticsApplication = flinkApplication;
+			this.flinkApplication = true;
+			return this;
+		}
+
+		/** maxConcurrency is shards x parallelization factor of the event source, 0 if unknown. */
+		public Builder sinkFunction(final Function sinkFunction, final Duration timeout, final int maxConcurrency) {
+			this.sinkFunction = sinkFunction;
+			this.sinkTimeout = timeout;
+			this.sinkMaxConcurrency = maxConcurrency;
+			return this;
+		}
+
+		/** Capacities are the provisioned (or autoscaling maximum) units, 0 for on-demand. */
+		public Builder table(final Table table, final int readCapacity, final int writeCapacity) {
+			this.table = table;
+			this.tableReadCapacity = readCapacity;
+			this.tableWriteCapacity = writeCapacity;
+			return this;
+		}
+
+		/** On-failure destination of the sink's event source mapping, if it has one. */
+		public Builder sinkFailureQueue(final Queue sinkFailureQueue) {
+			this.sinkFailureQueue = sinkFailureQueue;
+			return this;
+		}
+
+		public Builder sinkFailureTopic(final Topic sinkFailureTopic) {
+			this.sinkFailureTopic = sinkFailureTopic;
+			return this;
+		}
+
+		public Builder iteratorAgeThreshold(final Duration iteratorAgeThreshold) {
+			this.iteratorAgeThreshold = iteratorAgeThreshold;
+			return this;
+		}
+
+		public Builder utilizationThreshold(final double utilizationThreshold) {
+			this.utilizationThreshold = utilizationThreshold;
+			return this;
+		}
+
+		public PipelineMonitoring build() {
+			if (utilizationThreshold <= 0 || utilizationThreshold > 1) {
+				throw new IllegalArgumentException("utilizationThreshold must be in (0, 1]");
+			}
+			return new PipelineMonitoring(scope, id, this);
+		}
+
+	}
+
+}
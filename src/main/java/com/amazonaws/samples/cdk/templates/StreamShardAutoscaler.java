@@ -0,0 +1,173 @@
+package com.amazonaws.samples.cdk.templates;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import software.amazon.awscdk.core.Construct;
+import software.amazon.awscdk.core.Duration;
+import software.amazon.awscdk.services.events.Rule;
+import software.amazon.awscdk.services.events.Schedule;
+import software.amazon.awscdk.services.events.targets.LambdaFunction;
+import software.amazon.awscdk.services.iam.Effect;
+import software.amazon.awscdk.services.iam.PolicyStatement;
+import software.amazon.awscdk.services.kinesis.CfnStream;
+import software.amazon.awscdk.services.kinesis.Stream;
+import software.amazon.awscdk.services.lambda.Function;
+import software.amazon.awscdk.services.lambda.Runtime;
+
+/**
+ * Attaches capacity management to a Kinesis stream. In on-demand mode the
+ * stream's ShardCount is replaced by StreamModeDetails ON_DEMAND. Otherwise a
+ * scheduled scaling function splits or merges shards within [minShards, maxShards]
+ * based on IncomingBytes/IncomingRecords utilization (see scaling.ShardScalingPolicy).
+ */
+public class StreamShardAutoscaler extends Construct {
+
+	private Function scalingFunction;
+
+	private StreamShardAutoscaler(final Construct scope, final String id, final Builder props) {
+		super(scope, id);
+
+		Stream stream = props.stream;
+
+		if (props.onDemand) {
+			CfnStream cfnStream = (CfnStream) stream.getNode().getDefaultChild();
+			cfnStream.addPropertyDeletionOverride("ShardCount");
+			cfnStream.addPropertyOverride("StreamModeDetails.StreamMode", "ON_DEMAND");
+			return;
+		}
+
+		Map<String, String> envMap = new HashMap<String, String>();
+		envMap.put("STREAM_NAME", stream.getStreamName());
+		envMap.put("MIN_SHARDS", Integer.toString(props.minShards));
+		envMap.put("MAX_SHARDS", Integer.toString(props.maxShards));
+		envMap.put("SCALE_UP_THRESHOLD", Double.toString(props.scaleUpThreshold));
+		envMap.put("SCALE_DOWN_THRESHOLD", Double.toString(props.scaleDownThreshold));
+		envMap.put("TARGET_UTILIZATION", Double.toString(props.targetUtilization));
+		envMap.put("EVALUATION_PERIODS", Integer.toString(props.evaluationPeriods));
+		envMap.put("SCALE_UP_COOLDOWN_SECONDS", Long.toString(props.scaleUpCooldown.toSeconds().longValue()));
+		envMap.put("SCALE_DOWN_COOLDOWN_SECONDS", Long.toString(props.scaleDownCooldown.toSeconds().longValue()));
+
+		scalingFunction = Function.Builder.create(this, "ShardScalingHandler")
+				.code(LambdaAssets.javaHandlers())
+				.handler("com.amazonaws.samples.cdk.templates.scaling.ShardScalingHandler::handleRequest")
+				.runtime(Runtime.JAVA_11)
+				.memorySize(512)
+				.timeout(Duration.seconds(60))
+				.environment(envMap)
+				.build();
+
+		scalingFunction.addToRolePolicy(PolicyStatement.Builder.create()
+				.effect(Effect.ALLOW)
+				.actions(Arrays.asList("kinesis:DescribeStreamSummary", "kinesis:UpdateShardCount",
+						"kinesis:ListTagsForStream", "kinesis:AddTagsToStream"))
+				.resources(Collections.singletonList(stream.getStreamArn()))
+				.build());
+
+		scalingFunction.addToRolePolicy(PolicyStatement.Builder.create()
+				.effect(Effect.ALLOW)
+				.actions(Collections.singletonList("cloudwatch:GetMetricData"))
+				.resources(Collections.singletonList("*"))
+				.build());
+
+		Rule.Builder.create(this, "ShardScalingSchedule")
+				.schedule(Schedule.rate(Duration.minutes(1)))
+				.targets(Collections.singletonList(new LambdaFunction(scalingFunction)))
+				.build();
+	}
+
+	/** The scheduled scaling function, or null in on-demand mode. */
+	public Function getScalingFunction() {
+		return scalingFunction;
+	}
+
+	public static final class Builder {
+
+		private final Construct scope;
+		private final String id;
+
+		private Stream stream;
+		private boolean onDemand;
+		private int minShards = 1;
+		private int maxShards = 64;
+		private double scaleUpThreshold = 0.75;
+		private double scaleDownThreshold = 0.25;
+		private double targetUtilization = 0.5;
+		private int evaluationPeriods = 3;
+		private Duration scaleUpCooldown = Duration.minutes(5);
+		private Duration scaleDownCooldown = Duration.minutes(30);
+
+		private Builder(final Construct scope, final String id) {
+			this.scope = scope;
+			this.id = id;
+		}
+
+		public static Builder create(final Construct scope, final String id) {
+			return new Builder(scope, id);
+		}
+
+		public Builder stream(final Stream stream) {
+			this.stream = stream;
+			return this;
+		}
+
+		public Builder onDemand(final boolean onDemand) {
+			this.onDemand = onDemand;
+			return this;
+		}
+
+		public Builder minShards(final int minShards) {
+			this.minShards = minShards;
+			return this;
+		}
+
+		public Builder maxShards(final int maxShards) {
+			this.maxShards = maxShards;
+			return this;
+		}
+
+		public Builder scaleUpThreshold(final double scaleUpThreshold) {
+			this.scaleUpThreshold = scaleUpThreshold;
+			return this;
+		}
+
+		public Builder scaleDownThreshold(final double scaleDownThreshold) {
+			this.scaleDownThreshold = scaleDownThreshold;
+			return this;
+		}
+
+		public Builder targetUtilization(final double targetUtilization) {
+			this.targetUtilization = targetUtilization;
+			return this;
+		}
+
+		public Builder evaluationPeriods(final int evaluationPeriods) {
+			this.evaluationPeriods = evaluationPeriods;
+			return this;
+		}
+
+		public Builder scaleUpCooldown(final Duration scaleUpCooldown) {
+			this.scaleUpCooldown = scaleUpCooldown;
+			return this;
+		}
+
+		public Builder scaleDownCooldown(final Duration scaleDownCooldown) {
+			this.scaleDownCooldown = scaleDownCooldown;
+			return this;
+		}
+
+		public StreamShardAutoscaler build() {
+			if (stream == null) {
+				throw new IllegalArgumentException("stream is required");
+			}
+			if (minShards < 1 || maxShards < minShards) {
+				throw new IllegalArgumentException("invalid shard bounds " + minShards + ".." + maxShards);
+			}
+			return new StreamShardAutoscaler(scope, id, this);
+		}
+
+	}
+
+}
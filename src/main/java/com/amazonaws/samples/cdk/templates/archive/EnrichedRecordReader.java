@@ -0,0 +1,68 @@
+package com.amazonaws.samples.cdk.templates.archive;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import com.amazonaws.samples.cdk.templates.schema.BinaryRecordCodec;
+import com.amazonaws.samples.cdk.templates.schema.ColumnDefinition;
+import com.amazonaws.samples.cdk.templates.schema.OrderSchema;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Turns an OrderEnrichedStream payload (JSON or a binary record)
+ * into rows ordered like OrderSchema.ENRICHED_COLUMNS.
+ */
+public class EnrichedRecordReader {
+
+	private static final List<ColumnDefinition> COLUMNS = OrderSchema.ENRICHED_COLUMNS;
+	private static final BinaryRecordCodec ENRICHED_BINARY = new BinaryRecordCodec(COLUMNS);
+
+	private final ObjectMapper objectMapper;
+
+	public EnrichedRecordReader() {
+		this(new ObjectMapper());
+	}
+
+	public EnrichedRecordReader(final ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	public List<Object[]> read(final byte[] data) throws IOException {
+		if (BinaryRecordCodec.isBinaryRecord(data)) {
+			return Collections.singletonList(ENRICHED_BINARY.decode(data));
+		}
+		JsonNode node = objectMapper.readTree(data);
+		if (node == null || !node.isObject()) {
+			throw new IllegalArgumentException("enriched record is not a JSON object");
+		}
+		return Collections.singletonList(toRow(node));
+	}
+
+	private static Object[] toRow(final JsonNode node) {
+		Object[] row = new Object[COLUMNS.size()];
+		for (int i = 0; i < row.length; i++) {
+			JsonNode value = node.get(COLUMNS.get(i).getName());
+			if (value == null || value.isNull()) {
+				continue;
+			}
+			switch (COLUMNS.get(i).getType()) {
+			case INT:
+				row[i] = value.isNumber() ? value.intValue() : null;
+				break;
+			case REAL:
+			case DOUBLE:
+				row[i] = value.isNumber() ? value.doubleValue() : null;
+				break;
+			case TIMESTAMP:
+				row[i] = value.isNumber() ? (Object) value.longValue() : value.asText();
+				break;
+			default:
+				row[i] = value.isTextual() ? value.textValue() : value.toString();
+			}
+		}
+		return row;
+	}
+
+}
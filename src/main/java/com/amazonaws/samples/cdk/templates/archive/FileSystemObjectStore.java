@@ -0,0 +1,38 @@
+package com.amazonaws.samples.cdk.templates.archive;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Local stand-in for S3: each key becomes a file under the root directory,
+ * so the partition layout and file sizes can be inspected with ls/du.
+ * Files are written to a temporary name and moved into place, the way an
+ * S3 object only becomes visible once the upload completes.
+ */
+public class FileSystemObjectStore implements ObjectStore {
+
+	private final Path root;
+
+	public FileSystemObjectStore(final Path root) {
+		this.root = root;
+	}
+
+	public Path getRoot() {
+		return root;
+	}
+
+	@Override
+	public void put(final String key, final byte[] data) throws IOException {
+		Path target = root.resolve(key).normalize();
+		if (!target.startsWith(root.normalize())) {
+			throw new IOException("key escapes the store root: " + key);
+		}
+		Files.createDirectories(target.getParent());
+		Path temp = target.resolveSibling("." + target.getFileName() + ".tmp");
+		Files.write(temp, data);
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+}
@@ -0,0 +1,13 @@
+package com.amazonaws.samples.cdk.templates.archive;
+
+import java.io.IOException;
+
+/**
+ * Where finished archive files go. S3ObjectStore in the Lambda,
+ * FileSystemObjectStore when running the archive writer locally.
+ */
+public interface ObjectStore {
+
+	void put(String key, byte[] data) throws IOException;
+
+}
@@ -0,0 +1,85 @@
+package com.amazonaws.samples.cdk.templates.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.amazonaws.samples.cdk.templates.kpl.Deaggregator;
+import com.amazonaws.samples.cdk.templates.kpl.UserRecord;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * Archives OrderEnrichedStream to S3 as partitioned Parquet. Nothing is kept
+ * between invocations: every batch is written and all files are rolled
+ * before the handler returns, so a retried batch never loses rows (it can
+ * duplicate them). File size is governed by the event source mapping, which
+ * the stack configures with a large batch size and a long batching window;
+ * the writer still rolls within a batch once a file reaches the target size.
+ *
+ * Records that cannot be decoded are logged and skipped rather than failing
+ * the batch, since retrying them can never succeed.
+ */
+public class OrderArchiveHandler implements RequestHandler<KinesisEvent, String> {
+
+	private final ObjectStore store;
+	private final String prefix;
+	private final long targetFileBytes;
+	private final EnrichedRecordReader reader;
+
+	public OrderArchiveHandler() {
+		this(new S3ObjectStore(S3Client.builder().httpClient(UrlConnectionHttpClient.create()).build(), System.getenv("BUCKET")),
+				System.getenv("ARCHIVE_PREFIX"),
+				Long.parseLong(System.getenv("TARGET_FILE_BYTES")));
+	}
+
+	public OrderArchiveHandler(final ObjectStore store, final String prefix, final long targetFileBytes) {
+		this.store = store;
+		this.prefix = prefix;
+		this.targetFileBytes = targetFileBytes;
+		this.reader = new EnrichedRecordReader();
+	}
+
+	@Override
+	public String handleRequest(final KinesisEvent event, final Context context) {
+		PartitionedArchiveWriter writer = PartitionedArchiveWriter.Builder.create()
+				.store(store)
+				.prefix(prefix)
+				.rowGroupBytes(Math.min(targetFileBytes, 8L * 1024 * 1024))
+				.targetFileBytes(targetFileBytes)
+				.build();
+		int skipped = 0;
+		try {
+			for (KinesisEvent.KinesisEventRecord record : event.getRecords()) {
+				ByteBuffer data = record.getKinesis().getData();
+				for (UserRecord userRecord : Deaggregator.deaggregate(record.getKinesis().getPartitionKey(), data)) {
+					List<Object[]> rows;
+					try {
+						rows = reader.read(userRecord.getData());
+					} catch (IOException | RuntimeException e) {
+						System.out.println("ERROR: skipping undecodable record " + record.getKinesis().getSequenceNumber() + ": " + e.getMessage());
+						skipped++;
+						continue;
+					}
+					for (Object[] row : rows) {
+						writer.write(row);
+					}
+				}
+			}
+			writer.close();
+		} catch (IOException e) {
+			//fail the whole batch so the event source mapping retries it
+			throw new UncheckedIOException(e);
+		}
+		String summary = writer.getRowsWritten() + " rows in " + writer.getWrittenKeys().size() + " files, "
+				+ writer.getBytesWritten() + " bytes, " + skipped + " skipped";
+		System.out.println(summary);
+		return summary;
+	}
+
+}
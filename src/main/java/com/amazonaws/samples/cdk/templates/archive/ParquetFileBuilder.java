@@ -0,0 +1,415 @@
+package com.amazonaws.samples.cdk.templates.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.amazonaws.samples.cdk.templates.schema.ColumnDefinition;
+
+/**
+ * Builds a Parquet file in memory for a flat schema of optional columns.
+ * Each row group holds one PLAIN-encoded data page per column, GZIP
+ * compressed by default. That is enough for Athena/Spark/pyarrow without
+ * pulling parquet-hadoop and Hadoop into the Lambda package.
+ *
+ * Types: INT to INT32, REAL to FLOAT, DOUBLE to DOUBLE, VARCHAR to UTF8
+ * BYTE_ARRAY, TIMESTAMP to INT64 TIMESTAMP_MILLIS (UTC).
+ */
+public class ParquetFileBuilder {
+
+	private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss[.SSS]");
+
+	//parquet.thrift enum values
+	private static final int TYPE_INT32 = 1;
+	private static final int TYPE_INT64 = 2;
+	private static final int TYPE_FLOAT = 4;
+	private static final int TYPE_DOUBLE = 5;
+	private static final int TYPE_BYTE_ARRAY = 6;
+	private static final int CONVERTED_UTF8 = 0;
+	private static final int CONVERTED_TIMESTAMP_MILLIS = 9;
+	private static final int REPETITION_OPTIONAL = 1;
+	private static final int ENCODING_PLAIN = 0;
+	private static final int ENCODING_RLE = 3;
+	private static final int PAGE_DATA = 0;
+	private static final int CODEC_UNCOMPRESSED = 0;
+	private static final int CODEC_GZIP = 2;
+
+	private final ColumnDefinition[] columns;
+	private final boolean gzip;
+	private final ByteArrayOutputStream file = new ByteArrayOutputStream(1 << 20);
+	private final List<RowGroupMeta> rowGroups = new ArrayList<RowGroupMeta>();
+	private final ColumnBuffer[] buffers;
+	private int rowGroupRows;
+	private long totalRows;
+	private boolean finished;
+
+	public ParquetFileBuilder(final List<ColumnDefinition> columns) {
+		this(columns, true);
+	}
+
+	public ParquetFileBuilder(final List<ColumnDefinition> columns, final boolean gzip) {
+		this.columns = columns.toArray(new ColumnDefinition[0]);
+		this.gzip = gzip;
+		this.buffers = new ColumnBuffer[this.columns.length];
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = new ColumnBuffer();
+		}
+		file.write(MAGIC, 0, MAGIC.length);
+	}
+
+	public void addRow(final Object[] values) {
+		if (finished) {
+			throw new IllegalStateException("file already finished");
+		}
+		for (int i = 0; i < columns.length; i++) {
+			Object value = values[i];
+			ColumnBuffer buffer = buffers[i];
+			if (value == null) {
+				buffer.addNull();
+				continue;
+			}
+			switch (columns[i].getType()) {
+			case INT:
+				buffer.addInt32(((Number) value).intValue());
+				break;
+			case REAL:
+				buffer.addInt32(Float.floatToIntBits(((Number) value).floatValue()));
+				break;
+			case DOUBLE:
+				buffer.addInt64(Double.doubleToLongBits(((Number) value).doubleValue()));
+				break;
+			case VARCHAR:
+				buffer.addBinary(value.toString().getBytes(StandardCharsets.UTF_8));
+				break;
+			case TIMESTAMP:
+				Long millis = timestampMillis(value);
+				if (millis == null) {
+					buffer.addNull();
+				} else {
+					buffer.addInt64(millis);
+				}
+				break;
+			default:
+				throw new IllegalStateException("unsupported column type " + columns[i].getType());
+			}
+		}
+		rowGroupRows++;
+		totalRows++;
+	}
+
+	public long getRowCount() {
+		return totalRows;
+	}
+
+	public int getRowGroupRowCount() {
+		return rowGroupRows;
+	}
+
+	/** Uncompressed bytes buffered for the open row group. */
+	public long getBufferedBytes() {
+		long bytes = 0;
+		for (ColumnBuffer buffer : buffers) {
+			bytes += buffer.values.length();
+		}
+		return bytes;
+	}
+
+	/** Bytes written for completed row groups plus the open row group's uncompressed estimate. */
+	public long getEstimatedFileBytes() {
+		return file.size() + getBufferedBytes();
+	}
+
+	public void flushRowGroup() throws IOException {
+		if (rowGroupRows == 0) {
+			return;
+		}
+		RowGroupMeta rowGroup = new RowGroupMeta(rowGroupRows);
+		for (int i = 0; i < columns.length; i++) {
+			ColumnBuffer buffer = buffers[i];
+
+			byte[] levels = buffer.encodeDefinitionLevels();
+			byte[] page = new byte[4 + levels.length + buffer.values.length()];
+			writeIntLE(page, 0, levels.length);
+			System.arraycopy(levels, 0, page, 4, levels.length);
+			System.arraycopy(buffer.values.buf, 0, page, 4 + levels.length, buffer.values.length());
+			byte[] compressed = gzip ? gzip(page) : page;
+
+			ThriftCompactWriter header = new ThriftCompactWriter();
+			header.structBegin();
+			header.i32Field(1, PAGE_DATA);
+			header.i32Field(2, page.length);
+			header.i32Field(3, compressed.length);
+			header.structField(5);
+			header.i32Field(1, rowGroupRows);
+			header.i32Field(2, ENCODING_PLAIN);
+			header.i32Field(3, ENCODING_RLE);
+			header.i32Field(4, ENCODING_RLE);
+			header.structEnd();
+			header.structEnd();
+			byte[] headerBytes = header.toByteArray();
+
+			ColumnChunkMeta chunk = new ColumnChunkMeta();
+			chunk.offset = file.size();
+			chunk.uncompressedSize = headerBytes.length + page.length;
+			chunk.compressedSize = headerBytes.length + compressed.length;
+			chunk.numValues = rowGroupRows;
+			rowGroup.columns.add(chunk);
+			rowGroup.totalByteSize += chunk.uncompressedSize;
+
+			file.write(headerBytes, 0, headerBytes.length);
+			file.write(compressed, 0, compressed.length);
+			buffer.reset();
+		}
+		rowGroups.add(rowGroup);
+		rowGroupRows = 0;
+	}
+
+	public byte[] finish() throws IOException {
+		flushRowGroup();
+		finished = true;
+
+		ThriftCompactWriter meta = new ThriftCompactWriter();
+		meta.structBegin();
+		meta.i32Field(1, 1);
+
+		meta.listField(2, ThriftCompactWriter.TYPE_STRUCT, columns.length + 1);
+		meta.structBegin();
+		meta.stringField(4, "schema");
+		meta.i32Field(5, columns.length);
+		meta.structEnd();
+		for (ColumnDefinition column : columns) {
+			meta.structBegin();
+			meta.i32Field(1, physicalType(column));
+			meta.i32Field(3, REPETITION_OPTIONAL);
+			meta.stringField(4, column.getName());
+			if (column.getType() == ColumnDefinition.Type.VARCHAR) {
+				meta.i32Field(6, CONVERTED_UTF8);
+			} else if (column.getType() == ColumnDefinition.Type.TIMESTAMP) {
+				meta.i32Field(6, CONVERTED_TIMESTAMP_MILLIS);
+			}
+			meta.structEnd();
+		}
+
+		meta.i64Field(3, totalRows);
+
+		meta.listField(4, ThriftCompactWriter.TYPE_STRUCT, rowGroups.size());
+		for (RowGroupMeta rowGroup : rowGroups) {
+			meta.structBegin();
+			meta.listField(1, ThriftCompactWriter.TYPE_STRUCT, rowGroup.columns.size());
+			for (int i = 0; i < columns.length; i++) {
+				ColumnChunkMeta chunk = rowGroup.columns.get(i);
+				meta.structBegin();
+				meta.i64Field(2, chunk.offset);
+				meta.structField(3);
+				meta.i32Field(1, physicalType(columns[i]));
+				meta.listField(2, ThriftCompactWriter.TYPE_I32, 2);
+				meta.i32(ENCODING_PLAIN);
+				meta.i32(ENCODING_RLE);
+				meta.listField(3, ThriftCompactWriter.TYPE_BINARY, 1);
+				meta.writeString(columns[i].getName());
+				meta.i32Field(4, gzip ? CODEC_GZIP : CODEC_UNCOMPRESSED);
+				meta.i64Field(5, chunk.numValues);
+				meta.i64Field(6, chunk.uncompressedSize);
+				meta.i64Field(7, chunk.compressedSize);
+				meta.i64Field(9, chunk.offset);
+				meta.structEnd();
+				meta.structEnd();
+			}
+			meta.i64Field(2, rowGroup.totalByteSize);
+			meta.i64Field(3, rowGroup.rows);
+			meta.structEnd();
+		}
+
+		meta.stringField(6, "aws-cdk-templates archive");
+		meta.structEnd();
+
+		byte[] metaBytes = meta.toByteArray();
+		file.write(metaBytes, 0, metaBytes.length);
+		byte[] length = new byte[4];
+		writeIntLE(length, 0, metaBytes.length);
+		file.write(length, 0, 4);
+		file.write(MAGIC, 0, MAGIC.length);
+		return file.toByteArray();
+	}
+
+	static Long timestampMillis(final Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).longValue();
+		}
+		String text = value.toString().trim().replace('T', ' ');
+		if (text.endsWith("Z")) {
+			text = text.substring(0, text.length() - 1);
+		}
+		try {
+			return LocalDateTime.parse(text, TIMESTAMP_FORMAT).toInstant(ZoneOffset.UTC).toEpochMilli();
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	private static int physicalType(final ColumnDefinition column) {
+		switch (column.getType()) {
+		case INT:
+			return TYPE_INT32;
+		case REAL:
+			return TYPE_FLOAT;
+		case DOUBLE:
+			return TYPE_DOUBLE;
+		case TIMESTAMP:
+			return TYPE_INT64;
+		default:
+			return TYPE_BYTE_ARRAY;
+		}
+	}
+
+	private static byte[] gzip(final byte[] data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+		GZIPOutputStream gz = new GZIPOutputStream(out, 8192);
+		gz.write(data);
+		gz.close();
+		return out.toByteArray();
+	}
+
+	private static void writeIntLE(final byte[] buf, final int pos, final int value) {
+		buf[pos] = (byte) value;
+		buf[pos + 1] = (byte) (value >>> 8);
+		buf[pos + 2] = (byte) (value >>> 16);
+		buf[pos + 3] = (byte) (value >>> 24);
+	}
+
+	private static final class RowGroupMeta {
+		final long rows;
+		final List<ColumnChunkMeta> columns = new ArrayList<ColumnChunkMeta>();
+		long totalByteSize;
+
+		RowGroupMeta(final long rows) {
+			this.rows = rows;
+		}
+	}
+
+	private static final class ColumnChunkMeta {
+		long offset;
+		long uncompressedSize;
+		long compressedSize;
+		long numValues;
+	}
+
+	private static final class ColumnBuffer {
+
+		final LittleEndianBytes values = new LittleEndianBytes();
+		private boolean[] defined = new boolean[1024];
+		private int count;
+
+		void addNull() {
+			define(false);
+		}
+
+		void addInt32(final int value) {
+			define(true);
+			values.writeInt(value);
+		}
+
+		void addInt64(final long value) {
+			define(true);
+			values.writeLong(value);
+		}
+
+		void addBinary(final byte[] value) {
+			define(true);
+			values.writeInt(value.length);
+			values.write(value);
+		}
+
+		private void define(final boolean isDefined) {
+			if (count == defined.length) {
+				defined = Arrays.copyOf(defined, count * 2);
+			}
+			defined[count++] = isDefined;
+		}
+
+		/** Definition levels (bit width 1) as RLE runs of the hybrid encoding. */
+		byte[] encodeDefinitionLevels() {
+			LittleEndianBytes out = new LittleEndianBytes();
+			int i = 0;
+			while (i < count) {
+				boolean value = defined[i];
+				int run = 1;
+				while (i + run < count && defined[i + run] == value) {
+					run++;
+				}
+				out.writeVarint((long) run << 1);
+				out.write(value ? 1 : 0);
+				i += run;
+			}
+			return Arrays.copyOf(out.buf, out.length());
+		}
+
+		void reset() {
+			values.reset();
+			count = 0;
+		}
+
+	}
+
+	private static final class LittleEndianBytes {
+
+		byte[] buf = new byte[4096];
+		private int pos;
+
+		int length() {
+			return pos;
+		}
+
+		void reset() {
+			pos = 0;
+		}
+
+		private void ensure(final int bytes) {
+			if (pos + bytes > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + bytes));
+			}
+		}
+
+		void write(final int b) {
+			ensure(1);
+			buf[pos++] = (byte) b;
+		}
+
+		void write(final byte[] bytes) {
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, buf, pos, bytes.length);
+			pos += bytes.length;
+		}
+
+		void writeInt(final int value) {
+			ensure(4);
+			writeIntLE(buf, pos, value);
+			pos += 4;
+		}
+
+		void writeLong(final long value) {
+			writeInt((int) value);
+			writeInt((int) (value >>> 32));
+		}
+
+		void writeVarint(long value) {
+			ensure(10);
+			while ((value & ~0x7FL) != 0) {
+				buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buf[pos++] = (byte) value;
+		}
+
+	}
+
+}
@@ -0,0 +1,231 @@
+package com.amazonaws.samples.cdk.templates.archive;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+import com.amazonaws.samples.cdk.templates.schema.ColumnDefinition;
+import com.amazonaws.samples.cdk.templates.schema.OrderSchema;
+
+/**
+ * Writes enriched rows into Hive-style partitions
+ * prefix/dt=yyyy-MM-dd/hr=HH/shipToState=XX/part-*.parquet, keyed on the
+ * order's orderDateTime (UTC) rather than arrival time so late records land
+ * next to the rest of their order.
+ *
+ * Each partition has at most one open file. Rows are cut into a row group
+ * once rowGroupBytes of uncompressed data is buffered, and a file is rolled
+ * (finished and put to the store) once it reaches targetFileBytes or has been
+ * open for maxFileAgeMillis. close() rolls everything that is still open.
+ */
+public class PartitionedArchiveWriter implements AutoCloseable {
+
+	static final String UNKNOWN = "unknown";
+
+	private final ObjectStore store;
+	private final String prefix;
+	private final List<ColumnDefinition> columns;
+	private final int orderDateTimeIndex;
+	private final int shipToStateIndex;
+	private final long rowGroupBytes;
+	private final long targetFileBytes;
+	private final long maxFileAgeMillis;
+	private final boolean gzip;
+	private final LongSupplier clock;
+
+	private final Map<String, OpenFile> openFiles = new LinkedHashMap<String, OpenFile>();
+	private final List<String> writtenKeys = new ArrayList<String>();
+	private long rowsWritten;
+	private long bytesWritten;
+
+	private PartitionedArchiveWriter(final Builder props) {
+		this.store = props.store;
+		this.prefix = props.prefix.endsWith("/") || props.prefix.isEmpty() ? props.prefix : props.prefix + "/";
+		this.columns = props.columns;
+		this.orderDateTimeIndex = OrderSchema.indexOf(columns, "orderDateTime");
+		this.shipToStateIndex = OrderSchema.indexOf(columns, "shipToState");
+		this.rowGroupBytes = props.rowGroupBytes;
+		this.targetFileBytes = props.targetFileBytes;
+		this.maxFileAgeMillis = props.maxFileAgeMillis;
+		this.gzip = props.gzip;
+		this.clock = props.clock;
+	}
+
+	public void write(final Object[] row) throws IOException {
+		String partition = partitionOf(row);
+		OpenFile file = openFiles.get(partition);
+		if (file == null) {
+			file = new OpenFile(new ParquetFileBuilder(columns, gzip), clock.getAsLong());
+			openFiles.put(partition, file);
+		}
+		file.builder.addRow(row);
+		if (file.builder.getBufferedBytes() >= rowGroupBytes) {
+			file.builder.flushRowGroup();
+		}
+		if (file.builder.getEstimatedFileBytes() >= targetFileBytes) {
+			roll(partition, file);
+			openFiles.remove(partition);
+		}
+	}
+
+	/** Rolls files that have been open longer than maxFileAgeMillis; call periodically when idle. */
+	public void rollExpired() throws IOException {
+		long now = clock.getAsLong();
+		Iterator<Map.Entry<String, OpenFile>> it = openFiles.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, OpenFile> entry = it.next();
+			if (now - entry.getValue().openedMillis >= maxFileAgeMillis) {
+				roll(entry.getKey(), entry.getValue());
+				it.remove();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		Iterator<Map.Entry<String, OpenFile>> it = openFiles.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, OpenFile> entry = it.next();
+			roll(entry.getKey(), entry.getValue());
+			it.remove();
+		}
+	}
+
+	public int getOpenFileCount() {
+		return openFiles.size();
+	}
+
+	/** Keys of the files put to the store so far, in order. */
+	public List<String> getWrittenKeys() {
+		return writtenKeys;
+	}
+
+	public long getRowsWritten() {
+		return rowsWritten;
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	String partitionOf(final Object[] row) {
+		String dt = UNKNOWN;
+		String hr = UNKNOWN;
+		Object orderDateTime = orderDateTimeIndex < 0 ? null : row[orderDateTimeIndex];
+		Long millis = orderDateTime == null ? null : ParquetFileBuilder.timestampMillis(orderDateTime);
+		if (millis != null) {
+			ZonedDateTime time = Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC);
+			dt = String.format("%04d-%02d-%02d", time.getYear(), time.getMonthValue(), time.getDayOfMonth());
+			hr = String.format("%02d", time.getHour());
+		}
+		Object state = shipToStateIndex < 0 ? null : row[shipToStateIndex];
+		return "dt=" + dt + "/hr=" + hr + "/shipToState=" + partitionValue(state);
+	}
+
+	//keep partition values to characters that are safe in S3 keys and Hive paths
+	private static String partitionValue(final Object value) {
+		if (value == null || value.toString().trim().isEmpty()) {
+			return UNKNOWN;
+		}
+		return value.toString().trim().replaceAll("[^A-Za-z0-9_-]", "_");
+	}
+
+	private void roll(final String partition, final OpenFile file) throws IOException {
+		long rows = file.builder.getRowCount();
+		byte[] data = file.builder.finish();
+		String key = prefix + partition + "/part-" + file.openedMillis + "-" + UUID.randomUUID() + (gzip ? ".gz.parquet" : ".parquet");
+		store.put(key, data);
+		writtenKeys.add(key);
+		rowsWritten += rows;
+		bytesWritten += data.length;
+	}
+
+	private static final class OpenFile {
+		final ParquetFileBuilder builder;
+		final long openedMillis;
+
+		OpenFile(final ParquetFileBuilder builder, final long openedMillis) {
+			this.builder = builder;
+			this.openedMillis = openedMillis;
+		}
+	}
+
+	public static final class Builder {
+
+		private ObjectStore store;
+		private String prefix = "";
+		private List<ColumnDefinition> columns = OrderSchema.ENRICHED_COLUMNS;
+		private long rowGroupBytes = 8L * 1024 * 1024;
+		private long targetFileBytes = 64L * 1024 * 1024;
+		private long maxFileAgeMillis = 15L * 60 * 1000;
+		private boolean gzip = true;
+		private LongSupplier clock = System::currentTimeMillis;
+
+		private Builder() {
+		}
+
+		public static Builder create() {
+			return new Builder();
+		}
+
+		public Builder store(final ObjectStore store) {
+			this.store = store;
+			return this;
+		}
+
+		public Builder prefix(final String prefix) {
+			this.prefix = prefix;
+			return this;
+		}
+
+		public Builder columns(final List<ColumnDefinition> columns) {
+			this.columns = columns;
+			return this;
+		}
+
+		public Builder rowGroupBytes(final long rowGroupBytes) {
+			this.rowGroupBytes = rowGroupBytes;
+			return this;
+		}
+
+		public Builder targetFileBytes(final long targetFileBytes) {
+			this.targetFileBytes = targetFileBytes;
+			return this;
+		}
+
+		public Builder maxFileAgeMillis(final long maxFileAgeMillis) {
+			this.maxFileAgeMillis = maxFileAgeMillis;
+			return this;
+		}
+
+		public Builder gzip(final boolean gzip) {
+			this.gzip = gzip;
+			return this;
+		}
+
+		public Builder clock(final LongSupplier clock) {
+			this.clock = clock;
+			return this;
+		}
+
+		public PartitionedArchiveWriter build() {
+			if (store == null) {
+				throw new IllegalArgumentException("store is required");
+			}
+			if (rowGroupBytes < 1 || targetFileBytes < rowGroupBytes) {
+				throw new IllegalArgumentException("targetFileBytes must be at least rowGroupBytes");
+			}
+			return new PartitionedArchiveWriter(this);
+		}
+
+	}
+
+}
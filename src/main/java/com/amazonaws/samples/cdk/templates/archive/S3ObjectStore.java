@@ -0,0 +1,26 @@
+package com.amazonaws.samples.cdk.templates.archive;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+public class S3ObjectStore implements ObjectStore {
+
+	private final S3Client s3;
+	private final String bucket;
+
+	public S3ObjectStore(final S3Client s3, final String bucket) {
+		this.s3 = s3;
+		this.bucket = bucket;
+	}
+
+	@Override
+	public void put(final String key, final byte[] data) {
+		s3.putObject(PutObjectRequest.builder()
+				.bucket(bucket)
+				.key(key)
+				.contentType("application/vnd.apache.parquet")
+				.build(), RequestBody.fromBytes(data));
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.amazonaws.samples.cdk.templates.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The subset of the Thrift compact protocol needed to write Parquet page
+ * headers and file metadata: i32/i64/binary fields, lists and nested structs.
+ */
+final class ThriftCompactWriter {
+
+	static final int TYPE_I32 = 5;
+	static final int TYPE_I64 = 6;
+	static final int TYPE_BINARY = 8;
+	static final int TYPE_LIST = 9;
+	static final int TYPE_STRUCT = 12;
+
+	private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+	private final Deque<Integer> fieldIds = new ArrayDeque<Integer>();
+	private int lastFieldId;
+
+	byte[] toByteArray() {
+		return out.toByteArray();
+	}
+
+	void structBegin() {
+		fieldIds.push(lastFieldId);
+		lastFieldId = 0;
+	}
+
+	void structEnd() {
+		out.write(0);
+		lastFieldId = fieldIds.pop();
+	}
+
+	void fieldBegin(final int id, final int type) {
+		int delta = id - lastFieldId;
+		if (delta > 0 && delta <= 15) {
+			out.write(delta << 4 | type);
+		} else {
+			out.write(type);
+			writeVarint(zigzag(id));
+		}
+		lastFieldId = id;
+	}
+
+	void i32Field(final int id, final int value) {
+		fieldBegin(id, TYPE_I32);
+		writeVarint(zigzag(value));
+	}
+
+	void i64Field(final int id, final long value) {
+		fieldBegin(id, TYPE_I64);
+		writeVarint(zigzag(value));
+	}
+
+	void stringField(final int id, final String value) {
+		fieldBegin(id, TYPE_BINARY);
+		writeString(value);
+	}
+
+	void structField(final int id) {
+		fieldBegin(id, TYPE_STRUCT);
+		structBegin();
+	}
+
+	void listField(final int id, final int elementType, final int size) {
+		fieldBegin(id, TYPE_LIST);
+		listBegin(elementType, size);
+	}
+
+	void listBegin(final int elementType, final int size) {
+		if (size < 15) {
+			out.write(size << 4 | elementType);
+		} else {
+			out.write(0xF0 | elementType);
+			writeVarint(size);
+		}
+	}
+
+	void i32(final int value) {
+		writeVarint(zigzag(value));
+	}
+
+	void writeString(final String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarint(bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private void writeVarint(long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long zigzag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+}
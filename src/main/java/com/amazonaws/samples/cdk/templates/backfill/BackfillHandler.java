@@ -0,0 +1,61 @@
+package com.amazonaws.samples.cdk.templates.backfill;
+
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.sink.OrderEnrichmentSinkHandler;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+
+/**
+ * Scheduled handler deployed by OrderEnrichedBackfill. Each invocation
+ * continues the backfill from its checkpoints and stops a minute before the
+ * function times out; the schedule picks it up again until the job is
+ * complete. The start position comes from BACKFILL_FROM, or from a "from"
+ * field when the function is invoked by hand.
+ */
+public class BackfillHandler implements RequestHandler<Map<String, Object>, String> {
+
+	private static final long STOP_MARGIN_MILLIS = 60000;
+
+	private final KinesisClient kinesis;
+	private final DynamoDbClient ddb;
+
+	public BackfillHandler() {
+		this(KinesisClient.builder().httpClient(UrlConnectionHttpClient.create()).build(),
+				DynamoDbClient.builder().httpClient(UrlConnectionHttpClient.create()).build());
+	}
+
+	public BackfillHandler(final KinesisClient kinesis, final DynamoDbClient ddb) {
+		this.kinesis = kinesis;
+		this.ddb = ddb;
+	}
+
+	@Override
+	public String handleRequest(final Map<String, Object> event, final Context context) {
+		String from = event != null && event.get("from") instanceof String ? (String) event.get("from") : System.getenv("BACKFILL_FROM");
+		String writeMode = System.getenv("WRITE_MODE");
+		long deadline = System.currentTimeMillis() + (context != null ? context.getRemainingTimeInMillis() - STOP_MARGIN_MILLIS : 600000);
+
+		StreamBackfill backfill = StreamBackfill.Builder.create()
+				.kinesis(kinesis)
+				.streamName(System.getenv("STREAM_NAME"))
+				.from(from)
+				.writer(OrderEnrichmentSinkHandler.writerFor(ddb, System.getenv("TABLE_NAME"), writeMode == null ? "conditional" : writeMode))
+				.checkpoints(new DynamoDbCheckpointStore(ddb, System.getenv("CHECKPOINT_TABLE"), from))
+				.rateLimiter(new WriteRateLimiter(Double.parseDouble(System.getenv("BACKFILL_WCU"))))
+				.build();
+		try {
+			String progress = backfill.run(deadline).toString();
+			System.out.println(progress);
+			return progress;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return "interrupted";
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.amazonaws.samples.cdk.templates.backfill;
+
+/** What one StreamBackfill run got through. */
+public class BackfillProgress {
+
+	private final String from;
+	private final int shards;
+	private final int shardsDone;
+	private final int shardsFailed;
+	private final long records;
+	private final long items;
+	private final long decodeErrors;
+	private final boolean complete;
+
+	public BackfillProgress(final String from, final int shards, final int shardsDone, final int shardsFailed, final long records,
+			final long items, final long decodeErrors, final boolean complete) {
+		this.from = from;
+		this.shards = shards;
+		this.shardsDone = shardsDone;
+		this.shardsFailed = shardsFailed;
+		this.records = records;
+		this.items = items;
+		this.decodeErrors = decodeErrors;
+		this.complete = complete;
+	}
+
+	public String getFrom() {
+		return from;
+	}
+
+	public int getShards() {
+		return shards;
+	}
+
+	/** Shards read to their end, or to the tip of the stream for open shards. */
+	public int getShardsDone() {
+		return shardsDone;
+	}
+
+	public int getShardsFailed() {
+		return shardsFailed;
+	}
+
+	public long getRecords() {
+		return records;
+	}
+
+	public long getItems() {
+		return items;
+	}
+
+	public long getDecodeErrors() {
+		return decodeErrors;
+	}
+
+	public boolean isComplete() {
+		return complete;
+	}
+
+	@Override
+	public String toString() {
+		return "BackfillProgress{from=" + from + ", shards=" + shards + ", shardsDone=" + shardsDone + ", shardsFailed=" + shardsFailed
+				+ ", records=" + records + ", items=" + items + ", decodeErrors=" + decodeErrors + ", complete=" + complete + "}";
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.amazonaws.samples.cdk.templates.backfill;
+
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.sink.OrderEnrichmentSinkHandler;
+
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+
+/**
+ * Runs a backfill from a workstation with the default credentials and
+ * region. Progress is kept in --checkpoint-file; run the same command again
+ * to resume. Exits 0 when the job is complete, 2 when it stopped early
+ * (--max-minutes) and 1 when a shard failed.
+ *
+ * Usage: BackfillTool --stream OrderEnrichedStream --table OrderEnriched
+ *   [--from TRIM_HORIZON|2020-04-01T00:00:00Z] [--wcu 0] [--write-mode conditional|batch]
+ *   [--checkpoint-file backfill.checkpoints] [--max-concurrent-shards 64] [--max-minutes 0]
+ */
+public class BackfillTool {
+
+	public static void main(final String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("expected --option value, got " + args[i]);
+			}
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		if (!options.containsKey("stream") || !options.containsKey("table")) {
+			System.err.println("usage: BackfillTool --stream NAME --table NAME [--from TRIM_HORIZON|ISO-8601] [--wcu N]"
+					+ " [--write-mode conditional|batch] [--checkpoint-file FILE] [--max-concurrent-shards N] [--max-minutes N]");
+			System.exit(1);
+		}
+		String from = options.getOrDefault("from", StreamBackfill.TRIM_HORIZON);
+		long maxMinutes = Long.parseLong(options.getOrDefault("max-minutes", "0"));
+		DynamoDbClient ddb = DynamoDbClient.builder().httpClient(UrlConnectionHttpClient.create()).build();
+
+		StreamBackfill backfill = StreamBackfill.Builder.create()
+				.kinesis(KinesisClient.builder().httpClient(UrlConnectionHttpClient.create()).build())
+				.streamName(options.get("stream"))
+				.from(from)
+				.writer(OrderEnrichmentSinkHandler.writerFor(ddb, options.get("table"), options.getOrDefault("write-mode", "conditional")))
+				.checkpoints(new FileCheckpointStore(Paths.get(options.getOrDefault("checkpoint-file", "backfill.checkpoints")), from))
+				.rateLimiter(new WriteRateLimiter(Double.parseDouble(options.getOrDefault("wcu", "0"))))
+				.maxConcurrentShards(Integer.parseInt(options.getOrDefault("max-concurrent-shards", "64")))
+				.build();
+
+		long start = System.currentTimeMillis();
+		BackfillProgress progress = backfill.run(maxMinutes > 0 ? start + maxMinutes * 60000 : Long.MAX_VALUE);
+		System.out.println(progress + " in " + (System.currentTimeMillis() - start) / 1000 + " s");
+		System.exit(progress.isComplete() ? 0 : progress.getShardsFailed() > 0 ? 1 : 2);
+	}
+
+}
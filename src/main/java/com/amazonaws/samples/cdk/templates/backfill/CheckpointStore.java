@@ -0,0 +1,22 @@
+package com.amazonaws.samples.cdk.templates.backfill;
+
+/**
+ * Per-shard progress of one backfill job: the sequence number of the last
+ * record whose items were written, or SHARD_END once a closed shard has been
+ * read to its end.
+ */
+public interface CheckpointStore {
+
+	String SHARD_END = "SHARD_END";
+
+	/** The shard's checkpoint, or null when the shard has not been started. */
+	String load(String shardId);
+
+	void save(String shardId, String checkpoint);
+
+	/** True once a run has brought every shard to its end or to the tip of the stream. */
+	boolean isComplete();
+
+	void markComplete();
+
+}
@@ -0,0 +1,65 @@
+package com.amazonaws.samples.cdk.templates.backfill;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+
+/**
+ * Checkpoints of the deployed backfill in the table OrderEnrichedBackfill
+ * creates: partition key jobId (the start position), sort key shardId,
+ * attribute checkpoint. A new start position is a new job and starts over.
+ */
+public class DynamoDbCheckpointStore implements CheckpointStore {
+
+	static final String JOB_ID = "jobId";
+	static final String SHARD_ID = "shardId";
+	static final String CHECKPOINT = "checkpoint";
+	private static final String COMPLETE = "#complete";
+
+	private final DynamoDbClient ddb;
+	private final String tableName;
+	private final String jobId;
+
+	public DynamoDbCheckpointStore(final DynamoDbClient ddb, final String tableName, final String jobId) {
+		this.ddb = ddb;
+		this.tableName = tableName;
+		this.jobId = jobId;
+	}
+
+	@Override
+	public String load(final String shardId) {
+		GetItemResponse response = ddb.getItem(r -> r.tableName(tableName).key(key(shardId)).consistentRead(true));
+		if (!response.hasItem() || response.item().get(CHECKPOINT) == null) {
+			return null;
+		}
+		return response.item().get(CHECKPOINT).s();
+	}
+
+	@Override
+	public void save(final String shardId, final String checkpoint) {
+		Map<String, AttributeValue> item = key(shardId);
+		item.put(CHECKPOINT, AttributeValue.builder().s(checkpoint).build());
+		ddb.putItem(r -> r.tableName(tableName).item(item));
+	}
+
+	@Override
+	public boolean isComplete() {
+		return load(COMPLETE) != null;
+	}
+
+	@Override
+	public void markComplete() {
+		save(COMPLETE, "true");
+	}
+
+	private Map<String, AttributeValue> key(final String shardId) {
+		Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+		key.put(JOB_ID, AttributeValue.builder().s(jobId).build());
+		key.put(SHARD_ID, AttributeValue.builder().s(shardId).build());
+		return key;
+	}
+
+}
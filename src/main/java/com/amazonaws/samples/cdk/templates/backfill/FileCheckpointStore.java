@@ -0,0 +1,77 @@
+package com.amazonaws.samples.cdk.templates.backfill;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Checkpoints of a standalone backfill in a properties file. Every save
+ * rewrites the file through a temporary file and an atomic move, so an
+ * interrupted run leaves the last complete state behind. The file records
+ * the start position it belongs to and refuses to resume a different one.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+	private static final String FROM = "#from";
+	private static final String COMPLETE = "#complete";
+
+	private final Path file;
+	private final Properties checkpoints = new Properties();
+
+	public FileCheckpointStore(final Path file, final String from) {
+		this.file = file;
+		if (Files.exists(file)) {
+			try (InputStream in = Files.newInputStream(file)) {
+				checkpoints.load(in);
+			} catch (IOException e) {
+				throw new UncheckedIOException("unable to read checkpoints from " + file, e);
+			}
+			if (!from.equals(checkpoints.getProperty(FROM))) {
+				throw new IllegalStateException(file + " holds a backfill from " + checkpoints.getProperty(FROM)
+						+ ", not from " + from + "; use another checkpoint file");
+			}
+		}
+		checkpoints.setProperty(FROM, from);
+	}
+
+	@Override
+	public synchronized String load(final String shardId) {
+		return checkpoints.getProperty(shardId);
+	}
+
+	@Override
+	public synchronized void save(final String shardId, final String checkpoint) {
+		checkpoints.setProperty(shardId, checkpoint);
+		store();
+	}
+
+	@Override
+	public synchronized boolean isComplete() {
+		return Boolean.parseBoolean(checkpoints.getProperty(COMPLETE));
+	}
+
+	@Override
+	public synchronized void markComplete() {
+		checkpoints.setProperty(COMPLETE, "true");
+		store();
+	}
+
+	//caller holds the lock
+	private void store() {
+		try {
+			Path temp = file.resolveSibling("." + file.getFileName() + ".tmp");
+			try (OutputStream out = Files.newOutputStream(temp)) {
+				checkpoints.store(out, "backfill checkpoints");
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException("unable to write checkpoints to " + file, e);
+		}
+	}
+
+}
@@ -0,0 +1,336 @@
+package com.amazonaws.samples.cdk.templates.backfill;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.samples.cdk.templates.kpl.Deaggregator;
+import com.amazonaws.samples.cdk.templates.kpl.UserRecord;
+import com.amazonaws.samples.cdk.templates.sink.ItemWriter;
+import com.amazonaws.samples.cdk.templates.sink.OrderItemMapper;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.kinesis.model.ExpiredIteratorException;
+import software.amazon.awssdk.services.kinesis.model.GetRecordsResponse;
+import software.amazon.awssdk.services.kinesis.model.GetShardIteratorRequest;
+import software.amazon.awssdk.services.kinesis.model.ListShardsRequest;
+import software.amazon.awssdk.services.kinesis.model.ListShardsResponse;
+import software.amazon.awssdk.services.kinesis.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.kinesis.model.Record;
+import software.amazon.awssdk.services.kinesis.model.Shard;
+import software.amazon.awssdk.services.kinesis.model.ShardIteratorType;
+
+/**
+ * Rebuilds OrderEnriched from the records retained in the enriched stream.
+ * Every shard is read with its own GetRecords loop, from TRIM_HORIZON or
+ * AT_TIMESTAMP, and each batch is mapped the way the sink maps it (one
+ * item per key, newest event_ts wins) and written through an ItemWriter,
+ * paced by a WriteRateLimiter shared by all shards.
+ *
+ * After each batch is written the shard's checkpoint moves to its last
+ * sequence number, so a run that stops (deadline, failure, crash) resumes
+ * there. A child shard of a reshard is only read once its parents are
+ * finished, which keeps each key's versions in order. An open shard is done
+ * for the run when it has caught up with the tip of the stream; when every
+ * shard is done the job is marked complete and later runs do nothing.
+ *
+ * The live sink keeps consuming the stream meanwhile. A backfill only reads
+ * what the stream still retains and every shard is read up to its tip, so
+ * the last version it writes for a key is the newest one in the stream.
+ * Unconditional BatchWriteItem can still briefly put back an older version
+ * while a shard is being replayed, so the deployed backfill and BackfillTool
+ * default to writeMode "conditional", at the cost of PutItem per item.
+ */
+public class StreamBackfill {
+
+	public static final String TRIM_HORIZON = "TRIM_HORIZON";
+
+	private static final int GET_RECORDS_LIMIT = 10000;
+	private static final int WRITE_CHUNK_ITEMS = 25;
+
+	private final KinesisClient kinesis;
+	private final String streamName;
+	private final String from;
+	private final ItemWriter writer;
+	private final CheckpointStore checkpoints;
+	private final WriteRateLimiter rateLimiter;
+	private final int maxConcurrentShards;
+	private final long getRecordsIntervalMillis;
+	private final OrderItemMapper mapper = new OrderItemMapper();
+
+	private final AtomicLong records = new AtomicLong();
+	private final AtomicLong items = new AtomicLong();
+	private final AtomicLong decodeErrors = new AtomicLong();
+
+	private StreamBackfill(final Builder props) {
+		this.kinesis = props.kinesis;
+		this.streamName = props.streamName;
+		this.from = props.from;
+		this.writer = props.writer;
+		this.checkpoints = props.checkpoints;
+		this.rateLimiter = props.rateLimiter;
+		this.maxConcurrentShards = props.maxConcurrentShards;
+		this.getRecordsIntervalMillis = props.getRecordsIntervalMillis;
+	}
+
+	/** Reads until every shard is done or deadlineMillis (epoch millis) passes. */
+	public BackfillProgress run(final long deadlineMillis) throws InterruptedException {
+		if (checkpoints.isComplete()) {
+			return new BackfillProgress(from, 0, 0, 0, 0, 0, 0, true);
+		}
+		Map<String, Shard> shards = listShards();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(maxConcurrentShards, shards.size())));
+		Map<String, CompletableFuture<ShardState>> futures = new LinkedHashMap<String, CompletableFuture<ShardState>>();
+		try {
+			for (Shard shard : shards.values()) {
+				schedule(shard, shards, futures, pool, deadlineMillis);
+			}
+			int done = 0;
+			int failed = 0;
+			for (CompletableFuture<ShardState> future : futures.values()) {
+				ShardState state;
+				try {
+					state = future.get();
+				} catch (ExecutionException e) {
+					System.out.println("ERROR: backfill of a shard failed: " + e.getCause());
+					state = ShardState.FAILED;
+				}
+				if (state == ShardState.FINISHED || state == ShardState.CAUGHT_UP) {
+					done++;
+				} else if (state == ShardState.FAILED) {
+					failed++;
+				}
+			}
+			boolean complete = done == shards.size();
+			if (complete) {
+				checkpoints.markComplete();
+			}
+			return new BackfillProgress(from, shards.size(), done, failed, records.get(), items.get(), decodeErrors.get(), complete);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	//parents first: a child waits for its parents' futures and only runs when they finished their shards
+	private CompletableFuture<ShardState> schedule(final Shard shard, final Map<String, Shard> shards,
+			final Map<String, CompletableFuture<ShardState>> futures, final ExecutorService pool, final long deadlineMillis) {
+		CompletableFuture<ShardState> existing = futures.get(shard.shardId());
+		if (existing != null) {
+			return existing;
+		}
+		final List<CompletableFuture<ShardState>> parents = new ArrayList<CompletableFuture<ShardState>>(2);
+		for (String parentId : new String[] { shard.parentShardId(), shard.adjacentParentShardId() }) {
+			if (parentId != null && shards.containsKey(parentId)) {
+				parents.add(schedule(shards.get(parentId), shards, futures, pool, deadlineMillis));
+			}
+		}
+		CompletableFuture<ShardState> future = CompletableFuture.allOf(parents.toArray(new CompletableFuture<?>[0]))
+				.thenApplyAsync(ignored -> {
+					for (CompletableFuture<ShardState> parent : parents) {
+						if (parent.join() != ShardState.FINISHED) {
+							return ShardState.WAITING;
+						}
+					}
+					return backfillShard(shard.shardId(), deadlineMillis);
+				}, pool);
+		futures.put(shard.shardId(), future);
+		return future;
+	}
+
+	private ShardState backfillShard(final String shardId, final long deadlineMillis) {
+		String checkpoint = checkpoints.load(shardId);
+		if (CheckpointStore.SHARD_END.equals(checkpoint)) {
+			return ShardState.FINISHED;
+		}
+		try {
+			String iterator = shardIterator(shardId, checkpoint);
+			while (true) {
+				if (System.currentTimeMillis() >= deadlineMillis) {
+					return ShardState.STOPPED;
+				}
+				GetRecordsResponse response;
+				try {
+					final String current = iterator;
+					response = kinesis.getRecords(r -> r.shardIterator(current).limit(GET_RECORDS_LIMIT));
+				} catch (ProvisionedThroughputExceededException e) {
+					//the shard's 5 reads/s and 2 MB/s are shared with the live sink
+					Thread.sleep(1000);
+					continue;
+				} catch (ExpiredIteratorException e) {
+					iterator = shardIterator(shardId, checkpoints.load(shardId));
+					continue;
+				}
+				List<Record> batch = response.records();
+				if (!batch.isEmpty()) {
+					if (!write(shardId, batch)) {
+						return ShardState.FAILED;
+					}
+					checkpoints.save(shardId, batch.get(batch.size() - 1).sequenceNumber());
+				}
+				iterator = response.nextShardIterator();
+				if (iterator == null) {
+					checkpoints.save(shardId, CheckpointStore.SHARD_END);
+					return ShardState.FINISHED;
+				}
+				if (batch.isEmpty() && response.millisBehindLatest() != null && response.millisBehindLatest() == 0) {
+					return ShardState.CAUGHT_UP;
+				}
+				Thread.sleep(getRecordsIntervalMillis);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return ShardState.STOPPED;
+		}
+	}
+
+	private boolean write(final String shardId, final List<Record> batch) throws InterruptedException {
+		Map<String, Map<String, AttributeValue>> latest = new LinkedHashMap<String, Map<String, AttributeValue>>();
+		for (Record record : batch) {
+			records.incrementAndGet();
+			try {
+				for (UserRecord userRecord : Deaggregator.deaggregate(record.partitionKey(), record.data().asByteBuffer())) {
+					Map<String, AttributeValue> item = mapper.toItem(userRecord.getData());
+					Map<String, AttributeValue> previous = latest.get(OrderItemMapper.keyOf(item));
+					if (previous == null || OrderItemMapper.compareVersions(item, previous) >= 0) {
+						latest.put(OrderItemMapper.keyOf(item), item);
+					}
+				}
+			} catch (Exception e) {
+				//the live sink has already reported this record; a backfill cannot fix it either
+				decodeErrors.incrementAndGet();
+				System.out.println("ERROR: unable to map record " + record.sequenceNumber() + " of " + shardId + ": " + e.getMessage());
+			}
+		}
+
+		List<Map<String, AttributeValue>> pending = new ArrayList<Map<String, AttributeValue>>(latest.values());
+		for (int start = 0; start < pending.size(); start += WRITE_CHUNK_ITEMS) {
+			List<Map<String, AttributeValue>> chunk = pending.subList(start, Math.min(start + WRITE_CHUNK_ITEMS, pending.size()));
+			long units = 0;
+			for (Map<String, AttributeValue> item : chunk) {
+				units += OrderItemMapper.writeUnitsOf(item);
+			}
+			rateLimiter.acquire(units);
+			List<Map<String, AttributeValue>> unwritten = writer.write(chunk, null);
+			if (!unwritten.isEmpty()) {
+				System.out.println("ERROR: " + unwritten.size() + " items of " + shardId + " not written, the shard resumes from its checkpoint");
+				return false;
+			}
+			items.addAndGet(chunk.size());
+		}
+		return true;
+	}
+
+	private String shardIterator(final String shardId, final String checkpoint) {
+		GetShardIteratorRequest.Builder request = GetShardIteratorRequest.builder().streamName(streamName).shardId(shardId);
+		if (checkpoint != null) {
+			request.shardIteratorType(ShardIteratorType.AFTER_SEQUENCE_NUMBER).startingSequenceNumber(checkpoint);
+		} else if (TRIM_HORIZON.equals(from)) {
+			request.shardIteratorType(ShardIteratorType.TRIM_HORIZON);
+		} else {
+			request.shardIteratorType(ShardIteratorType.AT_TIMESTAMP).timestamp(Instant.parse(from));
+		}
+		return kinesis.getShardIterator(request.build()).shardIterator();
+	}
+
+	//open and closed shards still within retention, parents included
+	private Map<String, Shard> listShards() {
+		Map<String, Shard> shards = new LinkedHashMap<String, Shard>();
+		ListShardsResponse response = kinesis.listShards(ListShardsRequest.builder().streamName(streamName).build());
+		while (true) {
+			for (Shard shard : response.shards()) {
+				shards.put(shard.shardId(), shard);
+			}
+			if (response.nextToken() == null) {
+				return shards;
+			}
+			final String token = response.nextToken();
+			response = kinesis.listShards(r -> r.nextToken(token));
+		}
+	}
+
+	private enum ShardState {
+		FINISHED, CAUGHT_UP, STOPPED, WAITING, FAILED
+	}
+
+	public static final class Builder {
+
+		private KinesisClient kinesis;
+		private String streamName;
+		private String from = TRIM_HORIZON;
+		private ItemWriter writer;
+		private CheckpointStore checkpoints;
+		private WriteRateLimiter rateLimiter = new WriteRateLimiter(0);
+		private int maxConcurrentShards = 64;
+		private long getRecordsIntervalMillis = 400;
+
+		private Builder() {
+		}
+
+		public static Builder create() {
+			return new Builder();
+		}
+
+		public Builder kinesis(final KinesisClient kinesis) {
+			this.kinesis = kinesis;
+			return this;
+		}
+
+		public Builder streamName(final String streamName) {
+			this.streamName = streamName;
+			return this;
+		}
+
+		/** TRIM_HORIZON or an ISO-8601 instant such as 2020-04-01T00:00:00Z (AT_TIMESTAMP). */
+		public Builder from(final String from) {
+			this.from = from;
+			return this;
+		}
+
+		public Builder writer(final ItemWriter writer) {
+			this.writer = writer;
+			return this;
+		}
+
+		public Builder checkpoints(final CheckpointStore checkpoints) {
+			this.checkpoints = checkpoints;
+			return this;
+		}
+
+		public Builder rateLimiter(final WriteRateLimiter rateLimiter) {
+			this.rateLimiter = rateLimiter;
+			return this;
+		}
+
+		public Builder maxConcurrentShards(final int maxConcurrentShards) {
+			this.maxConcurrentShards = maxConcurrentShards;
+			return this;
+		}
+
+		/** Pause between GetRecords calls on a shard; 400 ms leaves the live sink most of the 5 reads/s. */
+		public Builder getRecordsIntervalMillis(final long getRecordsIntervalMillis) {
+			this.getRecordsIntervalMillis = getRecordsIntervalMillis;
+			return this;
+		}
+
+		public StreamBackfill build() {
+			if (kinesis == null || streamName == null || writer == null || checkpoints == null) {
+				throw new IllegalArgumentException("kinesis, streamName, writer and checkpoints are required");
+			}
+			if (!TRIM_HORIZON.equals(from)) {
+				//fail here rather than on the first shard
+				Instant.parse(from);
+			}
+			return new StreamBackfill(this);
+		}
+
+	}
+
+}
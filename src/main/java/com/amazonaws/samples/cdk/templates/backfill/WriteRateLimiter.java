@@ -0,0 +1,46 @@
+package com.amazonaws.samples.cdk.templates.backfill;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket in write capacity units per second, shared by all shard
+ * readers of a backfill so together they stay within their share of the
+ * table's capacity. A caller takes what it needs and, if that puts the
+ * bucket into debt, sleeps until the debt is paid back. At most one
+ * second's worth of units is banked.
+ */
+public class WriteRateLimiter {
+
+	private final double unitsPerSecond;
+	private double available;
+	private long lastRefillNanos;
+
+	/** unitsPerSecond of 0 or less disables limiting (on-demand tables). */
+	public WriteRateLimiter(final double unitsPerSecond) {
+		this.unitsPerSecond = unitsPerSecond;
+		this.available = unitsPerSecond;
+		this.lastRefillNanos = System.nanoTime();
+	}
+
+	public void acquire(final long units) throws InterruptedException {
+		if (unitsPerSecond <= 0) {
+			return;
+		}
+		long waitNanos;
+		synchronized (this) {
+			long now = System.nanoTime();
+			available = Math.min(unitsPerSecond, available + (now - lastRefillNanos) / 1e9 * unitsPerSecond);
+			lastRefillNanos = now;
+			available -= units;
+			waitNanos = available < 0 ? (long) (-available / unitsPerSecond * 1e9) : 0;
+		}
+		if (waitNanos > 0) {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+	}
+
+	public double getUnitsPerSecond() {
+		return unitsPerSecond;
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.amazonaws.samples.cdk.templates.cells;
+
+/**
+ * Maps an orderId to one of N pipeline cells, and cell indexes to resource
+ * names. Producers, the stacks and readers all go through this class, so an
+ * order's records, its stream, its table and its queries agree on one cell.
+ *
+ * Routing uses jump consistent hashing (Lamping and Veach). It needs no
+ * lookup table, and growing from N to N+1 cells moves only about 1/(N+1) of
+ * the orders; the rest keep their cell. Cell i is named "cell" + i, and its
+ * resources are the base name + "-cell" + i. A single-cell deployment keeps
+ * the plain base names.
+ */
+public class CellRouter {
+
+	private final int cellCount;
+
+	public CellRouter(final int cellCount) {
+		if (cellCount < 1) {
+			throw new IllegalArgumentException("cellCount must be at least 1");
+		}
+		this.cellCount = cellCount;
+	}
+
+	public int getCellCount() {
+		return cellCount;
+	}
+
+	public int cellFor(final long orderId) {
+		return jumpConsistentHash(mix(orderId), cellCount);
+	}
+
+	/** Cell name for the order, or null in a single-cell deployment. */
+	public String cellNameFor(final long orderId) {
+		return cellCount == 1 ? null : cellName(cellFor(orderId));
+	}
+
+	/** Name of a base resource (OrderStream, OrderEnriched, ...) in the order's cell. */
+	public String resourceNameFor(final String baseName, final long orderId) {
+		return resourceName(baseName, cellNameFor(orderId));
+	}
+
+	public static String cellName(final int cell) {
+		return "cell" + cell;
+	}
+
+	public static String resourceName(final String baseName, final String cellName) {
+		return cellName == null ? baseName : baseName + "-" + cellName;
+	}
+
+	static int jumpConsistentHash(long key, final int buckets) {
+		long b = -1;
+		long j = 0;
+		while (j < buckets) {
+			b = j;
+			key = key * 2862933555777941757L + 1;
+			j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+		}
+		return (int) b;
+	}
+
+	//murmur3 finalizer; orderIds are sequential and need spreading before the LCG in the jump hash
+	private static long mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
+}
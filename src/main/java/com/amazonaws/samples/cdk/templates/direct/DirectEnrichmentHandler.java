@@ -0,0 +1,73 @@
+package com.amazonaws.samples.cdk.templates.direct;
+
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+import com.amazonaws.samples.cdk.templates.flink.S3ProductCatalog;
+import com.amazonaws.samples.cdk.templates.reference.MappedProductIndex;
+import com.amazonaws.samples.cdk.templates.reference.ProductLookup;
+import com.amazonaws.samples.cdk.templates.reference.S3ReferenceSource;
+import com.amazonaws.samples.cdk.templates.sink.DedupeFilter;
+import com.amazonaws.samples.cdk.templates.sink.ItemWriter;
+import com.amazonaws.samples.cdk.templates.sink.OrderEnrichmentSinkHandler;
+import com.amazonaws.samples.cdk.templates.sink.OrderItemMapper;
+
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+/**
+ * Sink for the "direct" topology: reads OrderStream itself, enriches with
+ * OrderEnricher and writes to OrderEnriched, with no enrichment application
+ * and no enriched stream in between. Everything after decoding (collapsing
+ * per key, dedupe, conditional or batch writes, partial batch failures, EMF
+ * metrics) is OrderEnrichmentSinkHandler's.
+ *
+ * Environment: TABLE_NAME, WRITE_MODE, BUCKET (products bucket),
+ * PRODUCTS_KEY (default products/products.json),
+ * PRODUCTS_REFRESH_SECONDS (default 300) and PRODUCTS_INDEX: mapped
+ * (default) keeps the products in a reference.MappedProductIndex under
+ * /tmp/products, swapped when the object's ETag changes; heap parses them
+ * into a ProductIndex.
+ */
+public class DirectEnrichmentHandler extends OrderEnrichmentSinkHandler {
+
+	public static final String DEFAULT_PRODUCTS_KEY = "products/products.json";
+	static final long MIN_RELOAD_MILLIS = 10000;
+	static final String INDEX_DIRECTORY = "/tmp/products";
+
+	public DirectEnrichmentHandler() {
+		this(writerFor(DynamoDbClient.builder().httpClient(UrlConnectionHttpClient.create()).build(), System.getenv("TABLE_NAME"),
+				System.getenv("WRITE_MODE")), products(), System.out::println, new DedupeFilter());
+	}
+
+	public DirectEnrichmentHandler(final ItemWriter writer, final ProductLookup products, final Consumer<String> metricsOut,
+			final DedupeFilter dedupe) {
+		super(writer, new OrderEnricher(products, new OrderItemMapper()), metricsOut, dedupe);
+	}
+
+	private static ProductLookup products() {
+		String region = System.getenv("AWS_REGION");
+		String bucket = System.getenv("BUCKET");
+		if ("heap".equals(System.getenv("PRODUCTS_INDEX"))) {
+			return heapProducts(region, bucket, productsKey(), refreshSeconds() * 1000);
+		}
+		return new MappedProductIndex(new S3ReferenceSource(region, bucket, productsKey()), Paths.get(INDEX_DIRECTORY),
+				refreshSeconds() * 1000, MIN_RELOAD_MILLIS);
+	}
+
+	/** Products parsed onto the heap from the products object; also what RedriveTool uses outside Lambda. */
+	public static ProductLookup heapProducts(final String region, final String bucket, final String key, final long refreshMillis) {
+		return new ProductIndex(new S3ProductCatalog(region, bucket, key), refreshMillis, MIN_RELOAD_MILLIS);
+	}
+
+	private static String productsKey() {
+		String key = System.getenv("PRODUCTS_KEY");
+		return key == null || key.isEmpty() ? DEFAULT_PRODUCTS_KEY : key;
+	}
+
+	private static long refreshSeconds() {
+		String seconds = System.getenv("PRODUCTS_REFRESH_SECONDS");
+		return seconds == null || seconds.isEmpty() ? 300 : Long.parseLong(seconds);
+	}
+
+}
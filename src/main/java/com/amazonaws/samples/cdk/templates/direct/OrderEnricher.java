@@ -0,0 +1,76 @@
+package com.amazonaws.samples.cdk.templates.direct;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.flink.EventTimestamps;
+import com.amazonaws.samples.cdk.templates.kpl.Deaggregator;
+import com.amazonaws.samples.cdk.templates.kpl.UserRecord;
+import com.amazonaws.samples.cdk.templates.producer.OrderRecord;
+import com.amazonaws.samples.cdk.templates.producer.OrderRecordCodec;
+import com.amazonaws.samples.cdk.templates.reference.ProductLookup;
+import com.amazonaws.samples.cdk.templates.schema.BinaryRecordCodec;
+import com.amazonaws.samples.cdk.templates.schema.OrderSchema;
+import com.amazonaws.samples.cdk.templates.sink.OrderItemMapper;
+import com.amazonaws.samples.cdk.templates.sink.RecordDecoder;
+import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * What the enrichment application does to an OrderStream record, done in
+ * the sink instead: ITEM records (JSON or binary, KPL-aggregated or not) are
+ * joined with their product (itemId = productId) and mapped to the item the
+ * sink would have read from the enriched stream. ORDER header records yield
+ * no item, as in the application's join; items with an unknown product are
+ * written with no productName, as the Flink job's lookup does.
+ *
+ * event_ts is the record's arrival time on OrderStream, the SQL application's
+ * ROWTIME, so a replayed record maps to the same version as the first time.
+ */
+public class OrderEnricher implements RecordDecoder {
+
+	private static final int ORDER_COLUMNS = OrderSchema.ORDER_COLUMNS.size();
+
+	private final ProductLookup products;
+	private final OrderItemMapper mapper;
+	private final ObjectReader reader = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+			.readerFor(OrderRecord.class);
+
+	public OrderEnricher(final ProductLookup products, final OrderItemMapper mapper) {
+		this.products = products;
+		this.mapper = mapper;
+	}
+
+	@Override
+	public List<Map<String, AttributeValue>> decode(final KinesisEvent.Record record) throws Exception {
+		long arrival = record.getApproximateArrivalTimestamp() != null ? record.getApproximateArrivalTimestamp().getTime()
+				: System.currentTimeMillis();
+		String eventTs = EventTimestamps.format(arrival);
+		List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>(1);
+		for (UserRecord userRecord : Deaggregator.deaggregate(record.getPartitionKey(), record.getData())) {
+			OrderRecord order = order(userRecord.getData());
+			if (!"ITEM".equals(order.getRecordType())) {
+				continue;
+			}
+			Object[] values = Arrays.copyOf(OrderRecordCodec.toValues(order), ORDER_COLUMNS + 2);
+			values[ORDER_COLUMNS] = products.productName(order.getItemId());
+			values[ORDER_COLUMNS + 1] = eventTs;
+			items.add(mapper.toItem(values));
+		}
+		return items;
+	}
+
+	private OrderRecord order(final byte[] data) throws Exception {
+		if (BinaryRecordCodec.isBinaryRecord(data)) {
+			return OrderRecordCodec.fromBinary(data);
+		}
+		return reader.readValue(data);
+	}
+
+}
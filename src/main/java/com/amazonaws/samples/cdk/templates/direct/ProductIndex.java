@@ -0,0 +1,89 @@
+package com.amazonaws.samples.cdk.templates.direct;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.flink.Product;
+import com.amazonaws.samples.cdk.templates.flink.ProductCatalog;
+import com.amazonaws.samples.cdk.templates.reference.ProductLookup;
+
+/**
+ * The products the direct handler enriches with, kept in the execution
+ * environment between invocations. The catalog is loaded on first use and
+ * reloaded once it is refreshMillis old. A lookup that misses reloads it
+ * too, at most once per minReloadMillis, so products added since the last
+ * refresh are found without waiting for it. A failed reload keeps the
+ * products already loaded; only a failed first load is an error.
+ *
+ * reference.MappedProductIndex keeps the same products off the heap instead.
+ */
+public class ProductIndex implements ProductLookup {
+
+	private final ProductCatalog catalog;
+	private final long refreshMillis;
+	private final long minReloadMillis;
+
+	private volatile Map<Integer, Product> products;
+	private volatile long loadedAt;
+	private long lastMissReload;
+	private long reloads;
+
+	public ProductIndex(final ProductCatalog catalog, final long refreshMillis, final long minReloadMillis) {
+		this.catalog = catalog;
+		this.refreshMillis = refreshMillis;
+		this.minReloadMillis = minReloadMillis;
+	}
+
+	/** The product, or null when the catalog does not have it. */
+	public Product get(final int productId) throws IOException {
+		long now = System.currentTimeMillis();
+		Map<Integer, Product> current = products;
+		if (current == null || now - loadedAt >= refreshMillis) {
+			current = reload(now, false);
+		}
+		Product product = current.get(productId);
+		if (product == null) {
+			product = reload(now, true).get(productId);
+		}
+		return product;
+	}
+
+	@Override
+	public String productName(final int productId) throws IOException {
+		Product product = get(productId);
+		return product == null ? null : product.getProductName();
+	}
+
+	public int size() {
+		Map<Integer, Product> current = products;
+		return current == null ? 0 : current.size();
+	}
+
+	public synchronized long getReloads() {
+		return reloads;
+	}
+
+	private synchronized Map<Integer, Product> reload(final long now, final boolean miss) throws IOException {
+		//another thread may have reloaded while this one waited
+		if (products != null && (miss ? now - lastMissReload < minReloadMillis : now - loadedAt < refreshMillis)) {
+			return products;
+		}
+		if (miss) {
+			lastMissReload = now;
+		}
+		try {
+			products = Collections.unmodifiableMap(catalog.loadAll());
+			loadedAt = now;
+			reloads++;
+		} catch (IOException | RuntimeException e) {
+			if (products == null) {
+				throw e;
+			}
+			System.out.println("WARN: products reload failed, keeping " + products.size() + " products: " + e.getMessage());
+			loadedAt = now;
+		}
+		return products;
+	}
+
+}
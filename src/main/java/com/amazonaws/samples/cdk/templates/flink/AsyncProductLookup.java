@@ -0,0 +1,98 @@
+package com.amazonaws.samples.cdk.templates.flink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.streaming.api.functions.async.ResultFuture;
+import org.apache.flink.streaming.api.functions.async.RichAsyncFunction;
+
+import com.amazonaws.samples.cdk.templates.producer.OrderRecord;
+
+/**
+ * Resolves the items ProductJoinFunction could not join, typically right
+ * after a start (before the first broadcast arrives) or for products added
+ * since the last refresh. Lookups run on a small thread pool so the operator
+ * keeps many in flight without blocking the task thread. The catalog is
+ * reloaded at most once per minReloadMillis. Items whose product is still
+ * unknown are emitted with a null productName instead of being dropped.
+ */
+public class AsyncProductLookup extends RichAsyncFunction<OrderRecord, EnrichedOrder> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final ProductCatalog catalog;
+	private final int threads;
+	private final long minReloadMillis;
+
+	private transient ExecutorService executor;
+	private transient volatile Map<Integer, Product> products;
+	private transient long loadedAt;
+	private transient Counter reloads;
+	private transient Counter unknown;
+
+	public AsyncProductLookup(final ProductCatalog catalog, final int threads, final long minReloadMillis) {
+		this.catalog = catalog;
+		this.threads = threads;
+		this.minReloadMillis = minReloadMillis;
+	}
+
+	@Override
+	public void open(final Configuration parameters) {
+		executor = Executors.newFixedThreadPool(threads);
+		products = Collections.emptyMap();
+		loadedAt = Long.MIN_VALUE / 2;
+		reloads = getRuntimeContext().getMetricGroup().counter("productCatalogReloads");
+		unknown = getRuntimeContext().getMetricGroup().counter("unknownProducts");
+	}
+
+	@Override
+	public void close() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	@Override
+	public void asyncInvoke(final OrderRecord order, final ResultFuture<EnrichedOrder> resultFuture) {
+		CompletableFuture.supplyAsync(() -> lookup(order.getItemId()), executor).whenComplete((product, error) -> {
+			if (error != null) {
+				resultFuture.completeExceptionally(error);
+				return;
+			}
+			if (product == null) {
+				unknown.inc();
+			}
+			resultFuture.complete(Collections.singleton(new EnrichedOrder(order,
+					product == null ? null : product.getProductName(), EventTimestamps.format(System.currentTimeMillis()))));
+		});
+	}
+
+	private Product lookup(final int productId) {
+		Product product = products.get(productId);
+		if (product != null) {
+			return product;
+		}
+		synchronized (this) {
+			product = products.get(productId);
+			if (product == null && System.currentTimeMillis() - loadedAt >= minReloadMillis) {
+				try {
+					products = catalog.loadAll();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				loadedAt = System.currentTimeMillis();
+				reloads.inc();
+				product = products.get(productId);
+			}
+		}
+		return product;
+	}
+
+}
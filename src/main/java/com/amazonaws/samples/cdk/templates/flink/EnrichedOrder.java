@@ -0,0 +1,63 @@
+package com.amazonaws.samples.cdk.templates.flink;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.producer.OrderRecord;
+import com.amazonaws.samples.cdk.templates.producer.OrderRecordCodec;
+import com.amazonaws.samples.cdk.templates.schema.OrderSchema;
+
+/** An ITEM record with the columns enrichment adds (OrderSchema.ENRICHED_COLUMNS). */
+public class EnrichedOrder {
+
+	private OrderRecord order;
+	private String productName;
+	private String eventTs;
+
+	public EnrichedOrder() {
+	}
+
+	public EnrichedOrder(final OrderRecord order, final String productName, final String eventTs) {
+		this.order = order;
+		this.productName = productName;
+		this.eventTs = eventTs;
+	}
+
+	public OrderRecord getOrder() {
+		return order;
+	}
+
+	public void setOrder(final OrderRecord order) {
+		this.order = order;
+	}
+
+	/** Null when the product is not in the reference data. */
+	public String getProductName() {
+		return productName;
+	}
+
+	public void setProductName(final String productName) {
+		this.productName = productName;
+	}
+
+	public String getEventTs() {
+		return eventTs;
+	}
+
+	public void setEventTs(final String eventTs) {
+		this.eventTs = eventTs;
+	}
+
+	/** The OrderSchema.ENRICHED_COLUMNS in order, as the enriched stream carries them. */
+	public Map<String, Object> toFields() {
+		Object[] values = OrderRecordCodec.toValues(order);
+		Map<String, Object> fields = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < values.length; i++) {
+			fields.put(OrderSchema.ORDER_COLUMNS.get(i).getName(), values[i]);
+		}
+		fields.put("productName", productName);
+		fields.put("event_ts", eventTs);
+		return fields;
+	}
+
+}
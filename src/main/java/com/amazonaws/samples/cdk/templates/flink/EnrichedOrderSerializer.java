@@ -0,0 +1,36 @@
+package com.amazonaws.samples.cdk.templates.flink;
+
+import org.apache.flink.api.common.serialization.SerializationSchema;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes an EnrichedOrder as the JSON object the SQL application emits: the
+ * OrderSchema.ENRICHED_COLUMNS in order, so the sinks read Flink and SQL
+ * output the same way.
+ */
+public class EnrichedOrderSerializer implements SerializationSchema<EnrichedOrder> {
+
+	private static final long serialVersionUID = 1L;
+
+	private transient ObjectMapper objectMapper;
+
+	@Override
+	public byte[] serialize(final EnrichedOrder element) {
+		if (objectMapper == null) {
+			objectMapper = new ObjectMapper();
+		}
+		try {
+			return objectMapper.writeValueAsBytes(element.toFields());
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("unable to serialize order " + element.getOrder().getOrderId(), e);
+		}
+	}
+
+	/** Kinesis partition key: orderId, like the producer, so one order stays on one shard. */
+	public static String partitionKey(final EnrichedOrder element) {
+		return Integer.toString(element.getOrder().getOrderId());
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.amazonaws.samples.cdk.templates.flink;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/** event_ts values in the enriched stream's format, UTC. */
+public final class EventTimestamps {
+
+	//the format of orderDateTime and of the SQL application's event_ts
+	private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+	private EventTimestamps() {
+	}
+
+	public static String format(final long epochMillis) {
+		return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000), (int) Math.floorMod(epochMillis, 1000) * 1000000,
+				ZoneOffset.UTC).format(FORMAT);
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.amazonaws.samples.cdk.templates.flink;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Fixed catalog for local runs. */
+public class InMemoryProductCatalog implements ProductCatalog {
+
+	private static final long serialVersionUID = 1L;
+
+	private final HashMap<Integer, Product> products;
+
+	public InMemoryProductCatalog(final Iterable<Product> products) {
+		this.products = new HashMap<Integer, Product>();
+		for (Product product : products) {
+			this.products.put(product.getProductId(), product);
+		}
+	}
+
+	@Override
+	public Map<Integer, Product> loadAll() {
+		return new HashMap<Integer, Product>(products);
+	}
+
+}
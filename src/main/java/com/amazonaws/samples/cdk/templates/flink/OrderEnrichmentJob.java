@@ -0,0 +1,125 @@
+package com.amazonaws.samples.cdk.templates.flink;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.flink.api.java.utils.ParameterTool;
+import org.apache.flink.streaming.api.CheckpointingMode;
+import org.apache.flink.streaming.api.datastream.AsyncDataStream;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.datastream.SingleOutputStreamOperator;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.connectors.kinesis.FlinkKinesisConsumer;
+import org.apache.flink.streaming.connectors.kinesis.FlinkKinesisProducer;
+import org.apache.flink.streaming.connectors.kinesis.KinesisPartitioner;
+import org.apache.flink.streaming.connectors.kinesis.config.AWSConfigConstants;
+import org.apache.flink.streaming.connectors.kinesis.config.ConsumerConfigConstants;
+
+import com.amazonaws.samples.cdk.templates.producer.OrderRecord;
+import com.amazonaws.services.kinesisanalytics.runtime.KinesisAnalyticsRuntime;
+
+/**
+ * Flink replacement for the SQL application: reads OrderStream, joins ITEM
+ * records with the products reference data and writes the enriched records
+ * to OrderEnrichedStream in the SQL application's JSON format.
+ *
+ * Products are read from S3 by ProductRefreshSource and broadcast to every
+ * subtask (ProductJoinFunction). Items whose product is not in broadcast
+ * state yet are resolved by AsyncProductLookup. Settings come from the
+ * OrderEnrichment property group that FlinkEnrichmentApplication configures,
+ * or from --key value arguments when run outside Kinesis Data Analytics.
+ * Parallelism and checkpointing are set on the application; the job only
+ * enables checkpointing itself when the runtime has not.
+ */
+public final class OrderEnrichmentJob {
+
+	public static final String PROPERTY_GROUP = "OrderEnrichment";
+
+	private OrderEnrichmentJob() {
+	}
+
+	public static void main(final String[] args) throws Exception {
+		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+		ParameterTool settings = ParameterTool.fromMap(propertiesToMap(applicationProperties(args)));
+
+		if (!env.getCheckpointConfig().isCheckpointingEnabled()) {
+			env.enableCheckpointing(settings.getLong("CheckpointIntervalMillis", 60000), CheckpointingMode.EXACTLY_ONCE);
+		}
+
+		String region = settings.getRequired("Region");
+		ProductCatalog catalog = new S3ProductCatalog(region, settings.getRequired("ProductsBucket"),
+				settings.get("ProductsKey", "products/products.json"));
+
+		Properties consumerConfig = new Properties();
+		consumerConfig.setProperty(ConsumerConfigConstants.AWS_REGION, region);
+		consumerConfig.setProperty(ConsumerConfigConstants.STREAM_INITIAL_POSITION, settings.get("InitialPosition", "LATEST"));
+
+		DataStream<OrderRecord> orders = env
+				.addSource(new FlinkKinesisConsumer<OrderRecord>(settings.getRequired("InputStreamName"), new OrderRecordDeserializer(), consumerConfig))
+				.name("OrderStream").uid("order-stream-source");
+
+		//one reader is enough: the reference data is small and every subtask gets all of it
+		DataStream<Product> products = env
+				.addSource(new ProductRefreshSource(catalog, TimeUnit.SECONDS.toMillis(settings.getLong("ProductRefreshSeconds", 300))))
+				.setParallelism(1)
+				.name("Products").uid("products-source");
+
+		DataStream<EnrichedOrder> enriched = enrich(orders, products, catalog, settings.getLong("AsyncTimeoutMillis", 5000),
+				settings.getInt("AsyncCapacity", 100), settings.getInt("AsyncThreads", 4));
+
+		Properties producerConfig = new Properties();
+		producerConfig.setProperty(AWSConfigConstants.AWS_REGION, region);
+		producerConfig.setProperty("AggregationEnabled", "true");
+		FlinkKinesisProducer<EnrichedOrder> producer = new FlinkKinesisProducer<EnrichedOrder>(new EnrichedOrderSerializer(), producerConfig);
+		producer.setDefaultStream(settings.getRequired("OutputStreamName"));
+		producer.setDefaultPartition("0");
+		producer.setCustomPartitioner(new OrderIdPartitioner());
+		producer.setFailOnError(true);
+		enriched.addSink(producer).name("OrderEnrichedStream").uid("order-enriched-stream-sink");
+
+		env.execute("OrderEnrichment");
+	}
+
+	/** The enrichment topology between the sources and the sink, shared with OrderEnrichmentJobTest. */
+	public static DataStream<EnrichedOrder> enrich(final DataStream<OrderRecord> orders, final DataStream<Product> products,
+			final ProductCatalog catalog, final long asyncTimeoutMillis, final int asyncCapacity, final int asyncThreads) {
+		SingleOutputStreamOperator<EnrichedOrder> joined = orders
+				.connect(products.broadcast(ProductJoinFunction.PRODUCTS))
+				.process(new ProductJoinFunction())
+				.name("ProductJoin").uid("product-join");
+
+		DataStream<EnrichedOrder> lookedUp = AsyncDataStream.unorderedWait(joined.getSideOutput(ProductJoinFunction.MISSES),
+				new AsyncProductLookup(catalog, asyncThreads, 10000), asyncTimeoutMillis, TimeUnit.MILLISECONDS, asyncCapacity)
+				.name("ProductLookup").uid("product-lookup");
+
+		return joined.union(lookedUp);
+	}
+
+	private static Properties applicationProperties(final String[] args) throws IOException {
+		Properties properties = KinesisAnalyticsRuntime.getApplicationProperties().get(PROPERTY_GROUP);
+		return properties != null ? properties : ParameterTool.fromArgs(args).getProperties();
+	}
+
+	private static Map<String, String> propertiesToMap(final Properties properties) {
+		Map<String, String> map = new HashMap<String, String>();
+		for (String name : properties.stringPropertyNames()) {
+			map.put(name, properties.getProperty(name));
+		}
+		return map;
+	}
+
+	private static final class OrderIdPartitioner extends KinesisPartitioner<EnrichedOrder> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String getPartitionId(final EnrichedOrder element) {
+			return EnrichedOrderSerializer.partitionKey(element);
+		}
+
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.amazonaws.samples.cdk.templates.flink;
+
+import java.io.IOException;
+
+import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+
+import com.amazonaws.samples.cdk.templates.producer.OrderRecord;
+import com.amazonaws.samples.cdk.templates.producer.OrderRecordCodec;
+import com.amazonaws.samples.cdk.templates.schema.BinaryRecordCodec;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads OrderStream payloads, JSON or binary (see OrderProducer's
+ * PayloadFormat). The Kinesis consumer has already removed KPL aggregation.
+ * Records that cannot be decoded return null, which the consumer skips.
+ */
+public class OrderRecordDeserializer implements DeserializationSchema<OrderRecord> {
+
+	private static final long serialVersionUID = 1L;
+
+	private transient ObjectMapper objectMapper;
+
+	@Override
+	public OrderRecord deserialize(final byte[] message) throws IOException {
+		try {
+			if (BinaryRecordCodec.isBinaryRecord(message)) {
+				return OrderRecordCodec.fromBinary(message);
+			}
+			if (objectMapper == null) {
+				objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+			}
+			return objectMapper.readValue(message, OrderRecord.class);
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public boolean isEndOfStream(final OrderRecord nextElement) {
+		return false;
+	}
+
+	@Override
+	public TypeInformation<OrderRecord> getProducedType() {
+		return TypeInformation.of(OrderRecord.class);
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.amazonaws.samples.cdk.templates.flink;
+
+import java.io.Serializable;
+
+/** One row of the products reference data (OrderSchema.PRODUCT_COLUMNS). */
+public class Product implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private int productId;
+	private String productName;
+	private float productPrice;
+
+	public Product() {
+	}
+
+	public Product(final int productId, final String productName, final float productPrice) {
+		this.productId = productId;
+		this.productName = productName;
+		this.productPrice = productPrice;
+	}
+
+	public int getProductId() {
+		return productId;
+	}
+
+	public void setProductId(final int productId) {
+		this.productId = productId;
+	}
+
+	public String getProductName() {
+		return productName;
+	}
+
+	public void setProductName(final String productName) {
+		this.productName = productName;
+	}
+
+	public float getProductPrice() {
+		return productPrice;
+	}
+
+	public void setProductPrice(final float productPrice) {
+		this.productPrice = productPrice;
+	}
+
+}
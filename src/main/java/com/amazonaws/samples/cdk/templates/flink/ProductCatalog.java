@@ -0,0 +1,17 @@
+package com.amazonaws.samples.cdk.templates.flink;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Source of the products reference data. Implementations are shipped to the
+ * task managers with the job graph, so they hold configuration only and create
+ * clients lazily.
+ */
+public interface ProductCatalog extends Serializable {
+
+	/** All products by productId. */
+	Map<Integer, Product> loadAll() throws IOException;
+
+}
@@ -0,0 +1,67 @@
+package com.amazonaws.samples.cdk.templates.flink;
+
+import org.apache.flink.api.common.state.BroadcastState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ReadOnlyBroadcastState;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.streaming.api.functions.co.BroadcastProcessFunction;
+import org.apache.flink.util.Collector;
+import org.apache.flink.util.OutputTag;
+
+import com.amazonaws.samples.cdk.templates.producer.OrderRecord;
+
+/**
+ * Joins ITEM records with the products broadcast to every subtask
+ * (itemId = productId). Products live in broadcast state, so they are part
+ * of each checkpoint and survive restarts. An item whose product is not in
+ * the state yet goes to the MISSES side output for AsyncProductLookup
+ * instead of being dropped. ORDER header records carry no item and are not
+ * forwarded, as in the SQL application's join.
+ */
+public class ProductJoinFunction extends BroadcastProcessFunction<OrderRecord, Product, EnrichedOrder> {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final MapStateDescriptor<Integer, Product> PRODUCTS =
+			new MapStateDescriptor<Integer, Product>("products", Types.INT, TypeInformation.of(Product.class));
+
+	public static final OutputTag<OrderRecord> MISSES = new OutputTag<OrderRecord>("product-misses", TypeInformation.of(OrderRecord.class));
+
+	private transient Counter joined;
+	private transient Counter missed;
+	private transient Counter skipped;
+
+	@Override
+	public void open(final Configuration parameters) {
+		joined = getRuntimeContext().getMetricGroup().counter("productJoinHits");
+		missed = getRuntimeContext().getMetricGroup().counter("productJoinMisses");
+		skipped = getRuntimeContext().getMetricGroup().counter("nonItemRecords");
+	}
+
+	@Override
+	public void processElement(final OrderRecord order, final ReadOnlyContext ctx, final Collector<EnrichedOrder> out) throws Exception {
+		if (!"ITEM".equals(order.getRecordType())) {
+			skipped.inc();
+			return;
+		}
+		ReadOnlyBroadcastState<Integer, Product> products = ctx.getBroadcastState(PRODUCTS);
+		Product product = products.get(order.getItemId());
+		if (product == null) {
+			missed.inc();
+			ctx.output(MISSES, order);
+			return;
+		}
+		joined.inc();
+		out.collect(new EnrichedOrder(order, product.getProductName(), EventTimestamps.format(ctx.currentProcessingTime())));
+	}
+
+	@Override
+	public void processBroadcastElement(final Product product, final Context ctx, final Collector<EnrichedOrder> out) throws Exception {
+		BroadcastState<Integer, Product> products = ctx.getBroadcastState(PRODUCTS);
+		products.put(product.getProductId(), product);
+	}
+
+}
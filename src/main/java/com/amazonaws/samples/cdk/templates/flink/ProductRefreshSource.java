@@ -0,0 +1,47 @@
+package com.amazonaws.samples.cdk.templates.flink;
+
+import org.apache.flink.streaming.api.functions.source.RichSourceFunction;
+
+/**
+ * Emits every product in the catalog, then again every refreshMillis, so the
+ * broadcast state picks up changes to the reference data without a restart.
+ * With refreshMillis <= 0 it emits once and finishes (bounded local runs).
+ */
+public class ProductRefreshSource extends RichSourceFunction<Product> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final ProductCatalog catalog;
+	private final long refreshMillis;
+
+	private volatile boolean running = true;
+
+	public ProductRefreshSource(final ProductCatalog catalog, final long refreshMillis) {
+		this.catalog = catalog;
+		this.refreshMillis = refreshMillis;
+	}
+
+	@Override
+	public void run(final SourceContext<Product> ctx) throws Exception {
+		do {
+			for (Product product : catalog.loadAll().values()) {
+				synchronized (ctx.getCheckpointLock()) {
+					ctx.collect(product);
+				}
+			}
+			if (refreshMillis <= 0) {
+				return;
+			}
+			long wakeAt = System.currentTimeMillis() + refreshMillis;
+			while (running && System.currentTimeMillis() < wakeAt) {
+				Thread.sleep(Math.min(1000, Math.max(1, wakeAt - System.currentTimeMillis())));
+			}
+		} while (running);
+	}
+
+	@Override
+	public void cancel() {
+		running = false;
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.amazonaws.samples.cdk.templates.flink;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * Reads the same products object the SQL application uses as reference data
+ * (products/products.json): JSON objects one per line, or a JSON array.
+ */
+public class S3ProductCatalog implements ProductCatalog {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String region;
+	private final String bucket;
+	private final String key;
+
+	private transient S3Client s3;
+
+	public S3ProductCatalog(final String region, final String bucket, final String key) {
+		this.region = region;
+		this.bucket = bucket;
+		this.key = key;
+	}
+
+	@Override
+	public Map<Integer, Product> loadAll() throws IOException {
+		if (s3 == null) {
+			s3 = S3Client.builder().region(Region.of(region)).httpClient(UrlConnectionHttpClient.create()).build();
+		}
+		byte[] data = s3.getObject(r -> r.bucket(bucket).key(key), ResponseTransformer.toBytes()).asByteArray();
+		return parse(data, new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+	}
+
+	public static Map<Integer, Product> parse(final byte[] data, final ObjectMapper objectMapper) throws IOException {
+		Map<Integer, Product> products = new HashMap<Integer, Product>();
+		for (JsonNode node : objectMapper.readerFor(JsonNode.class).<JsonNode>readValues(data).readAll()) {
+			if (node.isArray()) {
+				for (JsonNode element : node) {
+					add(products, objectMapper.treeToValue(element, Product.class));
+				}
+			} else {
+				add(products, objectMapper.treeToValue(node, Product.class));
+			}
+		}
+		return products;
+	}
+
+	private static void add(final Map<Integer, Product> products, final Product product) {
+		products.put(product.getProductId(), product);
+	}
+
+}
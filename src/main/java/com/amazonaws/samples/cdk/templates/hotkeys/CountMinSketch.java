@@ -0,0 +1,105 @@
+package com.amazonaws.samples.cdk.templates.hotkeys;
+
+import java.util.Arrays;
+
+/**
+ * Approximate per-key counts in a fixed depth x width table of int counters.
+ * A key increments one counter per row, chosen by a row-specific hash, and
+ * its estimate is the smallest of those counters. An estimate never falls
+ * below the true count. With conservative update (only counters below the
+ * new estimate are raised) it overshoots by at most e/width of the total with
+ * probability 1 - e^-depth, in practice far less.
+ *
+ * Keys are given as 64-bit hashes (see hash), so adding a key does not
+ * allocate. Not thread-safe.
+ */
+public class CountMinSketch {
+
+	private final int width;
+	private final int depth;
+	private final int mask;
+	private final int[] counters;
+	//the counters of the key being added, reused so add does not allocate
+	private final int[] slots;
+	private long total;
+
+	/** @param width counters per row, rounded up to a power of two */
+	public CountMinSketch(final int width, final int depth) {
+		if (width < 1 || depth < 1) {
+			throw new IllegalArgumentException("width and depth must be positive");
+		}
+		this.width = Integer.highestOneBit(Math.max(2, width) * 2 - 1);
+		this.depth = depth;
+		this.mask = this.width - 1;
+		this.counters = new int[this.width * depth];
+		this.slots = new int[depth];
+	}
+
+	/** Counts the key once more and returns its new estimate. */
+	public long add(final long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32) | 1;
+		int min = Integer.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			int at = row * width + ((h1 + row * h2) & mask);
+			slots[row] = at;
+			min = Math.min(min, counters[at]);
+		}
+		int estimate = min == Integer.MAX_VALUE ? min : min + 1;
+		for (int row = 0; row < depth; row++) {
+			if (counters[slots[row]] < estimate) {
+				counters[slots[row]] = estimate;
+			}
+		}
+		total++;
+		return estimate;
+	}
+
+	public long estimate(final long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32) | 1;
+		int min = Integer.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			min = Math.min(min, counters[row * width + ((h1 + row * h2) & mask)]);
+		}
+		return min;
+	}
+
+	/** Keys counted since the last clear, including repeats. */
+	public long getTotal() {
+		return total;
+	}
+
+	public void clear() {
+		Arrays.fill(counters, 0);
+		total = 0;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public int getMemoryBytes() {
+		return counters.length * 4;
+	}
+
+	/** FNV-1a over the key's chars followed by a 64-bit finalizer, without encoding the String. */
+	public static long hash(final String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+}
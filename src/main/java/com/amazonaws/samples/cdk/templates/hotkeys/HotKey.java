@@ -0,0 +1,41 @@
+package com.amazonaws.samples.cdk.templates.hotkeys;
+
+/** One of the heaviest keys of a window: its estimated record count and the shard it was last seen on. */
+public class HotKey {
+
+	private final String key;
+	private final String shardId;
+	private final long records;
+	private final double share;
+
+	public HotKey(final String key, final String shardId, final long records, final double share) {
+		this.key = key;
+		this.shardId = shardId;
+		this.records = records;
+		this.share = share;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public String getShardId() {
+		return shardId;
+	}
+
+	/** The count-min estimate, never below the true count. */
+	public long getRecords() {
+		return records;
+	}
+
+	/** records over all records of the window. */
+	public double getShare() {
+		return share;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s@%s=%.1f%%", key, shardId, share * 100);
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.amazonaws.samples.cdk.templates.hotkeys;
+
+public class HotKeyAdvice {
+
+	public enum Action {
+		NONE,
+		/** Spread the key over several partition keys, e.g. orderId + "#" + n. */
+		SALT_KEY,
+		/** Split the hot shard or add shards. */
+		RESHARD
+	}
+
+	private final Action action;
+	private final String target;
+	private final String reason;
+
+	public HotKeyAdvice(final Action action, final String target, final String reason) {
+		this.action = action;
+		this.target = target;
+		this.reason = reason;
+	}
+
+	static HotKeyAdvice none(final String reason) {
+		return new HotKeyAdvice(Action.NONE, null, reason);
+	}
+
+	public boolean isActionable() {
+		return action != Action.NONE;
+	}
+
+	public Action getAction() {
+		return action;
+	}
+
+	/** The key to salt or the shard to split; null for NONE. */
+	public String getTarget() {
+		return target;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	@Override
+	public String toString() {
+		return action + (target == null ? "" : " " + target) + " (" + reason + ")";
+	}
+
+}
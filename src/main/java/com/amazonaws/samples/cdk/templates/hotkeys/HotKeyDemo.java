@@ -0,0 +1,120 @@
+package com.amazonaws.samples.cdk.templates.hotkeys;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.amazonaws.samples.cdk.templates.producer.InMemoryRecordTransport;
+import com.amazonaws.samples.cdk.templates.producer.OrderProducer;
+import com.amazonaws.samples.cdk.templates.producer.OrderRecord;
+import com.amazonaws.samples.cdk.templates.producer.ShardMap;
+import com.amazonaws.samples.cdk.templates.producer.SyntheticOrderGenerator;
+
+/**
+ * Runs synthetic orders through an OrderProducer with a HotKeyTracker in
+ * three shapes and prints each window's report:
+ *
+ *   uniform    orderIds as SyntheticOrderGenerator makes them
+ *   hot key    hotShare of the records carry one orderId (a flash sale)
+ *   hot shard  hotShare of the records carry many orderIds that all hash to
+ *              the first shard
+ *
+ * and checks the advice is NONE, SALT_KEY and RESHARD. It then times
+ * HotKeyTracker.add alone over keys drawn from a million orderIds and
+ * reports ns and bytes allocated per record.
+ *
+ * Usage: HotKeyDemo [--records 200000] [--shards 8] [--hot-share 0.2]
+ */
+public class HotKeyDemo {
+
+	public static void main(final String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		int records = Integer.parseInt(options.getOrDefault("records", "200000"));
+		int shards = Integer.parseInt(options.getOrDefault("shards", "8"));
+		double hotShare = Double.parseDouble(options.getOrDefault("hot-share", "0.2"));
+
+		ShardMap shardMap = ShardMap.uniform(shards);
+		String firstShard = shardMap.getShards().get(0).getShardId();
+		List<Integer> firstShardKeys = new ArrayList<Integer>();
+		for (int orderId = 1_000_000; firstShardKeys.size() < 10000; orderId++) {
+			if (firstShard.equals(shardMap.shardFor(Integer.toString(orderId), null))) {
+				firstShardKeys.add(orderId);
+			}
+		}
+
+		check("uniform", run(records, shards, 0, null), HotKeyAdvice.Action.NONE);
+		check("hot key", run(records, shards, hotShare, null), HotKeyAdvice.Action.SALT_KEY);
+		check("hot shard", run(records, shards, hotShare, firstShardKeys), HotKeyAdvice.Action.RESHARD);
+
+		HotKeyTracker tracker = new HotKeyTracker(Long.MAX_VALUE / 2);
+		String[] keys = new String[1 << 16];
+		String[] shardIds = new String[keys.length];
+		Random random = new Random(7);
+		for (int i = 0; i < keys.length; i++) {
+			//a tenth of the stream on ten keys, the rest spread over a million
+			int orderId = random.nextInt(10) == 0 ? random.nextInt(10) : random.nextInt(1_000_000);
+			keys[i] = Integer.toString(orderId);
+			shardIds[i] = shardMap.getShards().get(orderId % shards).getShardId();
+		}
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < keys.length; i++) {
+				tracker.add(keys[i], shardIds[i]);
+			}
+		}
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		for (int round = 0; round < 50; round++) {
+			for (int i = 0; i < keys.length; i++) {
+				tracker.add(keys[i], shardIds[i]);
+			}
+		}
+		long nanos = System.nanoTime() - start;
+		long bytes = allocatedBytes() - allocatedBefore;
+		HotKeyReport report = tracker.report(new ArrayList<String>(), System.currentTimeMillis());
+		System.out.printf("cost      %.1f ns/record, %.2f bytes/record, %d bytes fixed; top %s%n", (double) nanos / (50L * keys.length),
+				(double) bytes / (50L * keys.length), tracker.getMemoryBytes(), report.getTopKeys().get(0));
+	}
+
+	private static HotKeyReport run(final int records, final int shards, final double hotShare, final List<Integer> hotKeys)
+			throws Exception {
+		final List<HotKeyReport> reports = new ArrayList<HotKeyReport>();
+		OrderProducer producer = OrderProducer.Builder.create()
+				.transport(new InMemoryRecordTransport(shards))
+				.hotKeyTracker(new HotKeyTracker(3600 * 1000L))
+				.hotKeyListener(reports::add)
+				.build();
+		SyntheticOrderGenerator generator = new SyntheticOrderGenerator(42, 3, 1000);
+		Random random = new Random(42);
+		for (OrderRecord order : generator.nextRecords(records)) {
+			if (random.nextDouble() < hotShare) {
+				order.setOrderId(hotKeys == null ? 424242 : hotKeys.get(random.nextInt(hotKeys.size())));
+			}
+			producer.put(order);
+		}
+		producer.reportHotKeys();
+		producer.awaitClose();
+		return reports.get(0);
+	}
+
+	private static void check(final String name, final HotKeyReport report, final HotKeyAdvice.Action expected) {
+		System.out.printf("%-9s %s%n", name, report);
+		if (report.getAdvice().getAction() != expected) {
+			throw new IllegalStateException(name + ": expected " + expected + ", got " + report.getAdvice());
+		}
+	}
+
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.amazonaws.samples.cdk.templates.hotkeys;
+
+import java.util.List;
+
+/**
+ * Turns a window's heaviest keys and shard loads into advice:
+ *
+ *   SALT_KEY  one key takes more than maxKeyRecordsPerSecond, or is at least
+ *             dominantKeyShare of a shard that is skewThreshold times the
+ *             mean shard. A key always hashes to one shard and one table
+ *             partition, so only more keys spread it.
+ *   RESHARD   a shard is skewThreshold times the mean across many keys;
+ *             splitting its hash range divides them.
+ *
+ * The default per-key limit of 1000 records/s is both a shard's write
+ * limit and a DynamoDB partition's 1000 WCU for items up to 1 KB. Windows
+ * with fewer than minRecords records get NONE.
+ */
+public class HotKeyPolicy {
+
+	private final double skewThreshold;
+	private final double dominantKeyShare;
+	private final double maxKeyRecordsPerSecond;
+	private final long minRecords;
+
+	public HotKeyPolicy() {
+		this(2.0, 0.5, 1000, 1000);
+	}
+
+	public HotKeyPolicy(final double skewThreshold, final double dominantKeyShare, final double maxKeyRecordsPerSecond,
+			final long minRecords) {
+		if (skewThreshold < 1 || dominantKeyShare <= 0 || dominantKeyShare > 1 || maxKeyRecordsPerSecond <= 0) {
+			throw new IllegalArgumentException("invalid hot key thresholds");
+		}
+		this.skewThreshold = skewThreshold;
+		this.dominantKeyShare = dominantKeyShare;
+		this.maxKeyRecordsPerSecond = maxKeyRecordsPerSecond;
+		this.minRecords = minRecords;
+	}
+
+	/** @param topKeys heaviest first */
+	public HotKeyAdvice advise(final long windowMillis, final long records, final List<HotKey> topKeys, final String hottestShard,
+			final long hottestShardRecords, final double shardSkew) {
+		if (records < minRecords || topKeys.isEmpty()) {
+			return HotKeyAdvice.none("only " + records + " records in the window");
+		}
+		HotKey top = topKeys.get(0);
+		double perSecond = top.getRecords() * 1000.0 / Math.max(1, windowMillis);
+		if (perSecond > maxKeyRecordsPerSecond) {
+			return new HotKeyAdvice(HotKeyAdvice.Action.SALT_KEY, top.getKey(), String.format(
+					"%.0f records/s, over the %.0f/s a single key can take on one shard or table partition", perSecond, maxKeyRecordsPerSecond));
+		}
+		if (shardSkew < skewThreshold) {
+			return HotKeyAdvice.none(String.format("shard skew %.2fx is under %.2fx", shardSkew, skewThreshold));
+		}
+		for (HotKey key : topKeys) {
+			if (key.getShardId().equals(hottestShard)) {
+				if (key.getRecords() >= dominantKeyShare * hottestShardRecords) {
+					return new HotKeyAdvice(HotKeyAdvice.Action.SALT_KEY, key.getKey(), String.format(
+							"%.0f%% of %s, which takes %.2fx the mean shard; a split would move the key, not spread it",
+							100.0 * key.getRecords() / hottestShardRecords, hottestShard, shardSkew));
+				}
+				break;
+			}
+		}
+		return new HotKeyAdvice(HotKeyAdvice.Action.RESHARD, hottestShard, String.format(
+				"%.2fx the mean shard, spread over many keys", shardSkew));
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.amazonaws.samples.cdk.templates.hotkeys;
+
+import java.util.List;
+
+import com.amazonaws.samples.cdk.templates.metrics.EmfMetrics;
+import com.amazonaws.samples.cdk.templates.metrics.MetricUnit;
+
+/** What a HotKeyTracker saw in one window. */
+public class HotKeyReport {
+
+	private final long windowMillis;
+	private final long records;
+	private final List<HotKey> topKeys;
+	private final int shardCount;
+	private final String hottestShard;
+	private final long hottestShardRecords;
+	private final double shardSkew;
+	private final HotKeyAdvice advice;
+
+	public HotKeyReport(final long windowMillis, final long records, final List<HotKey> topKeys, final int shardCount,
+			final String hottestShard, final long hottestShardRecords, final double shardSkew, final HotKeyAdvice advice) {
+		this.windowMillis = windowMillis;
+		this.records = records;
+		this.topKeys = topKeys;
+		this.shardCount = shardCount;
+		this.hottestShard = hottestShard;
+		this.hottestShardRecords = hottestShardRecords;
+		this.shardSkew = shardSkew;
+		this.advice = advice;
+	}
+
+	/**
+	 * HotKeyTopRecords, HotKeyTopShare and ShardSkew as metrics, a 0/1
+	 * SaltRecommended and ReshardRecommended to alarm on, and the keys and
+	 * advice as the HotKeys and HotKeyAdvice properties.
+	 */
+	public void addTo(final EmfMetrics metrics) {
+		HotKey top = topKeys.isEmpty() ? null : topKeys.get(0);
+		metrics.value("HotKeyTopRecords", top == null ? 0 : top.getRecords(), MetricUnit.COUNT);
+		metrics.value("HotKeyTopShare", top == null ? 0.0 : top.getShare() * 100, MetricUnit.PERCENT);
+		metrics.value("ShardSkew", shardSkew, MetricUnit.NONE);
+		metrics.value("SaltRecommended", advice.getAction() == HotKeyAdvice.Action.SALT_KEY ? 1 : 0, MetricUnit.COUNT);
+		metrics.value("ReshardRecommended", advice.getAction() == HotKeyAdvice.Action.RESHARD ? 1 : 0, MetricUnit.COUNT);
+		metrics.property("HotKeys", keys());
+		metrics.property("HotKeyAdvice", advice.toString());
+	}
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	public long getRecords() {
+		return records;
+	}
+
+	/** Heaviest first. */
+	public List<HotKey> getTopKeys() {
+		return topKeys;
+	}
+
+	public int getShardCount() {
+		return shardCount;
+	}
+
+	public String getHottestShard() {
+		return hottestShard;
+	}
+
+	public long getHottestShardRecords() {
+		return hottestShardRecords;
+	}
+
+	/** Records of the hottest shard over the mean of all shards; 1 when the load is even. */
+	public double getShardSkew() {
+		return shardSkew;
+	}
+
+	public HotKeyAdvice getAdvice() {
+		return advice;
+	}
+
+	private String keys() {
+		StringBuilder keys = new StringBuilder();
+		for (HotKey key : topKeys) {
+			keys.append(keys.length() == 0 ? "" : ",").append(key);
+		}
+		return keys.toString();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("hot keys: %d records in %d ms over %d shards, skew %.2fx (%s), top %s; %s", records, windowMillis,
+				shardCount, shardSkew, hottestShard, keys(), advice);
+	}
+
+}
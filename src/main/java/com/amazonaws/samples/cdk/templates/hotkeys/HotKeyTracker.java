@@ -0,0 +1,184 @@
+package com.amazonaws.samples.cdk.templates.hotkeys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming heavy hitters per window: a CountMinSketch estimates every key's
+ * count, and the topKeys keys with the highest estimates are kept with the
+ * shard each was seen on. Records per shard are counted exactly. report
+ * returns the window's heaviest keys, the shard skew (hottest shard over the
+ * mean) and a HotKeyPolicy's advice, then starts the next window.
+ *
+ * Memory is fixed: the sketch (32 KB with the defaults), topKeys entries
+ * and a counter per shard, at most MAX_SHARDS. add hashes the key without
+ * encoding it, updates depth counters and scans the top keys, and only
+ * allocates the first time a window sees a shard.
+ *
+ * Not thread-safe; OrderProducer calls it under its lock, the sink handler
+ * from its one thread.
+ */
+public class HotKeyTracker {
+
+	public static final int MAX_SHARDS = 1024;
+
+	private final long windowMillis;
+	private final HotKeyPolicy policy;
+	private final CountMinSketch sketch;
+
+	private final String[] keys;
+	private final long[] hashes;
+	private final long[] counts;
+	private final String[] keyShards;
+	private int size;
+	private long lightestCount;
+
+	private final Map<String, long[]> shardRecords = new HashMap<String, long[]>();
+	private long windowStart;
+
+	public HotKeyTracker(final long windowMillis) {
+		this(windowMillis, 10, 2048, 4, new HotKeyPolicy());
+	}
+
+	public HotKeyTracker(final long windowMillis, final int topKeys, final int width, final int depth, final HotKeyPolicy policy) {
+		if (windowMillis < 1 || topKeys < 1) {
+			throw new IllegalArgumentException("windowMillis and topKeys must be positive");
+		}
+		this.windowMillis = windowMillis;
+		this.policy = policy;
+		this.sketch = new CountMinSketch(width, depth);
+		this.keys = new String[topKeys];
+		this.hashes = new long[topKeys];
+		this.counts = new long[topKeys];
+		this.keyShards = new String[topKeys];
+		this.windowStart = System.currentTimeMillis();
+	}
+
+	/** From HOT_KEY_WINDOW_SECONDS (default 60), or null when it is 0. */
+	public static HotKeyTracker fromEnvironment() {
+		String seconds = System.getenv("HOT_KEY_WINDOW_SECONDS");
+		long windowSeconds = seconds == null || seconds.isEmpty() ? 60 : Long.parseLong(seconds);
+		return windowSeconds <= 0 ? null : new HotKeyTracker(windowSeconds * 1000);
+	}
+
+	public void add(final String key, final String shardId) {
+		String shardKey = shardId == null ? "" : shardId;
+		long hash = CountMinSketch.hash(key);
+		long estimate = sketch.add(hash);
+
+		long[] shard = shardRecords.get(shardKey);
+		if (shard == null && shardRecords.size() < MAX_SHARDS) {
+			shard = new long[1];
+			shardRecords.put(shardKey, shard);
+		}
+		if (shard != null) {
+			shard[0]++;
+		}
+
+		//a key already among the top keys always estimates above its last count, so colder keys stop here
+		if (size == keys.length && estimate <= lightestCount) {
+			return;
+		}
+		int lightest = -1;
+		for (int i = 0; i < size; i++) {
+			if (hashes[i] == hash && keys[i].equals(key)) {
+				counts[i] = estimate;
+				keyShards[i] = shardKey;
+				updateLightestCount();
+				return;
+			}
+			if (lightest < 0 || counts[i] < counts[lightest]) {
+				lightest = i;
+			}
+		}
+		int slot = size < keys.length ? size++ : lightest;
+		keys[slot] = key;
+		hashes[slot] = hash;
+		counts[slot] = estimate;
+		keyShards[slot] = shardKey;
+		updateLightestCount();
+	}
+
+	public boolean isDue(final long nowMillis) {
+		return nowMillis - windowStart >= windowMillis;
+	}
+
+	/**
+	 * Reports the window up to nowMillis and starts the next one.
+	 *
+	 * @param knownShards shards that count as idle when no record reached
+	 *        them (the stream's open shards); may be empty
+	 */
+	public HotKeyReport report(final Collection<String> knownShards, final long nowMillis) {
+		long records = sketch.getTotal();
+		long elapsed = Math.max(1, nowMillis - windowStart);
+
+		Map<String, Long> shards = new LinkedHashMap<String, Long>();
+		for (String shardId : knownShards) {
+			shards.put(shardId, 0L);
+		}
+		for (Map.Entry<String, long[]> shard : shardRecords.entrySet()) {
+			shards.put(shard.getKey(), shard.getValue()[0]);
+		}
+		String hottestShard = null;
+		long hottestShardRecords = 0;
+		for (Map.Entry<String, Long> shard : shards.entrySet()) {
+			if (hottestShard == null || shard.getValue() > hottestShardRecords) {
+				hottestShard = shard.getKey();
+				hottestShardRecords = shard.getValue();
+			}
+		}
+		double skew = records == 0 || shards.isEmpty() ? 1.0 : hottestShardRecords / ((double) records / shards.size());
+
+		List<HotKey> topKeys = new ArrayList<HotKey>(size);
+		for (int i = 0; i < size; i++) {
+			topKeys.add(new HotKey(keys[i], keyShards[i], counts[i], records == 0 ? 0 : (double) counts[i] / records));
+		}
+		Collections.sort(topKeys, new Comparator<HotKey>() {
+			@Override
+			public int compare(final HotKey a, final HotKey b) {
+				return Long.compare(b.getRecords(), a.getRecords());
+			}
+		});
+
+		HotKeyAdvice advice = policy.advise(elapsed, records, topKeys, hottestShard, hottestShardRecords, skew);
+		HotKeyReport report = new HotKeyReport(elapsed, records, Collections.unmodifiableList(topKeys), shards.size(), hottestShard,
+				hottestShardRecords, skew, advice);
+
+		sketch.clear();
+		Arrays.fill(keys, null);
+		Arrays.fill(keyShards, null);
+		size = 0;
+		lightestCount = 0;
+		shardRecords.clear();
+		windowStart = nowMillis;
+		return report;
+	}
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	private void updateLightestCount() {
+		if (size == keys.length) {
+			long lightest = Long.MAX_VALUE;
+			for (int i = 0; i < size; i++) {
+				lightest = Math.min(lightest, counts[i]);
+			}
+			lightestCount = lightest;
+		}
+	}
+
+	/** The sketch and top key arrays; shard counters come on top. */
+	public int getMemoryBytes() {
+		return sketch.getMemoryBytes() + keys.length * (8 + 8 + 2 * 4);
+	}
+
+}
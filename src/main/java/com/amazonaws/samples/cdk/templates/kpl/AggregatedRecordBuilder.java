@@ -0,0 +1,206 @@
+package com.amazonaws.samples.cdk.templates.kpl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs user records into a single KPL-compatible aggregated record. Size is
+ * tracked incrementally so tryAdd can refuse a record that would push the
+ * aggregate over maxBytes. A builder holding one record emits it as-is rather
+ * than paying the aggregation overhead.
+ */
+public class AggregatedRecordBuilder {
+
+	public static final int KINESIS_MAX_RECORD_BYTES = 1024 * 1024;
+
+	private final int maxBytes;
+
+	private final List<String> partitionKeys = new ArrayList<String>();
+	private final Map<String, Integer> partitionKeyIndex = new HashMap<String, Integer>();
+	private final List<String> explicitHashKeys = new ArrayList<String>();
+	private final Map<String, Integer> explicitHashKeyIndex = new HashMap<String, Integer>();
+	private final List<UserRecord> records = new ArrayList<UserRecord>();
+	private final List<int[]> recordIndexes = new ArrayList<int[]>();
+
+	private int messageBytes;
+
+	public AggregatedRecordBuilder(final int maxBytes) {
+		if (maxBytes > KINESIS_MAX_RECORD_BYTES) {
+			throw new IllegalArgumentException("maxBytes exceeds the Kinesis record limit");
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	public boolean tryAdd(final UserRecord record) {
+		String pk = record.getPartitionKey();
+		String ehk = record.getExplicitHashKey();
+
+		int added = 0;
+		Integer pkIndex = partitionKeyIndex.get(pk);
+		if (pkIndex == null) {
+			pkIndex = partitionKeys.size();
+			added += AggregationFormat.lengthDelimitedSize(utf8Length(pk));
+		}
+		Integer ehkIndex = ehk == null ? null : explicitHashKeyIndex.get(ehk);
+		if (ehk != null && ehkIndex == null) {
+			ehkIndex = explicitHashKeys.size();
+			added += AggregationFormat.lengthDelimitedSize(utf8Length(ehk));
+		}
+		added += AggregationFormat.lengthDelimitedSize(recordMessageSize(pkIndex, ehkIndex, record.getData().length));
+
+		//the outer partition key is the first record's and counts against the 1 MiB limit
+		String outerKey = records.isEmpty() ? pk : records.get(0).getPartitionKey();
+		int total = AggregationFormat.MAGIC.length + messageBytes + added + AggregationFormat.DIGEST_LENGTH + utf8Length(outerKey);
+		if (!records.isEmpty() && total > maxBytes) {
+			return false;
+		}
+		if (records.isEmpty() && record.getData().length + utf8Length(pk) > KINESIS_MAX_RECORD_BYTES) {
+			throw new IllegalArgumentException("record exceeds the Kinesis record limit");
+		}
+
+		if (pkIndex == partitionKeys.size()) {
+			partitionKeys.add(pk);
+			partitionKeyIndex.put(pk, pkIndex);
+		}
+		if (ehkIndex != null && ehkIndex == explicitHashKeys.size()) {
+			explicitHashKeys.add(ehk);
+			explicitHashKeyIndex.put(ehk, ehkIndex);
+		}
+		records.add(record);
+		recordIndexes.add(new int[] { pkIndex, ehkIndex == null ? -1 : ehkIndex });
+		messageBytes += added;
+		return true;
+	}
+
+	public boolean isEmpty() {
+		return records.isEmpty();
+	}
+
+	public int getRecordCount() {
+		return records.size();
+	}
+
+	/** Bytes the built record will occupy, including its partition key. */
+	public int getSizeBytes() {
+		if (records.isEmpty()) {
+			return 0;
+		}
+		UserRecord first = records.get(0);
+		if (records.size() == 1) {
+			return first.getData().length + utf8Length(first.getPartitionKey());
+		}
+		return AggregationFormat.MAGIC.length + messageBytes + AggregationFormat.DIGEST_LENGTH + utf8Length(first.getPartitionKey());
+	}
+
+	public UserRecord build() {
+		if (records.isEmpty()) {
+			throw new IllegalStateException("no records to aggregate");
+		}
+		UserRecord first = records.get(0);
+		if (records.size() == 1) {
+			return first;
+		}
+
+		byte[] out = new byte[AggregationFormat.MAGIC.length + messageBytes + AggregationFormat.DIGEST_LENGTH];
+		System.arraycopy(AggregationFormat.MAGIC, 0, out, 0, AggregationFormat.MAGIC.length);
+		ProtoWriter writer = new ProtoWriter(out, AggregationFormat.MAGIC.length);
+
+		for (String pk : partitionKeys) {
+			writer.bytesField(1, pk.getBytes(StandardCharsets.UTF_8));
+		}
+		for (String ehk : explicitHashKeys) {
+			writer.bytesField(2, ehk.getBytes(StandardCharsets.UTF_8));
+		}
+		for (int i = 0; i < records.size(); i++) {
+			int[] indexes = recordIndexes.get(i);
+			Integer ehkIndex = indexes[1] < 0 ? null : indexes[1];
+			byte[] data = records.get(i).getData();
+			writer.varint(AggregationFormat.tag(3, AggregationFormat.WIRE_LENGTH_DELIMITED));
+			writer.varint(recordMessageSize(indexes[0], ehkIndex, data.length));
+			writer.varintField(1, indexes[0]);
+			if (ehkIndex != null) {
+				writer.varintField(2, ehkIndex);
+			}
+			writer.bytesField(3, data);
+		}
+
+		MessageDigest md5 = AggregationFormat.md5();
+		md5.update(out, AggregationFormat.MAGIC.length, messageBytes);
+		System.arraycopy(md5.digest(), 0, out, AggregationFormat.MAGIC.length + messageBytes, AggregationFormat.DIGEST_LENGTH);
+
+		return new UserRecord(first.getPartitionKey(), first.getExplicitHashKey(), out);
+	}
+
+	public void reset() {
+		partitionKeys.clear();
+		partitionKeyIndex.clear();
+		explicitHashKeys.clear();
+		explicitHashKeyIndex.clear();
+		records.clear();
+		recordIndexes.clear();
+		messageBytes = 0;
+	}
+
+	private static int recordMessageSize(final int pkIndex, final Integer ehkIndex, final int dataLength) {
+		int size = 1 + AggregationFormat.varintSize(pkIndex);
+		if (ehkIndex != null) {
+			size += 1 + AggregationFormat.varintSize(ehkIndex);
+		}
+		return size + AggregationFormat.lengthDelimitedSize(dataLength);
+	}
+
+	private static int utf8Length(final String s) {
+		int length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				length += 1;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c)) {
+				length += 4;
+				i++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	private static final class ProtoWriter {
+
+		private final byte[] buf;
+		private int pos;
+
+		ProtoWriter(final byte[] buf, final int pos) {
+			this.buf = buf;
+			this.pos = pos;
+		}
+
+		void varint(long value) {
+			while ((value & ~0x7FL) != 0) {
+				buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buf[pos++] = (byte) value;
+		}
+
+		void varintField(final int field, final long value) {
+			varint(AggregationFormat.tag(field, AggregationFormat.WIRE_VARINT));
+			varint(value);
+		}
+
+		void bytesField(final int field, final byte[] value) {
+			varint(AggregationFormat.tag(field, AggregationFormat.WIRE_LENGTH_DELIMITED));
+			varint(value.length);
+			System.arraycopy(value, 0, buf, pos, value.length);
+			pos += value.length;
+		}
+
+	}
+
+}
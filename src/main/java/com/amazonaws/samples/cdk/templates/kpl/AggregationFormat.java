@@ -0,0 +1,63 @@
+package com.amazonaws.samples.cdk.templates.kpl;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Constants and protobuf helpers for the KPL aggregated record format:
+ * 4 byte magic, protobuf AggregatedRecord message, 16 byte MD5 of the message.
+ *
+ * <pre>
+ * message AggregatedRecord {
+ *   repeated string partition_key_table     = 1;
+ *   repeated string explicit_hash_key_table = 2;
+ *   repeated Record records                 = 3;
+ * }
+ * message Record {
+ *   required uint64 partition_key_index     = 1;
+ *   optional uint64 explicit_hash_key_index = 2;
+ *   required bytes  data                    = 3;
+ *   repeated Tag    tags                    = 4;
+ * }
+ * </pre>
+ */
+final class AggregationFormat {
+
+	static final byte[] MAGIC = { (byte) 0xF3, (byte) 0x89, (byte) 0x9A, (byte) 0xC2 };
+	static final int DIGEST_LENGTH = 16;
+
+	static final int WIRE_VARINT = 0;
+	static final int WIRE_FIXED64 = 1;
+	static final int WIRE_LENGTH_DELIMITED = 2;
+	static final int WIRE_FIXED32 = 5;
+
+	private AggregationFormat() {
+	}
+
+	static int tag(final int field, final int wireType) {
+		return field << 3 | wireType;
+	}
+
+	static int varintSize(long value) {
+		int size = 1;
+		while ((value & ~0x7FL) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/** Encoded size of a length-delimited field with a single byte tag. */
+	static int lengthDelimitedSize(final int length) {
+		return 1 + varintSize(length) + length;
+	}
+
+	static MessageDigest md5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,196 @@
+package com.amazonaws.samples.cdk.templates.kpl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits a Kinesis record produced by AggregatedRecordBuilder (or the KPL) back
+ * into its user records. Anything without the magic prefix or with a digest
+ * mismatch is returned unchanged as a single record, so plain producers keep working.
+ */
+public final class Deaggregator {
+
+	private Deaggregator() {
+	}
+
+	public static boolean isAggregated(final ByteBuffer data) {
+		if (data.remaining() <= AggregationFormat.MAGIC.length + AggregationFormat.DIGEST_LENGTH) {
+			return false;
+		}
+		int start = data.position();
+		for (int i = 0; i < AggregationFormat.MAGIC.length; i++) {
+			if (data.get(start + i) != AggregationFormat.MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static List<UserRecord> deaggregate(final String partitionKey, final ByteBuffer data) {
+		if (!isAggregated(data)) {
+			return Collections.singletonList(new UserRecord(partitionKey, toArray(data)));
+		}
+
+		byte[] bytes = toArray(data);
+		int messageStart = AggregationFormat.MAGIC.length;
+		int messageEnd = bytes.length - AggregationFormat.DIGEST_LENGTH;
+
+		MessageDigest md5 = AggregationFormat.md5();
+		md5.update(bytes, messageStart, messageEnd - messageStart);
+		byte[] digest = md5.digest();
+		for (int i = 0; i < AggregationFormat.DIGEST_LENGTH; i++) {
+			if (digest[i] != bytes[messageEnd + i]) {
+				return Collections.singletonList(new UserRecord(partitionKey, bytes));
+			}
+		}
+
+		List<String> partitionKeys = new ArrayList<String>();
+		List<String> explicitHashKeys = new ArrayList<String>();
+		List<long[]> indexes = new ArrayList<long[]>();
+		List<byte[]> payloads = new ArrayList<byte[]>();
+
+		ProtoReader reader = new ProtoReader(bytes, messageStart, messageEnd);
+		while (reader.hasMore()) {
+			int tag = (int) reader.varint();
+			int field = tag >>> 3;
+			int wireType = tag & 0x7;
+			if (field == 1 && wireType == AggregationFormat.WIRE_LENGTH_DELIMITED) {
+				partitionKeys.add(reader.string());
+			} else if (field == 2 && wireType == AggregationFormat.WIRE_LENGTH_DELIMITED) {
+				explicitHashKeys.add(reader.string());
+			} else if (field == 3 && wireType == AggregationFormat.WIRE_LENGTH_DELIMITED) {
+				int length = (int) reader.varint();
+				ProtoReader record = reader.slice(length);
+				long[] index = { -1, -1 };
+				byte[] payload = null;
+				while (record.hasMore()) {
+					int rtag = (int) record.varint();
+					int rfield = rtag >>> 3;
+					int rwireType = rtag & 0x7;
+					if (rfield == 1 && rwireType == AggregationFormat.WIRE_VARINT) {
+						index[0] = record.varint();
+					} else if (rfield == 2 && rwireType == AggregationFormat.WIRE_VARINT) {
+						index[1] = record.varint();
+					} else if (rfield == 3 && rwireType == AggregationFormat.WIRE_LENGTH_DELIMITED) {
+						payload = record.bytes();
+					} else {
+						record.skip(rwireType);
+					}
+				}
+				if (index[0] < 0 || payload == null) {
+					throw new IllegalArgumentException("aggregated record entry is missing partition key index or data");
+				}
+				indexes.add(index);
+				payloads.add(payload);
+			} else {
+				reader.skip(wireType);
+			}
+		}
+
+		List<UserRecord> records = new ArrayList<UserRecord>(payloads.size());
+		for (int i = 0; i < payloads.size(); i++) {
+			long[] index = indexes.get(i);
+			String ehk = index[1] < 0 ? null : explicitHashKeys.get((int) index[1]);
+			records.add(new UserRecord(partitionKeys.get((int) index[0]), ehk, payloads.get(i)));
+		}
+		return records;
+	}
+
+	private static byte[] toArray(final ByteBuffer data) {
+		ByteBuffer buf = data.duplicate();
+		byte[] bytes = new byte[buf.remaining()];
+		buf.get(bytes);
+		return bytes;
+	}
+
+	private static final class ProtoReader {
+
+		private final byte[] buf;
+		private int pos;
+		private final int end;
+
+		ProtoReader(final byte[] buf, final int pos, final int end) {
+			this.buf = buf;
+			this.pos = pos;
+			this.end = end;
+		}
+
+		boolean hasMore() {
+			return pos < end;
+		}
+
+		long varint() {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				if (pos >= end) {
+					throw new IllegalArgumentException("truncated varint");
+				}
+				byte b = buf[pos++];
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IllegalArgumentException("malformed varint");
+		}
+
+		ProtoReader slice(final int length) {
+			checkLength(length);
+			ProtoReader slice = new ProtoReader(buf, pos, pos + length);
+			pos += length;
+			return slice;
+		}
+
+		byte[] bytes() {
+			int length = (int) varint();
+			checkLength(length);
+			byte[] value = new byte[length];
+			System.arraycopy(buf, pos, value, 0, length);
+			pos += length;
+			return value;
+		}
+
+		String string() {
+			int length = (int) varint();
+			checkLength(length);
+			String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+			pos += length;
+			return value;
+		}
+
+		void skip(final int wireType) {
+			switch (wireType) {
+			case AggregationFormat.WIRE_VARINT:
+				varint();
+				break;
+			case AggregationFormat.WIRE_FIXED64:
+				checkLength(8);
+				pos += 8;
+				break;
+			case AggregationFormat.WIRE_LENGTH_DELIMITED:
+				int length = (int) varint();
+				checkLength(length);
+				pos += length;
+				break;
+			case AggregationFormat.WIRE_FIXED32:
+				checkLength(4);
+				pos += 4;
+				break;
+			default:
+				throw new IllegalArgumentException("unsupported wire type " + wireType);
+			}
+		}
+
+		private void checkLength(final int length) {
+			if (length < 0 || pos + length > end) {
+				throw new IllegalArgumentException("truncated field");
+			}
+		}
+
+	}
+
+}
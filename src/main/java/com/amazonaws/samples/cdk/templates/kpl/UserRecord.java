@@ -0,0 +1,32 @@
+package com.amazonaws.samples.cdk.templates.kpl;
+
+public class UserRecord {
+
+	private final String partitionKey;
+	private final String explicitHashKey;
+	private final byte[] data;
+
+	public UserRecord(final String partitionKey, final byte[] data) {
+		this(partitionKey, null, data);
+	}
+
+	public UserRecord(final String partitionKey, final String explicitHashKey, final byte[] data) {
+		this.partitionKey = partitionKey;
+		this.explicitHashKey = explicitHashKey;
+		this.data = data;
+	}
+
+	public String getPartitionKey() {
+		return partitionKey;
+	}
+
+	/** Null when the record is routed by partition key hash. */
+	public String getExplicitHashKey() {
+		return explicitHashKey;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.amazonaws.samples.cdk.templates.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Aggregates counters, values and latency histograms in memory and writes
+ * them as a single CloudWatch Embedded Metric Format line on flush. Lambda
+ * ships stdout to CloudWatch Logs, which extracts the metrics, so there is no
+ * PutMetricData call and no per-record log line.
+ *
+ * Histograms are reported as one metric in the EMF Values/Counts form, with
+ * Min, Max, Count and Sum, so CloudWatch keeps the distribution and computes
+ * percentile statistics (p50, p99) across invocations. Per-batch percentiles
+ * would only average. CloudWatch takes at most 100 values per metric per
+ * line, so busier histograms merge neighbouring buckets.
+ * Properties are written next to the metrics without becoming metrics, for
+ * high-cardinality context such as a key name that Logs Insights can query.
+ * The output goes to a Consumer so the serialized document can be inspected
+ * without a Lambda runtime.
+ */
+public class EmfMetrics {
+
+	static final int MAX_HISTOGRAM_VALUES = 100;
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final String namespace;
+	private final Map<String, String> dimensions;
+
+	private final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+	private final Map<String, Number> values = new LinkedHashMap<String, Number>();
+	private final Map<String, MetricUnit> valueUnits = new LinkedHashMap<String, MetricUnit>();
+	private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<String, LatencyHistogram>();
+	private final Map<String, MetricUnit> histogramUnits = new LinkedHashMap<String, MetricUnit>();
+	private final Map<String, String> properties = new LinkedHashMap<String, String>();
+
+	public EmfMetrics(final String namespace, final Map<String, String> dimensions) {
+		this.namespace = namespace;
+		this.dimensions = new LinkedHashMap<String, String>(dimensions);
+	}
+
+	public void count(final String name, final long delta) {
+		Long current = counters.get(name);
+		counters.put(name, current == null ? delta : current + delta);
+	}
+
+	/** A single per-flush value such as a batch's total decode time; last value wins. */
+	public void value(final String name, final long value, final MetricUnit unit) {
+		values.put(name, value);
+		valueUnits.put(name, unit);
+	}
+
+	/** A fractional per-flush value such as a ratio; last value wins. */
+	public void value(final String name, final double value, final MetricUnit unit) {
+		values.put(name, value);
+		valueUnits.put(name, unit);
+	}
+
+	/** A string written with the metrics but not defined as one; last value wins. */
+	public void property(final String name, final String value) {
+		properties.put(name, value);
+	}
+
+	/** Adds a sample to the named histogram. */
+	public void record(final String name, final long value, final MetricUnit unit) {
+		LatencyHistogram histogram = histograms.get(name);
+		if (histogram == null) {
+			histogram = new LatencyHistogram();
+			histograms.put(name, histogram);
+			histogramUnits.put(name, unit);
+		}
+		histogram.record(value);
+	}
+
+	public boolean isEmpty() {
+		return counters.isEmpty() && values.isEmpty() && histograms.isEmpty();
+	}
+
+	public String serialize(final long timestampMillis) {
+		ObjectNode root = MAPPER.createObjectNode();
+		ObjectNode aws = root.putObject("_aws");
+		aws.put("Timestamp", timestampMillis);
+		ObjectNode directive = aws.putArray("CloudWatchMetrics").addObject();
+		directive.put("Namespace", namespace);
+		ArrayNode dimensionSet = directive.putArray("Dimensions").addArray();
+		for (Map.Entry<String, String> dimension : dimensions.entrySet()) {
+			dimensionSet.add(dimension.getKey());
+			root.put(dimension.getKey(), dimension.getValue());
+		}
+		ArrayNode metrics = directive.putArray("Metrics");
+
+		for (Map.Entry<String, Long> counter : counters.entrySet()) {
+			define(metrics, counter.getKey(), MetricUnit.COUNT);
+			root.put(counter.getKey(), counter.getValue());
+		}
+		for (Map.Entry<String, Number> value : values.entrySet()) {
+			define(metrics, value.getKey(), valueUnits.get(value.getKey()));
+			if (value.getValue() instanceof Double) {
+				root.put(value.getKey(), value.getValue().doubleValue());
+			} else {
+				root.put(value.getKey(), value.getValue().longValue());
+			}
+		}
+		for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+			String name = entry.getKey();
+			LatencyHistogram histogram = entry.getValue();
+			define(metrics, name, histogramUnits.get(name));
+			long[][] distribution = histogram.distribution(MAX_HISTOGRAM_VALUES);
+			ObjectNode value = root.putObject(name);
+			ArrayNode values = value.putArray("Values");
+			ArrayNode counts = value.putArray("Counts");
+			for (int i = 0; i < distribution[0].length; i++) {
+				values.add(distribution[0][i]);
+				counts.add(distribution[1][i]);
+			}
+			value.put("Max", histogram.getMax());
+			value.put("Min", histogram.getMin());
+			value.put("Count", histogram.getCount());
+			value.put("Sum", histogram.getSum());
+		}
+		for (Map.Entry<String, String> property : properties.entrySet()) {
+			root.put(property.getKey(), property.getValue());
+		}
+		return root.toString();
+	}
+
+	/** Writes one EMF line if anything was recorded, then starts over. */
+	public void flush(final Consumer<String> out) {
+		if (!isEmpty()) {
+			out.accept(serialize(System.currentTimeMillis()));
+		}
+		reset();
+	}
+
+	public void reset() {
+		counters.clear();
+		values.clear();
+		valueUnits.clear();
+		histograms.clear();
+		histogramUnits.clear();
+		properties.clear();
+	}
+
+	private static void define(final ArrayNode metrics, final String name, final MetricUnit unit) {
+		metrics.addObject().put("Name", name).put("Unit", unit.getCloudWatchName());
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.amazonaws.samples.cdk.templates.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size log-linear histogram for non-negative long values. Values below
+ * 64 are exact; above that each power of two is split into 32 buckets, so
+ * percentiles are within ~3% of the true value. Recording is a couple of
+ * shifts and an array increment, cheap enough for per-record use.
+ */
+public class LatencyHistogram {
+
+	private static final int LINEAR = 64;
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = LINEAR + (63 - 6 + 1) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count;
+	private long sum;
+	private long min = Long.MAX_VALUE;
+	private long max;
+
+	public void record(final long value) {
+		long v = Math.max(0, value);
+		counts[indexOf(v)]++;
+		count++;
+		sum += v;
+		min = Math.min(min, v);
+		max = Math.max(max, v);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getSum() {
+		return sum;
+	}
+
+	public long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	/** Upper bound of the bucket holding the given percentile (0-100), clamped to the recorded max. */
+	public long percentile(final double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(max, upperBoundOf(i));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * The recorded values as {values, counts}: one value per non-empty bucket,
+	 * its upper bound clamped to the recorded max. With more than maxValues
+	 * non-empty buckets, neighbouring buckets are merged into the upper one.
+	 */
+	long[][] distribution(final int maxValues) {
+		int nonEmpty = 0;
+		for (long bucketCount : counts) {
+			if (bucketCount > 0) {
+				nonEmpty++;
+			}
+		}
+		int perValue = (nonEmpty + maxValues - 1) / maxValues;
+		int size = perValue == 0 ? 0 : (nonEmpty + perValue - 1) / perValue;
+		long[] values = new long[size];
+		long[] valueCounts = new long[size];
+		int value = 0;
+		int merged = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			if (counts[i] == 0) {
+				continue;
+			}
+			valueCounts[value] += counts[i];
+			values[value] = Math.min(max, upperBoundOf(i));
+			if (++merged == perValue) {
+				merged = 0;
+				value++;
+			}
+		}
+		return new long[][] { values, valueCounts };
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	static int indexOf(final long value) {
+		if (value < LINEAR) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR + (exponent - 6) * SUB_BUCKETS + subBucket;
+	}
+
+	static long upperBoundOf(final int index) {
+		if (index < LINEAR) {
+			return index;
+		}
+		int exponent = (index - LINEAR) / SUB_BUCKETS + 6;
+		long subBucket = (index - LINEAR) % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		long lower = (1L << exponent) + subBucket * width;
+		return lower + width - 1;
+	}
+
+}
@@ -0,0 +1,23 @@
+package com.amazonaws.samples.cdk.templates.metrics;
+
+/** CloudWatch units used by EmfMetrics. */
+public enum MetricUnit {
+
+	COUNT("Count"),
+	MILLISECONDS("Milliseconds"),
+	MICROSECONDS("Microseconds"),
+	BYTES("Bytes"),
+	PERCENT("Percent"),
+	NONE("None");
+
+	private final String cloudWatchName;
+
+	MetricUnit(final String cloudWatchName) {
+		this.cloudWatchName = cloudWatchName;
+	}
+
+	public String getCloudWatchName() {
+		return cloudWatchName;
+	}
+
+}
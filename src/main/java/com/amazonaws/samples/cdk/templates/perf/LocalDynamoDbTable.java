@@ -0,0 +1,174 @@
+package com.amazonaws.samples.cdk.templates.perf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.amazonaws.samples.cdk.templates.sink.OrderItemMapper;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+/**
+ * In-process stand-in for the OrderEnriched table, enough of DynamoDbClient
+ * for ConditionalItemWriter and BatchItemWriter: PutItem with the writers'
+ * event_ts conditions, and BatchWriteItem puts.
+ *
+ * Provisioned write capacity is enforced per wall-clock second (1 WCU per
+ * started KB, failed conditions included). PutItem over capacity throws
+ * ProvisionedThroughputExceededException; BatchWriteItem hands the excess
+ * back as UnprocessedItems and throws only when nothing could be written.
+ * Burst capacity is not modelled, so short runs throttle the way a table
+ * that has used up its burst does. Every call waits latencyMillis first.
+ */
+public class LocalDynamoDbTable implements DynamoDbClient {
+
+	private static final String THROTTLED = "ProvisionedThroughputExceededException";
+
+	private final int writeCapacity;
+	private final long latencyMillis;
+	private final Consumer<Map<String, AttributeValue>> writeListener;
+	private final Map<String, Map<String, AttributeValue>> items = new HashMap<String, Map<String, AttributeValue>>();
+
+	private long second = -1;
+	private long secondUnits;
+	private long throttledRequests;
+	private long conditionFailures;
+	private long consumedUnits;
+
+	/** writeCapacity 0 behaves like an on-demand table; writeListener sees every item that was stored. */
+	public LocalDynamoDbTable(final int writeCapacity, final long latencyMillis, final Consumer<Map<String, AttributeValue>> writeListener) {
+		this.writeCapacity = writeCapacity;
+		this.latencyMillis = latencyMillis;
+		this.writeListener = writeListener;
+	}
+
+	@Override
+	public String serviceName() {
+		return DynamoDbClient.SERVICE_NAME;
+	}
+
+	@Override
+	public void close() {
+	}
+
+	@Override
+	public PutItemResponse putItem(final PutItemRequest request) {
+		pause();
+		Map<String, AttributeValue> item = request.item();
+		synchronized (this) {
+			if (!consume(OrderItemMapper.writeUnitsOf(item))) {
+				throttledRequests++;
+				throw ProvisionedThroughputExceededException.builder().message("Throughput exceeds the table's provisioned write capacity")
+						.statusCode(400).awsErrorDetails(AwsErrorDetails.builder().errorCode(THROTTLED).serviceName(serviceName()).build())
+						.build();
+			}
+			String key = OrderItemMapper.keyOf(item);
+			if (request.conditionExpression() != null && !conditionHolds(request, items.get(key))) {
+				conditionFailures++;
+				throw ConditionalCheckFailedException.builder().message("The conditional request failed").statusCode(400)
+						.awsErrorDetails(AwsErrorDetails.builder().errorCode("ConditionalCheckFailedException").serviceName(serviceName()).build())
+						.build();
+			}
+			items.put(key, item);
+		}
+		writeListener.accept(item);
+		return PutItemResponse.builder().build();
+	}
+
+	@Override
+	public BatchWriteItemResponse batchWriteItem(final BatchWriteItemRequest request) {
+		pause();
+		Map<String, List<WriteRequest>> unprocessed = new HashMap<String, List<WriteRequest>>();
+		List<Map<String, AttributeValue>> written = new ArrayList<Map<String, AttributeValue>>();
+		int requestCount = 0;
+		synchronized (this) {
+			for (Map.Entry<String, List<WriteRequest>> table : request.requestItems().entrySet()) {
+				for (WriteRequest write : table.getValue()) {
+					requestCount++;
+					Map<String, AttributeValue> item = write.putRequest().item();
+					if (!consume(OrderItemMapper.writeUnitsOf(item))) {
+						unprocessed.computeIfAbsent(table.getKey(), k -> new ArrayList<WriteRequest>()).add(write);
+						continue;
+					}
+					items.put(OrderItemMapper.keyOf(item), item);
+					written.add(item);
+				}
+			}
+			if (written.isEmpty() && requestCount > 0) {
+				throttledRequests++;
+				throw ProvisionedThroughputExceededException.builder().message("Throughput exceeds the table's provisioned write capacity")
+						.statusCode(400).awsErrorDetails(AwsErrorDetails.builder().errorCode(THROTTLED).serviceName(serviceName()).build())
+						.build();
+			}
+		}
+		for (Map<String, AttributeValue> item : written) {
+			writeListener.accept(item);
+		}
+		return BatchWriteItemResponse.builder().unprocessedItems(unprocessed).build();
+	}
+
+	public synchronized int getItemCount() {
+		return items.size();
+	}
+
+	/** PutItem calls rejected outright and BatchWriteItem calls that wrote nothing. */
+	public synchronized long getThrottledRequests() {
+		return throttledRequests;
+	}
+
+	public synchronized long getConditionFailures() {
+		return conditionFailures;
+	}
+
+	public synchronized long getConsumedUnits() {
+		return consumedUnits;
+	}
+
+	//the two conditions ConditionalItemWriter sends: newer event_ts when the item has one, otherwise a new key
+	private static boolean conditionHolds(final PutItemRequest request, final Map<String, AttributeValue> stored) {
+		if (stored == null) {
+			return true;
+		}
+		if (!request.hasExpressionAttributeValues() || !request.expressionAttributeValues().containsKey(":ts")) {
+			return false;
+		}
+		return OrderItemMapper.compareVersions(request.item(), stored) > 0;
+	}
+
+	private boolean consume(final long units) {
+		long now = System.currentTimeMillis() / 1000;
+		if (now != second) {
+			second = now;
+			secondUnits = 0;
+		}
+		if (writeCapacity > 0 && secondUnits + units > writeCapacity) {
+			return false;
+		}
+		secondUnits += units;
+		consumedUnits += units;
+		return true;
+	}
+
+	private void pause() {
+		if (latencyMillis <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(latencyMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
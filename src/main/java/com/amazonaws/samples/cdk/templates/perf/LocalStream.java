@@ -0,0 +1,146 @@
+package com.amazonaws.samples.cdk.templates.perf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.kpl.UserRecord;
+import com.amazonaws.samples.cdk.templates.planning.CapacityPlanner;
+import com.amazonaws.samples.cdk.templates.producer.InMemoryRecordTransport;
+import com.amazonaws.samples.cdk.templates.producer.PutResult;
+import com.amazonaws.samples.cdk.templates.producer.RecordTransport;
+import com.amazonaws.samples.cdk.templates.producer.ShardMap;
+import com.amazonaws.samples.cdk.templates.producer.ShardRange;
+
+/**
+ * Local stand-in for a provisioned Kinesis stream that can be read while it
+ * is written. Unlike InMemoryRecordTransport it keeps each record's arrival
+ * time, lets consumers read a shard from a position (GetRecords with a
+ * shard iterator), and enforces both per-shard write quotas: 1000 records
+ * and 1 MiB per second. Records over either quota are rejected with
+ * ProvisionedThroughputExceededException, which OrderProducer retries.
+ */
+public class LocalStream implements RecordTransport {
+
+	private final ShardMap shardMap;
+	private final Map<String, Shard> shards = new HashMap<String, Shard>();
+	private long throttledCount;
+
+	public LocalStream(final int shardCount) {
+		this.shardMap = ShardMap.uniform(shardCount);
+		for (ShardRange shard : shardMap.getShards()) {
+			shards.put(shard.getShardId(), new Shard());
+		}
+	}
+
+	@Override
+	public List<ShardRange> listShards() {
+		return shardMap.getShards();
+	}
+
+	@Override
+	public List<PutResult> putRecords(final List<UserRecord> records) {
+		long now = System.currentTimeMillis();
+		List<PutResult> results = new ArrayList<PutResult>(records.size());
+		for (UserRecord record : records) {
+			String shardId = shardMap.shardFor(record.getPartitionKey(), record.getExplicitHashKey());
+			Shard shard = shards.get(shardId);
+			long sequence;
+			synchronized (shard) {
+				sequence = shard.append(record, now);
+			}
+			if (sequence < 0) {
+				synchronized (this) {
+					throttledCount++;
+				}
+				results.add(PutResult.failure(InMemoryRecordTransport.THROTTLED));
+			} else {
+				results.add(PutResult.success(shardId, Long.toString(sequence)));
+			}
+		}
+		return results;
+	}
+
+	/** Up to limit records of the shard starting at position (the index of the next record to read). */
+	public List<StoredRecord> read(final String shardId, final int position, final int limit) {
+		Shard shard = shards.get(shardId);
+		synchronized (shard) {
+			int to = Math.min(shard.records.size(), position + limit);
+			if (position >= to) {
+				return Collections.emptyList();
+			}
+			return new ArrayList<StoredRecord>(shard.records.subList(position, to));
+		}
+	}
+
+	public synchronized long getThrottledCount() {
+		return throttledCount;
+	}
+
+	public long getRecordCount() {
+		long count = 0;
+		for (Shard shard : shards.values()) {
+			synchronized (shard) {
+				count += shard.records.size();
+			}
+		}
+		return count;
+	}
+
+	/** A record as a consumer sees it: data, sequence number and approximate arrival time. */
+	public static final class StoredRecord {
+
+		private final UserRecord record;
+		private final long sequenceNumber;
+		private final long arrivalMillis;
+
+		StoredRecord(final UserRecord record, final long sequenceNumber, final long arrivalMillis) {
+			this.record = record;
+			this.sequenceNumber = sequenceNumber;
+			this.arrivalMillis = arrivalMillis;
+		}
+
+		public UserRecord getRecord() {
+			return record;
+		}
+
+		public long getSequenceNumber() {
+			return sequenceNumber;
+		}
+
+		public long getArrivalMillis() {
+			return arrivalMillis;
+		}
+
+	}
+
+	private static final class Shard {
+
+		final List<StoredRecord> records = new ArrayList<StoredRecord>();
+		long second = -1;
+		long secondRecords;
+		long secondBytes;
+
+		long append(final UserRecord record, final long now) {
+			if (now / 1000 != second) {
+				second = now / 1000;
+				secondRecords = 0;
+				secondBytes = 0;
+			}
+			int bytes = record.getData().length + record.getPartitionKey().length();
+			if (secondRecords + 1 > CapacityPlanner.SHARD_WRITE_RECORDS_PER_SEC
+					|| secondBytes + bytes > CapacityPlanner.SHARD_WRITE_BYTES_PER_SEC) {
+				return -1;
+			}
+			secondRecords++;
+			secondBytes += bytes;
+			long sequence = records.size();
+			records.add(new StoredRecord(record, sequence, now));
+			return sequence;
+		}
+
+	}
+
+}
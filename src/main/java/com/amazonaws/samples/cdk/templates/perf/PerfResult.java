@@ -0,0 +1,95 @@
+package com.amazonaws.samples.cdk.templates.perf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The numbers one PipelinePerfHarness run is judged by, stored as a
+ * properties file so a baseline can be checked in next to the code.
+ */
+public class PerfResult {
+
+	private final double throughputItemsPerSecond;
+	private final long latencyP50Millis;
+	private final long latencyP99Millis;
+	private final long streamThrottles;
+	private final long tableThrottles;
+
+	public PerfResult(final double throughputItemsPerSecond, final long latencyP50Millis, final long latencyP99Millis,
+			final long streamThrottles, final long tableThrottles) {
+		this.throughputItemsPerSecond = throughputItemsPerSecond;
+		this.latencyP50Millis = latencyP50Millis;
+		this.latencyP99Millis = latencyP99Millis;
+		this.streamThrottles = streamThrottles;
+		this.tableThrottles = tableThrottles;
+	}
+
+	public static PerfResult load(final File file) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		}
+		return new PerfResult(Double.parseDouble(properties.getProperty("throughputItemsPerSecond", "0")),
+				Long.parseLong(properties.getProperty("latencyP50Millis", "0")),
+				Long.parseLong(properties.getProperty("latencyP99Millis", "0")),
+				Long.parseLong(properties.getProperty("streamThrottles", "0")),
+				Long.parseLong(properties.getProperty("tableThrottles", "0")));
+	}
+
+	public void store(final File file) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty("throughputItemsPerSecond", String.format("%.1f", throughputItemsPerSecond));
+		properties.setProperty("latencyP50Millis", Long.toString(latencyP50Millis));
+		properties.setProperty("latencyP99Millis", Long.toString(latencyP99Millis));
+		properties.setProperty("streamThrottles", Long.toString(streamThrottles));
+		properties.setProperty("tableThrottles", Long.toString(tableThrottles));
+		try (OutputStream out = new FileOutputStream(file)) {
+			properties.store(out, "PipelinePerfHarness baseline");
+		}
+	}
+
+	/**
+	 * What got worse than the baseline by more than the threshold (0.2 = 20%):
+	 * lower throughput, higher p99 latency. Throttle counts are reported but
+	 * not judged; they are expected to move with the simulated capacity.
+	 */
+	public List<String> regressionsAgainst(final PerfResult baseline, final double threshold) {
+		List<String> regressions = new ArrayList<String>();
+		if (throughputItemsPerSecond < baseline.throughputItemsPerSecond * (1 - threshold)) {
+			regressions.add(String.format("throughput %.1f items/s is below baseline %.1f items/s", throughputItemsPerSecond,
+					baseline.throughputItemsPerSecond));
+		}
+		if (latencyP99Millis > baseline.latencyP99Millis * (1 + threshold)) {
+			regressions.add("p99 latency " + latencyP99Millis + " ms is above baseline " + baseline.latencyP99Millis + " ms");
+		}
+		return regressions;
+	}
+
+	public double getThroughputItemsPerSecond() {
+		return throughputItemsPerSecond;
+	}
+
+	public long getLatencyP50Millis() {
+		return latencyP50Millis;
+	}
+
+	public long getLatencyP99Millis() {
+		return latencyP99Millis;
+	}
+
+	public long getStreamThrottles() {
+		return streamThrottles;
+	}
+
+	public long getTableThrottles() {
+		return tableThrottles;
+	}
+
+}
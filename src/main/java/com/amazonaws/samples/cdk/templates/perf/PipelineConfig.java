@@ -0,0 +1,190 @@
+package com.amazonaws.samples.cdk.templates.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.planning.CapacityPlan;
+import com.amazonaws.samples.cdk.templates.planning.CapacityPlanner;
+import com.amazonaws.samples.cdk.templates.planning.PipelineLoad;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The sizing the local pipeline runs with: shard counts, the sink's event
+ * source mapping, the table's write capacity and the sink's WRITE_MODE.
+ *
+ * fromContext sizes the pipeline from cdk.json the way KinesisStreamsETLApp
+ * does. withTemplate then takes whatever the synthesized template pins down
+ * (shard parameter defaults, the sink's event source mapping, the table's
+ * provisioned write capacity), so a run matches what `cdk synth` produced.
+ */
+public class PipelineConfig {
+
+	private static final String SINK_PREFIX = "OrderEnrichmentSink";
+
+	private final int orderStreamShards;
+	private final int orderEnrichedStreamShards;
+	private final int sinkBatchSize;
+	private final int sinkBatchingWindowSeconds;
+	private final int sinkParallelizationFactor;
+	private final int tableWriteCapacity;
+	private final String writeMode;
+	private final String topology;
+
+	public PipelineConfig(final int orderStreamShards, final int orderEnrichedStreamShards, final int sinkBatchSize,
+			final int sinkBatchingWindowSeconds, final int sinkParallelizationFactor, final int tableWriteCapacity,
+			final String writeMode) {
+		this(orderStreamShards, orderEnrichedStreamShards, sinkBatchSize, sinkBatchingWindowSeconds, sinkParallelizationFactor,
+				tableWriteCapacity, writeMode, "enriched");
+	}
+
+	/** @param topology the stack's pipelineTopology: enriched, or direct (the sink reads the order stream itself) */
+	public PipelineConfig(final int orderStreamShards, final int orderEnrichedStreamShards, final int sinkBatchSize,
+			final int sinkBatchingWindowSeconds, final int sinkParallelizationFactor, final int tableWriteCapacity,
+			final String writeMode, final String topology) {
+		this.orderStreamShards = orderStreamShards;
+		this.orderEnrichedStreamShards = orderEnrichedStreamShards;
+		this.sinkBatchSize = sinkBatchSize;
+		this.sinkBatchingWindowSeconds = sinkBatchingWindowSeconds;
+		this.sinkParallelizationFactor = sinkParallelizationFactor;
+		this.tableWriteCapacity = tableWriteCapacity;
+		this.writeMode = writeMode;
+		this.topology = topology;
+	}
+
+	public static PipelineConfig fromPlan(final CapacityPlan plan, final String writeMode) {
+		return new PipelineConfig(plan.getOrderStreamShards(), plan.getOrderEnrichedStreamShards(), plan.getSinkBatchSize(),
+				plan.getSinkBatchingWindowSeconds(), plan.getSinkParallelizationFactor(), plan.getTableWriteCapacity(), writeMode);
+	}
+
+	/** Same sizing as KinesisStreamsETLApp.capacityPlan and the stack's tableMinWriteCapacity/sinkWriteMode for one cell. */
+	public static PipelineConfig fromContext(final File cdkJson) throws IOException {
+		JsonNode context = new ObjectMapper().readTree(cdkJson).path("context");
+		int cellCount = Math.max(1, context.path("cellCount").asInt(1));
+		double ordersPerSecond = context.path("targetOrdersPerSecond").asDouble(0) / cellCount;
+		String topology = context.path("pipelineTopology").asText(CapacityPlanner.TOPOLOGY_ENRICHED);
+		String writeMode = context.path("sinkWriteMode").asText(CapacityPlanner.WRITE_MODE_CONDITIONAL);
+		CapacityPlan plan = CapacityPlan.defaults();
+		if (ordersPerSecond > 0) {
+			plan = new CapacityPlanner(writeMode).plan(new PipelineLoad(ordersPerSecond,
+					context.path("itemsPerOrder").asInt(3),
+					context.path("averageRecordBytes").asInt(300),
+					context.path("latencySloMillis").asInt(5000)), topology);
+		}
+		PipelineConfig config = fromPlan(plan, writeMode)
+				.withTopology(topology);
+		if ("PAY_PER_REQUEST".equals(context.path("tableBillingMode").asText())) {
+			return config.withTableWriteCapacity(0);
+		}
+		return config.withTableWriteCapacity(context.path("tableMinWriteCapacity").asInt(plan.getTableWriteCapacity()));
+	}
+
+	/** Overrides the values the template sets explicitly; tokens and missing properties keep the current value. */
+	public PipelineConfig withTemplate(final File template) throws IOException {
+		JsonNode root = new ObjectMapper().readTree(template);
+		JsonNode parameters = root.path("Parameters");
+		int orderShards = intOr(parameters.path("orderStreamShards").path("Default"), orderStreamShards);
+		int enrichedShards = intOr(parameters.path("orderEnrichedStreamShards").path("Default"), orderEnrichedStreamShards);
+		int batchSize = sinkBatchSize;
+		int window = sinkBatchingWindowSeconds;
+		int parallelization = sinkParallelizationFactor;
+		int writeCapacity = tableWriteCapacity;
+		String mode = writeMode;
+
+		Iterator<Map.Entry<String, JsonNode>> resources = root.path("Resources").fields();
+		while (resources.hasNext()) {
+			Map.Entry<String, JsonNode> resource = resources.next();
+			String type = resource.getValue().path("Type").asText();
+			JsonNode properties = resource.getValue().path("Properties");
+			boolean sink = resource.getKey().startsWith(SINK_PREFIX);
+			if (sink && "AWS::Lambda::EventSourceMapping".equals(type)) {
+				batchSize = intOr(properties.path("BatchSize"), batchSize);
+				window = intOr(properties.path("MaximumBatchingWindowInSeconds"), window);
+				parallelization = intOr(properties.path("ParallelizationFactor"), parallelization);
+			} else if (sink && "AWS::Lambda::Function".equals(type)) {
+				JsonNode variable = properties.path("Environment").path("Variables").path("WRITE_MODE");
+				if (variable.isTextual()) {
+					mode = variable.asText();
+				}
+			} else if ("AWS::DynamoDB::Table".equals(type)) {
+				if ("PAY_PER_REQUEST".equals(properties.path("BillingMode").asText())) {
+					writeCapacity = 0;
+				} else {
+					writeCapacity = intOr(properties.path("ProvisionedThroughput").path("WriteCapacityUnits"), writeCapacity);
+				}
+			}
+		}
+		return new PipelineConfig(orderShards, enrichedShards, batchSize, window, parallelization, writeCapacity, mode, topology);
+	}
+
+	public PipelineConfig withTableWriteCapacity(final int capacity) {
+		return new PipelineConfig(orderStreamShards, orderEnrichedStreamShards, sinkBatchSize, sinkBatchingWindowSeconds,
+				sinkParallelizationFactor, capacity, writeMode, topology);
+	}
+
+	public PipelineConfig withWriteMode(final String mode) {
+		return new PipelineConfig(orderStreamShards, orderEnrichedStreamShards, sinkBatchSize, sinkBatchingWindowSeconds,
+				sinkParallelizationFactor, tableWriteCapacity, mode, topology);
+	}
+
+	public PipelineConfig withTopology(final String pipelineTopology) {
+		return new PipelineConfig(orderStreamShards, orderEnrichedStreamShards, sinkBatchSize, sinkBatchingWindowSeconds,
+				sinkParallelizationFactor, tableWriteCapacity, writeMode, pipelineTopology);
+	}
+
+	private static int intOr(final JsonNode node, final int fallback) {
+		//CloudFormation templates carry numbers as strings as often as not
+		if (node.isNumber() || (node.isTextual() && node.asText().matches("\\d+"))) {
+			return node.asInt();
+		}
+		return fallback;
+	}
+
+	public int getOrderStreamShards() {
+		return orderStreamShards;
+	}
+
+	public int getOrderEnrichedStreamShards() {
+		return orderEnrichedStreamShards;
+	}
+
+	public int getSinkBatchSize() {
+		return sinkBatchSize;
+	}
+
+	public int getSinkBatchingWindowSeconds() {
+		return sinkBatchingWindowSeconds;
+	}
+
+	public int getSinkParallelizationFactor() {
+		return sinkParallelizationFactor;
+	}
+
+	/** Provisioned write capacity units; 0 means on-demand (no table throttling). */
+	public int getTableWriteCapacity() {
+		return tableWriteCapacity;
+	}
+
+	public String getWriteMode() {
+		return writeMode;
+	}
+
+	public String getTopology() {
+		return topology;
+	}
+
+	public boolean isDirect() {
+		return "direct".equals(topology);
+	}
+
+	@Override
+	public String toString() {
+		return "PipelineConfig{orderStreamShards=" + orderStreamShards + ", orderEnrichedStreamShards=" + orderEnrichedStreamShards
+				+ ", sinkBatchSize=" + sinkBatchSize + ", sinkBatchingWindowSeconds=" + sinkBatchingWindowSeconds
+				+ ", sinkParallelizationFactor=" + sinkParallelizationFactor + ", tableWriteCapacity=" + tableWriteCapacity
+				+ ", writeMode=" + writeMode + ", topology=" + topology + "}";
+	}
+
+}
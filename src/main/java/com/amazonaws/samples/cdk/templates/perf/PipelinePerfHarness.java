@@ -0,0 +1,464 @@
+package com.amazonaws.samples.cdk.templates.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.amazonaws.samples.cdk.templates.archive.FileSystemObjectStore;
+import com.amazonaws.samples.cdk.templates.direct.DirectEnrichmentHandler;
+import com.amazonaws.samples.cdk.templates.direct.ProductIndex;
+import com.amazonaws.samples.cdk.templates.flink.EnrichedOrder;
+import com.amazonaws.samples.cdk.templates.flink.EventTimestamps;
+import com.amazonaws.samples.cdk.templates.flink.InMemoryProductCatalog;
+import com.amazonaws.samples.cdk.templates.flink.Product;
+import com.amazonaws.samples.cdk.templates.flink.S3ProductCatalog;
+import com.amazonaws.samples.cdk.templates.kpl.Deaggregator;
+import com.amazonaws.samples.cdk.templates.kpl.UserRecord;
+import com.amazonaws.samples.cdk.templates.metrics.LatencyHistogram;
+import com.amazonaws.samples.cdk.templates.planning.CapacityPlan;
+import com.amazonaws.samples.cdk.templates.producer.OrderProducer;
+import com.amazonaws.samples.cdk.templates.producer.OrderRecord;
+import com.amazonaws.samples.cdk.templates.producer.ShardRange;
+import com.amazonaws.samples.cdk.templates.producer.SyntheticOrderGenerator;
+import com.amazonaws.samples.cdk.templates.sink.DedupeFilter;
+import com.amazonaws.samples.cdk.templates.sink.ItemWriter;
+import com.amazonaws.samples.cdk.templates.sink.OrderEnrichmentSinkHandler;
+import com.amazonaws.samples.cdk.templates.sink.OrderItemMapper;
+import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Runs the whole pipeline in one JVM under a synthetic load and reports
+ * throughput, end-to-end latency and throttling:
+ *
+ *   OrderProducer -> LocalStream (orders) -> enrichment, one worker per shard,
+ *   joining the products object read from a FileSystemObjectStore (the S3
+ *   stand-in) -> OrderProducer -> LocalStream (enriched) -> one
+ *   OrderEnrichmentSinkHandler per shard and parallelization slot ->
+ *   LocalDynamoDbTable
+ *
+ * With --topology direct (or pipelineTopology direct in cdk.json) there is
+ * no enrichment stage and no enriched stream: a DirectEnrichmentHandler per
+ * order shard and slot enriches from a ProductIndex over the same products
+ * and writes the table, as the stack deploys it.
+ *
+ * Shard counts, the sink's batch size, batching window and parallelization
+ * factor, the table's write capacity and WRITE_MODE come from cdk.json
+ * (sized like KinesisStreamsETLApp) and, when it exists, the synthesized
+ * template (see PipelineConfig). Sink slots split a shard by partition key
+ * the way a parallelization factor does; a batch with failures is retried
+ * from its lowest failed sequence number, like ReportBatchItemFailures.
+ *
+ * Latency is measured per item, from handing the order to the producer to
+ * the item landing in the table. The run fails (exit 1) when items are lost,
+ * or when a --baseline is given and throughput or p99 latency are worse than
+ * it by more than --max-regression.
+ *
+ * Usage: PipelinePerfHarness [--option value ...]
+ *   --orders-per-second 200   --seconds 20   --items-per-order 3   --products 1000
+ *   --cdk-json cdk.json   --template cdk.out/KinesisStreamETLStack.template.json
+ *   --write-mode (template/cdk.json)   --table-wcu (template/cdk.json)   --topology (cdk.json)
+ *   --ddb-latency-millis 5   --poll-millis 200   --drain-seconds 60
+ *   --baseline FILE   --max-regression 0.2   --write-baseline FILE
+ */
+public class PipelinePerfHarness {
+
+	private static final String PRODUCTS_KEY = "products/products.json";
+	private static final String TABLE_NAME = "OrderEnriched";
+	private static final int MAX_RECORDS_PER_READ = 10000;
+	private static final int MAX_BATCH_ATTEMPTS = 10;
+
+	private final PipelineConfig config;
+	private final long pollMillis;
+
+	private final LocalStream orderStream;
+	private final LocalStream enrichedStream;
+	private final LocalDynamoDbTable table;
+
+	private final Map<String, Long> pendingItems = new ConcurrentHashMap<String, Long>();
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private final AtomicLong lastWriteNanos = new AtomicLong();
+	private final AtomicLong sinkInvocations = new AtomicLong();
+	private final AtomicLong sinkRetries = new AtomicLong();
+	private final AtomicLong droppedRecords = new AtomicLong();
+	private final AtomicLong productMisses = new AtomicLong();
+	private final AtomicLong workerErrors = new AtomicLong();
+	private volatile boolean running = true;
+
+	public PipelinePerfHarness(final PipelineConfig config, final long ddbLatencyMillis, final long pollMillis) {
+		this.config = config;
+		this.pollMillis = pollMillis;
+		this.orderStream = new LocalStream(config.getOrderStreamShards());
+		this.enrichedStream = new LocalStream(config.getOrderEnrichedStreamShards());
+		this.table = new LocalDynamoDbTable(config.getTableWriteCapacity(), ddbLatencyMillis, this::onItemWritten);
+	}
+
+	public static void main(final String[] args) throws Exception {
+		Map<String, String> options = parseOptions(args);
+
+		File cdkJson = new File(option(options, "cdk-json", "cdk.json"));
+		PipelineConfig config = cdkJson.isFile() ? PipelineConfig.fromContext(cdkJson) : PipelineConfig.fromPlan(CapacityPlan.defaults(), null);
+		File template = new File(option(options, "template", "cdk.out/KinesisStreamETLStack.template.json"));
+		if (template.isFile()) {
+			config = config.withTemplate(template);
+		}
+		if (options.containsKey("write-mode")) {
+			config = config.withWriteMode(options.get("write-mode"));
+		}
+		if (options.containsKey("topology")) {
+			config = config.withTopology(options.get("topology"));
+		}
+		if (options.containsKey("table-wcu")) {
+			config = config.withTableWriteCapacity(Integer.parseInt(options.get("table-wcu")));
+		}
+
+		double ordersPerSecond = Double.parseDouble(option(options, "orders-per-second", "200"));
+		int seconds = Integer.parseInt(option(options, "seconds", "20"));
+		int itemsPerOrder = Integer.parseInt(option(options, "items-per-order", "3"));
+		int productCount = Integer.parseInt(option(options, "products", "1000"));
+		long drainSeconds = Long.parseLong(option(options, "drain-seconds", "60"));
+
+		System.out.println(config);
+		System.out.printf("load: %.0f orders/s x %d items for %d s%n", ordersPerSecond, itemsPerOrder, seconds);
+
+		PipelinePerfHarness harness = new PipelinePerfHarness(config,
+				Long.parseLong(option(options, "ddb-latency-millis", "5")),
+				Long.parseLong(option(options, "poll-millis", "200")));
+		PerfResult result = harness.run(ordersPerSecond, seconds, itemsPerOrder, productCount, drainSeconds);
+
+		boolean failed = !harness.pendingItems.isEmpty();
+		if (options.containsKey("baseline")) {
+			PerfResult baseline = PerfResult.load(new File(options.get("baseline")));
+			double threshold = Double.parseDouble(option(options, "max-regression", "0.2"));
+			for (String regression : result.regressionsAgainst(baseline, threshold)) {
+				System.out.println("REGRESSION: " + regression);
+				failed = true;
+			}
+		}
+		if (options.containsKey("write-baseline")) {
+			result.store(new File(options.get("write-baseline")));
+		}
+		System.exit(failed ? 1 : 0);
+	}
+
+	public PerfResult run(final double ordersPerSecond, final int seconds, final int itemsPerOrder, final int productCount,
+			final long drainSeconds) throws Exception {
+		Map<Integer, Product> products = loadProducts(productCount);
+
+		OrderProducer orderProducer = OrderProducer.Builder.create().transport(orderStream).build();
+		OrderProducer enrichedProducer = OrderProducer.Builder.create().transport(enrichedStream).build();
+
+		List<Thread> workers = new ArrayList<Thread>();
+		LocalStream sinkSource = enrichedStream;
+		if (config.isDirect()) {
+			sinkSource = orderStream;
+		} else {
+			for (ShardRange shard : orderStream.listShards()) {
+				workers.add(start("enrich-" + shard.getShardId(), new EnrichmentWorker(shard.getShardId(), products, enrichedProducer)));
+			}
+		}
+		for (ShardRange shard : sinkSource.listShards()) {
+			for (int slot = 0; slot < config.getSinkParallelizationFactor(); slot++) {
+				workers.add(start("sink-" + shard.getShardId() + "-" + slot,
+						new SinkWorker(sinkSource, shard.getShardId(), slot, sinkHandler(products))));
+			}
+		}
+
+		SyntheticOrderGenerator generator = new SyntheticOrderGenerator(42, itemsPerOrder, productCount);
+		long orders = (long) (ordersPerSecond * seconds);
+		long expectedItems = 0;
+		long start = System.nanoTime();
+		for (long i = 0; i < orders; i++) {
+			long due = start + (long) (i * 1e9 / ordersPerSecond);
+			long wait = due - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			for (OrderRecord record : generator.nextOrder()) {
+				if ("ITEM".equals(record.getRecordType())
+						&& pendingItems.putIfAbsent(record.getOrderId() + "|" + record.getItemId(), System.nanoTime()) == null) {
+					expectedItems++;
+				}
+				orderProducer.put(record);
+			}
+		}
+		long loadNanos = System.nanoTime() - start;
+		orderProducer.flush();
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainSeconds);
+		while (!pendingItems.isEmpty() && System.nanoTime() < deadline) {
+			Thread.sleep(50);
+		}
+		running = false;
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		orderProducer.awaitClose();
+		enrichedProducer.awaitClose();
+
+		long written = expectedItems - pendingItems.size();
+		double elapsedSeconds = Math.max(1, lastWriteNanos.get() - start) / 1e9;
+		long streamThrottles = orderStream.getThrottledCount() + enrichedStream.getThrottledCount();
+		PerfResult result;
+		synchronized (latencies) {
+			result = new PerfResult(written / elapsedSeconds, latencies.percentile(50), latencies.percentile(99),
+					streamThrottles, table.getThrottledRequests());
+			System.out.printf("offered: %d orders in %.1f s (%.0f orders/s), %d items%n", orders, loadNanos / 1e9,
+					orders / (loadNanos / 1e9), expectedItems);
+			System.out.printf("written: %d items in %.1f s (%.0f items/s), lost: %d%n", written, elapsedSeconds,
+					result.getThroughputItemsPerSecond(), pendingItems.size());
+			System.out.printf("end-to-end latency: p50 %d ms, p99 %d ms, max %d ms%n", latencies.percentile(50),
+					latencies.percentile(99), latencies.getMax());
+		}
+		System.out.printf("stream throttles: orders %d, enriched %d; producer retries: %d + %d%n", orderStream.getThrottledCount(),
+				enrichedStream.getThrottledCount(), orderProducer.getRetryCount(), enrichedProducer.getRetryCount());
+		System.out.printf("table: %d throttled requests, %d stale conditional writes, %d WCU consumed%n",
+				table.getThrottledRequests(), table.getConditionFailures(), table.getConsumedUnits());
+		System.out.printf("sink: %d invocations, %d retried batches, %d records given up; product misses: %d, worker errors: %d%n",
+				sinkInvocations.get(), sinkRetries.get(), droppedRecords.get(), productMisses.get(), workerErrors.get());
+		return result;
+	}
+
+	//the reference data goes through the S3 stand-in and is parsed the way S3ProductCatalog parses it
+	private static Map<Integer, Product> loadProducts(final int productCount) throws IOException {
+		FileSystemObjectStore store = new FileSystemObjectStore(Files.createTempDirectory("pipeline-perf"));
+		ObjectMapper objectMapper = new ObjectMapper();
+		StringBuilder lines = new StringBuilder();
+		for (int id = 1; id <= productCount; id++) {
+			lines.append(objectMapper.writeValueAsString(new Product(id, "product-" + id, id % 100 + 0.99f))).append('\n');
+		}
+		store.put(PRODUCTS_KEY, lines.toString().getBytes(StandardCharsets.UTF_8));
+		byte[] data = Files.readAllBytes(store.getRoot().resolve(PRODUCTS_KEY));
+		return S3ProductCatalog.parse(data, objectMapper.copy().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+	}
+
+	private OrderEnrichmentSinkHandler sinkHandler(final Map<Integer, Product> products) {
+		ItemWriter writer = OrderEnrichmentSinkHandler.writerFor(table, TABLE_NAME, config.getWriteMode());
+		if (config.isDirect()) {
+			ProductIndex index = new ProductIndex(new InMemoryProductCatalog(products.values()), Long.MAX_VALUE, Long.MAX_VALUE);
+			return new DirectEnrichmentHandler(writer, index, line -> { }, new DedupeFilter());
+		}
+		return new OrderEnrichmentSinkHandler(writer, new OrderItemMapper(), line -> { }, new DedupeFilter());
+	}
+
+	private void onItemWritten(final Map<String, AttributeValue> item) {
+		Long produced = pendingItems.remove(OrderItemMapper.keyOf(item));
+		if (produced == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		lastWriteNanos.accumulateAndGet(now, Math::max);
+		synchronized (latencies) {
+			latencies.record(TimeUnit.NANOSECONDS.toMillis(now - produced));
+		}
+	}
+
+	private static Thread start(final String name, final Runnable worker) {
+		Thread thread = new Thread(worker, name);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	private void pause() {
+		try {
+			Thread.sleep(pollMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			running = false;
+		}
+	}
+
+	/** The enrichment application's work for one input shard: ITEM records joined with their product. */
+	private final class EnrichmentWorker implements Runnable {
+
+		private final String shardId;
+		private final Map<Integer, Product> products;
+		private final OrderProducer out;
+		private final ObjectReader reader = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+				.readerFor(OrderRecord.class);
+		private final ObjectMapper writer = new ObjectMapper();
+
+		EnrichmentWorker(final String shardId, final Map<Integer, Product> products, final OrderProducer out) {
+			this.shardId = shardId;
+			this.products = products;
+			this.out = out;
+		}
+
+		@Override
+		public void run() {
+			int position = 0;
+			while (running) {
+				List<LocalStream.StoredRecord> records = orderStream.read(shardId, position, MAX_RECORDS_PER_READ);
+				position += records.size();
+				for (LocalStream.StoredRecord stored : records) {
+					try {
+						enrich(stored);
+					} catch (Exception e) {
+						workerErrors.incrementAndGet();
+						System.out.println("ERROR: enrichment of record " + stored.getSequenceNumber() + " failed: " + e);
+					}
+				}
+				if (records.isEmpty()) {
+					pause();
+				}
+			}
+		}
+
+		private void enrich(final LocalStream.StoredRecord stored) throws IOException, InterruptedException {
+			UserRecord record = stored.getRecord();
+			for (UserRecord userRecord : Deaggregator.deaggregate(record.getPartitionKey(), ByteBuffer.wrap(record.getData()))) {
+				OrderRecord order = reader.readValue(userRecord.getData());
+				if (!"ITEM".equals(order.getRecordType())) {
+					continue;
+				}
+				Product product = products.get(order.getItemId());
+				if (product == null) {
+					productMisses.incrementAndGet();
+				}
+				EnrichedOrder enriched = new EnrichedOrder(order, product == null ? null : product.getProductName(),
+						EventTimestamps.format(stored.getArrivalMillis()));
+				out.put(Integer.toString(order.getOrderId()), writer.writeValueAsBytes(enriched.toFields()));
+			}
+		}
+
+	}
+
+	/**
+	 * One concurrent sink invocation stream: the records of one enriched shard
+	 * whose partition key falls into this parallelization slot, in batches of
+	 * up to the mapping's batch size.
+	 */
+	private final class SinkWorker implements Runnable {
+
+		private final LocalStream source;
+		private final String shardId;
+		private final int slot;
+		private final OrderEnrichmentSinkHandler handler;
+
+		SinkWorker(final LocalStream source, final String shardId, final int slot, final OrderEnrichmentSinkHandler handler) {
+			this.source = source;
+			this.shardId = shardId;
+			this.slot = slot;
+			this.handler = handler;
+		}
+
+		@Override
+		public void run() {
+			int batchSize = config.getSinkBatchSize();
+			long windowMillis = TimeUnit.SECONDS.toMillis(config.getSinkBatchingWindowSeconds());
+			List<LocalStream.StoredRecord> buffer = new ArrayList<LocalStream.StoredRecord>();
+			long firstBufferedMillis = 0;
+			int position = 0;
+			while (running) {
+				List<LocalStream.StoredRecord> records = source.read(shardId, position, MAX_RECORDS_PER_READ);
+				position += records.size();
+				for (LocalStream.StoredRecord record : records) {
+					if (Math.floorMod(record.getRecord().getPartitionKey().hashCode(), config.getSinkParallelizationFactor()) == slot) {
+						if (buffer.isEmpty()) {
+							firstBufferedMillis = System.currentTimeMillis();
+						}
+						buffer.add(record);
+					}
+				}
+				while (buffer.size() >= batchSize) {
+					invoke(new ArrayList<LocalStream.StoredRecord>(buffer.subList(0, batchSize)));
+					buffer.subList(0, batchSize).clear();
+					firstBufferedMillis = System.currentTimeMillis();
+				}
+				if (!buffer.isEmpty() && System.currentTimeMillis() - firstBufferedMillis >= windowMillis) {
+					invoke(new ArrayList<LocalStream.StoredRecord>(buffer));
+					buffer.clear();
+				}
+				if (records.isEmpty()) {
+					pause();
+				}
+			}
+		}
+
+		private void invoke(final List<LocalStream.StoredRecord> batch) {
+			List<LocalStream.StoredRecord> remaining = batch;
+			for (int attempt = 0; !remaining.isEmpty() && running; attempt++) {
+				if (attempt > 0) {
+					if (attempt >= MAX_BATCH_ATTEMPTS) {
+						droppedRecords.addAndGet(remaining.size());
+						return;
+					}
+					sinkRetries.incrementAndGet();
+					pause();
+				}
+				sinkInvocations.incrementAndGet();
+				StreamsEventResponse response;
+				try {
+					response = handler.handleRequest(event(remaining), null);
+				} catch (RuntimeException e) {
+					workerErrors.incrementAndGet();
+					System.out.println("ERROR: sink invocation failed: " + e);
+					continue;
+				}
+				long lowest = Long.MAX_VALUE;
+				for (StreamsEventResponse.BatchItemFailure failure : response.getBatchItemFailures()) {
+					lowest = Math.min(lowest, Long.parseLong(failure.getItemIdentifier()));
+				}
+				List<LocalStream.StoredRecord> retry = new ArrayList<LocalStream.StoredRecord>();
+				for (LocalStream.StoredRecord record : remaining) {
+					if (record.getSequenceNumber() >= lowest) {
+						retry.add(record);
+					}
+				}
+				remaining = retry;
+			}
+		}
+
+		private KinesisEvent event(final List<LocalStream.StoredRecord> batch) {
+			List<KinesisEvent.KinesisEventRecord> records = new ArrayList<KinesisEvent.KinesisEventRecord>(batch.size());
+			for (LocalStream.StoredRecord stored : batch) {
+				KinesisEvent.Record kinesis = new KinesisEvent.Record();
+				kinesis.setSequenceNumber(Long.toString(stored.getSequenceNumber()));
+				kinesis.setPartitionKey(stored.getRecord().getPartitionKey());
+				kinesis.setApproximateArrivalTimestamp(new Date(stored.getArrivalMillis()));
+				kinesis.setData(ByteBuffer.wrap(stored.getRecord().getData()));
+				KinesisEvent.KinesisEventRecord record = new KinesisEvent.KinesisEventRecord();
+				record.setEventID(shardId + ":" + stored.getSequenceNumber());
+				record.setKinesis(kinesis);
+				records.add(record);
+			}
+			KinesisEvent event = new KinesisEvent();
+			event.setRecords(records);
+			return event;
+		}
+
+	}
+
+	private static Map<String, String> parseOptions(final String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i < args.length; i++) {
+			if (!args[i].startsWith("--") || i + 1 >= args.length) {
+				throw new IllegalArgumentException("expected --option value, got " + args[i]);
+			}
+			options.put(args[i].substring(2), args[++i]);
+		}
+		return options;
+	}
+
+	private static String option(final Map<String, String> options, final String name, final String fallback) {
+		return options.containsKey(name) ? options.get(name) : fallback;
+	}
+
+}
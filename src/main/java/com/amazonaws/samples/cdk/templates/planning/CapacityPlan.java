@@ -0,0 +1,97 @@
+package com.amazonaws.samples.cdk.templates.planning;
+
+/**
+ * Sizing for one deployment of the pipeline. defaults() reproduces the values
+ * the stacks used before they were derived from a target load.
+ */
+public class CapacityPlan {
+
+	private final int orderStreamShards;
+	private final int orderEnrichedStreamShards;
+	private final int sinkBatchSize;
+	private final int sinkBatchingWindowSeconds;
+	private final int sinkParallelizationFactor;
+	private final int sinkMemoryMb;
+	private final int sinkTimeoutSeconds;
+	private final int tableReadCapacity;
+	private final int tableWriteCapacity;
+
+	public CapacityPlan(final int orderStreamShards, final int orderEnrichedStreamShards, final int sinkBatchSize,
+			final int sinkBatchingWindowSeconds, final int sinkParallelizationFactor, final int sinkMemoryMb,
+			final int sinkTimeoutSeconds, final int tableReadCapacity, final int tableWriteCapacity) {
+		this.orderStreamShards = orderStreamShards;
+		this.orderEnrichedStreamShards = orderEnrichedStreamShards;
+		this.sinkBatchSize = sinkBatchSize;
+		this.sinkBatchingWindowSeconds = sinkBatchingWindowSeconds;
+		this.sinkParallelizationFactor = sinkParallelizationFactor;
+		this.sinkMemoryMb = sinkMemoryMb;
+		this.sinkTimeoutSeconds = sinkTimeoutSeconds;
+		this.tableReadCapacity = tableReadCapacity;
+		this.tableWriteCapacity = tableWriteCapacity;
+	}
+
+	public static CapacityPlan defaults() {
+		return new CapacityPlan(2, 2, 500, 0, 5, 512, 300, 5, 5);
+	}
+
+	public int getOrderStreamShards() {
+		return orderStreamShards;
+	}
+
+	public int getOrderEnrichedStreamShards() {
+		return orderEnrichedStreamShards;
+	}
+
+	public int getSinkBatchSize() {
+		return sinkBatchSize;
+	}
+
+	public int getSinkBatchingWindowSeconds() {
+		return sinkBatchingWindowSeconds;
+	}
+
+	public int getSinkParallelizationFactor() {
+		return sinkParallelizationFactor;
+	}
+
+	public int getSinkMemoryMb() {
+		return sinkMemoryMb;
+	}
+
+	public int getSinkTimeoutSeconds() {
+		return sinkTimeoutSeconds;
+	}
+
+	public int getTableReadCapacity() {
+		return tableReadCapacity;
+	}
+
+	public int getTableWriteCapacity() {
+		return tableWriteCapacity;
+	}
+
+	/** Concurrent sink invocations at steady state in the enriched topology: one per shard and parallelization slot. */
+	public int getSinkConcurrency() {
+		return getSinkConcurrency(CapacityPlanner.TOPOLOGY_ENRICHED);
+	}
+
+	/** Concurrent sink invocations at steady state, counting the shards of the stream the sink reads in topology. */
+	public int getSinkConcurrency(final String topology) {
+		int shards = CapacityPlanner.isDirect(topology) ? orderStreamShards : orderEnrichedStreamShards;
+		return shards * sinkParallelizationFactor;
+	}
+
+	@Override
+	public String toString() {
+		return "CapacityPlan[orderStreamShards=" + orderStreamShards
+				+ ", orderEnrichedStreamShards=" + orderEnrichedStreamShards
+				+ ", sinkBatchSize=" + sinkBatchSize
+				+ ", sinkBatchingWindowSeconds=" + sinkBatchingWindowSeconds
+				+ ", sinkParallelizationFactor=" + sinkParallelizationFactor
+				+ ", sinkMemoryMb=" + sinkMemoryMb
+				+ ", sinkTimeoutSeconds=" + sinkTimeoutSeconds
+				+ ", tableReadCapacity=" + tableReadCapacity
+				+ ", tableWriteCapacity=" + tableWriteCapacity + "]";
+	}
+
+}
@@ -0,0 +1,226 @@
+package com.amazonaws.samples.cdk.templates.planning;
+
+/**
+ * Derives a consistent CapacityPlan from a target load instead of hand-set
+ * constants. Streams are sized against the per-shard write quotas at a target
+ * utilization, the sink batch against half of the latency SLO and the Lambda
+ * payload limit, parallelization against the sink's modelled per-record cost,
+ * and table write capacity against the enriched record rate, up to the
+ * default per-table write quota.
+ *
+ * The topology is the stack's pipelineTopology. In "enriched" the sink reads
+ * OrderEnrichedStream, and in "direct" it reads OrderStream. When the sink
+ * needs more concurrency than MAX_PARALLELIZATION_FACTOR slots per shard, the
+ * planner adds shards to the stream the sink reads.
+ *
+ * The sink's cost follows sinkWriteMode. "batch" writes 25-item BatchWriteItem
+ * calls one after another, so a batch costs a fixed amount per record.
+ * "conditional" issues one PutItem per item, PUT_ITEM_CONCURRENCY at a time,
+ * but the puts of one orderId run one after another, so a batch takes at
+ * least as long as the puts of its largest order.
+ */
+public class CapacityPlanner {
+
+	public static final double SHARD_WRITE_BYTES_PER_SEC = 1024 * 1024;
+	public static final double SHARD_WRITE_RECORDS_PER_SEC = 1000;
+	public static final double SHARD_READ_BYTES_PER_SEC = 2 * 1024 * 1024;
+	public static final int LAMBDA_MAX_PAYLOAD_BYTES = 6 * 1024 * 1024;
+	public static final int MAX_BATCH_SIZE = 10000;
+	public static final int MAX_PARALLELIZATION_FACTOR = 10;
+	public static final int MAX_BATCHING_WINDOW_SECONDS = 300;
+	public static final int MAX_TIMEOUT_SECONDS = 900;
+	public static final double PARTITION_WRITE_UNITS = 1000;
+	//default per-table write capacity quota for provisioned tables
+	public static final double TABLE_MAX_WRITE_UNITS = 40000;
+	public static final String TOPOLOGY_ENRICHED = "enriched";
+	public static final String TOPOLOGY_DIRECT = "direct";
+	public static final String WRITE_MODE_CONDITIONAL = "conditional";
+	public static final String WRITE_MODE_BATCH = "batch";
+	//one 25-item BatchWriteItem call takes about 12 ms
+	public static final double BATCH_WRITE_RECORD_MILLIS = 0.5;
+	//one conditional PutItem takes about 10 ms; ConditionalItemWriter starts its AimdLimit at 16 puts in flight
+	public static final double PUT_ITEM_MILLIS = 10;
+	public static final int PUT_ITEM_CONCURRENCY = 16;
+
+	//the event source mapping polls each shard about once a second
+	private static final double POLL_INTERVAL_MILLIS = 1000;
+
+	private final double streamUtilization;
+	private final double tableUtilization;
+	private final int enrichmentBytes;
+	private final double sinkInvocationOverheadMillis;
+	private final double sinkPerRecordMillis;
+	private final double sinkOrderRecordMillis;
+	private final int tableReadCapacity;
+
+	/** Plans for the default sinkWriteMode, conditional. */
+	public CapacityPlanner() {
+		this(WRITE_MODE_CONDITIONAL);
+	}
+
+	/** @param sinkWriteMode "conditional" (also when null or empty) or "batch" */
+	public CapacityPlanner(final String sinkWriteMode) {
+		this(0.7, 0.7, 64, 20,
+				isConditional(sinkWriteMode) ? PUT_ITEM_MILLIS / PUT_ITEM_CONCURRENCY : BATCH_WRITE_RECORD_MILLIS,
+				isConditional(sinkWriteMode) ? PUT_ITEM_MILLIS : 0, 5);
+	}
+
+	/**
+	 * A sink without per-order ordering, such as the batch write mode.
+	 *
+	 * @param sinkPerRecordMillis amortized sink cost per record, about 0.5 ms with 25-item BatchWriteItem calls
+	 */
+	public CapacityPlanner(final double streamUtilization, final double tableUtilization, final int enrichmentBytes,
+			final double sinkInvocationOverheadMillis, final double sinkPerRecordMillis, final int tableReadCapacity) {
+		this(streamUtilization, tableUtilization, enrichmentBytes, sinkInvocationOverheadMillis, sinkPerRecordMillis, 0, tableReadCapacity);
+	}
+
+	/**
+	 * @param sinkPerRecordMillis amortized sink cost per record
+	 * @param sinkOrderRecordMillis cost of each record of one order when they are written one after another, 0 if they are not
+	 */
+	public CapacityPlanner(final double streamUtilization, final double tableUtilization, final int enrichmentBytes,
+			final double sinkInvocationOverheadMillis, final double sinkPerRecordMillis, final double sinkOrderRecordMillis,
+			final int tableReadCapacity) {
+		this.streamUtilization = streamUtilization;
+		this.tableUtilization = tableUtilization;
+		this.enrichmentBytes = enrichmentBytes;
+		this.sinkInvocationOverheadMillis = sinkInvocationOverheadMillis;
+		this.sinkPerRecordMillis = sinkPerRecordMillis;
+		this.sinkOrderRecordMillis = sinkOrderRecordMillis;
+		this.tableReadCapacity = tableReadCapacity;
+	}
+
+	public CapacityPlan plan(final PipelineLoad load) {
+		return plan(load, TOPOLOGY_ENRICHED);
+	}
+
+	public CapacityPlan plan(final PipelineLoad load, final String topology) {
+		boolean direct = isDirect(topology);
+		double records = load.getRecordsPerSecond();
+		int enrichedRecordBytes = load.getAverageRecordBytes() + enrichmentBytes;
+		int sinkRecordBytes = direct ? load.getAverageRecordBytes() : enrichedRecordBytes;
+
+		int orderShards = shardsFor(records, load.getAverageRecordBytes());
+		int enrichedShards = shardsFor(records, enrichedRecordBytes);
+		int sinkShards = direct ? orderShards : enrichedShards;
+
+		//the sink gets half the end-to-end budget, the rest is producer, KDA and the first stream
+		double sinkBudgetMillis = load.getLatencySloMillis() / 2.0;
+		if (sinkBudgetMillis < POLL_INTERVAL_MILLIS + processingMillis(1, load)) {
+			throw new IllegalArgumentException("latency SLO of " + load.getLatencySloMillis()
+					+ " ms leaves no room for the sink's event source polling interval");
+		}
+
+		int maxPayloadBatch = (int) Math.floor(LAMBDA_MAX_PAYLOAD_BYTES * 0.9 / (sinkRecordBytes * 4.0 / 3.0));
+		int budgetBatch = (int) Math.floor((sinkBudgetMillis - POLL_INTERVAL_MILLIS - sinkInvocationOverheadMillis) / sinkPerRecordMillis);
+		int batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, Math.min(maxPayloadBatch, budgetBatch)));
+
+		double batchMillis = processingMillis(batchSize, load);
+		double processorRecordsPerSec = batchSize / (batchMillis / 1000.0);
+
+		int parallelization = (int) Math.ceil(records / sinkShards / (processorRecordsPerSec * streamUtilization));
+		if (parallelization > MAX_PARALLELIZATION_FACTOR) {
+			//not enough concurrency per shard; spread the sink's source stream over more shards instead
+			sinkShards = (int) Math.ceil(records / (MAX_PARALLELIZATION_FACTOR * processorRecordsPerSec * streamUtilization));
+			parallelization = MAX_PARALLELIZATION_FACTOR;
+			if (direct) {
+				orderShards = sinkShards;
+			} else {
+				enrichedShards = sinkShards;
+			}
+		}
+		parallelization = Math.max(1, parallelization);
+
+		double slackMillis = sinkBudgetMillis - POLL_INTERVAL_MILLIS - batchMillis;
+		int window = (int) Math.max(0, Math.min(MAX_BATCHING_WINDOW_SECONDS, Math.floor(slackMillis / 1000.0)));
+
+		long batchBytes = (long) batchSize * sinkRecordBytes;
+		int memory = (int) Math.min(10240, Math.max(512, roundUp(256 + batchBytes * 6 / (1024 * 1024), 64)));
+		int timeout = (int) Math.min(MAX_TIMEOUT_SECONDS, Math.max(30, Math.ceil(5 * batchMillis / 1000.0) + window));
+
+		int itemUnits = (int) Math.ceil(enrichedRecordBytes / 1024.0);
+		int writeCapacity = (int) Math.max(5, Math.ceil(records * itemUnits / tableUtilization));
+
+		CapacityPlan plan = new CapacityPlan(orderShards, enrichedShards, batchSize, window, parallelization,
+				memory, timeout, tableReadCapacity, writeCapacity);
+		check(plan, load, topology);
+		return plan;
+	}
+
+	/**
+	 * Throws if the plan would put a shard, the sink, the table or an orderId
+	 * partition over a service limit at the planned load.
+	 */
+	public void check(final CapacityPlan plan, final PipelineLoad load) {
+		check(plan, load, TOPOLOGY_ENRICHED);
+	}
+
+	public void check(final CapacityPlan plan, final PipelineLoad load, final String topology) {
+		boolean direct = isDirect(topology);
+		double records = load.getRecordsPerSecond();
+		int enrichedRecordBytes = load.getAverageRecordBytes() + enrichmentBytes;
+		int sinkRecordBytes = direct ? load.getAverageRecordBytes() : enrichedRecordBytes;
+
+		require(records / plan.getOrderStreamShards() <= SHARD_WRITE_RECORDS_PER_SEC, "order stream records per shard", plan);
+		require(records * load.getAverageRecordBytes() / plan.getOrderStreamShards() <= SHARD_WRITE_BYTES_PER_SEC, "order stream bytes per shard", plan);
+		require(records / plan.getOrderEnrichedStreamShards() <= SHARD_WRITE_RECORDS_PER_SEC, "enriched stream records per shard", plan);
+		require(records * enrichedRecordBytes / plan.getOrderEnrichedStreamShards() <= SHARD_WRITE_BYTES_PER_SEC, "enriched stream bytes per shard", plan);
+		require(records * enrichedRecordBytes / plan.getOrderEnrichedStreamShards() <= SHARD_READ_BYTES_PER_SEC, "enriched stream read bytes per shard", plan);
+
+		require(plan.getSinkBatchSize() >= 1 && plan.getSinkBatchSize() <= MAX_BATCH_SIZE, "sink batch size", plan);
+		require(plan.getSinkBatchSize() * sinkRecordBytes * 4.0 / 3.0 <= LAMBDA_MAX_PAYLOAD_BYTES, "sink invocation payload", plan);
+		require(plan.getSinkParallelizationFactor() >= 1 && plan.getSinkParallelizationFactor() <= MAX_PARALLELIZATION_FACTOR, "parallelization factor", plan);
+		require(plan.getSinkBatchingWindowSeconds() >= 0 && plan.getSinkBatchingWindowSeconds() <= MAX_BATCHING_WINDOW_SECONDS, "batching window", plan);
+		require(plan.getSinkTimeoutSeconds() <= MAX_TIMEOUT_SECONDS, "sink timeout", plan);
+
+		double sinkCapacity = plan.getSinkConcurrency(topology) * plan.getSinkBatchSize() / (processingMillis(plan.getSinkBatchSize(), load) / 1000.0);
+		require(sinkCapacity >= records, "sink throughput", plan);
+
+		int itemUnits = (int) Math.ceil(enrichedRecordBytes / 1024.0);
+		require(records * itemUnits <= plan.getTableWriteCapacity(), "table write capacity", plan);
+		require(plan.getTableWriteCapacity() <= TABLE_MAX_WRITE_UNITS, "table write quota", plan);
+		//all records of one order share an orderId partition key and arrive together
+		require((load.getItemsPerOrder() + 1) * itemUnits <= PARTITION_WRITE_UNITS, "write units per orderId", plan);
+	}
+
+	static boolean isConditional(final String writeMode) {
+		if (writeMode == null || writeMode.isEmpty() || WRITE_MODE_CONDITIONAL.equalsIgnoreCase(writeMode)) {
+			return true;
+		}
+		if (WRITE_MODE_BATCH.equalsIgnoreCase(writeMode)) {
+			return false;
+		}
+		throw new IllegalArgumentException("unknown sinkWriteMode " + writeMode);
+	}
+
+	static boolean isDirect(final String topology) {
+		if (!TOPOLOGY_ENRICHED.equals(topology) && !TOPOLOGY_DIRECT.equals(topology)) {
+			throw new IllegalArgumentException("unknown pipeline topology " + topology);
+		}
+		return TOPOLOGY_DIRECT.equals(topology);
+	}
+
+	private int shardsFor(final double recordsPerSec, final int recordBytes) {
+		double byBytes = recordsPerSec * recordBytes / (SHARD_WRITE_BYTES_PER_SEC * streamUtilization);
+		double byRecords = recordsPerSec / (SHARD_WRITE_RECORDS_PER_SEC * streamUtilization);
+		return (int) Math.max(1, Math.ceil(Math.max(byBytes, byRecords)));
+	}
+
+	private double processingMillis(final int batchSize, final PipelineLoad load) {
+		//the records of one order arrive together, so the largest chain in a batch is one order's
+		int orderRecords = Math.min(batchSize, load.getItemsPerOrder() + 1);
+		return sinkInvocationOverheadMillis + Math.max(batchSize * sinkPerRecordMillis, orderRecords * sinkOrderRecordMillis);
+	}
+
+	private static long roundUp(final long value, final long multiple) {
+		return (value + multiple - 1) / multiple * multiple;
+	}
+
+	private static void require(final boolean condition, final String limit, final CapacityPlan plan) {
+		if (!condition) {
+			throw new IllegalStateException("plan exceeds " + limit + " limit: " + plan);
+		}
+	}
+
+}
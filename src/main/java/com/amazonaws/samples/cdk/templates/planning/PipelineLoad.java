@@ -0,0 +1,42 @@
+package com.amazonaws.samples.cdk.templates.planning;
+
+/** Target load the pipeline is sized for. */
+public class PipelineLoad {
+
+	private final double ordersPerSecond;
+	private final int itemsPerOrder;
+	private final int averageRecordBytes;
+	private final long latencySloMillis;
+
+	public PipelineLoad(final double ordersPerSecond, final int itemsPerOrder, final int averageRecordBytes, final long latencySloMillis) {
+		if (ordersPerSecond <= 0 || itemsPerOrder < 1 || averageRecordBytes < 1 || latencySloMillis < 1) {
+			throw new IllegalArgumentException("load values must be positive");
+		}
+		this.ordersPerSecond = ordersPerSecond;
+		this.itemsPerOrder = itemsPerOrder;
+		this.averageRecordBytes = averageRecordBytes;
+		this.latencySloMillis = latencySloMillis;
+	}
+
+	public double getOrdersPerSecond() {
+		return ordersPerSecond;
+	}
+
+	public int getItemsPerOrder() {
+		return itemsPerOrder;
+	}
+
+	public int getAverageRecordBytes() {
+		return averageRecordBytes;
+	}
+
+	public long getLatencySloMillis() {
+		return latencySloMillis;
+	}
+
+	/** An ORDER header record plus one ITEM record per item. */
+	public double getRecordsPerSecond() {
+		return ordersPerSecond * (itemsPerOrder + 1);
+	}
+
+}
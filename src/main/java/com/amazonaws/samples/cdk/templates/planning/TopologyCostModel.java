@@ -0,0 +1,162 @@
+package com.amazonaws.samples.cdk.templates.planning;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares the two pipeline topologies KinesisStreamETLStack can deploy
+ * (pipelineTopology context) for a load and the CapacityPlan sized for it:
+ *
+ *   enriched: OrderStream -> KDA SQL application -> OrderEnrichedStream -> sink -> table
+ *   direct:   OrderStream -> direct.DirectEnrichmentHandler -> table
+ *
+ * Costs use us-east-1 on-demand list prices: shard hours and 25 KB PUT
+ * payload units per stream, KPU hours for the application, requests and
+ * GB-seconds for the sink (x86), and on-demand write request units for the
+ * table, which are the same for both. The application is assumed to need one
+ * KPU per MiB/s of input (at least one). Sink invocations and durations use
+ * CapacityPlanner's per-invocation and per-record cost; the direct sink also
+ * decodes the ORDER header records it skips.
+ *
+ * Latency is the typical path, not a tail: half an event source polling
+ * interval per Lambda-read hop, the batching window, the sink's batch time,
+ * plus applicationLatencyMillis for the enrichment application. Measure
+ * with perf.PipelinePerfHarness --topology for the in-process figures.
+ *
+ * Usage: TopologyCostModel [--orders-per-second 1000] [--items-per-order 3]
+ *   [--record-bytes 300] [--latency-slo-millis 5000] [--application-latency-millis 1000]
+ *   [--write-mode conditional|batch]
+ */
+public class TopologyCostModel {
+
+	public static final double SHARD_HOUR = 0.015;
+	public static final double PUT_PAYLOAD_UNITS_PER_MILLION = 0.014;
+	public static final double KPU_HOUR = 0.11;
+	public static final double LAMBDA_GB_SECOND = 0.0000166667;
+	public static final double LAMBDA_REQUESTS_PER_MILLION = 0.20;
+	public static final double WRITE_REQUEST_UNITS_PER_MILLION = 1.25;
+
+	private static final double HOURS_PER_MONTH = 730;
+	private static final double SECONDS_PER_MONTH = HOURS_PER_MONTH * 3600;
+	private static final double PUT_PAYLOAD_UNIT_BYTES = 25 * 1024;
+	private static final double KPU_INPUT_BYTES_PER_SECOND = 1024 * 1024;
+	//the event source mapping polls each shard about once a second
+	private static final double POLL_WAIT_MILLIS = 500;
+
+	private final int enrichmentBytes;
+	private final double sinkInvocationOverheadMillis;
+	private final double sinkPerRecordMillis;
+	private final double headerRecordMillis;
+	private final long applicationLatencyMillis;
+
+	public TopologyCostModel() {
+		this(64, 20, 0.5, 0.05, 1000);
+	}
+
+	/**
+	 * @param headerRecordMillis what the direct sink spends decoding and skipping an ORDER header record
+	 * @param applicationLatencyMillis time an order spends in the enrichment application, input poll included
+	 */
+	public TopologyCostModel(final int enrichmentBytes, final double sinkInvocationOverheadMillis, final double sinkPerRecordMillis,
+			final double headerRecordMillis, final long applicationLatencyMillis) {
+		this.enrichmentBytes = enrichmentBytes;
+		this.sinkInvocationOverheadMillis = sinkInvocationOverheadMillis;
+		this.sinkPerRecordMillis = sinkPerRecordMillis;
+		this.headerRecordMillis = headerRecordMillis;
+		this.applicationLatencyMillis = applicationLatencyMillis;
+	}
+
+	public static void main(final String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("expected --option value, got " + args[i]);
+			}
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		PipelineLoad load = new PipelineLoad(Double.parseDouble(options.getOrDefault("orders-per-second", "1000")),
+				Integer.parseInt(options.getOrDefault("items-per-order", "3")),
+				Integer.parseInt(options.getOrDefault("record-bytes", "300")),
+				Long.parseLong(options.getOrDefault("latency-slo-millis", "5000")));
+		String writeMode = options.getOrDefault("write-mode", CapacityPlanner.WRITE_MODE_CONDITIONAL);
+		TopologyCostModel model = new TopologyCostModel(64, 20, CapacityPlanner.isConditional(writeMode)
+				? CapacityPlanner.PUT_ITEM_MILLIS / CapacityPlanner.PUT_ITEM_CONCURRENCY : CapacityPlanner.BATCH_WRITE_RECORD_MILLIS, 0.05,
+				Long.parseLong(options.getOrDefault("application-latency-millis", "1000")));
+		CapacityPlanner planner = new CapacityPlanner(writeMode);
+		CapacityPlan enrichedPlan = planner.plan(load, CapacityPlanner.TOPOLOGY_ENRICHED);
+		CapacityPlan directPlan = planner.plan(load, CapacityPlanner.TOPOLOGY_DIRECT);
+
+		System.out.println("enriched " + enrichedPlan);
+		System.out.println("direct " + directPlan);
+		TopologyEstimate enriched = model.enriched(load, enrichedPlan);
+		TopologyEstimate direct = model.direct(load, directPlan);
+		System.out.print(enriched);
+		System.out.print(direct);
+		System.out.printf("direct saves $%.3f per million orders (%.0f%%) and ~%d ms%n",
+				enriched.getCostPerMillionOrders() - direct.getCostPerMillionOrders(),
+				100 * (1 - direct.getMonthlyCost() / enriched.getMonthlyCost()),
+				enriched.getLatencyMillis() - direct.getLatencyMillis());
+	}
+
+	public TopologyEstimate enriched(final PipelineLoad load, final CapacityPlan plan) {
+		double items = load.getOrdersPerSecond() * load.getItemsPerOrder();
+		int enrichedRecordBytes = load.getAverageRecordBytes() + enrichmentBytes;
+		Map<String, Double> costs = new LinkedHashMap<String, Double>();
+		addOrderStream(costs, load, plan);
+		int kpus = (int) Math.max(1, Math.ceil(load.getRecordsPerSecond() * load.getAverageRecordBytes() / KPU_INPUT_BYTES_PER_SECOND));
+		costs.put("application (" + kpus + " KPU)", kpus * HOURS_PER_MONTH * KPU_HOUR);
+		costs.put("OrderEnrichedStream shards", plan.getOrderEnrichedStreamShards() * HOURS_PER_MONTH * SHARD_HOUR);
+		costs.put("OrderEnrichedStream PUTs", putCost(items, enrichedRecordBytes));
+		double batchMillis = addSink(costs, items, 0, plan.getOrderEnrichedStreamShards(), plan);
+		addTable(costs, items, enrichedRecordBytes);
+		long latency = applicationLatencyMillis + sinkLatencyMillis(plan, batchMillis);
+		return new TopologyEstimate("enriched", load.getOrdersPerSecond() * SECONDS_PER_MONTH, costs, latency);
+	}
+
+	public TopologyEstimate direct(final PipelineLoad load, final CapacityPlan plan) {
+		double items = load.getOrdersPerSecond() * load.getItemsPerOrder();
+		Map<String, Double> costs = new LinkedHashMap<String, Double>();
+		addOrderStream(costs, load, plan);
+		double batchMillis = addSink(costs, items, load.getOrdersPerSecond(), plan.getOrderStreamShards(), plan);
+		addTable(costs, items, load.getAverageRecordBytes() + enrichmentBytes);
+		return new TopologyEstimate("direct", load.getOrdersPerSecond() * SECONDS_PER_MONTH, costs, sinkLatencyMillis(plan, batchMillis));
+	}
+
+	private void addOrderStream(final Map<String, Double> costs, final PipelineLoad load, final CapacityPlan plan) {
+		costs.put("OrderStream shards", plan.getOrderStreamShards() * HOURS_PER_MONTH * SHARD_HOUR);
+		costs.put("OrderStream PUTs", putCost(load.getRecordsPerSecond(), load.getAverageRecordBytes()));
+	}
+
+	//returns the typical batch processing time
+	private double addSink(final Map<String, Double> costs, final double itemsPerSecond, final double headersPerSecond, final int shards,
+			final CapacityPlan plan) {
+		double recordsPerShard = (itemsPerSecond + headersPerSecond) / shards;
+		double polls = plan.getSinkBatchingWindowSeconds() > 0 ? 1.0 / plan.getSinkBatchingWindowSeconds() : 1.0;
+		//a full batch per invocation when the shard keeps up with the batch size, otherwise one per poll
+		double invocationsPerShard = Math.min(recordsPerShard, Math.max(recordsPerShard / plan.getSinkBatchSize(), polls));
+		double recordsPerInvocation = recordsPerShard / invocationsPerShard;
+		double itemShare = itemsPerSecond / (itemsPerSecond + headersPerSecond);
+		double batchMillis = sinkInvocationOverheadMillis
+				+ recordsPerInvocation * (itemShare * sinkPerRecordMillis + (1 - itemShare) * headerRecordMillis);
+
+		double invocationsPerMonth = shards * invocationsPerShard * SECONDS_PER_MONTH;
+		double gbSeconds = invocationsPerMonth * batchMillis / 1000 * plan.getSinkMemoryMb() / 1024.0;
+		costs.put("sink requests", invocationsPerMonth / 1e6 * LAMBDA_REQUESTS_PER_MILLION);
+		costs.put("sink compute", gbSeconds * LAMBDA_GB_SECOND);
+		return batchMillis;
+	}
+
+	private static void addTable(final Map<String, Double> costs, final double itemsPerSecond, final int itemBytes) {
+		costs.put("table writes", itemsPerSecond * Math.ceil(itemBytes / 1024.0) * SECONDS_PER_MONTH / 1e6 * WRITE_REQUEST_UNITS_PER_MILLION);
+	}
+
+	private static double putCost(final double recordsPerSecond, final int recordBytes) {
+		return recordsPerSecond * Math.ceil(recordBytes / PUT_PAYLOAD_UNIT_BYTES) * SECONDS_PER_MONTH / 1e6 * PUT_PAYLOAD_UNITS_PER_MILLION;
+	}
+
+	private static long sinkLatencyMillis(final CapacityPlan plan, final double batchMillis) {
+		return Math.round(POLL_WAIT_MILLIS + plan.getSinkBatchingWindowSeconds() * 1000.0 + batchMillis);
+	}
+
+}
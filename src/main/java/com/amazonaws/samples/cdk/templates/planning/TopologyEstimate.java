@@ -0,0 +1,58 @@
+package com.amazonaws.samples.cdk.templates.planning;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Modelled monthly cost and latency of one pipeline topology at a PipelineLoad. */
+public class TopologyEstimate {
+
+	private final String topology;
+	private final double ordersPerMonth;
+	private final Map<String, Double> monthlyCosts;
+	private final long latencyMillis;
+
+	public TopologyEstimate(final String topology, final double ordersPerMonth, final Map<String, Double> monthlyCosts, final long latencyMillis) {
+		this.topology = topology;
+		this.ordersPerMonth = ordersPerMonth;
+		this.monthlyCosts = Collections.unmodifiableMap(new LinkedHashMap<String, Double>(monthlyCosts));
+		this.latencyMillis = latencyMillis;
+	}
+
+	public String getTopology() {
+		return topology;
+	}
+
+	/** USD per month by component, in pipeline order. */
+	public Map<String, Double> getMonthlyCosts() {
+		return monthlyCosts;
+	}
+
+	public double getMonthlyCost() {
+		double total = 0;
+		for (double cost : monthlyCosts.values()) {
+			total += cost;
+		}
+		return total;
+	}
+
+	public double getCostPerMillionOrders() {
+		return getMonthlyCost() / (ordersPerMonth / 1e6);
+	}
+
+	/** Typical time from PutRecords on OrderStream to the item being written. */
+	public long getLatencyMillis() {
+		return latencyMillis;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder out = new StringBuilder(topology).append(String.format(": $%.2f/month, $%.3f per million orders, ~%d ms%n",
+				getMonthlyCost(), getCostPerMillionOrders(), latencyMillis));
+		for (Map.Entry<String, Double> cost : monthlyCosts.entrySet()) {
+			out.append(String.format("  %-28s $%10.2f%n", cost.getKey(), cost.getValue()));
+		}
+		return out.toString();
+	}
+
+}
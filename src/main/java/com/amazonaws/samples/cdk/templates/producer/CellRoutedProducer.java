@@ -0,0 +1,61 @@
+package com.amazonaws.samples.cdk.templates.producer;
+
+import java.io.IOException;
+import java.util.function.IntFunction;
+
+import com.amazonaws.samples.cdk.templates.cells.CellRouter;
+
+/**
+ * One OrderProducer per cell, with orders routed by CellRouter. Every record
+ * of an order (the ORDER record and its ITEM records) shares the orderId, so
+ * all of them land on the same cell's OrderStream.
+ *
+ * <pre>
+ * CellRouter router = new CellRouter(4);
+ * CellRoutedProducer producer = new CellRoutedProducer(router, cell -&gt; OrderProducer.Builder.create()
+ *         .transport(new KinesisRecordTransport(kinesis, CellRouter.resourceName("OrderStream", CellRouter.cellName(cell))))
+ *         .build());
+ * </pre>
+ */
+public class CellRoutedProducer implements AutoCloseable {
+
+	private final CellRouter router;
+	private final OrderProducer[] producers;
+
+	public CellRoutedProducer(final CellRouter router, final IntFunction<OrderProducer> producerForCell) {
+		this.router = router;
+		this.producers = new OrderProducer[router.getCellCount()];
+		for (int cell = 0; cell < producers.length; cell++) {
+			producers[cell] = producerForCell.apply(cell);
+		}
+	}
+
+	public void put(final OrderRecord order) throws IOException, InterruptedException {
+		producers[router.cellFor(order.getOrderId())].put(order);
+	}
+
+	public OrderProducer getProducer(final int cell) {
+		return producers[cell];
+	}
+
+	public void flush() throws InterruptedException {
+		for (OrderProducer producer : producers) {
+			producer.flush();
+		}
+	}
+
+	public void awaitClose() throws InterruptedException {
+		for (OrderProducer producer : producers) {
+			producer.awaitClose();
+		}
+	}
+
+	/** Closes every cell's producer, even after an interrupt, which stays set on the thread. */
+	@Override
+	public void close() {
+		for (OrderProducer producer : producers) {
+			producer.close();
+		}
+	}
+
+}
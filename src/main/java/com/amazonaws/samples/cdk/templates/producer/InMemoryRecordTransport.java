@@ -0,0 +1,92 @@
+package com.amazonaws.samples.cdk.templates.producer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.kpl.UserRecord;
+
+/**
+ * In-process stand-in for a Kinesis stream with uniformly split shards. An
+ * optional per-shard, per-second record quota makes it answer like a
+ * throttled stream (ProvisionedThroughputExceededException entries).
+ */
+public class InMemoryRecordTransport implements RecordTransport {
+
+	public static final String THROTTLED = "ProvisionedThroughputExceededException";
+
+	private final ShardMap shardMap;
+	private final int recordsPerShardPerSecond;
+	private final Map<String, List<UserRecord>> shardRecords = new HashMap<String, List<UserRecord>>();
+	private final Map<String, long[]> shardUsage = new HashMap<String, long[]>();
+	private long sequence;
+	private int requestCount;
+	private int throttledCount;
+
+	public InMemoryRecordTransport(final int shardCount) {
+		this(shardCount, Integer.MAX_VALUE);
+	}
+
+	public InMemoryRecordTransport(final int shardCount, final int recordsPerShardPerSecond) {
+		this.shardMap = ShardMap.uniform(shardCount);
+		this.recordsPerShardPerSecond = recordsPerShardPerSecond;
+		for (ShardRange shard : shardMap.getShards()) {
+			shardRecords.put(shard.getShardId(), new ArrayList<UserRecord>());
+		}
+	}
+
+	@Override
+	public List<ShardRange> listShards() {
+		return shardMap.getShards();
+	}
+
+	@Override
+	public synchronized List<PutResult> putRecords(final List<UserRecord> records) {
+		if (records.size() > 500) {
+			throw new IllegalArgumentException("PutRecords accepts at most 500 records");
+		}
+		requestCount++;
+		long second = System.currentTimeMillis() / 1000;
+
+		List<PutResult> results = new ArrayList<PutResult>(records.size());
+		for (UserRecord record : records) {
+			String shardId = shardMap.shardFor(record.getPartitionKey(), record.getExplicitHashKey());
+			long[] usage = shardUsage.get(shardId);
+			if (usage == null || usage[0] != second) {
+				usage = new long[] { second, 0 };
+				shardUsage.put(shardId, usage);
+			}
+			if (usage[1] >= recordsPerShardPerSecond) {
+				throttledCount++;
+				results.add(PutResult.failure(THROTTLED));
+				continue;
+			}
+			usage[1]++;
+			shardRecords.get(shardId).add(record);
+			results.add(PutResult.success(shardId, Long.toString(++sequence)));
+		}
+		return results;
+	}
+
+	public synchronized List<UserRecord> getRecords(final String shardId) {
+		return new ArrayList<UserRecord>(shardRecords.get(shardId));
+	}
+
+	public synchronized int getRecordCount() {
+		int count = 0;
+		for (List<UserRecord> records : shardRecords.values()) {
+			count += records.size();
+		}
+		return count;
+	}
+
+	public synchronized int getRequestCount() {
+		return requestCount;
+	}
+
+	public synchronized int getThrottledCount() {
+		return throttledCount;
+	}
+
+}
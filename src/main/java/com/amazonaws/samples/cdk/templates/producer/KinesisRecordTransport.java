@@ -0,0 +1,72 @@
+package com.amazonaws.samples.cdk.templates.producer;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.samples.cdk.templates.kpl.UserRecord;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.kinesis.model.ListShardsRequest;
+import software.amazon.awssdk.services.kinesis.model.ListShardsResponse;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsRequest;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsRequestEntry;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsResultEntry;
+import software.amazon.awssdk.services.kinesis.model.Shard;
+
+public class KinesisRecordTransport implements RecordTransport {
+
+	private final KinesisClient kinesis;
+	private final String streamName;
+
+	public KinesisRecordTransport(final KinesisClient kinesis, final String streamName) {
+		this.kinesis = kinesis;
+		this.streamName = streamName;
+	}
+
+	@Override
+	public List<ShardRange> listShards() {
+		List<ShardRange> shards = new ArrayList<ShardRange>();
+		ListShardsRequest request = ListShardsRequest.builder().streamName(streamName).build();
+		while (true) {
+			ListShardsResponse response = kinesis.listShards(request);
+			for (Shard shard : response.shards()) {
+				//closed parents of a split or merge no longer take writes
+				if (shard.sequenceNumberRange().endingSequenceNumber() == null) {
+					shards.add(new ShardRange(shard.shardId(),
+							new BigInteger(shard.hashKeyRange().startingHashKey()),
+							new BigInteger(shard.hashKeyRange().endingHashKey())));
+				}
+			}
+			if (response.nextToken() == null) {
+				return shards;
+			}
+			request = ListShardsRequest.builder().nextToken(response.nextToken()).build();
+		}
+	}
+
+	@Override
+	public List<PutResult> putRecords(final List<UserRecord> records) {
+		List<PutRecordsRequestEntry> entries = new ArrayList<PutRecordsRequestEntry>(records.size());
+		for (UserRecord record : records) {
+			entries.add(PutRecordsRequestEntry.builder()
+					.partitionKey(record.getPartitionKey())
+					.explicitHashKey(record.getExplicitHashKey())
+					.data(SdkBytes.fromByteArrayUnsafe(record.getData()))
+					.build());
+		}
+
+		List<PutRecordsResultEntry> resultEntries = kinesis.putRecords(PutRecordsRequest.builder()
+				.streamName(streamName)
+				.records(entries)
+				.build()).records();
+
+		List<PutResult> results = new ArrayList<PutResult>(resultEntries.size());
+		for (PutRecordsResultEntry entry : resultEntries) {
+			results.add(new PutResult(entry.shardId(), entry.sequenceNumber(), entry.errorCode()));
+		}
+		return results;
+	}
+
+}
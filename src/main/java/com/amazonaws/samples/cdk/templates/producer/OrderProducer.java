@@ -0,0 +1,422 @@
+package com.amazonaws.samples.cdk.templates.producer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.samples.cdk.templates.hotkeys.HotKeyReport;
+import com.amazonaws.samples.cdk.templates.hotkeys.HotKeyTracker;
+import com.amazonaws.samples.cdk.templates.kpl.AggregatedRecordBuilder;
+import com.amazonaws.samples.cdk.templates.kpl.UserRecord;
+import com.amazonaws.samples.cdk.templates.metrics.EmfMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Batching producer for OrderStream. Records are buffered per predicted shard
+ * and packed into KPL-format aggregated records, which are sent in PutRecords
+ * calls of up to 500 entries / 5 MiB. At most maxInFlight requests run at once;
+ * put blocks when that limit is reached. Entries rejected by PutRecords are
+ * retried with backoff, and records still failing afterwards are counted
+ * and handed to the failure listener.
+ *
+ * With a hotKeyTracker, every partition key and its predicted shard are
+ * counted, and each window's HotKeyReport goes to the hot key listener. The
+ * default listener logs it and writes it as an EMF line in the
+ * OrderETL/Producer namespace.
+ */
+public class OrderProducer implements AutoCloseable {
+
+	public static final int MAX_RECORDS_PER_REQUEST = 500;
+	public static final int MAX_BYTES_PER_REQUEST = 5 * 1024 * 1024;
+
+	public static final String METRICS_NAMESPACE = "OrderETL/Producer";
+
+	public interface FailureListener {
+		void onFailure(List<UserRecord> records, String errorCode);
+	}
+
+	public interface HotKeyListener {
+		void onReport(HotKeyReport report);
+	}
+
+	private final RecordTransport transport;
+	private final ObjectMapper objectMapper;
+	private final PayloadFormat payloadFormat;
+	private final int aggregationMaxBytes;
+	private final int maxRecordsPerRequest;
+	private final int maxRetries;
+	private final int maxInFlight;
+	private final FailureListener failureListener;
+	private final HotKeyTracker hotKeys;
+	private final HotKeyListener hotKeyListener;
+
+	private final Semaphore inFlight;
+	private final ExecutorService senders;
+	private final ScheduledExecutorService scheduler;
+
+	private final Map<String, AggregatedRecordBuilder> shardBuffers = new HashMap<String, AggregatedRecordBuilder>();
+	private List<UserRecord> pending = new ArrayList<UserRecord>();
+	private int pendingBytes;
+	private volatile ShardMap shardMap;
+
+	private final AtomicLong userRecords = new AtomicLong();
+	private final AtomicLong kinesisRecords = new AtomicLong();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong failedRecords = new AtomicLong();
+
+	private OrderProducer(final Builder props) {
+		this.transport = props.transport;
+		this.objectMapper = props.objectMapper;
+		this.payloadFormat = props.payloadFormat;
+		this.aggregationMaxBytes = props.aggregationMaxBytes;
+		this.maxRecordsPerRequest = props.maxRecordsPerRequest;
+		this.maxRetries = props.maxRetries;
+		this.maxInFlight = props.maxInFlight;
+		this.failureListener = props.failureListener;
+		this.hotKeys = props.hotKeyTracker;
+		this.hotKeyListener = props.hotKeyListener != null ? props.hotKeyListener : OrderProducer::logHotKeys;
+
+		this.inFlight = new Semaphore(maxInFlight);
+		this.senders = Executors.newFixedThreadPool(maxInFlight);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor();
+		this.shardMap = new ShardMap(transport.listShards());
+
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sendAll(drain());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, props.lingerMillis, props.lingerMillis, TimeUnit.MILLISECONDS);
+
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					shardMap = new ShardMap(transport.listShards());
+				} catch (RuntimeException e) {
+					System.out.println("ERROR: unable to refresh shard map: " + e.getMessage());
+				}
+			}
+		}, props.shardMapRefreshMillis, props.shardMapRefreshMillis, TimeUnit.MILLISECONDS);
+
+		if (hotKeys != null) {
+			scheduler.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					reportHotKeys();
+				}
+			}, hotKeys.getWindowMillis(), hotKeys.getWindowMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public void put(final OrderRecord order) throws IOException, InterruptedException {
+		byte[] data = payloadFormat == PayloadFormat.BINARY ? OrderRecordCodec.toBinary(order) : objectMapper.writeValueAsBytes(order);
+		put(Integer.toString(order.getOrderId()), data);
+	}
+
+	public void put(final String partitionKey, final byte[] data) throws InterruptedException {
+		UserRecord record = new UserRecord(partitionKey, data);
+		List<List<UserRecord>> ready;
+		synchronized (this) {
+			userRecords.incrementAndGet();
+			String shardId = shardMap.shardFor(partitionKey, null);
+			if (hotKeys != null) {
+				hotKeys.add(partitionKey, shardId);
+			}
+			AggregatedRecordBuilder buffer = shardBuffers.get(shardId);
+			if (buffer == null) {
+				buffer = new AggregatedRecordBuilder(aggregationMaxBytes);
+				shardBuffers.put(shardId, buffer);
+			}
+			ready = new ArrayList<List<UserRecord>>(1);
+			if (!buffer.tryAdd(record)) {
+				enqueue(buffer, ready);
+				buffer.tryAdd(record);
+			}
+		}
+		sendAll(ready);
+	}
+
+	/** Sends everything buffered and waits for all in-flight requests to finish. */
+	public void flush() throws InterruptedException {
+		sendAll(drain());
+		inFlight.acquire(maxInFlight);
+		inFlight.release(maxInFlight);
+	}
+
+	/** Sends everything buffered, waits up to a minute for it, and stops the producer's threads. */
+	public void awaitClose() throws InterruptedException {
+		scheduler.shutdown();
+		flush();
+		senders.shutdown();
+		senders.awaitTermination(1, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * awaitClose for try-with-resources. If the thread is interrupted, the
+	 * senders are stopped without waiting and the interrupt flag is restored.
+	 */
+	@Override
+	public void close() {
+		try {
+			awaitClose();
+		} catch (InterruptedException e) {
+			senders.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public long getUserRecordCount() {
+		return userRecords.get();
+	}
+
+	public long getKinesisRecordCount() {
+		return kinesisRecords.get();
+	}
+
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	public long getRetryCount() {
+		return retries.get();
+	}
+
+	public long getFailedRecordCount() {
+		return failedRecords.get();
+	}
+
+	/** Ends the hot key window now and hands its report to the listener. */
+	public void reportHotKeys() {
+		if (hotKeys == null) {
+			return;
+		}
+		HotKeyReport report;
+		synchronized (this) {
+			List<String> shardIds = new ArrayList<String>();
+			for (ShardRange shard : shardMap.getShards()) {
+				shardIds.add(shard.getShardId());
+			}
+			report = hotKeys.report(shardIds, System.currentTimeMillis());
+		}
+		try {
+			hotKeyListener.onReport(report);
+		} catch (RuntimeException e) {
+			System.out.println("ERROR: hot key listener failed: " + e.getMessage());
+		}
+	}
+
+	private static void logHotKeys(final HotKeyReport report) {
+		System.out.println(report);
+		EmfMetrics metrics = new EmfMetrics(METRICS_NAMESPACE, Collections.<String, String>emptyMap());
+		report.addTo(metrics);
+		metrics.flush(System.out::println);
+	}
+
+	private synchronized List<List<UserRecord>> drain() {
+		List<List<UserRecord>> ready = new ArrayList<List<UserRecord>>();
+		for (AggregatedRecordBuilder buffer : shardBuffers.values()) {
+			if (!buffer.isEmpty()) {
+				enqueue(buffer, ready);
+			}
+		}
+		if (!pending.isEmpty()) {
+			ready.add(pending);
+			pending = new ArrayList<UserRecord>();
+			pendingBytes = 0;
+		}
+		return ready;
+	}
+
+	//caller holds the lock
+	private void enqueue(final AggregatedRecordBuilder buffer, final List<List<UserRecord>> ready) {
+		int size = buffer.getSizeBytes();
+		UserRecord aggregated = buffer.build();
+		buffer.reset();
+		if (pending.size() >= maxRecordsPerRequest || pendingBytes + size > MAX_BYTES_PER_REQUEST) {
+			ready.add(pending);
+			pending = new ArrayList<UserRecord>();
+			pendingBytes = 0;
+		}
+		pending.add(aggregated);
+		pendingBytes += size;
+	}
+
+	private void sendAll(final List<List<UserRecord>> ready) throws InterruptedException {
+		for (final List<UserRecord> batch : ready) {
+			inFlight.acquire();
+			try {
+				senders.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							sendWithRetry(batch);
+						} finally {
+							inFlight.release();
+						}
+					}
+				});
+			} catch (RuntimeException e) {
+				inFlight.release();
+				throw e;
+			}
+		}
+	}
+
+	private void sendWithRetry(final List<UserRecord> batch) {
+		List<UserRecord> remaining = batch;
+		String lastError = null;
+		for (int attempt = 0; attempt <= maxRetries && !remaining.isEmpty(); attempt++) {
+			if (attempt > 0) {
+				retries.incrementAndGet();
+				try {
+					Thread.sleep(ThreadLocalRandom.current().nextLong(Math.min(5000L, 50L << attempt)));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+
+			requests.incrementAndGet();
+			List<PutResult> results;
+			try {
+				results = transport.putRecords(remaining);
+			} catch (RuntimeException e) {
+				lastError = e.getClass().getSimpleName();
+				continue;
+			}
+
+			List<UserRecord> failed = new ArrayList<UserRecord>();
+			for (int i = 0; i < results.size(); i++) {
+				PutResult result = results.get(i);
+				if (result.isSuccessful()) {
+					kinesisRecords.incrementAndGet();
+				} else {
+					lastError = result.getErrorCode();
+					failed.add(remaining.get(i));
+				}
+			}
+			remaining = failed;
+		}
+
+		if (!remaining.isEmpty()) {
+			failedRecords.addAndGet(remaining.size());
+			if (failureListener != null) {
+				failureListener.onFailure(remaining, lastError);
+			}
+		}
+	}
+
+	public static final class Builder {
+
+		private RecordTransport transport;
+		private ObjectMapper objectMapper = new ObjectMapper();
+		private PayloadFormat payloadFormat = PayloadFormat.JSON;
+		private int aggregationMaxBytes = 51200;
+		private int maxRecordsPerRequest = MAX_RECORDS_PER_REQUEST;
+		private int maxRetries = 5;
+		private int maxInFlight = 4;
+		private long lingerMillis = 100;
+		private long shardMapRefreshMillis = 60000;
+		private FailureListener failureListener;
+		private HotKeyTracker hotKeyTracker;
+		private HotKeyListener hotKeyListener;
+
+		private Builder() {
+		}
+
+		public static Builder create() {
+			return new Builder();
+		}
+
+		public Builder transport(final RecordTransport transport) {
+			this.transport = transport;
+			return this;
+		}
+
+		public Builder objectMapper(final ObjectMapper objectMapper) {
+			this.objectMapper = objectMapper;
+			return this;
+		}
+
+		public Builder payloadFormat(final PayloadFormat payloadFormat) {
+			this.payloadFormat = payloadFormat;
+			return this;
+		}
+
+		public Builder aggregationMaxBytes(final int aggregationMaxBytes) {
+			this.aggregationMaxBytes = aggregationMaxBytes;
+			return this;
+		}
+
+		public Builder maxRecordsPerRequest(final int maxRecordsPerRequest) {
+			this.maxRecordsPerRequest = maxRecordsPerRequest;
+			return this;
+		}
+
+		public Builder maxRetries(final int maxRetries) {
+			this.maxRetries = maxRetries;
+			return this;
+		}
+
+		public Builder maxInFlight(final int maxInFlight) {
+			this.maxInFlight = maxInFlight;
+			return this;
+		}
+
+		public Builder lingerMillis(final long lingerMillis) {
+			this.lingerMillis = lingerMillis;
+			return this;
+		}
+
+		public Builder shardMapRefreshMillis(final long shardMapRefreshMillis) {
+			this.shardMapRefreshMillis = shardMapRefreshMillis;
+			return this;
+		}
+
+		public Builder failureListener(final FailureListener failureListener) {
+			this.failureListener = failureListener;
+			return this;
+		}
+
+		public Builder hotKeyTracker(final HotKeyTracker hotKeyTracker) {
+			this.hotKeyTracker = hotKeyTracker;
+			return this;
+		}
+
+		public Builder hotKeyListener(final HotKeyListener hotKeyListener) {
+			this.hotKeyListener = hotKeyListener;
+			return this;
+		}
+
+		public OrderProducer build() {
+			if (transport == null) {
+				throw new IllegalArgumentException("transport is required");
+			}
+			if (maxRecordsPerRequest < 1 || maxRecordsPerRequest > MAX_RECORDS_PER_REQUEST) {
+				throw new IllegalArgumentException("maxRecordsPerRequest must be between 1 and " + MAX_RECORDS_PER_REQUEST);
+			}
+			if (maxInFlight < 1) {
+				throw new IllegalArgumentException("maxInFlight must be at least 1");
+			}
+			return new OrderProducer(this);
+		}
+
+	}
+
+}
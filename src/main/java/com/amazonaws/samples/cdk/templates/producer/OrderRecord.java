@@ -0,0 +1,136 @@
+package com.amazonaws.samples.cdk.templates.producer;
+
+/**
+ * One order or item record as written to OrderStream. Field names match the
+ * $.field mappings of the KDA input schema in KinesisStreamETLStack.
+ */
+public class OrderRecord {
+
+	private int orderId;
+	private int itemId;
+	private int itemQuantity;
+	private float itemAmount;
+	private String itemStatus;
+	private String orderDateTime;
+	private String recordType;
+	private double orderAmount;
+	private String orderStatus;
+	private String shipToName;
+	private String shipToAddress;
+	private String shipToCity;
+	private String shipToState;
+	private String shipToZip;
+
+	public int getOrderId() {
+		return orderId;
+	}
+
+	public void setOrderId(final int orderId) {
+		this.orderId = orderId;
+	}
+
+	public int getItemId() {
+		return itemId;
+	}
+
+	public void setItemId(final int itemId) {
+		this.itemId = itemId;
+	}
+
+	public int getItemQuantity() {
+		return itemQuantity;
+	}
+
+	public void setItemQuantity(final int itemQuantity) {
+		this.itemQuantity = itemQuantity;
+	}
+
+	public float getItemAmount() {
+		return itemAmount;
+	}
+
+	public void setItemAmount(final float itemAmount) {
+		this.itemAmount = itemAmount;
+	}
+
+	public String getItemStatus() {
+		return itemStatus;
+	}
+
+	public void setItemStatus(final String itemStatus) {
+		this.itemStatus = itemStatus;
+	}
+
+	public String getOrderDateTime() {
+		return orderDateTime;
+	}
+
+	public void setOrderDateTime(final String orderDateTime) {
+		this.orderDateTime = orderDateTime;
+	}
+
+	public String getRecordType() {
+		return recordType;
+	}
+
+	public void setRecordType(final String recordType) {
+		this.recordType = recordType;
+	}
+
+	public double getOrderAmount() {
+		return orderAmount;
+	}
+
+	public void setOrderAmount(final double orderAmount) {
+		this.orderAmount = orderAmount;
+	}
+
+	public String getOrderStatus() {
+		return orderStatus;
+	}
+
+	public void setOrderStatus(final String orderStatus) {
+		this.orderStatus = orderStatus;
+	}
+
+	public String getShipToName() {
+		return shipToName;
+	}
+
+	public void setShipToName(final String shipToName) {
+		this.shipToName = shipToName;
+	}
+
+	public String getShipToAddress() {
+		return shipToAddress;
+	}
+
+	public void setShipToAddress(final String shipToAddress) {
+		this.shipToAddress = shipToAddress;
+	}
+
+	public String getShipToCity() {
+		return shipToCity;
+	}
+
+	public void setShipToCity(final String shipToCity) {
+		this.shipToCity = shipToCity;
+	}
+
+	public String getShipToState() {
+		return shipToState;
+	}
+
+	public void setShipToState(final String shipToState) {
+		this.shipToState = shipToState;
+	}
+
+	public String getShipToZip() {
+		return shipToZip;
+	}
+
+	public void setShipToZip(final String shipToZip) {
+		this.shipToZip = shipToZip;
+	}
+
+}
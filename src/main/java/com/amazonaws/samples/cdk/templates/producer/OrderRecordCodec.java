@@ -0,0 +1,65 @@
+package com.amazonaws.samples.cdk.templates.producer;
+
+import com.amazonaws.samples.cdk.templates.schema.BinaryRecordCodec;
+import com.amazonaws.samples.cdk.templates.schema.OrderSchema;
+
+/** Maps OrderRecord to and from the ORDER_COLUMNS value array the binary codecs use. */
+public final class OrderRecordCodec {
+
+	public static final BinaryRecordCodec BINARY = new BinaryRecordCodec(OrderSchema.ORDER_COLUMNS);
+
+	private OrderRecordCodec() {
+	}
+
+	public static byte[] toBinary(final OrderRecord order) {
+		return BINARY.encode(toValues(order));
+	}
+
+	public static OrderRecord fromBinary(final byte[] data) {
+		return fromValues(BINARY.decode(data));
+	}
+
+	//same order as OrderSchema.ORDER_COLUMNS
+	public static Object[] toValues(final OrderRecord order) {
+		return new Object[] {
+				order.getOrderId(),
+				order.getItemId(),
+				order.getItemQuantity(),
+				order.getItemAmount(),
+				order.getItemStatus(),
+				order.getOrderDateTime(),
+				order.getRecordType(),
+				order.getOrderAmount(),
+				order.getOrderStatus(),
+				order.getShipToName(),
+				order.getShipToAddress(),
+				order.getShipToCity(),
+				order.getShipToState(),
+				order.getShipToZip()
+		};
+	}
+
+	public static OrderRecord fromValues(final Object[] values) {
+		OrderRecord order = new OrderRecord();
+		order.setOrderId(intValue(values[0]));
+		order.setItemId(intValue(values[1]));
+		order.setItemQuantity(intValue(values[2]));
+		order.setItemAmount(values[3] == null ? 0f : ((Number) values[3]).floatValue());
+		order.setItemStatus((String) values[4]);
+		order.setOrderDateTime(values[5] == null ? null : values[5].toString());
+		order.setRecordType((String) values[6]);
+		order.setOrderAmount(values[7] == null ? 0d : ((Number) values[7]).doubleValue());
+		order.setOrderStatus((String) values[8]);
+		order.setShipToName((String) values[9]);
+		order.setShipToAddress((String) values[10]);
+		order.setShipToCity((String) values[11]);
+		order.setShipToState((String) values[12]);
+		order.setShipToZip((String) values[13]);
+		return order;
+	}
+
+	private static int intValue(final Object value) {
+		return value == null ? 0 : ((Number) value).intValue();
+	}
+
+}
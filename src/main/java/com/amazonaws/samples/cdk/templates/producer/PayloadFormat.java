@@ -0,0 +1,11 @@
+package com.amazonaws.samples.cdk.templates.producer;
+
+public enum PayloadFormat {
+
+	/** JSON with the KDA input schema's field names; required while the KDA SQL application reads OrderStream. */
+	JSON,
+
+	/** schema.BinaryRecordCodec over OrderSchema.ORDER_COLUMNS; for consumers that decode it themselves. */
+	BINARY
+
+}
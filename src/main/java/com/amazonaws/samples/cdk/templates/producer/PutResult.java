@@ -0,0 +1,39 @@
+package com.amazonaws.samples.cdk.templates.producer;
+
+public class PutResult {
+
+	private final String shardId;
+	private final String sequenceNumber;
+	private final String errorCode;
+
+	public PutResult(final String shardId, final String sequenceNumber, final String errorCode) {
+		this.shardId = shardId;
+		this.sequenceNumber = sequenceNumber;
+		this.errorCode = errorCode;
+	}
+
+	public static PutResult success(final String shardId, final String sequenceNumber) {
+		return new PutResult(shardId, sequenceNumber, null);
+	}
+
+	public static PutResult failure(final String errorCode) {
+		return new PutResult(null, null, errorCode);
+	}
+
+	public boolean isSuccessful() {
+		return errorCode == null;
+	}
+
+	public String getShardId() {
+		return shardId;
+	}
+
+	public String getSequenceNumber() {
+		return sequenceNumber;
+	}
+
+	public String getErrorCode() {
+		return errorCode;
+	}
+
+}
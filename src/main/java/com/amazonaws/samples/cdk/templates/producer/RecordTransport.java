@@ -0,0 +1,19 @@
+package com.amazonaws.samples.cdk.templates.producer;
+
+import java.util.List;
+
+import com.amazonaws.samples.cdk.templates.kpl.UserRecord;
+
+/**
+ * The stream side of OrderProducer. KinesisRecordTransport talks to Kinesis,
+ * InMemoryRecordTransport keeps records in process for tests and local runs.
+ */
+public interface RecordTransport {
+
+	/** Open shards of the stream; an empty list disables per-shard buffering. */
+	List<ShardRange> listShards();
+
+	/** One result per record, in request order, as PutRecords returns them. */
+	List<PutResult> putRecords(List<UserRecord> records);
+
+}
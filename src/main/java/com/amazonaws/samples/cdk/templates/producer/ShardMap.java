@@ -0,0 +1,82 @@
+package com.amazonaws.samples.cdk.templates.producer;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Predicts the shard a partition key lands on the same way Kinesis does:
+ * the 128 bit MD5 of the key (or the explicit hash key) against the open
+ * shards' hash key ranges.
+ */
+public class ShardMap {
+
+	public static final String UNKNOWN_SHARD = "unknown";
+	public static final BigInteger MAX_HASH_KEY = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+
+	private final List<ShardRange> shards;
+
+	public ShardMap(final List<ShardRange> shards) {
+		List<ShardRange> sorted = new ArrayList<ShardRange>(shards);
+		Collections.sort(sorted, new Comparator<ShardRange>() {
+			@Override
+			public int compare(final ShardRange a, final ShardRange b) {
+				return a.getStartingHashKey().compareTo(b.getStartingHashKey());
+			}
+		});
+		this.shards = Collections.unmodifiableList(sorted);
+	}
+
+	/** Splits the hash key space evenly, as CreateStream does. */
+	public static ShardMap uniform(final int shardCount) {
+		List<ShardRange> shards = new ArrayList<ShardRange>(shardCount);
+		BigInteger width = MAX_HASH_KEY.add(BigInteger.ONE).divide(BigInteger.valueOf(shardCount));
+		for (int i = 0; i < shardCount; i++) {
+			BigInteger start = width.multiply(BigInteger.valueOf(i));
+			BigInteger end = i == shardCount - 1 ? MAX_HASH_KEY : start.add(width).subtract(BigInteger.ONE);
+			shards.add(new ShardRange(String.format("shardId-%012d", i), start, end));
+		}
+		return new ShardMap(shards);
+	}
+
+	public List<ShardRange> getShards() {
+		return shards;
+	}
+
+	public String shardFor(final String partitionKey, final String explicitHashKey) {
+		if (shards.isEmpty()) {
+			return UNKNOWN_SHARD;
+		}
+		BigInteger hashKey = explicitHashKey != null ? new BigInteger(explicitHashKey) : hashKey(partitionKey);
+
+		int low = 0;
+		int high = shards.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			ShardRange shard = shards.get(mid);
+			if (shard.getEndingHashKey().compareTo(hashKey) < 0) {
+				low = mid + 1;
+			} else if (shard.getStartingHashKey().compareTo(hashKey) > 0) {
+				high = mid - 1;
+			} else {
+				return shard.getShardId();
+			}
+		}
+		return UNKNOWN_SHARD;
+	}
+
+	public static BigInteger hashKey(final String partitionKey) {
+		try {
+			MessageDigest md5 = MessageDigest.getInstance("MD5");
+			return new BigInteger(1, md5.digest(partitionKey.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
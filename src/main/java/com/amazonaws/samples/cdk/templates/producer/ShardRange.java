@@ -0,0 +1,33 @@
+package com.amazonaws.samples.cdk.templates.producer;
+
+import java.math.BigInteger;
+
+public class ShardRange {
+
+	private final String shardId;
+	private final BigInteger startingHashKey;
+	private final BigInteger endingHashKey;
+
+	public ShardRange(final String shardId, final BigInteger startingHashKey, final BigInteger endingHashKey) {
+		this.shardId = shardId;
+		this.startingHashKey = startingHashKey;
+		this.endingHashKey = endingHashKey;
+	}
+
+	public String getShardId() {
+		return shardId;
+	}
+
+	public BigInteger getStartingHashKey() {
+		return startingHashKey;
+	}
+
+	public BigInteger getEndingHashKey() {
+		return endingHashKey;
+	}
+
+	public boolean contains(final BigInteger hashKey) {
+		return startingHashKey.compareTo(hashKey) <= 0 && endingHashKey.compareTo(hashKey) >= 0;
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.amazonaws.samples.cdk.templates.producer;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic order/item records shaped like production traffic: one ORDER
+ * header record followed by its ITEM records, realistic field lengths and a
+ * small set of repeating states, cities and statuses.
+ */
+public class SyntheticOrderGenerator {
+
+	private static final String[] STATES = { "WA", "CA", "NY", "TX", "FL", "IL", "MA", "OR", "CO", "GA" };
+	private static final String[] CITIES = { "Seattle", "San Francisco", "New York", "Austin", "Miami", "Chicago", "Boston", "Portland", "Denver", "Atlanta" };
+	private static final String[] STREETS = { "Main St", "Pine Ave", "Oak Blvd", "Maple Dr", "Cedar Ln", "Elm St" };
+	private static final String[] NAMES = { "Jane Doe", "John Smith", "Ana Garcia", "Wei Chen", "Priya Patel", "Sam Jones" };
+	private static final String[] STATUSES = { "NEW", "PAID", "SHIPPED" };
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+	private final Random random;
+	private final int itemsPerOrder;
+	private final int productCount;
+	private final LocalDateTime start;
+	private int nextOrderId;
+
+	public SyntheticOrderGenerator(final long seed, final int itemsPerOrder, final int productCount) {
+		this.random = new Random(seed);
+		this.itemsPerOrder = itemsPerOrder;
+		this.productCount = productCount;
+		this.start = LocalDateTime.of(2020, 4, 1, 0, 0);
+		this.nextOrderId = 1;
+	}
+
+	/** The ORDER record followed by itemsPerOrder ITEM records (itemId is the productId). */
+	public List<OrderRecord> nextOrder() {
+		int orderId = nextOrderId++;
+		int location = random.nextInt(STATES.length);
+		String orderDateTime = start.plusNanos(orderId * 7_000_000L).format(TIMESTAMP_FORMAT);
+		String status = STATUSES[random.nextInt(STATUSES.length)];
+
+		List<OrderRecord> records = new ArrayList<OrderRecord>(itemsPerOrder + 1);
+		OrderRecord header = base(orderId, orderDateTime, status, location);
+		header.setRecordType("ORDER");
+		records.add(header);
+
+		double orderAmount = 0;
+		for (int i = 0; i < itemsPerOrder; i++) {
+			OrderRecord item = base(orderId, orderDateTime, status, location);
+			item.setRecordType("ITEM");
+			item.setItemId(1 + random.nextInt(productCount));
+			item.setItemQuantity(1 + random.nextInt(5));
+			item.setItemAmount(Math.round((5 + random.nextFloat() * 195) * 100) / 100f);
+			item.setItemStatus(status);
+			orderAmount += item.getItemAmount() * item.getItemQuantity();
+			records.add(item);
+		}
+		header.setOrderAmount(Math.round(orderAmount * 100) / 100d);
+		for (OrderRecord record : records) {
+			record.setOrderAmount(header.getOrderAmount());
+		}
+		return records;
+	}
+
+	public List<OrderRecord> nextRecords(final int count) {
+		List<OrderRecord> records = new ArrayList<OrderRecord>(count + itemsPerOrder);
+		while (records.size() < count) {
+			records.addAll(nextOrder());
+		}
+		return records.subList(0, count);
+	}
+
+	private OrderRecord base(final int orderId, final String orderDateTime, final String status, final int location) {
+		OrderRecord record = new OrderRecord();
+		record.setOrderId(orderId);
+		record.setOrderDateTime(orderDateTime);
+		record.setOrderStatus(status);
+		record.setShipToName(NAMES[orderId % NAMES.length]);
+		record.setShipToAddress((100 + orderId % 9900) + " " + STREETS[orderId % STREETS.length]);
+		record.setShipToCity(CITIES[location]);
+		record.setShipToState(STATES[location]);
+		record.setShipToZip(String.format("%05d", 10000 + location * 7919 % 89999));
+		return record;
+	}
+
+}
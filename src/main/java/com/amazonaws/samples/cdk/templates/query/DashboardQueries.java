@@ -0,0 +1,91 @@
+package com.amazonaws.samples.cdk.templates.query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+/**
+ * Runs one dashboard refresh against OrderEnriched twice: as parallel Scans
+ * with filters, and as OrderQueryClient queries on the indexes, then the
+ * index refresh once more to show the result cache. Prints orders, requests,
+ * RCU and latency per panel and in total.
+ *
+ * The refresh is the orders placed between --from and --to, those in each of
+ * --statuses and those shipped to each of --states.
+ *
+ * Usage: DashboardQueries --table OrderEnriched --region us-east-1
+ *   --from "2020-04-01T00:00" --to "2020-04-01T23:59:59.999"
+ *   [--statuses NEW,PAID,SHIPPED] [--states WA,CA,NY]
+ *   [--index-shards 4] [--indexed-statuses NEW,PAID] [--parallelism 8]
+ */
+public class DashboardQueries {
+
+	public static void main(final String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("expected --option value, got " + args[i]);
+			}
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		if (!options.containsKey("table") || !options.containsKey("from") || !options.containsKey("to")) {
+			throw new IllegalArgumentException("--table, --from and --to are required");
+		}
+		DynamoDbClient ddb = DynamoDbClient.builder()
+				.region(Region.of(options.getOrDefault("region", System.getenv("AWS_REGION"))))
+				.httpClient(UrlConnectionHttpClient.create())
+				.build();
+		OrderIndexes indexes = OrderIndexes.of(Integer.parseInt(options.getOrDefault("index-shards", "4")),
+				options.getOrDefault("indexed-statuses", "NEW,PAID"));
+		List<OrderQuery> panels = refresh(LocalDateTime.parse(options.get("from")), LocalDateTime.parse(options.get("to")),
+				options.getOrDefault("statuses", "NEW,PAID,SHIPPED"), options.getOrDefault("states", "WA,CA,NY"));
+
+		try (OrderQueryClient client = OrderQueryClient.Builder.create()
+				.client(ddb)
+				.tableName(options.get("table"))
+				.indexes(indexes)
+				.parallelism(Integer.parseInt(options.getOrDefault("parallelism", "8")))
+				.build()) {
+			run("scan", panels, query -> client.scan(query));
+			run("indexes", panels, query -> client.query(query));
+			run("indexes, cached", panels, query -> client.query(query));
+		}
+	}
+
+	public static List<OrderQuery> refresh(final LocalDateTime from, final LocalDateTime to, final String statuses, final String states) {
+		List<OrderQuery> panels = new ArrayList<OrderQuery>();
+		panels.add(OrderQuery.placedBetween(from, to));
+		for (String status : statuses.split(",")) {
+			panels.add(OrderQuery.withStatus(status.trim(), from, to));
+		}
+		for (String state : states.split(",")) {
+			panels.add(OrderQuery.shippedTo(state.trim(), from, to));
+		}
+		return panels;
+	}
+
+	private interface Panel {
+		QueryResult run(OrderQuery query);
+	}
+
+	private static void run(final String name, final List<OrderQuery> panels, final Panel panel) {
+		System.out.println(name + ":");
+		int requests = 0;
+		double units = 0;
+		long start = System.currentTimeMillis();
+		for (OrderQuery query : panels) {
+			QueryResult result = panel.run(query);
+			requests += result.getRequests();
+			units += result.getConsumedReadUnits();
+			System.out.printf("  %-60s %s%n", query, result);
+		}
+		System.out.printf("  refresh: %d requests, %.1f RCU, %d ms%n", requests, units, System.currentTimeMillis() - start);
+	}
+
+}
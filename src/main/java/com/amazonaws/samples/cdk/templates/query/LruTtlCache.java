@@ -0,0 +1,86 @@
+package com.amazonaws.samples.cdk.templates.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * A bounded cache whose entries expire ttlMillis after they were put. Past
+ * maxEntries the least recently used entry is dropped, so memory stays
+ * fixed however many keys pass through. Thread-safe.
+ */
+public class LruTtlCache<K, V> {
+
+	private final long ttlMillis;
+	private final LongSupplier clock;
+	private final Map<K, Timed<V>> entries;
+	private long hits;
+	private long misses;
+
+	public LruTtlCache(final int maxEntries, final long ttlMillis) {
+		this(maxEntries, ttlMillis, System::currentTimeMillis);
+	}
+
+	public LruTtlCache(final int maxEntries, final long ttlMillis, final LongSupplier clock) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be positive");
+		}
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+		this.entries = new LinkedHashMap<K, Timed<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<K, Timed<V>> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/** The cached value, or null when there is none or it expired. */
+	public synchronized V get(final K key) {
+		Timed<V> entry = entries.get(key);
+		if (entry != null && clock.getAsLong() < entry.expiresAt) {
+			hits++;
+			return entry.value;
+		}
+		if (entry != null) {
+			entries.remove(key);
+		}
+		misses++;
+		return null;
+	}
+
+	public synchronized void put(final K key, final V value) {
+		entries.put(key, new Timed<V>(value, clock.getAsLong() + ttlMillis));
+	}
+
+	public synchronized void invalidate(final K key) {
+		entries.remove(key);
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	private static final class Timed<V> {
+
+		private final V value;
+		private final long expiresAt;
+
+		Timed(final V value, final long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+
+	}
+
+}
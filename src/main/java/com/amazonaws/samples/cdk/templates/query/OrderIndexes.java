@@ -0,0 +1,128 @@
+package com.amazonaws.samples.cdk.templates.query;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * The secondary indexes on OrderEnriched (tableIndexes context) and the key
+ * attributes the sinks derive for them. All three are sorted on
+ * orderDateTime and partitioned by day and by orderId modulo shards, so no
+ * index partition takes more than 1/shards of a day's items and all items
+ * of an order land in the same one:
+ *
+ *   OrderDateIndex    orderDayKey    "2020-04-01#3"
+ *   OrderStatusIndex  statusDayKey   "NEW#2020-04-01#3", only for indexedStatuses (sparse)
+ *   ShipToStateIndex  stateDayKey    "WA#2020-04-01#3"
+ *
+ * Each projects PROJECTED_ATTRIBUTES only. The sinks read INDEX_SHARDS and
+ * INDEXED_STATUSES from the environment (see fromEnvironment); the stack
+ * sets both from the same context the indexes are built from, and readers
+ * must use the same values.
+ */
+public final class OrderIndexes {
+
+	public static final String DATE_INDEX = "OrderDateIndex";
+	public static final String STATUS_INDEX = "OrderStatusIndex";
+	public static final String STATE_INDEX = "ShipToStateIndex";
+
+	public static final String DATE_KEY = "orderDayKey";
+	public static final String STATUS_KEY = "statusDayKey";
+	public static final String STATE_KEY = "stateDayKey";
+	public static final String SORT_KEY = "orderDateTime";
+
+	/** What a dashboard needs per item besides the keys; everything else stays in the table. */
+	public static final List<String> PROJECTED_ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(
+			"orderStatus", "shipToState", "orderAmount", "itemAmount", "itemQuantity"));
+
+	private final int shards;
+	private final Set<String> indexedStatuses;
+
+	public OrderIndexes(final int shards, final Set<String> indexedStatuses) {
+		if (shards < 1) {
+			throw new IllegalArgumentException("index shards must be positive");
+		}
+		this.shards = shards;
+		this.indexedStatuses = Collections.unmodifiableSet(new LinkedHashSet<String>(indexedStatuses));
+	}
+
+	/** @param indexedStatuses comma-separated orderStatus values the status index keeps */
+	public static OrderIndexes of(final int shards, final String indexedStatuses) {
+		Set<String> statuses = new LinkedHashSet<String>();
+		for (String status : indexedStatuses.split(",")) {
+			if (!status.trim().isEmpty()) {
+				statuses.add(status.trim());
+			}
+		}
+		return new OrderIndexes(shards, statuses);
+	}
+
+	/** From INDEX_SHARDS and INDEXED_STATUSES, or null when INDEX_SHARDS is not set (the table has no indexes). */
+	public static OrderIndexes fromEnvironment() {
+		String shards = System.getenv("INDEX_SHARDS");
+		if (shards == null || shards.isEmpty()) {
+			return null;
+		}
+		String statuses = System.getenv("INDEXED_STATUSES");
+		return of(Integer.parseInt(shards), statuses == null ? "" : statuses);
+	}
+
+	public void addEnvironment(final Map<String, String> environment) {
+		environment.put("INDEX_SHARDS", Integer.toString(shards));
+		environment.put("INDEXED_STATUSES", String.join(",", indexedStatuses));
+	}
+
+	/** Adds the index key attributes the item's orderId, orderDateTime, orderStatus and shipToState call for. */
+	public void addKeys(final Map<String, AttributeValue> item) {
+		AttributeValue orderId = item.get("orderId");
+		AttributeValue dateTime = item.get(SORT_KEY);
+		if (orderId == null || orderId.n() == null || dateTime == null || dateTime.s() == null || dateTime.s().length() < 10) {
+			return;
+		}
+		String suffix = dateTime.s().substring(0, 10) + "#" + shardOf(Long.parseLong(orderId.n()));
+		item.put(DATE_KEY, AttributeValue.builder().s(suffix).build());
+		AttributeValue status = item.get("orderStatus");
+		if (status != null && status.s() != null && indexedStatuses.contains(status.s())) {
+			item.put(STATUS_KEY, AttributeValue.builder().s(status.s() + "#" + suffix).build());
+		}
+		AttributeValue state = item.get("shipToState");
+		if (state != null && state.s() != null) {
+			item.put(STATE_KEY, AttributeValue.builder().s(state.s() + "#" + suffix).build());
+		}
+	}
+
+	/** Every partition key value of the index covering [from, to], one per day and shard. */
+	public List<String> partitions(final String prefix, final LocalDate from, final LocalDate to) {
+		List<String> keys = new ArrayList<String>();
+		for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+			for (int shard = 0; shard < shards; shard++) {
+				keys.add((prefix == null ? "" : prefix + "#") + day + "#" + shard);
+			}
+		}
+		return keys;
+	}
+
+	public boolean isIndexedStatus(final String status) {
+		return indexedStatuses.contains(status);
+	}
+
+	public int getShards() {
+		return shards;
+	}
+
+	public Set<String> getIndexedStatuses() {
+		return indexedStatuses;
+	}
+
+	private int shardOf(final long orderId) {
+		return (int) Math.floorMod(orderId, (long) shards);
+	}
+
+}
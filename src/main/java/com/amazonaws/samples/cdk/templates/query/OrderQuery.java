@@ -0,0 +1,105 @@
+package com.amazonaws.samples.cdk.templates.query;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+
+/**
+ * One dashboard question: the orders placed in [from, to], optionally only
+ * those with an orderStatus or a shipToState, newest first, at most limit
+ * orders (0 for all). Values, so equal queries share a cache entry.
+ */
+public final class OrderQuery {
+
+	static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+	public enum Kind {
+		DATE, STATUS, STATE
+	}
+
+	private final Kind kind;
+	private final String value;
+	private final LocalDateTime from;
+	private final LocalDateTime to;
+	private final int limit;
+
+	private OrderQuery(final Kind kind, final String value, final LocalDateTime from, final LocalDateTime to, final int limit) {
+		if (from.isAfter(to)) {
+			throw new IllegalArgumentException("from " + from + " is after to " + to);
+		}
+		if (limit < 0) {
+			throw new IllegalArgumentException("limit must not be negative");
+		}
+		this.kind = kind;
+		this.value = value;
+		this.from = from;
+		this.to = to;
+		this.limit = limit;
+	}
+
+	public static OrderQuery placedBetween(final LocalDateTime from, final LocalDateTime to) {
+		return new OrderQuery(Kind.DATE, null, from, to, 0);
+	}
+
+	public static OrderQuery withStatus(final String orderStatus, final LocalDateTime from, final LocalDateTime to) {
+		return new OrderQuery(Kind.STATUS, Objects.requireNonNull(orderStatus), from, to, 0);
+	}
+
+	public static OrderQuery shippedTo(final String shipToState, final LocalDateTime from, final LocalDateTime to) {
+		return new OrderQuery(Kind.STATE, Objects.requireNonNull(shipToState), from, to, 0);
+	}
+
+	public OrderQuery limit(final int orders) {
+		return new OrderQuery(kind, value, from, to, orders);
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/** The orderStatus or shipToState asked for; null for DATE. */
+	public String getValue() {
+		return value;
+	}
+
+	public LocalDateTime getFrom() {
+		return from;
+	}
+
+	public LocalDateTime getTo() {
+		return to;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	String fromText() {
+		return from.format(TIMESTAMP_FORMAT);
+	}
+
+	String toText() {
+		return to.format(TIMESTAMP_FORMAT);
+	}
+
+	@Override
+	public boolean equals(final Object other) {
+		if (!(other instanceof OrderQuery)) {
+			return false;
+		}
+		OrderQuery query = (OrderQuery) other;
+		return kind == query.kind && Objects.equals(value, query.value) && from.equals(query.from) && to.equals(query.to)
+				&& limit == query.limit;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(kind, value, from, to, limit);
+	}
+
+	@Override
+	public String toString() {
+		return kind + (value == null ? "" : " " + value) + " " + fromText() + " .. " + toText() + (limit > 0 ? " limit " + limit : "");
+	}
+
+}
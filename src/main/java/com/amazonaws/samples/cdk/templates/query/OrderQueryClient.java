@@ -0,0 +1,337 @@
+package com.amazonaws.samples.cdk.templates.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+/**
+ * Reads OrderEnriched through OrderIndexes instead of scanning it. A query
+ * becomes one Query per day and index shard in its range, run in parallel
+ * and paginated to the end (or until each partition has produced limit + 1
+ * orders, newest first). The items that come back are folded into one
+ * OrderSummary per order. A status the status index does not keep is read
+ * from the date index with a filter instead.
+ *
+ * Results are cached per OrderQuery for resultTtlMillis, and the full items
+ * of an order (getOrder) for orderTtlMillis, each in an LruTtlCache of
+ * cacheEntries, so dashboards refreshing together and repeated drill-downs
+ * into the same hot orders hit DynamoDB once.
+ *
+ * scan answers the same query the way the dashboards did before the indexes,
+ * with a parallel Scan, for comparison.
+ */
+public class OrderQueryClient implements AutoCloseable {
+
+	private final DynamoDbClient ddb;
+	private final String tableName;
+	private final OrderIndexes indexes;
+	private final int parallelism;
+	private final ExecutorService executor;
+	private final LruTtlCache<OrderQuery, QueryResult> results;
+	private final LruTtlCache<Long, List<Map<String, AttributeValue>>> orders;
+
+	private OrderQueryClient(final Builder builder) {
+		this.ddb = builder.ddb;
+		this.tableName = builder.tableName;
+		this.indexes = builder.indexes;
+		this.parallelism = builder.parallelism;
+		this.executor = Executors.newFixedThreadPool(builder.parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "order-query");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.results = new LruTtlCache<OrderQuery, QueryResult>(builder.cacheEntries, builder.resultTtlMillis);
+		this.orders = new LruTtlCache<Long, List<Map<String, AttributeValue>>>(builder.cacheEntries, builder.orderTtlMillis);
+	}
+
+	public QueryResult query(final OrderQuery query) {
+		QueryResult cached = results.get(query);
+		if (cached != null) {
+			return new QueryResult(cached.getOrders(), 0, 0, 0);
+		}
+		long start = System.currentTimeMillis();
+		String index;
+		String keyAttribute;
+		String prefix = query.getValue();
+		String filter = null;
+		switch (query.getKind()) {
+		case STATUS:
+			if (indexes.isIndexedStatus(query.getValue())) {
+				index = OrderIndexes.STATUS_INDEX;
+				keyAttribute = OrderIndexes.STATUS_KEY;
+			} else {
+				index = OrderIndexes.DATE_INDEX;
+				keyAttribute = OrderIndexes.DATE_KEY;
+				prefix = null;
+				filter = "orderStatus";
+			}
+			break;
+		case STATE:
+			index = OrderIndexes.STATE_INDEX;
+			keyAttribute = OrderIndexes.STATE_KEY;
+			break;
+		default:
+			index = OrderIndexes.DATE_INDEX;
+			keyAttribute = OrderIndexes.DATE_KEY;
+		}
+
+		List<Future<Page>> pending = new ArrayList<Future<Page>>();
+		for (String partition : indexes.partitions(prefix, query.getFrom().toLocalDate(), query.getTo().toLocalDate())) {
+			QueryRequest.Builder request = QueryRequest.builder()
+					.tableName(tableName)
+					.indexName(index)
+					.keyConditionExpression("#pk = :pk AND #sk BETWEEN :from AND :to")
+					.scanIndexForward(false)
+					.returnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+			Map<String, String> names = new HashMap<String, String>();
+			names.put("#pk", keyAttribute);
+			names.put("#sk", OrderIndexes.SORT_KEY);
+			Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+			values.put(":pk", AttributeValue.builder().s(partition).build());
+			values.put(":from", AttributeValue.builder().s(query.fromText()).build());
+			values.put(":to", AttributeValue.builder().s(query.toText()).build());
+			if (filter != null) {
+				request.filterExpression("#f = :f");
+				names.put("#f", filter);
+				values.put(":f", AttributeValue.builder().s(query.getValue()).build());
+			}
+			if (query.getLimit() > 0) {
+				//a few items per order; later pages are read only if the partition needs them
+				request.limit(Math.min(1000, (query.getLimit() + 1) * 4));
+			}
+			QueryRequest first = request.expressionAttributeNames(names).expressionAttributeValues(values).build();
+			pending.add(executor.submit(() -> readPartition(first, query.getLimit())));
+		}
+		QueryResult result = collect(pending, query.getLimit(), start);
+		results.put(query, result);
+		return result;
+	}
+
+	/** The same query answered by a parallel Scan of the table, as the dashboards did without the indexes. Not cached. */
+	public QueryResult scan(final OrderQuery query) {
+		long start = System.currentTimeMillis();
+		Map<String, String> names = new HashMap<String, String>();
+		names.put("#sk", OrderIndexes.SORT_KEY);
+		Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+		values.put(":from", AttributeValue.builder().s(query.fromText()).build());
+		values.put(":to", AttributeValue.builder().s(query.toText()).build());
+		String filter = "#sk BETWEEN :from AND :to";
+		if (query.getKind() != OrderQuery.Kind.DATE) {
+			filter += " AND #f = :f";
+			names.put("#f", query.getKind() == OrderQuery.Kind.STATUS ? "orderStatus" : "shipToState");
+			values.put(":f", AttributeValue.builder().s(query.getValue()).build());
+		}
+		List<Future<Page>> pending = new ArrayList<Future<Page>>();
+		for (int segment = 0; segment < parallelism; segment++) {
+			ScanRequest request = ScanRequest.builder()
+					.tableName(tableName)
+					.segment(segment)
+					.totalSegments(parallelism)
+					.filterExpression(filter)
+					.expressionAttributeNames(names)
+					.expressionAttributeValues(values)
+					.returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+					.build();
+			pending.add(executor.submit(() -> readSegment(request)));
+		}
+		return collect(pending, query.getLimit(), start);
+	}
+
+	/** Every item of the order, from the cache when it was read within orderTtlMillis. */
+	public List<Map<String, AttributeValue>> getOrder(final long orderId) {
+		List<Map<String, AttributeValue>> items = orders.get(orderId);
+		if (items != null) {
+			return items;
+		}
+		Map<String, AttributeValue> values = Collections.singletonMap(":id", AttributeValue.builder().n(Long.toString(orderId)).build());
+		QueryRequest request = QueryRequest.builder()
+				.tableName(tableName)
+				.keyConditionExpression("orderId = :id")
+				.expressionAttributeValues(values)
+				.build();
+		items = Collections.unmodifiableList(readPartition(request, 0).items);
+		orders.put(orderId, items);
+		return items;
+	}
+
+	/** Drops a cached order, e.g. after the caller changed it. */
+	public void invalidateOrder(final long orderId) {
+		orders.invalidate(orderId);
+	}
+
+	public LruTtlCache<OrderQuery, QueryResult> getResultCache() {
+		return results;
+	}
+
+	public LruTtlCache<Long, List<Map<String, AttributeValue>>> getOrderCache() {
+		return orders;
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private Page readPartition(final QueryRequest first, final int limit) {
+		Page page = new Page();
+		Map<String, AttributeValue> startKey = null;
+		do {
+			QueryResponse response = ddb.query(startKey == null ? first : first.toBuilder().exclusiveStartKey(startKey).build());
+			page.add(response.items(), response.consumedCapacity() == null ? 0 : response.consumedCapacity().capacityUnits());
+			startKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty() ? response.lastEvaluatedKey() : null;
+		} while (startKey != null && (limit == 0 || page.orderIds.size() <= limit));
+		return page;
+	}
+
+	private Page readSegment(final ScanRequest first) {
+		Page page = new Page();
+		Map<String, AttributeValue> startKey = null;
+		do {
+			ScanResponse response = ddb.scan(startKey == null ? first : first.toBuilder().exclusiveStartKey(startKey).build());
+			page.add(response.items(), response.consumedCapacity() == null ? 0 : response.consumedCapacity().capacityUnits());
+			startKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty() ? response.lastEvaluatedKey() : null;
+		} while (startKey != null);
+		return page;
+	}
+
+	private static QueryResult collect(final List<Future<Page>> pending, final int limit, final long start) {
+		Map<Long, OrderSummary> found = new LinkedHashMap<Long, OrderSummary>();
+		int requests = 0;
+		double units = 0;
+		for (Future<Page> future : pending) {
+			Page page;
+			try {
+				page = future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while querying", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+			requests += page.requests;
+			units += page.units;
+			for (Map<String, AttributeValue> item : page.items) {
+				long orderId = Long.parseLong(item.get("orderId").n());
+				OrderSummary summary = found.get(orderId);
+				if (summary == null) {
+					summary = new OrderSummary(item);
+					found.put(orderId, summary);
+				}
+				summary.add(item);
+			}
+		}
+		List<OrderSummary> sorted = new ArrayList<OrderSummary>(found.values());
+		sorted.sort(Comparator.comparing(OrderSummary::getOrderDateTime, Comparator.nullsLast(Comparator.reverseOrder()))
+				.thenComparing(Comparator.comparingLong(OrderSummary::getOrderId).reversed()));
+		if (limit > 0 && sorted.size() > limit) {
+			sorted = new ArrayList<OrderSummary>(sorted.subList(0, limit));
+		}
+		return new QueryResult(sorted, requests, units, System.currentTimeMillis() - start);
+	}
+
+	private static final class Page {
+
+		private final List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+		private final Set<String> orderIds = new HashSet<String>();
+		private int requests;
+		private double units;
+
+		void add(final List<Map<String, AttributeValue>> page, final double consumed) {
+			items.addAll(page);
+			for (Map<String, AttributeValue> item : page) {
+				orderIds.add(item.get("orderId").n());
+			}
+			requests++;
+			units += consumed;
+		}
+
+	}
+
+	public static final class Builder {
+
+		private DynamoDbClient ddb;
+		private String tableName;
+		private OrderIndexes indexes;
+		private int parallelism = 8;
+		private int cacheEntries = 1000;
+		private long resultTtlMillis = 30000;
+		private long orderTtlMillis = 60000;
+
+		private Builder() {
+		}
+
+		public static Builder create() {
+			return new Builder();
+		}
+
+		public Builder client(final DynamoDbClient ddb) {
+			this.ddb = ddb;
+			return this;
+		}
+
+		public Builder tableName(final String tableName) {
+			this.tableName = tableName;
+			return this;
+		}
+
+		/** Must match the INDEX_SHARDS and INDEXED_STATUSES the sinks write with. */
+		public Builder indexes(final OrderIndexes indexes) {
+			this.indexes = indexes;
+			return this;
+		}
+
+		/** Concurrent Query or Scan requests. */
+		public Builder parallelism(final int parallelism) {
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		public Builder cacheEntries(final int cacheEntries) {
+			this.cacheEntries = cacheEntries;
+			return this;
+		}
+
+		public Builder resultTtlMillis(final long resultTtlMillis) {
+			this.resultTtlMillis = resultTtlMillis;
+			return this;
+		}
+
+		public Builder orderTtlMillis(final long orderTtlMillis) {
+			this.orderTtlMillis = orderTtlMillis;
+			return this;
+		}
+
+		public OrderQueryClient build() {
+			if (ddb == null || tableName == null || indexes == null) {
+				throw new IllegalStateException("client, tableName and indexes are required");
+			}
+			if (parallelism < 1) {
+				throw new IllegalArgumentException("parallelism must be positive");
+			}
+			return new OrderQueryClient(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.amazonaws.samples.cdk.templates.query;
+
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/** One order as the indexes project it: the order's attributes and its items' totals. */
+public final class OrderSummary {
+
+	private final long orderId;
+	private final String orderDateTime;
+	private final String orderStatus;
+	private final String shipToState;
+	private final double orderAmount;
+	private int itemCount;
+	private int itemQuantity;
+	private double itemAmount;
+
+	OrderSummary(final Map<String, AttributeValue> item) {
+		this.orderId = Long.parseLong(item.get("orderId").n());
+		this.orderDateTime = text(item.get(OrderIndexes.SORT_KEY));
+		this.orderStatus = text(item.get("orderStatus"));
+		this.shipToState = text(item.get("shipToState"));
+		this.orderAmount = number(item.get("orderAmount"));
+	}
+
+	void add(final Map<String, AttributeValue> item) {
+		itemCount++;
+		itemQuantity += (int) number(item.get("itemQuantity"));
+		itemAmount += number(item.get("itemAmount")) * Math.max(1, number(item.get("itemQuantity")));
+	}
+
+	public long getOrderId() {
+		return orderId;
+	}
+
+	public String getOrderDateTime() {
+		return orderDateTime;
+	}
+
+	public String getOrderStatus() {
+		return orderStatus;
+	}
+
+	public String getShipToState() {
+		return shipToState;
+	}
+
+	public double getOrderAmount() {
+		return orderAmount;
+	}
+
+	/** Items of the order the query found. */
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	public int getItemQuantity() {
+		return itemQuantity;
+	}
+
+	/** Sum of itemAmount x itemQuantity over those items. */
+	public double getItemAmount() {
+		return itemAmount;
+	}
+
+	@Override
+	public String toString() {
+		return "OrderSummary{orderId=" + orderId + ", orderDateTime=" + orderDateTime + ", orderStatus=" + orderStatus
+				+ ", shipToState=" + shipToState + ", orderAmount=" + orderAmount + ", itemCount=" + itemCount + "}";
+	}
+
+	private static String text(final AttributeValue value) {
+		return value == null ? null : value.s();
+	}
+
+	private static double number(final AttributeValue value) {
+		return value == null || value.n() == null ? 0 : Double.parseDouble(value.n());
+	}
+
+}
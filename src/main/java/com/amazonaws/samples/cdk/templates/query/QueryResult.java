@@ -0,0 +1,43 @@
+package com.amazonaws.samples.cdk.templates.query;
+
+import java.util.Collections;
+import java.util.List;
+
+/** The orders a query found, newest first, and what finding them cost. */
+public final class QueryResult {
+
+	private final List<OrderSummary> orders;
+	private final int requests;
+	private final double consumedReadUnits;
+	private final long latencyMillis;
+
+	QueryResult(final List<OrderSummary> orders, final int requests, final double consumedReadUnits, final long latencyMillis) {
+		this.orders = Collections.unmodifiableList(orders);
+		this.requests = requests;
+		this.consumedReadUnits = consumedReadUnits;
+		this.latencyMillis = latencyMillis;
+	}
+
+	public List<OrderSummary> getOrders() {
+		return orders;
+	}
+
+	/** Query or Scan requests made, pages included; 0 when answered from the cache. */
+	public int getRequests() {
+		return requests;
+	}
+
+	public double getConsumedReadUnits() {
+		return consumedReadUnits;
+	}
+
+	public long getLatencyMillis() {
+		return latencyMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d orders, %d requests, %.1f RCU, %d ms", orders.size(), requests, consumedReadUnits, latencyMillis);
+	}
+
+}
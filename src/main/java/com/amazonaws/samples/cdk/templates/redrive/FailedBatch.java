@@ -0,0 +1,102 @@
+package com.amazonaws.samples.cdk.templates.redrive;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The record Lambda sends to a Kinesis event source mapping's on-failure
+ * destination when it gives up on a batch: where the batch was in the
+ * stream (KinesisBatchInfo) and why it was dropped. The records themselves
+ * are not in it; they are read back from the stream while it retains them.
+ *
+ * Messages that went through an SNS topic into a queue without raw message
+ * delivery are unwrapped first.
+ */
+public class FailedBatch {
+
+	private static final ObjectMapper JSON = new ObjectMapper();
+
+	private final String streamArn;
+	private final String shardId;
+	private final String startSequenceNumber;
+	private final String endSequenceNumber;
+	private final int batchSize;
+	private final String condition;
+	private final String timestamp;
+
+	public FailedBatch(final String streamArn, final String shardId, final String startSequenceNumber, final String endSequenceNumber,
+			final int batchSize, final String condition, final String timestamp) {
+		this.streamArn = streamArn;
+		this.shardId = shardId;
+		this.startSequenceNumber = startSequenceNumber;
+		this.endSequenceNumber = endSequenceNumber;
+		this.batchSize = batchSize;
+		this.condition = condition;
+		this.timestamp = timestamp;
+	}
+
+	public static FailedBatch parse(final String message) {
+		JsonNode root;
+		try {
+			root = JSON.readTree(message);
+			if ("Notification".equals(root.path("Type").asText()) && root.has("Message")) {
+				root = JSON.readTree(root.get("Message").asText());
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException("not a JSON failure record: " + e.getMessage(), e);
+		}
+		JsonNode info = root.path("KinesisBatchInfo");
+		if (!info.hasNonNull("shardId") || !info.hasNonNull("startSequenceNumber") || !info.hasNonNull("endSequenceNumber")) {
+			throw new IllegalArgumentException("no KinesisBatchInfo in failure record");
+		}
+		return new FailedBatch(info.path("streamArn").asText(null), info.get("shardId").asText(), info.get("startSequenceNumber").asText(),
+				info.get("endSequenceNumber").asText(), info.path("batchSize").asInt(), root.path("requestContext").path("condition").asText(null),
+				root.path("timestamp").asText(null));
+	}
+
+	public String getStreamArn() {
+		return streamArn;
+	}
+
+	/** The stream name from the ARN, or null without one. */
+	public String getStreamName() {
+		if (streamArn == null) {
+			return null;
+		}
+		int slash = streamArn.indexOf(":stream/");
+		return slash < 0 ? null : streamArn.substring(slash + ":stream/".length());
+	}
+
+	public String getShardId() {
+		return shardId;
+	}
+
+	public String getStartSequenceNumber() {
+		return startSequenceNumber;
+	}
+
+	public String getEndSequenceNumber() {
+		return endSequenceNumber;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/** RetryAttemptsExhausted, RecordAgeExceeded or FunctionError. */
+	public String getCondition() {
+		return condition;
+	}
+
+	public String getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return shardId + " [" + startSequenceNumber + ".." + endSequenceNumber + "] (" + batchSize + " records, " + condition + ")";
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.amazonaws.samples.cdk.templates.redrive;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.amazonaws.samples.cdk.templates.sink.OrderEnrichmentSinkHandler;
+import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.kinesis.model.ExpiredIteratorException;
+import software.amazon.awssdk.services.kinesis.model.GetRecordsResponse;
+import software.amazon.awssdk.services.kinesis.model.InvalidArgumentException;
+import software.amazon.awssdk.services.kinesis.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.kinesis.model.Record;
+import software.amazon.awssdk.services.kinesis.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.kinesis.model.ShardIteratorType;
+
+/**
+ * Reads a FailedBatch back from the sink's source stream and runs it through
+ * the sink handler in this process, so a fix to the mapper, the table or the
+ * data can be applied to records the sink parked. The range is read with
+ * AT_SEQUENCE_NUMBER from its first record up to its last; if the stream
+ * no longer retains all of it, nothing is replayed.
+ *
+ * Writes go through the handler's ItemWriter, so with the conditional writer
+ * a replay never overwrites a newer version the live sink wrote since.
+ */
+public class RecordRedrive {
+
+	private static final int GET_RECORDS_LIMIT = 10000;
+	private static final long EMPTY_READ_PAUSE_MILLIS = 200;
+
+	private final KinesisClient kinesis;
+	private final OrderEnrichmentSinkHandler handler;
+	private final String defaultStreamName;
+
+	/** defaultStreamName is used for failure records without a stream ARN. */
+	public RecordRedrive(final KinesisClient kinesis, final OrderEnrichmentSinkHandler handler, final String defaultStreamName) {
+		this.kinesis = kinesis;
+		this.handler = handler;
+		this.defaultStreamName = defaultStreamName;
+	}
+
+	public RedriveResult redrive(final FailedBatch batch) throws InterruptedException {
+		List<Record> records = fetch(batch);
+		if (records == null) {
+			return RedriveResult.expired(batch);
+		}
+		StreamsEventResponse response = handler.handleRequest(event(batch.getShardId(), records), null);
+		List<String> failed = new ArrayList<String>();
+		for (StreamsEventResponse.BatchItemFailure failure : response.getBatchItemFailures()) {
+			failed.add(failure.getItemIdentifier());
+		}
+		return RedriveResult.replayed(batch, records.size(), failed);
+	}
+
+	/** The batch's records in order, or null when the stream no longer holds all of them. */
+	List<Record> fetch(final FailedBatch batch) throws InterruptedException {
+		String streamName = batch.getStreamName() != null ? batch.getStreamName() : defaultStreamName;
+		BigInteger start = new BigInteger(batch.getStartSequenceNumber());
+		BigInteger end = new BigInteger(batch.getEndSequenceNumber());
+		List<Record> records = new ArrayList<Record>();
+
+		String iterator;
+		try {
+			iterator = iterator(streamName, batch.getShardId(), batch.getStartSequenceNumber());
+		} catch (InvalidArgumentException | ResourceNotFoundException e) {
+			//the shard or the sequence number is past retention
+			return null;
+		}
+		while (iterator != null) {
+			GetRecordsResponse response;
+			try {
+				final String current = iterator;
+				response = kinesis.getRecords(r -> r.shardIterator(current).limit(GET_RECORDS_LIMIT));
+			} catch (ProvisionedThroughputExceededException e) {
+				//the shard's 5 reads/s are shared with the live sink
+				Thread.sleep(1000);
+				continue;
+			} catch (ExpiredIteratorException e) {
+				iterator = records.isEmpty() ? iterator(streamName, batch.getShardId(), batch.getStartSequenceNumber())
+						: afterIterator(streamName, batch.getShardId(), records.get(records.size() - 1).sequenceNumber());
+				continue;
+			}
+			for (Record record : response.records()) {
+				BigInteger sequenceNumber = new BigInteger(record.sequenceNumber());
+				if (sequenceNumber.compareTo(end) > 0) {
+					return complete(records, start, end);
+				}
+				records.add(record);
+			}
+			if (!records.isEmpty() && new BigInteger(records.get(records.size() - 1).sequenceNumber()).compareTo(end) == 0) {
+				break;
+			}
+			if (response.records().isEmpty()) {
+				if (response.millisBehindLatest() != null && response.millisBehindLatest() == 0) {
+					break;
+				}
+				Thread.sleep(EMPTY_READ_PAUSE_MILLIS);
+			}
+			iterator = response.nextShardIterator();
+		}
+		return complete(records, start, end);
+	}
+
+	private static List<Record> complete(final List<Record> records, final BigInteger start, final BigInteger end) {
+		if (records.isEmpty()
+				|| new BigInteger(records.get(0).sequenceNumber()).compareTo(start) != 0
+				|| new BigInteger(records.get(records.size() - 1).sequenceNumber()).compareTo(end) != 0) {
+			return null;
+		}
+		return records;
+	}
+
+	private String iterator(final String streamName, final String shardId, final String sequenceNumber) {
+		return kinesis.getShardIterator(r -> r.streamName(streamName).shardId(shardId)
+				.shardIteratorType(ShardIteratorType.AT_SEQUENCE_NUMBER).startingSequenceNumber(sequenceNumber)).shardIterator();
+	}
+
+	private String afterIterator(final String streamName, final String shardId, final String sequenceNumber) {
+		return kinesis.getShardIterator(r -> r.streamName(streamName).shardId(shardId)
+				.shardIteratorType(ShardIteratorType.AFTER_SEQUENCE_NUMBER).startingSequenceNumber(sequenceNumber)).shardIterator();
+	}
+
+	//the shape the event source mapping hands the sink, so DedupeFilter sees the real shard
+	static KinesisEvent event(final String shardId, final List<Record> records) {
+		List<KinesisEvent.KinesisEventRecord> eventRecords = new ArrayList<KinesisEvent.KinesisEventRecord>(records.size());
+		for (Record record : records) {
+			KinesisEvent.Record kinesis = new KinesisEvent.Record();
+			kinesis.setSequenceNumber(record.sequenceNumber());
+			kinesis.setPartitionKey(record.partitionKey());
+			if (record.approximateArrivalTimestamp() != null) {
+				kinesis.setApproximateArrivalTimestamp(Date.from(record.approximateArrivalTimestamp()));
+			}
+			kinesis.setData(record.data().asByteBuffer());
+			KinesisEvent.KinesisEventRecord eventRecord = new KinesisEvent.KinesisEventRecord();
+			eventRecord.setEventID(shardId + ":" + record.sequenceNumber());
+			eventRecord.setKinesis(kinesis);
+			eventRecords.add(eventRecord);
+		}
+		KinesisEvent event = new KinesisEvent();
+		event.setRecords(eventRecords);
+		return event;
+	}
+
+}
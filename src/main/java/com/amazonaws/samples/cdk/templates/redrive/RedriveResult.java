@@ -0,0 +1,60 @@
+package com.amazonaws.samples.cdk.templates.redrive;
+
+import java.util.Collections;
+import java.util.List;
+
+/** What replaying one FailedBatch did. */
+public class RedriveResult {
+
+	private final FailedBatch batch;
+	private final boolean expired;
+	private final int records;
+	private final List<String> failedSequenceNumbers;
+
+	private RedriveResult(final FailedBatch batch, final boolean expired, final int records, final List<String> failedSequenceNumbers) {
+		this.batch = batch;
+		this.expired = expired;
+		this.records = records;
+		this.failedSequenceNumbers = failedSequenceNumbers;
+	}
+
+	static RedriveResult expired(final FailedBatch batch) {
+		return new RedriveResult(batch, true, 0, Collections.<String>emptyList());
+	}
+
+	static RedriveResult replayed(final FailedBatch batch, final int records, final List<String> failedSequenceNumbers) {
+		return new RedriveResult(batch, false, records, Collections.unmodifiableList(failedSequenceNumbers));
+	}
+
+	public FailedBatch getBatch() {
+		return batch;
+	}
+
+	/** The stream no longer retains the whole batch, so nothing was replayed. */
+	public boolean isExpired() {
+		return expired;
+	}
+
+	public int getRecords() {
+		return records;
+	}
+
+	/** Records the sink still could not decode or write. */
+	public List<String> getFailedSequenceNumbers() {
+		return failedSequenceNumbers;
+	}
+
+	public boolean isSucceeded() {
+		return !expired && failedSequenceNumbers.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		if (expired) {
+			return batch + ": no longer in the stream";
+		}
+		return batch + ": " + records + " records replayed, " + failedSequenceNumbers.size() + " still failing"
+				+ (failedSequenceNumbers.isEmpty() ? "" : " " + failedSequenceNumbers);
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.amazonaws.samples.cdk.templates.redrive;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.direct.DirectEnrichmentHandler;
+import com.amazonaws.samples.cdk.templates.metrics.EmfMetrics;
+import com.amazonaws.samples.cdk.templates.reference.ProductLookup;
+import com.amazonaws.samples.cdk.templates.sink.DedupeFilter;
+import com.amazonaws.samples.cdk.templates.sink.ItemWriter;
+import com.amazonaws.samples.cdk.templates.sink.OrderEnrichmentSinkHandler;
+import com.amazonaws.samples.cdk.templates.sink.OrderItemMapper;
+
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.providers.DefaultAwsRegionProviderChain;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+/**
+ * Replays the batches the sink parked on its failure queue, with the default
+ * credentials and region. Each message is read back from the sink's source
+ * stream and run through the handler that sink runs: OrderEnrichmentSinkHandler
+ * for OrderEnrichedStream, or with --topology direct, DirectEnrichmentHandler
+ * for OrderStream, which enriches the raw records from the products object in
+ * --bucket first. A message is deleted only when every record was written. Messages that still fail stay on the queue and show up
+ * again after the visibility timeout. A single saved failure record can be
+ * replayed with --message-file instead of --queue.
+ *
+ * --dry-run true decodes the records without writing or deleting anything,
+ * to check a fix before replaying. --discard-expired true deletes messages
+ * whose records the stream no longer retains. Exits 0 when every message was
+ * replayed and 1 otherwise.
+ *
+ * Usage: RedriveTool --queue URL | --message-file FILE --table OrderEnriched
+ *   [--topology enriched|direct] [--bucket PRODUCTS_BUCKET] [--products-key products/products.json]
+ *   [--stream OrderEnrichedStream] [--write-mode conditional|batch] [--dry-run false]
+ *   [--discard-expired false] [--max-messages 0]
+ */
+public class RedriveTool {
+
+	private static final int VISIBILITY_TIMEOUT_SECONDS = 300;
+	private static final long PRODUCTS_REFRESH_MILLIS = 300 * 1000L;
+
+	public static void main(final String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("expected --option value, got " + args[i]);
+			}
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		boolean dryRun = Boolean.parseBoolean(options.getOrDefault("dry-run", "false"));
+		String topology = options.getOrDefault("topology", "enriched");
+		boolean direct = "direct".equals(topology);
+		if (!(options.containsKey("queue") || options.containsKey("message-file")) || !(dryRun || options.containsKey("table"))
+				|| !(direct || "enriched".equals(topology)) || direct && !options.containsKey("bucket")) {
+			System.err.println("usage: RedriveTool --queue URL | --message-file FILE --table NAME [--topology enriched|direct]"
+					+ " [--bucket PRODUCTS_BUCKET] [--products-key KEY] [--stream NAME] [--write-mode conditional|batch]"
+					+ " [--dry-run true] [--discard-expired true] [--max-messages N]");
+			System.exit(1);
+		}
+		boolean discardExpired = Boolean.parseBoolean(options.getOrDefault("discard-expired", "false"));
+		int maxMessages = Integer.parseInt(options.getOrDefault("max-messages", "0"));
+
+		ItemWriter writer = dryRun ? new DiscardingWriter()
+				: OrderEnrichmentSinkHandler.writerFor(DynamoDbClient.builder().httpClient(UrlConnectionHttpClient.create()).build(),
+						options.get("table"), options.getOrDefault("write-mode", "conditional"));
+		//a fresh filter, so nothing is skipped as already written
+		OrderEnrichmentSinkHandler handler;
+		if (direct) {
+			//the direct sink parks raw OrderStream batches; they need the same enrichment before they are items
+			ProductLookup products = DirectEnrichmentHandler.heapProducts(new DefaultAwsRegionProviderChain().getRegion().id(),
+					options.get("bucket"), options.getOrDefault("products-key", DirectEnrichmentHandler.DEFAULT_PRODUCTS_KEY),
+					PRODUCTS_REFRESH_MILLIS);
+			handler = new DirectEnrichmentHandler(writer, products, line -> {
+			}, new DedupeFilter());
+		} else {
+			handler = new OrderEnrichmentSinkHandler(writer, new OrderItemMapper(), line -> {
+			}, new DedupeFilter());
+		}
+		RecordRedrive redrive = new RecordRedrive(KinesisClient.builder().httpClient(UrlConnectionHttpClient.create()).build(), handler,
+				options.get("stream"));
+
+		if (options.containsKey("message-file")) {
+			String body = new String(Files.readAllBytes(Paths.get(options.get("message-file"))), StandardCharsets.UTF_8);
+			RedriveResult result = redrive.redrive(FailedBatch.parse(body));
+			System.out.println(result);
+			System.exit(result.isSucceeded() ? 0 : 1);
+		}
+
+		SqsClient sqs = SqsClient.builder().httpClient(UrlConnectionHttpClient.create()).build();
+		String queueUrl = options.get("queue");
+		int messages = 0;
+		int redriven = 0;
+		int discarded = 0;
+		while (maxMessages <= 0 || messages < maxMessages) {
+			int remaining = maxMessages <= 0 ? 10 : Math.min(10, maxMessages - messages);
+			List<Message> received = sqs.receiveMessage(r -> r.queueUrl(queueUrl).maxNumberOfMessages(remaining)
+					.visibilityTimeout(VISIBILITY_TIMEOUT_SECONDS).waitTimeSeconds(5)).messages();
+			if (received.isEmpty()) {
+				break;
+			}
+			for (Message message : received) {
+				messages++;
+				RedriveResult result;
+				try {
+					result = redrive.redrive(FailedBatch.parse(message.body()));
+				} catch (IllegalArgumentException e) {
+					System.out.println(message.messageId() + ": " + e.getMessage());
+					continue;
+				}
+				System.out.println(result);
+				boolean delete = false;
+				if (result.isSucceeded()) {
+					redriven++;
+					delete = !dryRun;
+				} else if (result.isExpired() && discardExpired) {
+					discarded++;
+					delete = !dryRun;
+				}
+				if (delete) {
+					sqs.deleteMessage(r -> r.queueUrl(queueUrl).receiptHandle(message.receiptHandle()));
+				}
+			}
+		}
+		System.out.println(messages + " messages, " + redriven + " replayed, " + discarded + " discarded as expired"
+				+ (dryRun ? " (dry run, nothing written or deleted)" : ""));
+		System.exit(redriven + discarded == messages ? 0 : 1);
+	}
+
+	//--dry-run: the handler still decodes and maps every record, the items go nowhere
+	private static class DiscardingWriter implements ItemWriter {
+
+		@Override
+		public List<Map<String, AttributeValue>> write(final List<Map<String, AttributeValue>> items, final EmfMetrics metrics) {
+			return Collections.<Map<String, AttributeValue>>emptyList();
+		}
+
+		@Override
+		public String[] getCounters() {
+			return new String[0];
+		}
+
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.amazonaws.samples.cdk.templates.reference;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** A local file versioned by its size and modification time, for running without S3. */
+public class FileReferenceSource implements ReferenceSource {
+
+	private final Path file;
+
+	public FileReferenceSource(final Path file) {
+		this.file = file;
+	}
+
+	@Override
+	public String currentVersion() throws IOException {
+		return Files.size(file) + "-" + Files.getLastModifiedTime(file).toMillis();
+	}
+
+	@Override
+	public VersionedData fetch() throws IOException {
+		String version = currentVersion();
+		return new VersionedData(version, Files.readAllBytes(file));
+	}
+
+}
@@ -0,0 +1,151 @@
+package com.amazonaws.samples.cdk.templates.reference;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.amazonaws.samples.cdk.templates.flink.Product;
+import com.amazonaws.samples.cdk.templates.flink.S3ProductCatalog;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The products as a memory-mapped ProductIndexFile that follows the
+ * source's version. Every refreshMillis, and on a miss at most once per
+ * minReloadMillis, the source's version (the S3 ETag) is checked; when it
+ * changed, the new object is compiled to directory/products-VERSION.idx and
+ * mapped, and readers move to it with one volatile write. Lookups in
+ * between touch only the mapped file.
+ *
+ * The source may hold products.json (JSON lines or an array, as the SQL
+ * application reads it) or an index ProductIndexCompiler already built,
+ * which is mapped without parsing. A file for the current version left in
+ * the directory by an earlier run is mapped as is. A failed reload keeps the
+ * version already mapped; only a failed first load is an error.
+ */
+public class MappedProductIndex implements ProductLookup {
+
+	private final ReferenceSource source;
+	private final Path directory;
+	private final long refreshMillis;
+	private final long minReloadMillis;
+	private final ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private volatile ProductIndexFile index;
+	private volatile String version;
+	private volatile long checkedAt;
+	private Path file;
+	private long lastMissCheck;
+	private long swaps;
+
+	public MappedProductIndex(final ReferenceSource source, final Path directory, final long refreshMillis, final long minReloadMillis) {
+		this.source = source;
+		this.directory = directory;
+		this.refreshMillis = refreshMillis;
+		this.minReloadMillis = minReloadMillis;
+	}
+
+	@Override
+	public String productName(final int productId) throws IOException {
+		ProductIndexFile current = current();
+		int record = current.find(productId);
+		if (record < 0) {
+			current = check(System.currentTimeMillis(), true);
+			record = current.find(productId);
+		}
+		return record < 0 ? null : current.getName(record);
+	}
+
+	/** The product, or null when the index does not have it. */
+	public Product get(final int productId) throws IOException {
+		Product product = current().get(productId);
+		if (product == null) {
+			product = check(System.currentTimeMillis(), true).get(productId);
+		}
+		return product;
+	}
+
+	/** The mapped version, checked against the source if refreshMillis have passed. */
+	public ProductIndexFile current() throws IOException {
+		long now = System.currentTimeMillis();
+		ProductIndexFile current = index;
+		if (current == null || now - checkedAt >= refreshMillis) {
+			current = check(now, false);
+		}
+		return current;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public synchronized long getSwaps() {
+		return swaps;
+	}
+
+	private synchronized ProductIndexFile check(final long now, final boolean miss) throws IOException {
+		//another thread may have checked while this one waited
+		if (index != null && (miss ? now - lastMissCheck < minReloadMillis : now - checkedAt < refreshMillis)) {
+			return index;
+		}
+		if (miss) {
+			lastMissCheck = now;
+		}
+		try {
+			String latest = source.currentVersion();
+			if (!latest.equals(version)) {
+				load(latest);
+			}
+		} catch (IOException | RuntimeException e) {
+			if (index == null) {
+				throw e;
+			}
+			System.out.println("WARN: products version check failed, keeping " + version + ": " + e.getMessage());
+		}
+		checkedAt = now;
+		return index;
+	}
+
+	private void load(final String latest) throws IOException {
+		Path target = directory.resolve(fileName(latest));
+		String loaded = latest;
+		ProductIndexFile mapped = Files.isRegularFile(target) ? openOrNull(target) : null;
+		if (mapped == null) {
+			ReferenceSource.VersionedData data = source.fetch();
+			loaded = data.getVersion();
+			target = directory.resolve(fileName(loaded));
+			Files.createDirectories(directory);
+			if (ProductIndexFile.isIndex(data.getData())) {
+				//checks the header before anything is written
+				ProductIndexFile.wrap(data.getData());
+				ProductIndexFile.write(data.getData(), target);
+			} else {
+				ProductIndexFile.write(S3ProductCatalog.parse(data.getData(), objectMapper), loaded, target);
+			}
+			mapped = ProductIndexFile.open(target);
+		}
+
+		Path previous = file;
+		index = mapped;
+		version = loaded;
+		file = target;
+		swaps++;
+		//the old mapping stays valid for readers still holding it after the file is unlinked
+		if (previous != null && !previous.equals(target)) {
+			Files.deleteIfExists(previous);
+		}
+	}
+
+	private static ProductIndexFile openOrNull(final Path target) {
+		try {
+			return ProductIndexFile.open(target);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	static String fileName(final String version) {
+		return "products-" + version.replaceAll("[^A-Za-z0-9._-]", "") + ".idx";
+	}
+
+}
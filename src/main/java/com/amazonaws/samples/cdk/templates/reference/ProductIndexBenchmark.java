@@ -0,0 +1,171 @@
+package com.amazonaws.samples.cdk.templates.reference;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.amazonaws.samples.cdk.templates.flink.Product;
+import com.amazonaws.samples.cdk.templates.flink.S3ProductCatalog;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares the memory-mapped ProductIndexFile with the HashMap<Integer,
+ * Product> that S3ProductCatalog builds, for a synthetic products.json:
+ *
+ *   load     parse the JSON into the map / map the compiled file, and the
+ *            heap each keeps
+ *   price    lookup by productId and read the price
+ *   name     lookup and produce the name: the map's String, the index's
+ *            getName (a new String) and copyName (into a reused buffer)
+ *
+ * Lookups run over a fixed random sequence of ids (a tenth of them unknown)
+ * after warmup rounds; ns and bytes allocated are per lookup, measured on
+ * this thread. It then rewrites the JSON and checks that a MappedProductIndex
+ * swaps to the new version.
+ *
+ * Usage: ProductIndexBenchmark [--products 100000] [--lookups 5000000] [--rounds 5]
+ */
+public class ProductIndexBenchmark {
+
+	private static volatile long sink;
+
+	public static void main(final String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		int productCount = Integer.parseInt(options.getOrDefault("products", "100000"));
+		int lookups = Integer.parseInt(options.getOrDefault("lookups", "5000000"));
+		int rounds = Integer.parseInt(options.getOrDefault("rounds", "5"));
+		ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+		Path directory = Files.createTempDirectory("product-index");
+		Path json = directory.resolve("products.json");
+		Files.write(json, productsJson(productCount, "product-", objectMapper));
+		int[] ids = new int[lookups];
+		Random random = new Random(42);
+		for (int i = 0; i < lookups; i++) {
+			ids[i] = 1 + random.nextInt(productCount + productCount / 10);
+		}
+
+		System.out.printf("%d products, %d lookups x %d rounds%n", productCount, lookups, rounds);
+		long heapBefore = usedHeap();
+		long start = System.nanoTime();
+		Map<Integer, Product> map = S3ProductCatalog.parse(Files.readAllBytes(json), objectMapper);
+		long parseNanos = System.nanoTime() - start;
+		long mapHeap = usedHeap() - heapBefore;
+
+		Path indexFile = directory.resolve("products.idx");
+		start = System.nanoTime();
+		ProductIndexFile.write(map, "v1", indexFile);
+		long compileNanos = System.nanoTime() - start;
+		heapBefore = usedHeap();
+		start = System.nanoTime();
+		ProductIndexFile index = ProductIndexFile.open(indexFile);
+		long openNanos = System.nanoTime() - start;
+		long indexHeap = usedHeap() - heapBefore;
+		System.out.printf("load   HashMap: parse %.1f ms, %.1f MiB heap%n", parseNanos / 1e6, mapHeap / 1048576.0);
+		System.out.printf("load   mapped:  open %.3f ms, %.1f MiB heap, %.1f MiB file (compiled once in %.1f ms)%n", openNanos / 1e6,
+				Math.max(0, indexHeap) / 1048576.0, index.getLengthBytes() / 1048576.0, compileNanos / 1e6);
+
+		byte[] name = new byte[256];
+		report("price  HashMap", rounds, lookups, () -> {
+			long sum = 0;
+			for (int id : ids) {
+				Product product = map.get(id);
+				sum += product == null ? 0 : Float.floatToIntBits(product.getProductPrice());
+			}
+			return sum;
+		});
+		report("price  mapped", rounds, lookups, () -> {
+			long sum = 0;
+			for (int id : ids) {
+				int record = index.find(id);
+				sum += record < 0 ? 0 : Float.floatToIntBits(index.getPrice(record));
+			}
+			return sum;
+		});
+		report("name   HashMap", rounds, lookups, () -> {
+			long sum = 0;
+			for (int id : ids) {
+				Product product = map.get(id);
+				sum += product == null ? 0 : product.getProductName().length();
+			}
+			return sum;
+		});
+		report("name   mapped getName", rounds, lookups, () -> {
+			long sum = 0;
+			for (int id : ids) {
+				int record = index.find(id);
+				sum += record < 0 ? 0 : index.getName(record).length();
+			}
+			return sum;
+		});
+		report("name   mapped copyName", rounds, lookups, () -> {
+			long sum = 0;
+			for (int id : ids) {
+				int record = index.find(id);
+				sum += record < 0 ? 0 : index.copyName(record, name);
+			}
+			return sum;
+		});
+
+		MappedProductIndex mapped = new MappedProductIndex(new FileReferenceSource(json), directory.resolve("mapped"), 0, 0);
+		String before = mapped.productName(1);
+		Files.write(json, productsJson(productCount, "renamed-product-", objectMapper));
+		String after = mapped.productName(1);
+		System.out.printf("swap   %s -> %s after the JSON changed, %d versions mapped%n", before, after, mapped.getSwaps());
+		if (!("renamed-product-1".equals(after) && mapped.getSwaps() == 2)) {
+			throw new IllegalStateException("MappedProductIndex did not swap to the new version");
+		}
+	}
+
+	private interface Loop {
+		long run();
+	}
+
+	private static void report(final String name, final int rounds, final int lookups, final Loop loop) {
+		//the first round only warms up
+		loop.run();
+		long bestNanos = Long.MAX_VALUE;
+		long bytes = 0;
+		for (int round = 0; round < rounds; round++) {
+			long allocatedBefore = allocatedBytes();
+			long start = System.nanoTime();
+			sink += loop.run();
+			bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+			bytes = allocatedBytes() - allocatedBefore;
+		}
+		System.out.printf("%-24s %6.1f ns/lookup %6.1f bytes/lookup%n", name, (double) bestNanos / lookups, (double) bytes / lookups);
+	}
+
+	private static byte[] productsJson(final int productCount, final String prefix, final ObjectMapper objectMapper) throws Exception {
+		StringBuilder lines = new StringBuilder();
+		for (int id = 1; id <= productCount; id++) {
+			lines.append(objectMapper.writeValueAsString(new Product(id, prefix + id, id % 100 + 0.99f))).append('\n');
+		}
+		return lines.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
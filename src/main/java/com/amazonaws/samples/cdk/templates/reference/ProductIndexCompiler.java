@@ -0,0 +1,56 @@
+package com.amazonaws.samples.cdk.templates.reference;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.flink.Product;
+import com.amazonaws.samples.cdk.templates.flink.S3ProductCatalog;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compiles products.json into a ProductIndexFile, to upload next to it and
+ * point the direct sink's productsKey at, so no consumer parses the JSON.
+ * The version defaults to the hex MD5 of the JSON, which is the ETag S3
+ * gives it on a single-part upload.
+ *
+ * Usage: ProductIndexCompiler --in products.json --out products.idx [--version VERSION]
+ */
+public class ProductIndexCompiler {
+
+	public static void main(final String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("expected --option value, got " + args[i]);
+			}
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		if (!options.containsKey("in") || !options.containsKey("out")) {
+			throw new IllegalArgumentException("usage: ProductIndexCompiler --in products.json --out products.idx [--version VERSION]");
+		}
+		byte[] json = Files.readAllBytes(Paths.get(options.get("in")));
+		String version = options.containsKey("version") ? options.get("version") : md5(json);
+		Map<Integer, Product> products = S3ProductCatalog.parse(json,
+				new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+
+		Path out = Paths.get(options.get("out"));
+		ProductIndexFile.write(products, version, out);
+		ProductIndexFile index = ProductIndexFile.open(out);
+		System.out.printf("%s: %d products, %d bytes (JSON %d bytes), version %s%n", out, index.size(), index.getLengthBytes(),
+				json.length, index.getVersion());
+	}
+
+	private static String md5(final byte[] data) throws Exception {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : MessageDigest.getInstance("MD5").digest(data)) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+}
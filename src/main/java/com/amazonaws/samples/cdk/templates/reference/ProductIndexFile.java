@@ -0,0 +1,209 @@
+package com.amazonaws.samples.cdk.templates.reference;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.flink.Product;
+
+/**
+ * The products reference data compiled to one read-only, memory-mapped
+ * file: an open-addressing hash table of int productIds pointing at
+ * price/name records, so opening a version costs a mmap and a header check
+ * instead of parsing JSON into boxed maps, and the products live in the page
+ * cache rather than on the heap.
+ *
+ * Layout (little endian):
+ *   header   magic, format, product count, table size (a power of two),
+ *            file length, version length, version (the S3 ETag, UTF-8)
+ *   table    tableSize x (int productId, int record offset); offset 0 is empty
+ *   records  float productPrice, unsigned short name length (0xFFFF for
+ *            null), productName in UTF-8
+ *
+ * find, getPrice and copyName do not allocate. getName and get build a
+ * String and a Product for callers that need one.
+ */
+public final class ProductIndexFile {
+
+	public static final int MAGIC = 0x58445250; //"PRDX"
+	public static final int FORMAT = 1;
+
+	static final int HEADER_BYTES = 128;
+	static final int MAX_VERSION_BYTES = HEADER_BYTES - 24;
+	private static final int SLOT_BYTES = 8;
+	private static final int NULL_NAME = 0xFFFF;
+
+	private final ByteBuffer buffer;
+	private final int count;
+	private final int mask;
+	private final String version;
+
+	private ProductIndexFile(final ByteBuffer buffer) throws IOException {
+		this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+			throw new IOException("not a product index");
+		}
+		if (buffer.getInt(4) != FORMAT) {
+			throw new IOException("unsupported product index format " + buffer.getInt(4));
+		}
+		if (buffer.getInt(16) != buffer.capacity()) {
+			throw new IOException("product index is " + buffer.capacity() + " bytes, header says " + buffer.getInt(16));
+		}
+		this.count = buffer.getInt(8);
+		this.mask = buffer.getInt(12) - 1;
+		byte[] versionBytes = new byte[buffer.getInt(20)];
+		for (int i = 0; i < versionBytes.length; i++) {
+			versionBytes[i] = buffer.get(24 + i);
+		}
+		this.version = new String(versionBytes, StandardCharsets.UTF_8);
+	}
+
+	/** Maps the file read-only. The mapping outlives the channel and is released when this object is collected. */
+	public static ProductIndexFile open(final Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new ProductIndexFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	public static ProductIndexFile wrap(final byte[] data) throws IOException {
+		return new ProductIndexFile(ByteBuffer.wrap(data));
+	}
+
+	public static boolean isIndex(final byte[] data) {
+		return data.length >= 4 && ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).getInt(0) == MAGIC;
+	}
+
+	public static byte[] compile(final Map<Integer, Product> products, final String version) {
+		byte[] versionBytes = version.getBytes(StandardCharsets.UTF_8);
+		if (versionBytes.length > MAX_VERSION_BYTES) {
+			throw new IllegalArgumentException("version longer than " + MAX_VERSION_BYTES + " bytes: " + version);
+		}
+		//at most half full, so a probe ends at an empty slot after a step or two
+		int tableSize = Integer.highestOneBit(Math.max(1, products.size()) * 2 - 1) << 1;
+		int recordsStart = HEADER_BYTES + tableSize * SLOT_BYTES;
+		int length = recordsStart;
+		for (Product product : products.values()) {
+			length += 6 + nameBytes(product).length;
+		}
+
+		ByteBuffer out = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, products.size()).putInt(12, tableSize).putInt(16, length)
+				.putInt(20, versionBytes.length);
+		for (int i = 0; i < versionBytes.length; i++) {
+			out.put(24 + i, versionBytes[i]);
+		}
+		int record = recordsStart;
+		for (Product product : products.values()) {
+			int slot = hash(product.getProductId()) & (tableSize - 1);
+			while (out.getInt(HEADER_BYTES + slot * SLOT_BYTES + 4) != 0) {
+				slot = (slot + 1) & (tableSize - 1);
+			}
+			out.putInt(HEADER_BYTES + slot * SLOT_BYTES, product.getProductId());
+			out.putInt(HEADER_BYTES + slot * SLOT_BYTES + 4, record);
+
+			byte[] name = nameBytes(product);
+			out.putFloat(record, product.getProductPrice());
+			out.putShort(record + 4, (short) (product.getProductName() == null ? NULL_NAME : name.length));
+			for (int i = 0; i < name.length; i++) {
+				out.put(record + 6 + i, name[i]);
+			}
+			record += 6 + name.length;
+		}
+		return out.array();
+	}
+
+	/** Writes the compiled index next to the target and moves it into place, so readers never map a partial file. */
+	public static void write(final Map<Integer, Product> products, final String version, final Path file) throws IOException {
+		write(compile(products, version), file);
+	}
+
+	static void write(final byte[] index, final Path file) throws IOException {
+		Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			Files.write(temp, index);
+			Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/** The record of the product for the other accessors, or -1 when the index does not have it. */
+	public int find(final int productId) {
+		for (int slot = hash(productId) & mask;; slot = (slot + 1) & mask) {
+			int at = HEADER_BYTES + slot * SLOT_BYTES;
+			int record = buffer.getInt(at + 4);
+			if (record == 0) {
+				return -1;
+			}
+			if (buffer.getInt(at) == productId) {
+				return record;
+			}
+		}
+	}
+
+	public float getPrice(final int record) {
+		return buffer.getFloat(record);
+	}
+
+	/** Copies the UTF-8 name into target and returns its length, or -1 for a null name. */
+	public int copyName(final int record, final byte[] target) {
+		int length = buffer.getShort(record + 4) & 0xFFFF;
+		if (length == NULL_NAME) {
+			return -1;
+		}
+		for (int i = 0; i < length; i++) {
+			target[i] = buffer.get(record + 6 + i);
+		}
+		return length;
+	}
+
+	public String getName(final int record) {
+		int length = buffer.getShort(record + 4) & 0xFFFF;
+		if (length == NULL_NAME) {
+			return null;
+		}
+		byte[] name = new byte[length];
+		copyName(record, name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	/** The product, or null when the index does not have it. */
+	public Product get(final int productId) {
+		int record = find(productId);
+		return record < 0 ? null : new Product(productId, getName(record), getPrice(record));
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/** The version of products.json this was compiled from (its ETag), or "" when none was given. */
+	public String getVersion() {
+		return version;
+	}
+
+	public int getLengthBytes() {
+		return buffer.capacity();
+	}
+
+	private static byte[] nameBytes(final Product product) {
+		byte[] name = product.getProductName() == null ? new byte[0] : product.getProductName().getBytes(StandardCharsets.UTF_8);
+		if (name.length >= NULL_NAME) {
+			throw new IllegalArgumentException("productName of " + product.getProductId() + " is " + name.length + " bytes");
+		}
+		return name;
+	}
+
+	private static int hash(final int productId) {
+		int h = productId * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
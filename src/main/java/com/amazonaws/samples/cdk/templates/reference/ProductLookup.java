@@ -0,0 +1,11 @@
+package com.amazonaws.samples.cdk.templates.reference;
+
+import java.io.IOException;
+
+/** What enrichment needs from the products reference data. */
+public interface ProductLookup {
+
+	/** The product's name, or null when the products do not have it (or it has none). */
+	String productName(int productId) throws IOException;
+
+}
@@ -0,0 +1,34 @@
+package com.amazonaws.samples.cdk.templates.reference;
+
+import java.io.IOException;
+
+/** A versioned reference data object, such as products/products.json in S3 with its ETag. */
+public interface ReferenceSource {
+
+	/** The version of the current object, without reading it. */
+	String currentVersion() throws IOException;
+
+	/** The current object. Its version is read with it, so the two always match. */
+	VersionedData fetch() throws IOException;
+
+	final class VersionedData {
+
+		private final String version;
+		private final byte[] data;
+
+		public VersionedData(final String version, final byte[] data) {
+			this.version = version;
+			this.data = data;
+		}
+
+		public String getVersion() {
+			return version;
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.amazonaws.samples.cdk.templates.reference;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+/** An S3 object versioned by its ETag. A version check is a HeadObject request. */
+public class S3ReferenceSource implements ReferenceSource {
+
+	private final S3Client s3;
+	private final String bucket;
+	private final String key;
+
+	public S3ReferenceSource(final String region, final String bucket, final String key) {
+		this(S3Client.builder().region(Region.of(region)).httpClient(UrlConnectionHttpClient.create()).build(), bucket, key);
+	}
+
+	public S3ReferenceSource(final S3Client s3, final String bucket, final String key) {
+		this.s3 = s3;
+		this.bucket = bucket;
+		this.key = key;
+	}
+
+	@Override
+	public String currentVersion() {
+		return s3.headObject(r -> r.bucket(bucket).key(key)).eTag();
+	}
+
+	@Override
+	public VersionedData fetch() {
+		ResponseBytes<GetObjectResponse> object = s3.getObject(r -> r.bucket(bucket).key(key), ResponseTransformer.toBytes());
+		return new VersionedData(object.response().eTag(), object.asByteArray());
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.amazonaws.samples.cdk.templates.scaling;
+
+public class ScalingDecision {
+
+	private final int currentShards;
+	private final int targetShards;
+	private final String reason;
+
+	public ScalingDecision(final int currentShards, final int targetShards, final String reason) {
+		this.currentShards = currentShards;
+		this.targetShards = targetShards;
+		this.reason = reason;
+	}
+
+	static ScalingDecision none(final int currentShards, final String reason) {
+		return new ScalingDecision(currentShards, currentShards, reason);
+	}
+
+	public boolean isScaling() {
+		return targetShards != currentShards;
+	}
+
+	public int getCurrentShards() {
+		return currentShards;
+	}
+
+	public int getTargetShards() {
+		return targetShards;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	@Override
+	public String toString() {
+		return currentShards + " -> " + targetShards + " (" + reason + ")";
+	}
+
+}
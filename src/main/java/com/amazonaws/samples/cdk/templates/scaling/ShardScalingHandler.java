@@ -0,0 +1,178 @@
+package com.amazonaws.samples.cdk.templates.scaling;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataResponse;
+import software.amazon.awssdk.services.cloudwatch.model.Metric;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataQuery;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataResult;
+import software.amazon.awssdk.services.cloudwatch.model.MetricStat;
+import software.amazon.awssdk.services.cloudwatch.model.ScanBy;
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.kinesis.model.AddTagsToStreamRequest;
+import software.amazon.awssdk.services.kinesis.model.LimitExceededException;
+import software.amazon.awssdk.services.kinesis.model.ListTagsForStreamRequest;
+import software.amazon.awssdk.services.kinesis.model.ScalingType;
+import software.amazon.awssdk.services.kinesis.model.StreamDescriptionSummary;
+import software.amazon.awssdk.services.kinesis.model.StreamStatus;
+import software.amazon.awssdk.services.kinesis.model.Tag;
+import software.amazon.awssdk.services.kinesis.model.UpdateShardCountRequest;
+
+/**
+ * Scheduled handler deployed by StreamShardAutoscaler. It reads the stream's
+ * per-minute IncomingBytes/IncomingRecords, asks ShardScalingPolicy for a target
+ * and applies it with UpdateShardCount. The last scaling time is kept as a tag
+ * on the stream so cooldowns survive cold starts. The tag is written before
+ * UpdateShardCount, while the stream is still ACTIVE.
+ *
+ * UpdateShardCount is limited to 10 calls per stream per rolling 24 hours. A
+ * steady ramp can use them up within an hour at the 5 minute scale-up
+ * cooldown; LimitExceededException then leaves the shard count as it is and
+ * the handler tries again on a later run.
+ *
+ * CloudWatch returns no datapoint for a minute without traffic, so both series
+ * are laid on the same per-minute grid by timestamp and empty minutes count as
+ * zero; an idle stream then scales down instead of lacking datapoints. The
+ * grid stops METRIC_DELAY_SECONDS short of now, because the latest minutes
+ * may not be published yet and would otherwise look idle.
+ */
+public class ShardScalingHandler implements RequestHandler<Map<String, Object>, String> {
+
+	static final String LAST_SCALED_TAG = "shard-autoscaler:last-scaled";
+	private static final int PERIOD_SECONDS = 60;
+	private static final int LOOKBACK_PERIODS = 10;
+	private static final int METRIC_DELAY_SECONDS = 120;
+
+	private final KinesisClient kinesis;
+	private final CloudWatchClient cloudWatch;
+	private final String streamName;
+	private final ShardScalingPolicy policy;
+
+	public ShardScalingHandler() {
+		this(KinesisClient.builder().httpClient(UrlConnectionHttpClient.create()).build(),
+				CloudWatchClient.builder().httpClient(UrlConnectionHttpClient.create()).build(),
+				System.getenv("STREAM_NAME"),
+				new ShardScalingPolicy(
+						Integer.parseInt(System.getenv("MIN_SHARDS")),
+						Integer.parseInt(System.getenv("MAX_SHARDS")),
+						Double.parseDouble(System.getenv("SCALE_UP_THRESHOLD")),
+						Double.parseDouble(System.getenv("SCALE_DOWN_THRESHOLD")),
+						Double.parseDouble(System.getenv("TARGET_UTILIZATION")),
+						Integer.parseInt(System.getenv("EVALUATION_PERIODS")),
+						Long.parseLong(System.getenv("SCALE_UP_COOLDOWN_SECONDS")) * 1000,
+						Long.parseLong(System.getenv("SCALE_DOWN_COOLDOWN_SECONDS")) * 1000));
+	}
+
+	public ShardScalingHandler(final KinesisClient kinesis, final CloudWatchClient cloudWatch, final String streamName,
+			final ShardScalingPolicy policy) {
+		this.kinesis = kinesis;
+		this.cloudWatch = cloudWatch;
+		this.streamName = streamName;
+		this.policy = policy;
+	}
+
+	@Override
+	public String handleRequest(final Map<String, Object> event, final Context context) {
+		StreamDescriptionSummary summary = kinesis.describeStreamSummary(r -> r.streamName(streamName)).streamDescriptionSummary();
+		if (summary.streamStatus() != StreamStatus.ACTIVE) {
+			return "stream " + streamName + " is " + summary.streamStatusAsString();
+		}
+
+		Instant end = Instant.now().truncatedTo(ChronoUnit.MINUTES).minusSeconds(METRIC_DELAY_SECONDS);
+		Instant start = end.minusSeconds(PERIOD_SECONDS * LOOKBACK_PERIODS);
+		GetMetricDataResponse metrics = cloudWatch.getMetricData(GetMetricDataRequest.builder()
+				.startTime(start)
+				.endTime(end)
+				.scanBy(ScanBy.TIMESTAMP_ASCENDING)
+				.metricDataQueries(query("bytes", "IncomingBytes"), query("records", "IncomingRecords"))
+				.build());
+
+		double[] bytesPerSec = new double[LOOKBACK_PERIODS];
+		double[] recordsPerSec = new double[LOOKBACK_PERIODS];
+		for (MetricDataResult result : metrics.metricDataResults()) {
+			if ("bytes".equals(result.id())) {
+				bytesPerSec = perSecond(start, result.timestamps(), result.values(), LOOKBACK_PERIODS);
+			} else if ("records".equals(result.id())) {
+				recordsPerSec = perSecond(start, result.timestamps(), result.values(), LOOKBACK_PERIODS);
+			}
+		}
+
+		long lastScaled = lastScaledMillis();
+		ScalingDecision decision = policy.decide(summary.openShardCount(), bytesPerSec, recordsPerSec,
+				System.currentTimeMillis(), lastScaled);
+		System.out.println(streamName + ": " + decision);
+
+		if (decision.isScaling()) {
+			//tags can only be written while the stream is ACTIVE, and UpdateShardCount leaves it UPDATING
+			tagLastScaled(System.currentTimeMillis());
+			try {
+				kinesis.updateShardCount(UpdateShardCountRequest.builder()
+						.streamName(streamName)
+						.targetShardCount(decision.getTargetShards())
+						.scalingType(ScalingType.UNIFORM_SCALING)
+						.build());
+			} catch (LimitExceededException e) {
+				//out of UpdateShardCount calls for the rolling 24 hours; undo the cooldown and retry on a later run
+				tagLastScaled(lastScaled);
+				System.out.println(streamName + ": UpdateShardCount limit exceeded: " + e.getMessage());
+				return decision + " (not applied: UpdateShardCount limit exceeded)";
+			}
+		}
+		return decision.toString();
+	}
+
+	private void tagLastScaled(final long millis) {
+		kinesis.addTagsToStream(AddTagsToStreamRequest.builder()
+				.streamName(streamName)
+				.tags(Collections.singletonMap(LAST_SCALED_TAG, Long.toString(millis)))
+				.build());
+	}
+
+	private MetricDataQuery query(final String id, final String metricName) {
+		return MetricDataQuery.builder()
+				.id(id)
+				.metricStat(MetricStat.builder()
+						.metric(Metric.builder()
+								.namespace("AWS/Kinesis")
+								.metricName(metricName)
+								.dimensions(Dimension.builder().name("StreamName").value(streamName).build())
+								.build())
+						.period(PERIOD_SECONDS)
+						.stat("Sum")
+						.build())
+				.build();
+	}
+
+	/** Per-second rates for the periods minutes from start, oldest first; minutes without a datapoint are 0. */
+	static double[] perSecond(final Instant start, final List<Instant> timestamps, final List<Double> sums, final int periods) {
+		double[] rates = new double[periods];
+		for (int i = 0; i < timestamps.size(); i++) {
+			long period = (timestamps.get(i).getEpochSecond() - start.getEpochSecond()) / PERIOD_SECONDS;
+			if (period >= 0 && period < periods) {
+				rates[(int) period] = sums.get(i) / PERIOD_SECONDS;
+			}
+		}
+		return rates;
+	}
+
+	private long lastScaledMillis() {
+		for (Tag tag : kinesis.listTagsForStream(ListTagsForStreamRequest.builder().streamName(streamName).build()).tags()) {
+			if (LAST_SCALED_TAG.equals(tag.key())) {
+				return Long.parseLong(tag.value());
+			}
+		}
+		return 0;
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.amazonaws.samples.cdk.templates.scaling;
+
+/**
+ * Decides the shard count for a provisioned-mode stream from a series of
+ * per-second IncomingBytes/IncomingRecords samples (oldest first). The two
+ * series are aligned: sample i of each covers the same period, and a period
+ * without traffic is 0 rather than missing. It holds no AWS state so it can
+ * be driven with synthetic metric series.
+ */
+public class ShardScalingPolicy {
+
+	public static final double BYTES_PER_SHARD_PER_SEC = 1024 * 1024;
+	public static final double RECORDS_PER_SHARD_PER_SEC = 1000;
+
+	private final int minShards;
+	private final int maxShards;
+	private final double scaleUpThreshold;
+	private final double scaleDownThreshold;
+	private final double targetUtilization;
+	private final int evaluationPeriods;
+	private final long scaleUpCooldownMillis;
+	private final long scaleDownCooldownMillis;
+
+	public ShardScalingPolicy(final int minShards, final int maxShards) {
+		this(minShards, maxShards, 0.75, 0.25, 0.5, 3, 5 * 60 * 1000L, 30 * 60 * 1000L);
+	}
+
+	public ShardScalingPolicy(final int minShards, final int maxShards, final double scaleUpThreshold,
+			final double scaleDownThreshold, final double targetUtilization, final int evaluationPeriods,
+			final long scaleUpCooldownMillis, final long scaleDownCooldownMillis) {
+		if (minShards < 1 || maxShards < minShards) {
+			throw new IllegalArgumentException("invalid shard bounds " + minShards + ".." + maxShards);
+		}
+		if (!(scaleDownThreshold < targetUtilization && targetUtilization < scaleUpThreshold)) {
+			throw new IllegalArgumentException("thresholds must satisfy scaleDown < target < scaleUp");
+		}
+		this.minShards = minShards;
+		this.maxShards = maxShards;
+		this.scaleUpThreshold = scaleUpThreshold;
+		this.scaleDownThreshold = scaleDownThreshold;
+		this.targetUtilization = targetUtilization;
+		this.evaluationPeriods = evaluationPeriods;
+		this.scaleUpCooldownMillis = scaleUpCooldownMillis;
+		this.scaleDownCooldownMillis = scaleDownCooldownMillis;
+	}
+
+	public ScalingDecision decide(final int currentShards, final double[] bytesPerSec, final double[] recordsPerSec,
+			final long nowMillis, final long lastScaledMillis) {
+		if (currentShards < minShards) {
+			return new ScalingDecision(currentShards, minShards, "below minimum shard count");
+		}
+		if (currentShards > maxShards) {
+			return new ScalingDecision(currentShards, Math.max(maxShards, (currentShards + 1) / 2), "above maximum shard count");
+		}
+
+		if (bytesPerSec.length != recordsPerSec.length) {
+			throw new IllegalArgumentException("bytes and records series must cover the same periods");
+		}
+		int periods = bytesPerSec.length;
+		if (periods < evaluationPeriods) {
+			return ScalingDecision.none(currentShards, "not enough datapoints");
+		}
+
+		boolean allAbove = true;
+		boolean allBelow = true;
+		double peakShardLoad = 0;
+		for (int i = periods - evaluationPeriods; i < periods; i++) {
+			double shardLoad = shardLoad(bytesPerSec[i], recordsPerSec[i]);
+			double utilization = shardLoad / currentShards;
+			allAbove &= utilization >= scaleUpThreshold;
+			allBelow &= utilization <= scaleDownThreshold;
+			peakShardLoad = Math.max(peakShardLoad, shardLoad);
+		}
+
+		if (!allAbove && !allBelow) {
+			return ScalingDecision.none(currentShards, "utilization within thresholds");
+		}
+
+		long sinceLastScaled = nowMillis - lastScaledMillis;
+		if (allAbove && sinceLastScaled < scaleUpCooldownMillis) {
+			return ScalingDecision.none(currentShards, "scale up cooldown");
+		}
+		if (allBelow && sinceLastScaled < scaleDownCooldownMillis) {
+			return ScalingDecision.none(currentShards, "scale down cooldown");
+		}
+
+		int target = (int) Math.ceil(peakShardLoad / targetUtilization);
+		//UpdateShardCount only accepts between half and double the open shard count per call
+		target = Math.max(target, (currentShards + 1) / 2);
+		target = Math.min(target, currentShards * 2);
+		target = Math.max(minShards, Math.min(maxShards, target));
+
+		if (allAbove && target <= currentShards || allBelow && target >= currentShards) {
+			return ScalingDecision.none(currentShards, "shard count bounded");
+		}
+		return new ScalingDecision(currentShards, target, allAbove ? "utilization above " + scaleUpThreshold
+				: "utilization below " + scaleDownThreshold);
+	}
+
+	/** Shards needed at 100% utilization, whichever of the byte and record quota binds first. */
+	public static double shardLoad(final double bytesPerSec, final double recordsPerSec) {
+		return Math.max(bytesPerSec / BYTES_PER_SHARD_PER_SEC, recordsPerSec / RECORDS_PER_SHARD_PER_SEC);
+	}
+
+}
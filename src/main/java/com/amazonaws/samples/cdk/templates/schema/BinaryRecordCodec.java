@@ -0,0 +1,180 @@
+package com.amazonaws.samples.cdk.templates.schema;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Schema-driven binary encoding of one record. Field names are implied by the
+ * column list, so a record carries only a header byte, a null bitmap and the
+ * values in column order:
+ *
+ * <pre>
+ * INT       zigzag varint
+ * REAL      4 byte IEEE 754
+ * DOUBLE    8 byte IEEE 754
+ * VARCHAR   varint length + UTF-8
+ * TIMESTAMP tag byte + zigzag varint epoch millis (canonical text or numeric) or string
+ * </pre>
+ *
+ * Values are Integer, Float, Double, String and, for TIMESTAMP, String or Long.
+ */
+public class BinaryRecordCodec {
+
+	public static final int MAGIC = 0xB1;
+
+	static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+	private static final int TS_TEXT_MILLIS = 0;
+	private static final int TS_NUMERIC = 1;
+	private static final int TS_STRING = 2;
+
+	private final ColumnDefinition[] columns;
+	private final int bitmapBytes;
+
+	public BinaryRecordCodec(final List<ColumnDefinition> columns) {
+		this.columns = columns.toArray(new ColumnDefinition[0]);
+		this.bitmapBytes = (this.columns.length + 7) / 8;
+	}
+
+	public List<ColumnDefinition> getColumns() {
+		return Arrays.asList(columns);
+	}
+
+	public static boolean isBinaryRecord(final byte[] data) {
+		return data.length > 0 && (data[0] & 0xFF) == MAGIC;
+	}
+
+	public byte[] encode(final Object[] values) {
+		WireBuffer out = new WireBuffer(64 + values.length * 8);
+		encodeTo(values, out);
+		return out.toByteArray();
+	}
+
+	void encodeTo(final Object[] values, final WireBuffer out) {
+		if (values.length != columns.length) {
+			throw new IllegalArgumentException("expected " + columns.length + " values, got " + values.length);
+		}
+		out.writeByte(MAGIC);
+		for (int b = 0; b < bitmapBytes; b++) {
+			int bits = 0;
+			for (int i = b * 8; i < Math.min(columns.length, b * 8 + 8); i++) {
+				if (values[i] != null) {
+					bits |= 1 << (i - b * 8);
+				}
+			}
+			out.writeByte(bits);
+		}
+
+		for (int i = 0; i < columns.length; i++) {
+			Object value = values[i];
+			if (value == null) {
+				continue;
+			}
+			switch (columns[i].getType()) {
+			case INT:
+				out.writeZigZag(((Number) value).intValue());
+				break;
+			case REAL:
+				out.writeInt32(Float.floatToIntBits(((Number) value).floatValue()));
+				break;
+			case DOUBLE:
+				out.writeInt64(Double.doubleToLongBits(((Number) value).doubleValue()));
+				break;
+			case VARCHAR:
+				out.writeString(value.toString());
+				break;
+			case TIMESTAMP:
+				writeTimestamp(value, out);
+				break;
+			default:
+				throw new IllegalStateException("unsupported column type " + columns[i].getType());
+			}
+		}
+	}
+
+	public Object[] decode(final byte[] data) {
+		WireBuffer in = new WireBuffer(data);
+		Object[] values = decodeFrom(in);
+		if (in.remaining() != 0) {
+			throw new IllegalArgumentException("trailing bytes after record");
+		}
+		return values;
+	}
+
+	Object[] decodeFrom(final WireBuffer in) {
+		if (in.readByte() != MAGIC) {
+			throw new IllegalArgumentException("not a binary order record");
+		}
+		byte[] bitmap = in.readBytes(bitmapBytes);
+
+		Object[] values = new Object[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			if ((bitmap[i / 8] & (1 << (i % 8))) == 0) {
+				continue;
+			}
+			switch (columns[i].getType()) {
+			case INT:
+				values[i] = (int) in.readZigZag();
+				break;
+			case REAL:
+				values[i] = Float.intBitsToFloat(in.readInt32());
+				break;
+			case DOUBLE:
+				values[i] = Double.longBitsToDouble(in.readInt64());
+				break;
+			case VARCHAR:
+				values[i] = in.readString();
+				break;
+			case TIMESTAMP:
+				values[i] = readTimestamp(in);
+				break;
+			default:
+				throw new IllegalStateException("unsupported column type " + columns[i].getType());
+			}
+		}
+		return values;
+	}
+
+	private static void writeTimestamp(final Object value, final WireBuffer out) {
+		if (value instanceof Number) {
+			out.writeByte(TS_NUMERIC);
+			out.writeZigZag(((Number) value).longValue());
+			return;
+		}
+		String text = value.toString();
+		//only the canonical form is stored as millis, so decoding always returns the original text
+		if (text.length() == 23) {
+			try {
+				LocalDateTime dateTime = LocalDateTime.parse(text, TIMESTAMP_FORMAT);
+				out.writeByte(TS_TEXT_MILLIS);
+				out.writeZigZag(dateTime.toInstant(ZoneOffset.UTC).toEpochMilli());
+				return;
+			} catch (DateTimeParseException e) {
+				//fall through to the string form
+			}
+		}
+		out.writeByte(TS_STRING);
+		out.writeString(text);
+	}
+
+	private static Object readTimestamp(final WireBuffer in) {
+		int tag = in.readByte();
+		switch (tag) {
+		case TS_TEXT_MILLIS:
+			long millis = in.readZigZag();
+			return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1000000, ZoneOffset.UTC)
+					.format(TIMESTAMP_FORMAT);
+		case TS_NUMERIC:
+			return in.readZigZag();
+		case TS_STRING:
+			return in.readString();
+		default:
+			throw new IllegalArgumentException("unknown timestamp encoding " + tag);
+		}
+	}
+
+}
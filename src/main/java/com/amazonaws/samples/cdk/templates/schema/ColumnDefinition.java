@@ -0,0 +1,59 @@
+package com.amazonaws.samples.cdk.templates.schema;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One column of a record schema, declared with the KDA SQL type so the same
+ * definition drives the stacks' RecordColumnProperty lists and the binary codec.
+ */
+public class ColumnDefinition {
+
+	public enum Type {
+		INT, REAL, DOUBLE, VARCHAR, TIMESTAMP
+	}
+
+	private static final Pattern VARCHAR = Pattern.compile("VARCHAR\\((\\d+)\\)");
+
+	private final String name;
+	private final String sqlType;
+	private final Type type;
+	private final int maxLength;
+
+	public ColumnDefinition(final String name, final String sqlType) {
+		this.name = name;
+		this.sqlType = sqlType;
+
+		Matcher varchar = VARCHAR.matcher(sqlType);
+		if (varchar.matches()) {
+			this.type = Type.VARCHAR;
+			this.maxLength = Integer.parseInt(varchar.group(1));
+		} else {
+			this.type = Type.valueOf(sqlType);
+			this.maxLength = 0;
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getSqlType() {
+		return sqlType;
+	}
+
+	/** JSONPath used by the KDA input schema. */
+	public String getMapping() {
+		return "$." + name;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/** VARCHAR length, 0 for other types. */
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.amazonaws.samples.cdk.templates.schema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Column definitions for the records on OrderStream and OrderEnrichedStream.
+ * Both stacks build their KDA input schema from ORDER_COLUMNS, so the wire
+ * formats and the SQL applications always agree on names and types.
+ */
+public final class OrderSchema {
+
+	public static final List<ColumnDefinition> ORDER_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+			new ColumnDefinition("orderId", "INT"),
+			new ColumnDefinition("itemId", "INT"),
+			new ColumnDefinition("itemQuantity", "INT"),
+			new ColumnDefinition("itemAmount", "REAL"),
+			new ColumnDefinition("itemStatus", "VARCHAR(8)"),
+			new ColumnDefinition("orderDateTime", "TIMESTAMP"),
+			new ColumnDefinition("recordType", "VARCHAR(16)"),
+			new ColumnDefinition("orderAmount", "DOUBLE"),
+			new ColumnDefinition("orderStatus", "VARCHAR(8)"),
+			new ColumnDefinition("shipToName", "VARCHAR(32)"),
+			new ColumnDefinition("shipToAddress", "VARCHAR(32)"),
+			new ColumnDefinition("shipToCity", "VARCHAR(32)"),
+			new ColumnDefinition("shipToState", "VARCHAR(16)"),
+			new ColumnDefinition("shipToZip", "VARCHAR(16)")));
+
+	public static final List<ColumnDefinition> PRODUCT_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+			new ColumnDefinition("productId", "INT"),
+			new ColumnDefinition("productName", "VARCHAR(32)"),
+			new ColumnDefinition("productPrice", "REAL")));
+
+	/** Order columns plus what the enrichment step adds; the attributes the sink writes. */
+	public static final List<ColumnDefinition> ENRICHED_COLUMNS;
+
+	static {
+		List<ColumnDefinition> enriched = new ArrayList<ColumnDefinition>(ORDER_COLUMNS);
+		enriched.add(new ColumnDefinition("productName", "VARCHAR(32)"));
+		enriched.add(new ColumnDefinition("event_ts", "TIMESTAMP"));
+		ENRICHED_COLUMNS = Collections.unmodifiableList(enriched);
+	}
+
+	private OrderSchema() {
+	}
+
+	public static int indexOf(final List<ColumnDefinition> columns, final String name) {
+		for (int i = 0; i < columns.size(); i++) {
+			if (columns.get(i).getName().equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+}
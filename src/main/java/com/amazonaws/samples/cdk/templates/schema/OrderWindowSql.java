@@ -0,0 +1,113 @@
+package com.amazonaws.samples.cdk.templates.schema;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates the KDA SQL application code for KinesisStreamETLStackV2. A first
+ * pump copies ITEM records from the input stream into ORDERSTREAM, which
+ * declares exactly OrderSchema.ORDER_COLUMNS. A second pump groups ORDERSTREAM
+ * by orderId and writes order-level totals to DESTINATION_SQL_STREAM:
+ *
+ * TUMBLING emits one row per order and window (GROUP BY STEP(ROWTIME)). An
+ * order whose items arrive within one window reaches the output once instead
+ * of once per item.
+ *
+ * SLIDING emits one row per item, carrying the running totals of the order's
+ * items in the preceding window (WINDOW ... RANGE INTERVAL PRECEDING). Output
+ * volume is unchanged, but each row is already complete.
+ */
+public class OrderWindowSql {
+
+	public enum WindowType {
+		TUMBLING, SLIDING
+	}
+
+	public static final String ORDER_STREAM = "ORDERSTREAM";
+	public static final String OUTPUT_STREAM = "DESTINATION_SQL_STREAM";
+
+	//order-level attributes: the same on every item of an order
+	static final List<String> ORDER_ATTRIBUTES = Arrays.asList(
+			"orderId", "orderAmount", "orderStatus", "orderDateTime",
+			"shipToName", "shipToAddress", "shipToCity", "shipToState", "shipToZip");
+
+	private final String inputStream;
+	private final WindowType windowType;
+	private final int windowSeconds;
+
+	/** inputStream is the in-application input stream, namePrefix + "_001". */
+	public OrderWindowSql(final String inputStream, final WindowType windowType, final int windowSeconds) {
+		if (windowSeconds < 1) {
+			throw new IllegalArgumentException("windowSeconds must be at least 1");
+		}
+		this.inputStream = inputStream;
+		this.windowType = windowType;
+		this.windowSeconds = windowSeconds;
+	}
+
+	public String toSql() {
+		StringBuilder sql = new StringBuilder();
+
+		sql.append("CREATE OR REPLACE STREAM ").append(quote(ORDER_STREAM)).append(" (\n");
+		List<ColumnDefinition> columns = OrderSchema.ORDER_COLUMNS;
+		for (int i = 0; i < columns.size(); i++) {
+			sql.append("   ").append(quote(columns.get(i).getName())).append(' ').append(columns.get(i).getSqlType())
+					.append(i < columns.size() - 1 ? ",\n" : ");\n\n");
+		}
+
+		sql.append("CREATE OR REPLACE PUMP \"ORDER_PUMP\" AS INSERT INTO ").append(quote(ORDER_STREAM)).append('\n');
+		sql.append("SELECT STREAM ").append(columnList(columns)).append('\n');
+		sql.append("FROM ").append(quote(inputStream)).append('\n');
+		sql.append("WHERE \"recordType\" = 'ITEM';\n\n");
+
+		sql.append("CREATE OR REPLACE STREAM ").append(quote(OUTPUT_STREAM)).append(" (\n");
+		for (String name : ORDER_ATTRIBUTES) {
+			ColumnDefinition column = columns.get(OrderSchema.indexOf(columns, name));
+			sql.append("   ").append(quote(name)).append(' ').append(column.getSqlType()).append(",\n");
+		}
+		sql.append("   \"itemCount\" INTEGER,\n");
+		sql.append("   \"itemQuantity\" INTEGER,\n");
+		sql.append("   \"itemTotal\" DOUBLE,\n");
+		sql.append("   \"windowStart\" TIMESTAMP);\n\n");
+
+		String interval = interval();
+		String orderAttributes = columnList(ORDER_ATTRIBUTES);
+		sql.append("CREATE OR REPLACE PUMP \"ORDER_TOTALS_PUMP\" AS INSERT INTO ").append(quote(OUTPUT_STREAM)).append('\n');
+		if (windowType == WindowType.TUMBLING) {
+			String step = "STEP(" + quote(ORDER_STREAM) + ".ROWTIME BY " + interval + ")";
+			sql.append("SELECT STREAM ").append(orderAttributes).append(",\n");
+			sql.append("   COUNT(*), SUM(\"itemQuantity\"), SUM(\"itemAmount\" * \"itemQuantity\"), ").append(step).append('\n');
+			sql.append("FROM ").append(quote(ORDER_STREAM)).append('\n');
+			sql.append("GROUP BY ").append(orderAttributes).append(", ").append(step).append(";\n");
+		} else {
+			sql.append("SELECT STREAM ").append(orderAttributes).append(",\n");
+			sql.append("   COUNT(*) OVER W1, SUM(\"itemQuantity\") OVER W1, SUM(\"itemAmount\" * \"itemQuantity\") OVER W1,\n");
+			sql.append("   FLOOR(").append(quote(ORDER_STREAM)).append(".ROWTIME TO SECOND) - ").append(interval).append('\n');
+			sql.append("FROM ").append(quote(ORDER_STREAM)).append('\n');
+			sql.append("WINDOW W1 AS (PARTITION BY \"orderId\" RANGE ").append(interval).append(" PRECEDING);\n");
+		}
+		return sql.toString();
+	}
+
+	//SECOND has a default leading precision of 2 digits
+	private String interval() {
+		String seconds = Integer.toString(windowSeconds);
+		return "INTERVAL '" + seconds + "' SECOND" + (seconds.length() > 2 ? "(" + seconds.length() + ")" : "");
+	}
+
+	private static String columnList(final List<?> columns) {
+		StringBuilder list = new StringBuilder();
+		for (Object column : columns) {
+			if (list.length() > 0) {
+				list.append(", ");
+			}
+			list.append(quote(column instanceof ColumnDefinition ? ((ColumnDefinition) column).getName() : column.toString()));
+		}
+		return list.toString();
+	}
+
+	private static String quote(final String name) {
+		return "\"" + name + "\"";
+	}
+
+}
@@ -0,0 +1,159 @@
+package com.amazonaws.samples.cdk.templates.schema;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Growable byte buffer with the varint helpers the binary formats share. */
+final class WireBuffer {
+
+	private byte[] buf;
+	private int pos;
+
+	WireBuffer(final int initialCapacity) {
+		this.buf = new byte[Math.max(16, initialCapacity)];
+	}
+
+	WireBuffer(final byte[] data) {
+		this.buf = data;
+	}
+
+	int position() {
+		return pos;
+	}
+
+	void position(final int pos) {
+		this.pos = pos;
+	}
+
+	int remaining() {
+		return buf.length - pos;
+	}
+
+	byte[] toByteArray() {
+		return Arrays.copyOf(buf, pos);
+	}
+
+	void reset() {
+		pos = 0;
+	}
+
+	private void ensure(final int bytes) {
+		if (pos + bytes > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + bytes));
+		}
+	}
+
+	void writeByte(final int b) {
+		ensure(1);
+		buf[pos++] = (byte) b;
+	}
+
+	void writeBytes(final byte[] bytes, final int offset, final int length) {
+		ensure(length);
+		System.arraycopy(bytes, offset, buf, pos, length);
+		pos += length;
+	}
+
+	void writeVarint(long value) {
+		ensure(10);
+		while ((value & ~0x7FL) != 0) {
+			buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buf[pos++] = (byte) value;
+	}
+
+	void writeZigZag(final long value) {
+		writeVarint((value << 1) ^ (value >> 63));
+	}
+
+	void writeInt32(final int value) {
+		ensure(4);
+		buf[pos++] = (byte) (value >>> 24);
+		buf[pos++] = (byte) (value >>> 16);
+		buf[pos++] = (byte) (value >>> 8);
+		buf[pos++] = (byte) value;
+	}
+
+	void writeInt64(final long value) {
+		writeInt32((int) (value >>> 32));
+		writeInt32((int) value);
+	}
+
+	void writeString(final String value) {
+		//ASCII fast path avoids the encoder for the common case
+		int length = value.length();
+		boolean ascii = true;
+		for (int i = 0; i < length && ascii; i++) {
+			ascii = value.charAt(i) < 0x80;
+		}
+		if (ascii) {
+			writeVarint(length);
+			ensure(length);
+			for (int i = 0; i < length; i++) {
+				buf[pos++] = (byte) value.charAt(i);
+			}
+		} else {
+			byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+			writeVarint(utf8.length);
+			writeBytes(utf8, 0, utf8.length);
+		}
+	}
+
+	int readByte() {
+		check(1);
+		return buf[pos++] & 0xFF;
+	}
+
+	long readVarint() {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("malformed varint");
+	}
+
+	long readZigZag() {
+		long raw = readVarint();
+		return (raw >>> 1) ^ -(raw & 1);
+	}
+
+	int readInt32() {
+		check(4);
+		int value = (buf[pos] & 0xFF) << 24 | (buf[pos + 1] & 0xFF) << 16 | (buf[pos + 2] & 0xFF) << 8 | (buf[pos + 3] & 0xFF);
+		pos += 4;
+		return value;
+	}
+
+	long readInt64() {
+		long high = readInt32() & 0xFFFFFFFFL;
+		long low = readInt32() & 0xFFFFFFFFL;
+		return high << 32 | low;
+	}
+
+	String readString() {
+		int length = (int) readVarint();
+		check(length);
+		String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+		pos += length;
+		return value;
+	}
+
+	byte[] readBytes(final int length) {
+		check(length);
+		byte[] value = Arrays.copyOfRange(buf, pos, pos + length);
+		pos += length;
+		return value;
+	}
+
+	private void check(final int length) {
+		if (length < 0 || pos + length > buf.length) {
+			throw new IllegalArgumentException("truncated record");
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.amazonaws.samples.cdk.templates.sink;
+
+/**
+ * Concurrency limit with additive increase / multiplicative decrease. Every
+ * request that completes without throttling grows the limit by 1/limit, so a
+ * full window of successes adds about one slot. A throttled request multiplies it
+ * by backoffRatio. The limit stays within [minLimit, maxLimit]. Only the
+ * first throttle of a window cuts the limit. Further throttles from requests
+ * that were already in flight at the old limit are ignored until as many
+ * requests have completed as the limit allowed when it was cut.
+ *
+ * No clocks or randomness, so a sequence of outcomes always produces the same
+ * limits. Thread-safe.
+ */
+public class AimdLimit {
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double backoffRatio;
+
+	private double limit;
+	private int completionsToIgnore;
+
+	public AimdLimit(final int minLimit, final int initialLimit, final int maxLimit) {
+		this(minLimit, initialLimit, maxLimit, 0.5);
+	}
+
+	public AimdLimit(final int minLimit, final int initialLimit, final int maxLimit, final double backoffRatio) {
+		if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+			throw new IllegalArgumentException("need 1 <= minLimit <= initialLimit <= maxLimit");
+		}
+		if (backoffRatio <= 0 || backoffRatio >= 1) {
+			throw new IllegalArgumentException("backoffRatio must be between 0 and 1");
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.backoffRatio = backoffRatio;
+		this.limit = initialLimit;
+	}
+
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	public synchronized void onSuccess() {
+		if (completionsToIgnore > 0) {
+			completionsToIgnore--;
+			return;
+		}
+		limit = Math.min(maxLimit, limit + 1 / limit);
+	}
+
+	public synchronized void onThrottle() {
+		if (completionsToIgnore > 0) {
+			completionsToIgnore--;
+			return;
+		}
+		completionsToIgnore = (int) limit - 1;
+		limit = Math.max(minLimit, limit * backoffRatio);
+	}
+
+}
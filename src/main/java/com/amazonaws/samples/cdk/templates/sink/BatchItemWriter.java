@@ -0,0 +1,128 @@
+package com.amazonaws.samples.cdk.templates.sink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.amazonaws.samples.cdk.templates.metrics.EmfMetrics;
+import com.amazonaws.samples.cdk.templates.metrics.MetricUnit;
+
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+/**
+ * Writes items with BatchWriteItem in chunks of 25 and retries UnprocessedItems
+ * with capped exponential backoff (full jitter). Items that are still unwritten
+ * once the attempts are used up are handed back to the caller.
+ *
+ * When given an EmfMetrics, each BatchWriteItem call records its latency
+ * (WriteLatency, microseconds) and the writer counts WriteRetries,
+ * UnprocessedItems and WriteThrottles.
+ */
+public class BatchItemWriter implements ItemWriter {
+
+	public static final int MAX_BATCH_ITEMS = 25;
+
+	/** Counters the writer may add to an EmfMetrics. */
+	public static final String[] COUNTERS = {"WriteRetries", "UnprocessedItems", "WriteThrottles"};
+
+	private final DynamoDbClient ddb;
+	private final String tableName;
+	private final int maxAttempts;
+	private final long baseBackoffMillis;
+	private final long maxBackoffMillis;
+
+	public BatchItemWriter(final DynamoDbClient ddb, final String tableName) {
+		this(ddb, tableName, 8, 25, 2000);
+	}
+
+	public BatchItemWriter(final DynamoDbClient ddb, final String tableName, final int maxAttempts,
+			final long baseBackoffMillis, final long maxBackoffMillis) {
+		this.ddb = ddb;
+		this.tableName = tableName;
+		this.maxAttempts = maxAttempts;
+		this.baseBackoffMillis = baseBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+	}
+
+	public List<Map<String, AttributeValue>> write(final List<Map<String, AttributeValue>> items) throws InterruptedException {
+		return write(items, null);
+	}
+
+	@Override
+	public List<Map<String, AttributeValue>> write(final List<Map<String, AttributeValue>> items, final EmfMetrics metrics) throws InterruptedException {
+		List<Map<String, AttributeValue>> failed = new ArrayList<Map<String, AttributeValue>>();
+		for (int from = 0; from < items.size(); from += MAX_BATCH_ITEMS) {
+			int to = Math.min(from + MAX_BATCH_ITEMS, items.size());
+			failed.addAll(writeChunk(items.subList(from, to), metrics));
+		}
+		return failed;
+	}
+
+	@Override
+	public String[] getCounters() {
+		return COUNTERS.clone();
+	}
+
+	private List<Map<String, AttributeValue>> writeChunk(final List<Map<String, AttributeValue>> chunk, final EmfMetrics metrics) throws InterruptedException {
+		List<WriteRequest> requests = new ArrayList<WriteRequest>(chunk.size());
+		for (Map<String, AttributeValue> item : chunk) {
+			requests.add(WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build());
+		}
+
+		for (int attempt = 0; attempt < maxAttempts && !requests.isEmpty(); attempt++) {
+			if (attempt > 0) {
+				count(metrics, "WriteRetries", 1);
+				backoff(attempt);
+			}
+			Map<String, List<WriteRequest>> requestItems = new HashMap<String, List<WriteRequest>>();
+			requestItems.put(tableName, requests);
+			long start = System.nanoTime();
+			try {
+				BatchWriteItemResponse response = ddb.batchWriteItem(BatchWriteItemRequest.builder().requestItems(requestItems).build());
+				List<WriteRequest> unprocessed = response.hasUnprocessedItems() ? response.unprocessedItems().get(tableName) : null;
+				requests = unprocessed == null ? Collections.<WriteRequest>emptyList() : unprocessed;
+				if (metrics != null) {
+					metrics.record("WriteLatency", (System.nanoTime() - start) / 1000, MetricUnit.MICROSECONDS);
+				}
+				//unprocessed items are DynamoDB's throttling signal for batch writes
+				count(metrics, "UnprocessedItems", requests.size());
+			} catch (SdkException e) {
+				if (e instanceof ProvisionedThroughputExceededException) {
+					count(metrics, "WriteThrottles", 1);
+				}
+				if (!e.retryable()) {
+					System.out.println("ERROR: BatchWriteItem failed for " + requests.size() + " items: " + e.getMessage());
+					break;
+				}
+			}
+		}
+
+		List<Map<String, AttributeValue>> failed = new ArrayList<Map<String, AttributeValue>>(requests.size());
+		for (WriteRequest request : requests) {
+			failed.add(request.putRequest().item());
+		}
+		return failed;
+	}
+
+	private static void count(final EmfMetrics metrics, final String name, final long delta) {
+		if (metrics != null && delta > 0) {
+			metrics.count(name, delta);
+		}
+	}
+
+	private void backoff(final int attempt) throws InterruptedException {
+		long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 16));
+		Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+	}
+
+}
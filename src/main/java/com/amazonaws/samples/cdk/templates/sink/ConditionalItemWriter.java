@@ -0,0 +1,177 @@
+package com.amazonaws.samples.cdk.templates.sink;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.samples.cdk.templates.metrics.EmfMetrics;
+import com.amazonaws.samples.cdk.templates.metrics.MetricUnit;
+
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+/**
+ * Writes each item with PutItem, conditional on event_ts, so that only a newer
+ * version of an (orderId, itemId) replaces what is stored. A replayed or
+ * out-of-order record fails the condition. It is counted as StaleWrites and
+ * treated as done, not retried. BatchWriteItem takes no conditions, so the
+ * puts are issued concurrently instead, through a KeyOrderedExecutor:
+ * puts for the same orderId run one after another in batch order, and
+ * different orders run in parallel. The number of puts in flight follows
+ * an AimdLimit. Throttled puts shrink it, and the limit carries over from
+ * one batch to the next for as long as the writer lives.
+ *
+ * Items without event_ts are only written if the key does not exist yet.
+ */
+public class ConditionalItemWriter implements ItemWriter {
+
+	static final String[] COUNTERS = {"WriteRetries", "WriteThrottles", "StaleWrites"};
+
+	private static final String NEWER_CONDITION = "attribute_not_exists(#pk) OR attribute_not_exists(#ts) OR #ts < :ts";
+	private static final String ABSENT_CONDITION = "attribute_not_exists(#pk)";
+
+	private final DynamoDbClient ddb;
+	private final String tableName;
+	private final int maxAttempts;
+	private final long baseBackoffMillis;
+	private final long maxBackoffMillis;
+	private final KeyOrderedExecutor<Outcome> executor;
+
+	public ConditionalItemWriter(final DynamoDbClient ddb, final String tableName) {
+		this(ddb, tableName, new AimdLimit(1, 16, 64), 8, 25, 2000);
+	}
+
+	public ConditionalItemWriter(final DynamoDbClient ddb, final String tableName, final AimdLimit concurrency, final int maxAttempts,
+			final long baseBackoffMillis, final long maxBackoffMillis) {
+		this.ddb = ddb;
+		this.tableName = tableName;
+		this.maxAttempts = maxAttempts;
+		this.baseBackoffMillis = baseBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+		final AtomicInteger threads = new AtomicInteger();
+		//grows to at most the limit's maximum: the executor never runs more tasks than that
+		ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "conditional-writer-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor = new KeyOrderedExecutor<Outcome>(workers, concurrency, outcome -> outcome.throttles > 0);
+	}
+
+	@Override
+	public List<Map<String, AttributeValue>> write(final List<Map<String, AttributeValue>> items, final EmfMetrics metrics) throws InterruptedException {
+		List<Future<Outcome>> outcomes = new ArrayList<Future<Outcome>>(items.size());
+		for (final Map<String, AttributeValue> item : items) {
+			outcomes.add(executor.submit(item.get(OrderItemMapper.PARTITION_KEY).n(), () -> put(item)));
+		}
+
+		List<Map<String, AttributeValue>> failed = new ArrayList<Map<String, AttributeValue>>();
+		for (int i = 0; i < items.size(); i++) {
+			Outcome outcome;
+			try {
+				outcome = outcomes.get(i).get();
+			} catch (ExecutionException e) {
+				System.out.println("ERROR: PutItem failed: " + e.getCause());
+				outcome = new Outcome(false, false, 0, 0, 0);
+			}
+			if (metrics != null) {
+				if (outcome.latencyMicros > 0) {
+					metrics.record("WriteLatency", outcome.latencyMicros, MetricUnit.MICROSECONDS);
+				}
+				metrics.count("WriteRetries", outcome.retries);
+				metrics.count("WriteThrottles", outcome.throttles);
+				metrics.count("StaleWrites", outcome.stale ? 1 : 0);
+			}
+			if (!outcome.done) {
+				failed.add(items.get(i));
+			}
+		}
+		if (metrics != null) {
+			metrics.value("WriteConcurrencyLimit", executor.getLimit().getLimit(), MetricUnit.COUNT);
+		}
+		return failed;
+	}
+
+	@Override
+	public String[] getCounters() {
+		return COUNTERS.clone();
+	}
+
+	private Outcome put(final Map<String, AttributeValue> item) throws InterruptedException {
+		Map<String, String> names = new HashMap<String, String>();
+		names.put("#pk", OrderItemMapper.PARTITION_KEY);
+		PutItemRequest.Builder request = PutItemRequest.builder().tableName(tableName).item(item);
+		AttributeValue version = item.get(OrderItemMapper.VERSION_ATTRIBUTE);
+		if (version != null && (version.s() != null || version.n() != null)) {
+			names.put("#ts", OrderItemMapper.VERSION_ATTRIBUTE);
+			Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+			values.put(":ts", version);
+			request.conditionExpression(NEWER_CONDITION).expressionAttributeValues(values);
+		} else {
+			request.conditionExpression(ABSENT_CONDITION);
+		}
+		PutItemRequest putItem = request.expressionAttributeNames(names).build();
+
+		int retries = 0;
+		int throttles = 0;
+		long latencyMicros = 0;
+		for (int attempt = 0; attempt < maxAttempts; attempt++) {
+			if (attempt > 0) {
+				retries++;
+				backoff(attempt);
+			}
+			long start = System.nanoTime();
+			try {
+				ddb.putItem(putItem);
+				latencyMicros = (System.nanoTime() - start) / 1000;
+				return new Outcome(true, false, retries, throttles, latencyMicros);
+			} catch (ConditionalCheckFailedException e) {
+				//the stored version is the same or newer
+				latencyMicros = (System.nanoTime() - start) / 1000;
+				return new Outcome(true, true, retries, throttles, latencyMicros);
+			} catch (SdkException e) {
+				if (e instanceof ProvisionedThroughputExceededException) {
+					throttles++;
+				}
+				if (!e.retryable()) {
+					System.out.println("ERROR: PutItem failed: " + e.getMessage());
+					break;
+				}
+			}
+		}
+		return new Outcome(false, false, retries, throttles, latencyMicros);
+	}
+
+	private void backoff(final int attempt) throws InterruptedException {
+		long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 16));
+		Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+	}
+
+	private static final class Outcome {
+		final boolean done;
+		final boolean stale;
+		final int retries;
+		final int throttles;
+		final long latencyMicros;
+
+		Outcome(final boolean done, final boolean stale, final int retries, final int throttles, final long latencyMicros) {
+			this.done = done;
+			this.stale = stale;
+			this.retries = retries;
+			this.throttles = throttles;
+			this.latencyMicros = latencyMicros;
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+package com.amazonaws.samples.cdk.templates.sink;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-shard memory of the record versions this execution environment has
+ * already written. Replayed records (retried batches, a rewound iterator,
+ * duplicate puts by the producer) are recognised here and skipped before any
+ * DynamoDB call.
+ *
+ * Each shard keeps two generations of 64-bit fingerprints in open-addressing
+ * tables. When the current generation is full it becomes the previous one and
+ * the oldest is dropped, so memory stays bounded and recent versions are
+ * always remembered. Unlike a Bloom filter this has no practical false
+ * positive rate (two keys share a fingerprint with probability ~2^-64), so a
+ * genuinely new version is never dropped. Shards not seen for a while are
+ * evicted once more than maxShards are tracked.
+ *
+ * Not thread-safe; the handler uses it from one thread.
+ */
+public class DedupeFilter {
+
+	private static final long EMPTY = 0L;
+
+	private final int maxShards;
+	private final int capacityPerGeneration;
+	private final Map<String, ShardFilter> shards;
+
+	public DedupeFilter() {
+		this(16, 131072);
+	}
+
+	public DedupeFilter(final int maxShards, final int capacityPerGeneration) {
+		if (maxShards < 1 || capacityPerGeneration < 1) {
+			throw new IllegalArgumentException("maxShards and capacityPerGeneration must be positive");
+		}
+		this.maxShards = maxShards;
+		this.capacityPerGeneration = capacityPerGeneration;
+		this.shards = new LinkedHashMap<String, ShardFilter>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, ShardFilter> eldest) {
+				return size() > DedupeFilter.this.maxShards;
+			}
+		};
+	}
+
+	public boolean contains(final String shardId, final long fingerprint) {
+		ShardFilter filter = shards.get(shardId);
+		return filter != null && filter.contains(fingerprint);
+	}
+
+	public void add(final String shardId, final long fingerprint) {
+		ShardFilter filter = shards.get(shardId);
+		if (filter == null) {
+			filter = new ShardFilter(capacityPerGeneration);
+			shards.put(shardId, filter);
+		}
+		filter.add(fingerprint);
+	}
+
+	public int getShardCount() {
+		return shards.size();
+	}
+
+	/** FNV-1a over the UTF-8 bytes followed by a 64-bit finalizer; never returns 0. */
+	public static long fingerprint(final String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash == EMPTY ? 1 : hash;
+	}
+
+	/** The shard id of a Kinesis event record's eventID ("shardId-000000000000:4954..."). */
+	public static String shardOf(final String eventId) {
+		if (eventId == null) {
+			return "";
+		}
+		int separator = eventId.indexOf(':');
+		return separator < 0 ? eventId : eventId.substring(0, separator);
+	}
+
+	private static final class ShardFilter {
+
+		private final int capacity;
+		private FingerprintSet current;
+		private FingerprintSet previous;
+
+		ShardFilter(final int capacity) {
+			this.capacity = capacity;
+			this.current = new FingerprintSet(capacity);
+		}
+
+		boolean contains(final long fingerprint) {
+			return current.contains(fingerprint) || (previous != null && previous.contains(fingerprint));
+		}
+
+		void add(final long fingerprint) {
+			if (contains(fingerprint)) {
+				return;
+			}
+			if (current.size() >= capacity) {
+				previous = current;
+				current = new FingerprintSet(capacity);
+			}
+			current.add(fingerprint);
+		}
+
+	}
+
+	private static final class FingerprintSet {
+
+		private final long[] slots;
+		private final int mask;
+		private int size;
+
+		FingerprintSet(final int capacity) {
+			//load factor of at most 0.5 keeps probe chains short
+			int length = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+			this.slots = new long[length];
+			this.mask = length - 1;
+		}
+
+		boolean contains(final long fingerprint) {
+			for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+				long slot = slots[i];
+				if (slot == fingerprint) {
+					return true;
+				}
+				if (slot == EMPTY) {
+					return false;
+				}
+			}
+		}
+
+		void add(final long fingerprint) {
+			int i = (int) fingerprint & mask;
+			while (slots[i] != EMPTY) {
+				if (slots[i] == fingerprint) {
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			slots[i] = fingerprint;
+			size++;
+		}
+
+		int size() {
+			return size;
+		}
+
+	}
+
+}
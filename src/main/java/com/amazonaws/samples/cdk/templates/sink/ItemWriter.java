@@ -0,0 +1,22 @@
+package com.amazonaws.samples.cdk.templates.sink;
+
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.samples.cdk.templates.metrics.EmfMetrics;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/** How the sink puts items into OrderEnriched. */
+public interface ItemWriter {
+
+	/**
+	 * Writes the items and returns the ones that were not written and should be
+	 * retried. metrics may be null.
+	 */
+	List<Map<String, AttributeValue>> write(List<Map<String, AttributeValue>> items, EmfMetrics metrics) throws InterruptedException;
+
+	/** Names of the counters write may add, so the handler can publish zeros. */
+	String[] getCounters();
+
+}
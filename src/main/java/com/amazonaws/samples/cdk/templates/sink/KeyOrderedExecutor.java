@@ -0,0 +1,135 @@
+package com.amazonaws.samples.cdk.templates.sink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+
+/**
+ * Runs tasks so that tasks with the same key run one at a time, in
+ * submission order, while tasks for different keys run concurrently. The
+ * number of tasks in flight is bounded by an AimdLimit. A completed task
+ * whose result matches the throttled predicate shrinks the limit, and any
+ * other successful result grows it. A task that throws leaves the limit
+ * alone.
+ *
+ * Keys become ready in the order of their first pending task. After a task
+ * completes, its key goes to the back of the ready queue, so one busy key
+ * cannot starve the others. Tasks run on the given Executor. Pass a
+ * same-thread or manually stepped executor to get a deterministic schedule.
+ */
+public class KeyOrderedExecutor<T> {
+
+	private final Executor workers;
+	private final AimdLimit limit;
+	private final Predicate<T> throttled;
+
+	private final Map<String, ArrayDeque<Job<T>>> pending = new HashMap<String, ArrayDeque<Job<T>>>();
+	private final ArrayDeque<String> ready = new ArrayDeque<String>();
+	private int inFlight;
+	private int maxObservedInFlight;
+
+	public KeyOrderedExecutor(final Executor workers, final AimdLimit limit, final Predicate<T> throttled) {
+		this.workers = workers;
+		this.limit = limit;
+		this.throttled = throttled;
+	}
+
+	public CompletableFuture<T> submit(final String key, final Callable<T> task) {
+		Job<T> job = new Job<T>(key, task);
+		synchronized (this) {
+			ArrayDeque<Job<T>> queue = pending.get(key);
+			if (queue == null) {
+				queue = new ArrayDeque<Job<T>>();
+				pending.put(key, queue);
+				//an absent queue means no task of this key is running or waiting
+				ready.add(key);
+			}
+			queue.add(job);
+		}
+		dispatch();
+		return job.result;
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/** Highest number of tasks that ran at the same time. */
+	public synchronized int getMaxObservedInFlight() {
+		return maxObservedInFlight;
+	}
+
+	public AimdLimit getLimit() {
+		return limit;
+	}
+
+	private void dispatch() {
+		List<Job<T>> runnable = new ArrayList<Job<T>>();
+		synchronized (this) {
+			while (inFlight < limit.getLimit() && !ready.isEmpty()) {
+				String key = ready.poll();
+				runnable.add(pending.get(key).peek());
+				inFlight++;
+			}
+			maxObservedInFlight = Math.max(maxObservedInFlight, inFlight);
+		}
+		for (final Job<T> job : runnable) {
+			workers.execute(() -> run(job));
+		}
+	}
+
+	private void run(final Job<T> job) {
+		T value = null;
+		Throwable error = null;
+		try {
+			value = job.task.call();
+		} catch (Throwable e) {
+			error = e;
+		}
+
+		if (error == null) {
+			if (throttled.test(value)) {
+				limit.onThrottle();
+			} else {
+				limit.onSuccess();
+			}
+		}
+
+		synchronized (this) {
+			inFlight--;
+			ArrayDeque<Job<T>> queue = pending.get(job.key);
+			queue.poll();
+			if (queue.isEmpty()) {
+				pending.remove(job.key);
+			} else {
+				ready.add(job.key);
+			}
+		}
+
+		//complete after the key is released, so a caller waiting on it sees a consistent executor
+		if (error == null) {
+			job.result.complete(value);
+		} else {
+			job.result.completeExceptionally(error);
+		}
+		dispatch();
+	}
+
+	private static final class Job<T> {
+		final String key;
+		final Callable<T> task;
+		final CompletableFuture<T> result = new CompletableFuture<T>();
+
+		Job(final String key, final Callable<T> task) {
+			this.key = key;
+			this.task = task;
+		}
+	}
+
+}
@@ -0,0 +1,234 @@
+package com.amazonaws.samples.cdk.templates.sink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.amazonaws.samples.cdk.templates.hotkeys.HotKeyReport;
+import com.amazonaws.samples.cdk.templates.hotkeys.HotKeyTracker;
+import com.amazonaws.samples.cdk.templates.kpl.Deaggregator;
+import com.amazonaws.samples.cdk.templates.kpl.UserRecord;
+import com.amazonaws.samples.cdk.templates.metrics.EmfMetrics;
+import com.amazonaws.samples.cdk.templates.metrics.MetricUnit;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Java replacement for resources/order_enrichment_sink.js. Each Kinesis batch is
+ * collapsed to one write per (orderId, itemId), keeping the newest event_ts.
+ * By default items are written with PutItem conditional on event_ts
+ * (ConditionalItemWriter), so replays and out-of-order records never overwrite
+ * a newer version. WRITE_MODE=batch uses unconditional BatchWriteItem instead.
+ * Records that could not be parsed or written are reported back to the event
+ * source mapping as batch item failures instead of being dropped. Records
+ * are turned into items by a RecordDecoder, by default the enriched stream's
+ * formats; direct.DirectEnrichmentHandler decodes and enriches raw orders.
+ *
+ * Versions already written from a shard are remembered in a DedupeFilter that
+ * lives as long as the execution environment. A replayed batch is skipped
+ * without touching DynamoDB.
+ *
+ * Each invocation emits one EMF line in the OrderETL/Sink namespace: batch
+ * and item counts, decode time, BatchWriteItem latency, retries/throttles
+ * and the lag between the records' approximate arrival time and processing.
+ *
+ * The orderId of every item sent to the table is counted in a HotKeyTracker
+ * (HOT_KEY_WINDOW_SECONDS, default 60, 0 turns it off). The invocation that
+ * closes a window adds its hot keys, shard skew and advice to its EMF line
+ * and logs the report. The skew covers the shards this environment read in
+ * the window; the producer's report covers the whole stream.
+ */
+public class OrderEnrichmentSinkHandler implements RequestHandler<KinesisEvent, StreamsEventResponse> {
+
+	static final String METRICS_NAMESPACE = "OrderETL/Sink";
+
+	private final ItemWriter writer;
+	private final RecordDecoder decoder;
+	private final Consumer<String> metricsOut;
+	private final DedupeFilter dedupe;
+	private final HotKeyTracker hotKeys;
+
+	public OrderEnrichmentSinkHandler() {
+		this(writerFor(DynamoDbClient.builder().httpClient(UrlConnectionHttpClient.create()).build(),
+				System.getenv("TABLE_NAME"), System.getenv("WRITE_MODE")), new OrderItemMapper());
+	}
+
+	public OrderEnrichmentSinkHandler(final ItemWriter writer, final OrderItemMapper mapper) {
+		this(writer, mapper, System.out::println);
+	}
+
+	public OrderEnrichmentSinkHandler(final ItemWriter writer, final OrderItemMapper mapper, final Consumer<String> metricsOut) {
+		this(writer, mapper, metricsOut, new DedupeFilter());
+	}
+
+	public OrderEnrichmentSinkHandler(final ItemWriter writer, final OrderItemMapper mapper, final Consumer<String> metricsOut,
+			final DedupeFilter dedupe) {
+		this(writer, enrichedRecords(mapper), metricsOut, dedupe);
+	}
+
+	public OrderEnrichmentSinkHandler(final ItemWriter writer, final RecordDecoder decoder, final Consumer<String> metricsOut,
+			final DedupeFilter dedupe) {
+		this(writer, decoder, metricsOut, dedupe, HotKeyTracker.fromEnvironment());
+	}
+
+	/** @param hotKeys may be null */
+	public OrderEnrichmentSinkHandler(final ItemWriter writer, final RecordDecoder decoder, final Consumer<String> metricsOut,
+			final DedupeFilter dedupe, final HotKeyTracker hotKeys) {
+		this.writer = writer;
+		this.decoder = decoder;
+		this.metricsOut = metricsOut;
+		this.dedupe = dedupe;
+		this.hotKeys = hotKeys;
+	}
+
+	/** Records of the enriched stream: KPL-aggregated or not, each JSON or a binary record. */
+	public static RecordDecoder enrichedRecords(final OrderItemMapper mapper) {
+		return record -> {
+			List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+			//KPL-aggregated records carry several orders under one sequence number
+			for (UserRecord userRecord : Deaggregator.deaggregate(record.getPartitionKey(), record.getData())) {
+				items.add(mapper.toItem(userRecord.getData()));
+			}
+			return items;
+		};
+	}
+
+	/** "conditional" (the default when mode is null) or "batch". */
+	public static ItemWriter writerFor(final DynamoDbClient ddb, final String tableName, final String mode) {
+		if (mode == null || mode.isEmpty() || "conditional".equalsIgnoreCase(mode)) {
+			return new ConditionalItemWriter(ddb, tableName);
+		}
+		if ("batch".equalsIgnoreCase(mode)) {
+			return new BatchItemWriter(ddb, tableName);
+		}
+		throw new IllegalArgumentException("unknown WRITE_MODE " + mode);
+	}
+
+	@Override
+	public StreamsEventResponse handleRequest(final KinesisEvent event, final Context context) {
+		String functionName = context != null ? context.getFunctionName() : System.getenv("AWS_LAMBDA_FUNCTION_NAME");
+		EmfMetrics metrics = new EmfMetrics(METRICS_NAMESPACE,
+				Collections.singletonMap("FunctionName", functionName == null ? "local" : functionName));
+		//zeros keep the dashboard lines continuous
+		for (String counter : writer.getCounters()) {
+			metrics.count(counter, 0);
+		}
+		metrics.count("DecodeErrors", 0);
+		metrics.count("DuplicatesSkipped", 0);
+		metrics.count("BatchRecords", event.getRecords().size());
+
+		List<StreamsEventResponse.BatchItemFailure> failures = new ArrayList<StreamsEventResponse.BatchItemFailure>();
+		long decodeNanos = 0;
+		long receivedMillis = System.currentTimeMillis();
+
+		//BatchWriteItem rejects duplicate keys within a request, so one version per key is written
+		Map<String, PendingWrite> pending = new LinkedHashMap<String, PendingWrite>();
+		for (KinesisEvent.KinesisEventRecord record : event.getRecords()) {
+			String sequenceNumber = record.getKinesis().getSequenceNumber();
+			String shardId = DedupeFilter.shardOf(record.getEventID());
+			Date arrival = record.getKinesis().getApproximateArrivalTimestamp();
+			if (arrival != null) {
+				metrics.record("ArrivalLag", receivedMillis - arrival.getTime(), MetricUnit.MILLISECONDS);
+			}
+			List<Map<String, AttributeValue>> items;
+			long decodeStart = System.nanoTime();
+			try {
+				items = decoder.decode(record.getKinesis());
+			} catch (Exception e) {
+				System.out.println("ERROR: unable to map record " + sequenceNumber + ": " + e.getMessage());
+				failures.add(failure(sequenceNumber));
+				metrics.count("DecodeErrors", 1);
+				continue;
+			} finally {
+				decodeNanos += System.nanoTime() - decodeStart;
+			}
+			for (Map<String, AttributeValue> item : items) {
+				long fingerprint = DedupeFilter.fingerprint(OrderItemMapper.versionKeyOf(item));
+				if (dedupe.contains(shardId, fingerprint)) {
+					metrics.count("DuplicatesSkipped", 1);
+					continue;
+				}
+				String key = OrderItemMapper.keyOf(item);
+				PendingWrite write = pending.remove(key);
+				if (write == null) {
+					write = new PendingWrite();
+				}
+				//ties go to the later record, as before
+				if (write.item == null || OrderItemMapper.compareVersions(item, write.item) >= 0) {
+					write.item = item;
+				}
+				write.sequenceNumbers.add(sequenceNumber);
+				write.shardIds.add(shardId);
+				write.fingerprints.add(fingerprint);
+				pending.put(key, write);
+			}
+		}
+
+		List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>(pending.size());
+		for (PendingWrite write : pending.values()) {
+			items.add(write.item);
+			if (hotKeys != null) {
+				hotKeys.add(write.item.get(OrderItemMapper.PARTITION_KEY).n(), write.shardIds.get(write.shardIds.size() - 1));
+			}
+		}
+
+		metrics.count("UniqueItems", items.size());
+		metrics.value("DecodeTime", decodeNanos / 1000, MetricUnit.MICROSECONDS);
+
+		List<Map<String, AttributeValue>> unwritten;
+		long writeStart = System.nanoTime();
+		try {
+			unwritten = writer.write(items, metrics);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			unwritten = items;
+		}
+		metrics.value("WriteTime", (System.nanoTime() - writeStart) / 1000, MetricUnit.MICROSECONDS);
+		metrics.count("UnwrittenItems", unwritten.size());
+
+		for (Map<String, AttributeValue> item : unwritten) {
+			PendingWrite write = pending.remove(OrderItemMapper.keyOf(item));
+			for (String sequenceNumber : write.sequenceNumbers) {
+				failures.add(failure(sequenceNumber));
+			}
+		}
+		//what is left was written, or DynamoDB already holds the same or a newer version
+		for (PendingWrite write : pending.values()) {
+			for (int i = 0; i < write.fingerprints.size(); i++) {
+				dedupe.add(write.shardIds.get(i), write.fingerprints.get(i));
+			}
+		}
+
+		metrics.count("FailedRecords", failures.size());
+		if (hotKeys != null && hotKeys.isDue(receivedMillis)) {
+			HotKeyReport report = hotKeys.report(Collections.<String>emptyList(), receivedMillis);
+			report.addTo(metrics);
+			System.out.println(report);
+		}
+		metrics.flush(metricsOut);
+
+		return StreamsEventResponse.builder().withBatchItemFailures(failures).build();
+	}
+
+	private static StreamsEventResponse.BatchItemFailure failure(final String sequenceNumber) {
+		return StreamsEventResponse.BatchItemFailure.builder().withItemIdentifier(sequenceNumber).build();
+	}
+
+	private static class PendingWrite {
+		Map<String, AttributeValue> item;
+		final List<String> sequenceNumbers = new ArrayList<String>(1);
+		final List<String> shardIds = new ArrayList<String>(1);
+		final List<Long> fingerprints = new ArrayList<Long>(1);
+	}
+
+}
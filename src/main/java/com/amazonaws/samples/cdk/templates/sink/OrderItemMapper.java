@@ -0,0 +1,199 @@
+package com.amazonaws.samples.cdk.templates.sink;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.amazonaws.samples.cdk.templates.query.OrderIndexes;
+import com.amazonaws.samples.cdk.templates.schema.BinaryRecordCodec;
+import com.amazonaws.samples.cdk.templates.schema.ColumnDefinition;
+import com.amazonaws.samples.cdk.templates.schema.OrderSchema;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+public class OrderItemMapper {
+
+	static final String PARTITION_KEY = "orderId";
+	static final String SORT_KEY = "itemId";
+	static final String VERSION_ATTRIBUTE = "event_ts";
+
+	//same attribute set the nodejs sink writes
+	static final String[] ATTRIBUTES = {
+			"orderId",
+			"itemId",
+			"event_ts",
+			"orderAmount",
+			"orderStatus",
+			"orderDateTime",
+			"shipToName",
+			"shipToAddress",
+			"shipToCity",
+			"shipToState",
+			"shipToZip",
+			"itemAmount",
+			"itemQuantity",
+			"itemStatus",
+			"productName"
+	};
+
+	private static final BinaryRecordCodec ENRICHED_BINARY = new BinaryRecordCodec(OrderSchema.ENRICHED_COLUMNS);
+
+	private final ObjectMapper objectMapper;
+	private final OrderIndexes indexes;
+
+	public OrderItemMapper() {
+		this(new ObjectMapper());
+	}
+
+	/** Adds the secondary index keys when INDEX_SHARDS is set (see OrderIndexes). */
+	public OrderItemMapper(final ObjectMapper objectMapper) {
+		this(objectMapper, OrderIndexes.fromEnvironment());
+	}
+
+	/** @param indexes the table's secondary indexes, or null for none */
+	public OrderItemMapper(final ObjectMapper objectMapper, final OrderIndexes indexes) {
+		this.objectMapper = objectMapper;
+		this.indexes = indexes;
+	}
+
+	public Map<String, AttributeValue> toItem(final ByteBuffer data) throws IOException {
+		ByteBuffer buf = data.duplicate();
+		byte[] bytes = new byte[buf.remaining()];
+		buf.get(bytes);
+		return toItem(bytes);
+	}
+
+	public Map<String, AttributeValue> toItem(final byte[] data) throws IOException {
+		if (BinaryRecordCodec.isBinaryRecord(data)) {
+			return toItem(ENRICHED_BINARY.decode(data));
+		}
+		return toItem(objectMapper.readTree(data));
+	}
+
+	public Map<String, AttributeValue> toItem(final Object[] values) {
+		List<ColumnDefinition> columns = OrderSchema.ENRICHED_COLUMNS;
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>(ATTRIBUTES.length * 2);
+		for (int i = 0; i < columns.size(); i++) {
+			Object value = values[i];
+			if (value instanceof Number) {
+				item.put(columns.get(i).getName(), AttributeValue.builder().n(value.toString()).build());
+			} else if (value != null) {
+				item.put(columns.get(i).getName(), AttributeValue.builder().s(value.toString()).build());
+			}
+		}
+		if (!item.containsKey(PARTITION_KEY) || !item.containsKey(SORT_KEY)) {
+			throw new IllegalArgumentException("order record is missing " + PARTITION_KEY + "/" + SORT_KEY);
+		}
+		if (indexes != null) {
+			indexes.addKeys(item);
+		}
+		return item;
+	}
+
+	public Map<String, AttributeValue> toItem(final JsonNode jto) {
+		if (jto == null || !jto.isObject()) {
+			throw new IllegalArgumentException("order record is not a JSON object");
+		}
+		if (!jto.path(PARTITION_KEY).isNumber() || !jto.path(SORT_KEY).isNumber()) {
+			throw new IllegalArgumentException("order record is missing numeric " + PARTITION_KEY + "/" + SORT_KEY);
+		}
+
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>(ATTRIBUTES.length * 2);
+		for (String name : ATTRIBUTES) {
+			AttributeValue value = toAttributeValue(jto.get(name));
+			if (value != null) {
+				item.put(name, value);
+			}
+		}
+		if (indexes != null) {
+			indexes.addKeys(item);
+		}
+		return item;
+	}
+
+	public static String keyOf(final Map<String, AttributeValue> item) {
+		return item.get(PARTITION_KEY).n() + "|" + item.get(SORT_KEY).n();
+	}
+
+	/**
+	 * The key plus event_ts, identifying one version of an item. Items without
+	 * event_ts are identified by their full content.
+	 */
+	public static String versionKeyOf(final Map<String, AttributeValue> item) {
+		AttributeValue version = item.get(VERSION_ATTRIBUTE);
+		if (version != null && (version.s() != null || version.n() != null)) {
+			return keyOf(item) + "|" + (version.s() != null ? version.s() : version.n());
+		}
+		return keyOf(item) + "|" + new TreeMap<String, AttributeValue>(item);
+	}
+
+	/**
+	 * Compares the event_ts of two versions of an item. A missing event_ts is
+	 * older than any present one; strings compare lexically, which orders the
+	 * "yyyy-MM-dd HH:mm:ss.SSS" timestamps correctly.
+	 */
+	public static int compareVersions(final Map<String, AttributeValue> a, final Map<String, AttributeValue> b) {
+		AttributeValue va = a.get(VERSION_ATTRIBUTE);
+		AttributeValue vb = b.get(VERSION_ATTRIBUTE);
+		boolean hasA = va != null && (va.s() != null || va.n() != null);
+		boolean hasB = vb != null && (vb.s() != null || vb.n() != null);
+		if (!hasA || !hasB) {
+			return Boolean.compare(hasA, hasB);
+		}
+		if (va.n() != null && vb.n() != null) {
+			return new BigDecimal(va.n()).compareTo(new BigDecimal(vb.n()));
+		}
+		String sa = va.s() != null ? va.s() : va.n();
+		String sb = vb.s() != null ? vb.s() : vb.n();
+		return sa.compareTo(sb);
+	}
+
+	/**
+	 * Write capacity units a put of the item consumes: one per started KB of
+	 * attribute names and values, numbers counted at about one byte per two
+	 * digits.
+	 */
+	public static long writeUnitsOf(final Map<String, AttributeValue> item) {
+		long bytes = 0;
+		for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+			AttributeValue value = attribute.getValue();
+			bytes += attribute.getKey().length();
+			if (value.s() != null) {
+				bytes += value.s().length();
+			} else if (value.n() != null) {
+				bytes += value.n().length() / 2 + 1;
+			} else if (value.b() != null) {
+				bytes += value.b().asByteArray().length;
+			} else {
+				bytes++;
+			}
+		}
+		return Math.max(1, (bytes + 1023) / 1024);
+	}
+
+	private static AttributeValue toAttributeValue(final JsonNode node) {
+		if (node == null || node.isMissingNode()) {
+			return null;
+		}
+		if (node.isNull()) {
+			return AttributeValue.builder().nul(true).build();
+		}
+		if (node.isNumber()) {
+			return AttributeValue.builder().n(node.asText()).build();
+		}
+		if (node.isBoolean()) {
+			return AttributeValue.builder().bool(node.booleanValue()).build();
+		}
+		if (node.isTextual()) {
+			return AttributeValue.builder().s(node.textValue()).build();
+		}
+		return AttributeValue.builder().s(node.toString()).build();
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.amazonaws.samples.cdk.templates.sink;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.amazonaws.samples.cdk.templates.kpl.AggregatedRecordBuilder;
+import com.amazonaws.samples.cdk.templates.kpl.Deaggregator;
+import com.amazonaws.samples.cdk.templates.kpl.UserRecord;
+import com.amazonaws.samples.cdk.templates.metrics.EmfMetrics;
+import com.amazonaws.samples.cdk.templates.metrics.MetricUnit;
+import com.amazonaws.samples.cdk.templates.schema.BinaryRecordCodec;
+import com.amazonaws.samples.cdk.templates.schema.OrderSchema;
+
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+
+/**
+ * OrderEnrichmentSinkHandler for the java-snapstart sink profile. The
+ * constructor runs in the Lambda init phase, before SnapStart takes its
+ * snapshot. It runs every code path the first batch would otherwise pay
+ * for: JSON, binary and KPL decoding, EMF serialization, and a GetItem for
+ * a key that never exists. The GetItem loads the SDK marshallers, resolves
+ * credentials and the endpoint, and opens the TLS connection. Restored
+ * environments start from a JVM where all of that is already loaded.
+ */
+public class PrimedSinkHandler extends OrderEnrichmentSinkHandler {
+
+	private static final String SAMPLE_JSON = "{\"orderId\":-1,\"itemId\":-1,\"itemQuantity\":1,\"itemAmount\":1.0,"
+			+ "\"itemStatus\":\"NEW\",\"orderDateTime\":\"2020-01-01 00:00:00.000\",\"recordType\":\"ITEM\","
+			+ "\"orderAmount\":1.0,\"orderStatus\":\"NEW\",\"shipToName\":\"n\",\"shipToAddress\":\"a\","
+			+ "\"shipToCity\":\"c\",\"shipToState\":\"WA\",\"shipToZip\":\"00000\",\"productName\":\"p\","
+			+ "\"event_ts\":\"2020-01-01 00:00:00.000\"}";
+
+	private final DynamoDbClient ddb;
+	private final String tableName;
+	private final OrderItemMapper mapper;
+	private final long primingMillis;
+
+	public PrimedSinkHandler() {
+		this(DynamoDbClient.builder().httpClient(UrlConnectionHttpClient.create()).build(), System.getenv("TABLE_NAME"),
+				new OrderItemMapper(), System.out::println);
+	}
+
+	public PrimedSinkHandler(final DynamoDbClient ddb, final String tableName, final OrderItemMapper mapper, final Consumer<String> metricsOut) {
+		super(writerFor(ddb, tableName, System.getenv("WRITE_MODE")), mapper, metricsOut);
+		this.ddb = ddb;
+		this.tableName = tableName;
+		this.mapper = mapper;
+		long start = System.nanoTime();
+		prime();
+		this.primingMillis = (System.nanoTime() - start) / 1000000;
+		System.out.println("sink primed in " + primingMillis + " ms");
+	}
+
+	public long getPrimingMillis() {
+		return primingMillis;
+	}
+
+	private void prime() {
+		try {
+			byte[] json = SAMPLE_JSON.getBytes(StandardCharsets.UTF_8);
+			Map<String, AttributeValue> item = mapper.toItem(json);
+			OrderItemMapper.keyOf(item);
+
+			BinaryRecordCodec binary = new BinaryRecordCodec(OrderSchema.ENRICHED_COLUMNS);
+			Object[] values = new Object[OrderSchema.ENRICHED_COLUMNS.size()];
+			values[0] = -1;
+			values[1] = -1;
+			mapper.toItem(binary.encode(values));
+
+			AggregatedRecordBuilder aggregate = new AggregatedRecordBuilder(AggregatedRecordBuilder.KINESIS_MAX_RECORD_BYTES);
+			aggregate.tryAdd(new UserRecord("-1", json));
+			aggregate.tryAdd(new UserRecord("-1", json));
+			Deaggregator.deaggregate("-1", ByteBuffer.wrap(aggregate.build().getData()));
+
+			EmfMetrics metrics = new EmfMetrics(METRICS_NAMESPACE, Collections.singletonMap("FunctionName", "priming"));
+			metrics.count("BatchRecords", 1);
+			metrics.record("WriteLatency", 1, MetricUnit.MICROSECONDS);
+			metrics.serialize(System.currentTimeMillis());
+
+			Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+			key.put(OrderItemMapper.PARTITION_KEY, AttributeValue.builder().n("-1").build());
+			key.put(OrderItemMapper.SORT_KEY, AttributeValue.builder().n("-1").build());
+			ddb.getItem(GetItemRequest.builder().tableName(tableName).key(key).build());
+		} catch (Exception e) {
+			//priming is an optimization; the handler still works without it
+			System.out.println("WARN: sink priming incomplete: " + e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.amazonaws.samples.cdk.templates.sink;
+
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/** Turns one record of a sink batch into the items OrderEnrichmentSinkHandler writes. */
+public interface RecordDecoder {
+
+	/**
+	 * The items the record carries, possibly none. Throws if the record cannot
+	 * be decoded; the handler reports it as a batch item failure.
+	 */
+	List<Map<String, AttributeValue>> decode(KinesisEvent.Record record) throws Exception;
+
+}
@@ -0,0 +1,179 @@
+package com.amazonaws.samples.cdk.templates.sink;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+/**
+ * Local cold-start benchmark for the sink handlers. Each run is a fresh JVM
+ * that builds a handler (the Lambda init phase) and then handles one batch of
+ * 100 records (the first invoke). DynamoDB is a local HTTP stub, so the SDK
+ * does its real marshalling and HTTP work, but without TLS or network
+ * latency.
+ *
+ * Profiles:
+ *   baseline - OrderEnrichmentSinkHandler with default JVM flags
+ *   primed   - PrimedSinkHandler with -XX:TieredStopAtLevel=1, as the java-snapstart profile deploys it
+ *
+ * For the primed profile, the init column shows the work that SnapStart
+ * moves into the snapshot. The first-invoke column is what a restored
+ * environment still pays.
+ *
+ * Usage: SinkStartupBenchmark [runs]   (default 20)
+ */
+public class SinkStartupBenchmark {
+
+	private static final String TABLE = "OrderEnriched";
+
+	public static void main(final String[] args) throws Exception {
+		if (args.length > 0 && "probe".equals(args[0])) {
+			probe(args[1], Integer.parseInt(args[2]));
+			return;
+		}
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+		HttpServer stub = startStub();
+		try {
+			int port = stub.getAddress().getPort();
+			System.out.printf("%-10s %8s %8s %10s %10s %9s %9s%n", "profile", "init p50", "init p99", "invoke p50", "invoke p99", "total p50", "total p99");
+			report("baseline", runs, port, Collections.<String>emptyList());
+			report("primed", runs, port, Collections.singletonList("-XX:TieredStopAtLevel=1"));
+		} finally {
+			stub.stop(0);
+		}
+	}
+
+	private static void report(final String profile, final int runs, final int port, final List<String> jvmFlags) throws IOException, InterruptedException {
+		long[] init = new long[runs];
+		long[] invoke = new long[runs];
+		long[] total = new long[runs];
+		for (int i = 0; i < runs; i++) {
+			List<String> command = new ArrayList<String>();
+			command.add(System.getProperty("java.home") + "/bin/java");
+			command.addAll(jvmFlags);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(SinkStartupBenchmark.class.getName());
+			command.addAll(Arrays.asList("probe", profile, Integer.toString(port)));
+
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+			String result = null;
+			try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = out.readLine()) != null) {
+					if (line.startsWith("probe ")) {
+						result = line;
+					}
+				}
+			}
+			if (process.waitFor() != 0 || result == null) {
+				throw new IllegalStateException(profile + " probe failed");
+			}
+			String[] fields = result.split(" ");
+			init[i] = Long.parseLong(fields[1]);
+			invoke[i] = Long.parseLong(fields[2]);
+			total[i] = init[i] + invoke[i];
+		}
+		System.out.printf("%-10s %8d %8d %10d %10d %9d %9d%n", profile,
+				percentile(init, 50), percentile(init, 99), percentile(invoke, 50), percentile(invoke, 99),
+				percentile(total, 50), percentile(total, 99));
+	}
+
+	//init = JVM start until the handler is constructed, invoke = first handleRequest; both in ms
+	private static void probe(final String profile, final int port) {
+		long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+		DynamoDbClient ddb = DynamoDbClient.builder()
+				.httpClient(UrlConnectionHttpClient.create())
+				.endpointOverride(URI.create("http://127.0.0.1:" + port))
+				.region(Region.US_EAST_1)
+				.credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("local", "local")))
+				.build();
+
+		OrderEnrichmentSinkHandler handler;
+		if ("primed".equals(profile)) {
+			handler = new PrimedSinkHandler(ddb, TABLE, new OrderItemMapper(), line -> { });
+		} else {
+			handler = new OrderEnrichmentSinkHandler(new BatchItemWriter(ddb, TABLE), new OrderItemMapper(), line -> { });
+		}
+		long initDone = System.currentTimeMillis();
+
+		handler.handleRequest(batch(100), null);
+		long invokeDone = System.currentTimeMillis();
+
+		System.out.println("probe " + (initDone - jvmStart) + " " + (invokeDone - initDone));
+	}
+
+	private static KinesisEvent batch(final int size) {
+		List<KinesisEvent.KinesisEventRecord> records = new ArrayList<KinesisEvent.KinesisEventRecord>(size);
+		for (int i = 0; i < size; i++) {
+			KinesisEvent.Record kinesis = new KinesisEvent.Record();
+			kinesis.setSequenceNumber(Integer.toString(i));
+			kinesis.setPartitionKey(Integer.toString(i));
+			kinesis.setApproximateArrivalTimestamp(new Date());
+			kinesis.setData(ByteBuffer.wrap(("{\"orderId\":" + i + ",\"itemId\":1,\"itemQuantity\":2,\"itemAmount\":9.5,"
+					+ "\"orderDateTime\":\"2020-04-01 10:00:00.000\",\"shipToState\":\"WA\",\"productName\":\"p\"}")
+					.getBytes(StandardCharsets.UTF_8)));
+			KinesisEvent.KinesisEventRecord record = new KinesisEvent.KinesisEventRecord();
+			record.setKinesis(kinesis);
+			records.add(record);
+		}
+		KinesisEvent event = new KinesisEvent();
+		event.setRecords(records);
+		return event;
+	}
+
+	//answers every DynamoDB call with an empty JSON document: no unprocessed items, no item found
+	private static HttpServer startStub() throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				try (InputStream in = exchange.getRequestBody()) {
+					byte[] buffer = new byte[8192];
+					while (in.read(buffer) >= 0) {
+						//drain
+					}
+				}
+				byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("Content-Type", "application/x-amz-json-1.0");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+		});
+		server.start();
+		return server;
+	}
+
+	private static long percentile(final long[] values, final int percentile) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, index)];
+	}
+
+}
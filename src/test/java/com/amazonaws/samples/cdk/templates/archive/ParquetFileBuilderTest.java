@@ -0,0 +1,144 @@
+package com.amazonaws.samples.cdk.templates.archive;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amazonaws.samples.cdk.templates.schema.OrderSchema;
+
+public class ParquetFileBuilderTest {
+
+	private static final long ORDER_TIME = 1585736130123L; //2020-04-01 10:15:30.123 UTC
+
+	@Test
+	public void roundTripsEveryColumnType() throws Exception {
+		for (boolean gzip : new boolean[] { true, false }) {
+			List<Object[]> rows = rows(25);
+			ParquetFileBuilder builder = new ParquetFileBuilder(OrderSchema.ENRICHED_COLUMNS, gzip);
+			for (Object[] row : rows) {
+				builder.addRow(row);
+			}
+			ParquetTestReader reader = new ParquetTestReader(builder.finish());
+
+			assertEquals(25, reader.getRowCount());
+			List<Object[]> decoded = reader.readRows();
+			assertEquals(rows.size(), decoded.size());
+			for (int i = 0; i < rows.size(); i++) {
+				assertArrayEquals("gzip=" + gzip + " row " + i, expected(rows.get(i)), decoded.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void writesTheSchemaAndFileMetadata() throws Exception {
+		ParquetFileBuilder builder = new ParquetFileBuilder(OrderSchema.ENRICHED_COLUMNS);
+		builder.addRow(rows(1).get(0));
+		ParquetTestReader reader = new ParquetTestReader(builder.finish());
+
+		assertEquals(1L, reader.getFooter().get(1));
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < OrderSchema.ENRICHED_COLUMNS.size(); i++) {
+			names.add(OrderSchema.ENRICHED_COLUMNS.get(i).getName());
+		}
+		assertEquals(names, reader.getColumnNames());
+
+		Map<Integer, Object> root = ParquetTestReader.structs(reader.getFooter().get(2)).get(0);
+		assertEquals((long) names.size(), root.get(5));
+		List<Map<Integer, Object>> columns = reader.getColumns();
+		assertColumn(columns.get(0), 1, null); //orderId INT32
+		assertColumn(columns.get(3), 4, null); //itemAmount FLOAT
+		assertColumn(columns.get(4), 6, 0L); //itemStatus UTF8
+		assertColumn(columns.get(5), 2, 9L); //orderDateTime TIMESTAMP_MILLIS
+		assertColumn(columns.get(7), 5, null); //orderAmount DOUBLE
+		for (Map<Integer, Object> column : columns) {
+			assertEquals(1L, column.get(3));
+		}
+	}
+
+	@Test
+	public void flushedRowGroupsAreContiguousAndEndAtTheFooter() throws Exception {
+		ParquetFileBuilder builder = new ParquetFileBuilder(OrderSchema.ENRICHED_COLUMNS);
+		List<Object[]> rows = rows(10);
+		for (int i = 0; i < rows.size(); i++) {
+			builder.addRow(rows.get(i));
+			if (i == 3 || i == 6) {
+				builder.flushRowGroup();
+			}
+		}
+		//an empty row group is not written
+		builder.flushRowGroup();
+		builder.addRow(rows(11).get(10));
+		ParquetTestReader reader = new ParquetTestReader(builder.finish());
+
+		assertEquals(Arrays.asList(4L, 3L, 3L, 1L), reader.getRowGroupRowCounts());
+		assertEquals(11, reader.getRowCount());
+		assertEquals(11, reader.readRows().size());
+
+		long offset = ParquetTestReader.MAGIC.length;
+		for (Map<Integer, Object> rowGroup : reader.getRowGroups()) {
+			for (Map<Integer, Object> chunk : ParquetTestReader.structs(rowGroup.get(1))) {
+				Map<Integer, Object> meta = ParquetTestReader.struct(chunk.get(3));
+				assertEquals(offset, (long) (Long) meta.get(9));
+				assertEquals(rowGroup.get(3), meta.get(5));
+				offset += (Long) meta.get(7);
+			}
+		}
+		assertEquals(offset, reader.getFooterOffset());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsRowsAfterFinish() throws Exception {
+		ParquetFileBuilder builder = new ParquetFileBuilder(OrderSchema.ENRICHED_COLUMNS);
+		builder.finish();
+		builder.addRow(rows(1).get(0));
+	}
+
+	@Test
+	public void parsesTimestampText() {
+		assertEquals(Long.valueOf(ORDER_TIME), ParquetFileBuilder.timestampMillis("2020-04-01 10:15:30.123"));
+		assertEquals(Long.valueOf(ORDER_TIME), ParquetFileBuilder.timestampMillis("2020-04-01T10:15:30.123Z"));
+		assertEquals(Long.valueOf(ORDER_TIME - 123), ParquetFileBuilder.timestampMillis("2020-04-01 10:15:30"));
+		assertEquals(Long.valueOf(42), ParquetFileBuilder.timestampMillis(42L));
+		assertNull(ParquetFileBuilder.timestampMillis("yesterday"));
+	}
+
+	private static List<Object[]> rows(final int count) {
+		List<Object[]> rows = new ArrayList<Object[]>(count);
+		for (int i = 0; i < count; i++) {
+			Object[] values = new Object[OrderSchema.ENRICHED_COLUMNS.size()];
+			values[0] = 1000 + i / 4;
+			values[1] = i % 4;
+			values[2] = i % 5 == 0 ? null : 1 + i % 3;
+			values[3] = 9.5f + i;
+			values[4] = "NEW";
+			values[5] = i % 7 == 6 ? "not a timestamp" : "2020-04-01 10:15:30.123";
+			values[6] = i % 4 == 0 ? "ORDER" : "ITEM";
+			values[7] = i % 4 == 0 ? 120.25 * i : null;
+			values[12] = i % 2 == 0 ? "WA" : "Qu\u00e9bec";
+			values[14] = i % 3 == 0 ? "" : "widget-" + i;
+			values[15] = ORDER_TIME + i;
+			rows.add(values);
+		}
+		return rows;
+	}
+
+	//what reading the file gives back: REAL as Float, timestamps as epoch millis, bad timestamps as null
+	private static Object[] expected(final Object[] row) {
+		Object[] values = row.clone();
+		values[5] = values[5] == null ? null : ParquetFileBuilder.timestampMillis(values[5]);
+		return values;
+	}
+
+	private static void assertColumn(final Map<Integer, Object> column, final int type, final Long convertedType) {
+		assertEquals((long) type, column.get(1));
+		assertEquals(convertedType, column.get(6));
+	}
+
+}
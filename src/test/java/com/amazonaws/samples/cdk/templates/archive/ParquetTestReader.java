@@ -0,0 +1,255 @@
+package com.amazonaws.samples.cdk.templates.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads back what ParquetFileBuilder writes, straight from the bytes: the
+ * footer through a generic Thrift compact decoder, then each PLAIN data page
+ * with its RLE definition levels. Only covers the flat optional schemas the
+ * builder produces, which is enough to check the layout without parquet-hadoop.
+ */
+final class ParquetTestReader {
+
+	static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+
+	private final byte[] file;
+	private final Map<Integer, Object> footer;
+	private final int footerOffset;
+
+	ParquetTestReader(final byte[] file) {
+		this.file = file;
+		if (!Arrays.equals(MAGIC, Arrays.copyOfRange(file, 0, 4))
+				|| !Arrays.equals(MAGIC, Arrays.copyOfRange(file, file.length - 4, file.length))) {
+			throw new IllegalArgumentException("missing PAR1 magic");
+		}
+		int footerLength = ByteBuffer.wrap(file, file.length - 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+		this.footerOffset = file.length - 8 - footerLength;
+		this.footer = new CompactReader(file, footerOffset).readStruct();
+	}
+
+	int getFooterOffset() {
+		return footerOffset;
+	}
+
+	/** FileMetaData as field id to value: Long for ints, byte[] for binary, List and Map for containers. */
+	Map<Integer, Object> getFooter() {
+		return footer;
+	}
+
+	long getRowCount() {
+		return (Long) footer.get(3);
+	}
+
+	/** Schema elements after the root. */
+	List<Map<Integer, Object>> getColumns() {
+		List<Map<Integer, Object>> schema = structs(footer.get(2));
+		return schema.subList(1, schema.size());
+	}
+
+	List<String> getColumnNames() {
+		List<String> names = new ArrayList<String>();
+		for (Map<Integer, Object> column : getColumns()) {
+			names.add(string(column.get(4)));
+		}
+		return names;
+	}
+
+	List<Map<Integer, Object>> getRowGroups() {
+		return structs(footer.get(4));
+	}
+
+	List<Long> getRowGroupRowCounts() {
+		List<Long> counts = new ArrayList<Long>();
+		for (Map<Integer, Object> rowGroup : getRowGroups()) {
+			counts.add((Long) rowGroup.get(3));
+		}
+		return counts;
+	}
+
+	/** All rows in file order; INT32 as Integer, FLOAT, DOUBLE, INT64 as Long, BYTE_ARRAY as String. */
+	List<Object[]> readRows() throws IOException {
+		List<Map<Integer, Object>> columns = getColumns();
+		List<Object[]> rows = new ArrayList<Object[]>();
+		for (Map<Integer, Object> rowGroup : getRowGroups()) {
+			int groupRows = ((Long) rowGroup.get(3)).intValue();
+			List<Map<Integer, Object>> chunks = structs(rowGroup.get(1));
+			Object[][] values = new Object[groupRows][columns.size()];
+			for (int c = 0; c < chunks.size(); c++) {
+				Map<Integer, Object> chunk = struct(chunks.get(c).get(3));
+				int type = ((Long) columns.get(c).get(1)).intValue();
+				readColumn(chunk, type, values, c);
+			}
+			rows.addAll(Arrays.asList(values));
+		}
+		return rows;
+	}
+
+	private void readColumn(final Map<Integer, Object> chunk, final int type, final Object[][] rows, final int column) throws IOException {
+		CompactReader header = new CompactReader(file, ((Long) chunk.get(9)).intValue());
+		Map<Integer, Object> pageHeader = header.readStruct();
+		int compressedSize = ((Long) pageHeader.get(3)).intValue();
+		byte[] page = Arrays.copyOfRange(file, header.pos, header.pos + compressedSize);
+		if ((Long) chunk.get(4) == 2) {
+			page = gunzip(page);
+		}
+		if (page.length != ((Long) pageHeader.get(2)).intValue()) {
+			throw new IOException("page size does not match its header");
+		}
+
+		ByteBuffer in = ByteBuffer.wrap(page).order(ByteOrder.LITTLE_ENDIAN);
+		int levelsEnd = 4 + in.getInt();
+		boolean[] defined = new boolean[rows.length];
+		int row = 0;
+		while (in.position() < levelsEnd) {
+			int run = (int) (readVarint(in) >>> 1);
+			boolean value = in.get() == 1;
+			for (int i = 0; i < run; i++) {
+				defined[row++] = value;
+			}
+		}
+		for (int i = 0; i < rows.length; i++) {
+			if (!defined[i]) {
+				continue;
+			}
+			switch (type) {
+			case 1:
+				rows[i][column] = in.getInt();
+				break;
+			case 2:
+				rows[i][column] = in.getLong();
+				break;
+			case 4:
+				rows[i][column] = in.getFloat();
+				break;
+			case 5:
+				rows[i][column] = in.getDouble();
+				break;
+			default:
+				byte[] bytes = new byte[in.getInt()];
+				in.get(bytes);
+				rows[i][column] = new String(bytes, StandardCharsets.UTF_8);
+			}
+		}
+		if (in.hasRemaining()) {
+			throw new IOException(in.remaining() + " bytes left over in page");
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	static Map<Integer, Object> struct(final Object struct) {
+		return (Map<Integer, Object>) struct;
+	}
+
+	@SuppressWarnings("unchecked")
+	static List<Map<Integer, Object>> structs(final Object list) {
+		return (List<Map<Integer, Object>>) list;
+	}
+
+	static String string(final Object binary) {
+		return new String((byte[]) binary, StandardCharsets.UTF_8);
+	}
+
+	private static byte[] gunzip(final byte[] data) throws IOException {
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		int n;
+		while ((n = in.read(buf)) > 0) {
+			out.write(buf, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static long readVarint(final ByteBuffer in) {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	/** Decodes the compact protocol types ThriftCompactWriter emits. */
+	private static final class CompactReader {
+
+		private final byte[] buf;
+		private int pos;
+
+		CompactReader(final byte[] buf, final int pos) {
+			this.buf = buf;
+			this.pos = pos;
+		}
+
+		Map<Integer, Object> readStruct() {
+			Map<Integer, Object> fields = new HashMap<Integer, Object>();
+			int lastId = 0;
+			while (true) {
+				int b = buf[pos++] & 0xFF;
+				if (b == 0) {
+					return fields;
+				}
+				int delta = b >>> 4;
+				int id = delta == 0 ? (int) unzigzag(readVarint()) : lastId + delta;
+				fields.put(id, readValue(b & 0x0F));
+				lastId = id;
+			}
+		}
+
+		private Object readValue(final int type) {
+			switch (type) {
+			case ThriftCompactWriter.TYPE_I32:
+			case ThriftCompactWriter.TYPE_I64:
+				return unzigzag(readVarint());
+			case ThriftCompactWriter.TYPE_BINARY:
+				int length = (int) readVarint();
+				byte[] bytes = Arrays.copyOfRange(buf, pos, pos + length);
+				pos += length;
+				return bytes;
+			case ThriftCompactWriter.TYPE_LIST:
+				int header = buf[pos++] & 0xFF;
+				int size = header >>> 4 == 15 ? (int) readVarint() : header >>> 4;
+				List<Object> list = new ArrayList<Object>(size);
+				for (int i = 0; i < size; i++) {
+					list.add(readValue(header & 0x0F));
+				}
+				return list;
+			case ThriftCompactWriter.TYPE_STRUCT:
+				return readStruct();
+			default:
+				throw new IllegalArgumentException("unexpected compact type " + type);
+			}
+		}
+
+		private long readVarint() {
+			long value = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = buf[pos++] & 0xFF;
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		private static long unzigzag(final long value) {
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+	}
+
+}
@@ -0,0 +1,211 @@
+package com.amazonaws.samples.cdk.templates.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.samples.cdk.templates.schema.ColumnDefinition;
+
+public class PartitionedArchiveWriterTest {
+
+	//4 + 8 + (4 + 2) uncompressed bytes per row with a two-letter state
+	private static final List<ColumnDefinition> COLUMNS = Collections.unmodifiableList(Arrays.asList(
+			new ColumnDefinition("orderId", "INT"),
+			new ColumnDefinition("orderDateTime", "TIMESTAMP"),
+			new ColumnDefinition("shipToState", "VARCHAR(16)")));
+	private static final int ROW_BYTES = 18;
+	private static final long MINUTE = 60 * 1000L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FileSystemObjectStore store;
+	private long now;
+
+	@Before
+	public void setUp() throws IOException {
+		store = new FileSystemObjectStore(folder.newFolder("bucket").toPath());
+		now = 1585735200000L;
+	}
+
+	@Test
+	public void partitionsOnOrderTimeAndState() throws Exception {
+		PartitionedArchiveWriter writer = writer(1 << 20, 1 << 20, 15 * MINUTE);
+		writer.write(row(1, "2020-04-01 10:15:30.123", "WA"));
+		writer.write(row(2, "2020-04-01T23:59:59.999Z", "WA"));
+		writer.write(row(3, "2020-04-01 10:00:00", "WA"));
+		writer.write(row(4, null, " N/Y "));
+		writer.write(row(5, "not a timestamp", ""));
+		assertEquals(4, writer.getOpenFileCount());
+		writer.close();
+
+		assertEquals(Arrays.asList(
+				"archive/dt=2020-04-01/hr=10/shipToState=WA",
+				"archive/dt=2020-04-01/hr=23/shipToState=WA",
+				"archive/dt=unknown/hr=unknown/shipToState=N_Y",
+				"archive/dt=unknown/hr=unknown/shipToState=unknown"), partitions(writer.getWrittenKeys()));
+		for (String key : writer.getWrittenKeys()) {
+			assertTrue(key, key.endsWith(".gz.parquet"));
+			assertTrue(key, key.contains("/part-" + now + "-"));
+		}
+		assertEquals(Arrays.asList(1, 3), orderIds(writer.getWrittenKeys().get(0)));
+		assertEquals(5, writer.getRowsWritten());
+		assertEquals(writer.getWrittenKeys().size(), storedFiles().size());
+	}
+
+	@Test
+	public void cutsRowGroupsAtRowGroupBytes() throws Exception {
+		PartitionedArchiveWriter writer = writer(3 * ROW_BYTES, 1 << 20, 15 * MINUTE);
+		for (int i = 0; i < 7; i++) {
+			writer.write(row(i, "2020-04-01 10:15:30", "WA"));
+		}
+		assertEquals(1, writer.getOpenFileCount());
+		writer.close();
+
+		assertEquals(1, writer.getWrittenKeys().size());
+		ParquetTestReader reader = read(writer.getWrittenKeys().get(0));
+		assertEquals(Arrays.asList(3L, 3L, 1L), reader.getRowGroupRowCounts());
+		assertEquals(7, reader.getRowCount());
+	}
+
+	@Test
+	public void rollsFilesAtTargetSize() throws Exception {
+		long target = 10 * ROW_BYTES;
+		PartitionedArchiveWriter writer = writer(ROW_BYTES, target, 15 * MINUTE);
+		int rows = 0;
+		while (writer.getWrittenKeys().size() < 2) {
+			writer.write(row(rows++, "2020-04-01 10:15:30", "WA"));
+		}
+		assertEquals(0, writer.getOpenFileCount());
+		writer.write(row(rows++, "2020-04-01 10:15:30", "WA"));
+		writer.close();
+
+		List<String> keys = writer.getWrittenKeys();
+		assertEquals(3, keys.size());
+		long total = 0;
+		for (int i = 0; i < keys.size(); i++) {
+			long size = Files.size(store.getRoot().resolve(keys.get(i)));
+			if (i < 2) {
+				assertTrue(keys.get(i) + " is " + size + " bytes", size >= target);
+			}
+			total += read(keys.get(i)).getRowCount();
+		}
+		assertEquals(keys.get(0), read(keys.get(0)).getRowCount(), read(keys.get(1)).getRowCount());
+		assertEquals(1, read(keys.get(2)).getRowCount());
+		assertEquals(rows, total);
+		assertEquals(rows, writer.getRowsWritten());
+	}
+
+	@Test
+	public void rollsFilesAtMaxAgeOnTheClock() throws Exception {
+		PartitionedArchiveWriter writer = writer(1 << 20, 1 << 20, 15 * MINUTE);
+		long opened = now;
+		writer.write(row(1, "2020-04-01 10:15:30", "WA"));
+		now += 10 * MINUTE;
+		writer.write(row(2, "2020-04-01 10:15:30", "OR"));
+
+		now += 5 * MINUTE - 1;
+		writer.rollExpired();
+		assertEquals(2, writer.getOpenFileCount());
+
+		now += 1;
+		writer.rollExpired();
+		assertEquals(1, writer.getOpenFileCount());
+		assertEquals(1, writer.getWrittenKeys().size());
+		String first = writer.getWrittenKeys().get(0);
+		assertTrue(first, first.startsWith("archive/dt=2020-04-01/hr=10/shipToState=WA/part-" + opened + "-"));
+
+		//a write into the rolled partition opens a new file on the current clock
+		writer.write(row(3, "2020-04-01 10:15:30", "WA"));
+		now += 10 * MINUTE;
+		writer.rollExpired();
+		assertEquals(1, writer.getOpenFileCount());
+		assertEquals(2, writer.getWrittenKeys().size());
+		assertTrue(writer.getWrittenKeys().get(1).contains("shipToState=OR/"));
+		writer.close();
+		assertEquals(3, writer.getWrittenKeys().size());
+		assertTrue(writer.getWrittenKeys().get(2).contains("/part-" + (now - 10 * MINUTE) + "-"));
+	}
+
+	@Test
+	public void putsOnlyFinishedFilesInTheStore() throws Exception {
+		PartitionedArchiveWriter writer = writer(ROW_BYTES, 1 << 20, 15 * MINUTE);
+		for (int i = 0; i < 5; i++) {
+			writer.write(row(i, "2020-04-01 10:15:30", "WA"));
+		}
+		assertEquals(0, storedFiles().size());
+		writer.close();
+
+		List<Path> files = storedFiles();
+		assertEquals(1, files.size());
+		assertEquals(writer.getBytesWritten(), Files.size(files.get(0)));
+	}
+
+	@Test(expected = IOException.class)
+	public void storeRejectsKeysOutsideItsRoot() throws Exception {
+		store.put("../escaped.parquet", new byte[1]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTargetBelowRowGroupSize() {
+		PartitionedArchiveWriter.Builder.create().store(store).rowGroupBytes(1024).targetFileBytes(512).build();
+	}
+
+	private PartitionedArchiveWriter writer(final long rowGroupBytes, final long targetFileBytes, final long maxFileAgeMillis) {
+		return PartitionedArchiveWriter.Builder.create()
+				.store(store)
+				.prefix("archive")
+				.columns(COLUMNS)
+				.rowGroupBytes(rowGroupBytes)
+				.targetFileBytes(targetFileBytes)
+				.maxFileAgeMillis(maxFileAgeMillis)
+				.clock(() -> now)
+				.build();
+	}
+
+	private static Object[] row(final int orderId, final String orderDateTime, final String state) {
+		return new Object[] { orderId, orderDateTime, state };
+	}
+
+	private static List<String> partitions(final List<String> keys) {
+		List<String> partitions = new ArrayList<String>();
+		for (String key : keys) {
+			partitions.add(key.substring(0, key.lastIndexOf('/')));
+		}
+		Collections.sort(partitions);
+		return partitions;
+	}
+
+	private List<Integer> orderIds(final String key) throws IOException {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Object[] row : read(key).readRows()) {
+			ids.add((Integer) row[0]);
+		}
+		return ids;
+	}
+
+	private ParquetTestReader read(final String key) throws IOException {
+		return new ParquetTestReader(Files.readAllBytes(store.getRoot().resolve(key)));
+	}
+
+	private List<Path> storedFiles() throws IOException {
+		try (Stream<Path> files = Files.walk(store.getRoot())) {
+			return files.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+	}
+
+}
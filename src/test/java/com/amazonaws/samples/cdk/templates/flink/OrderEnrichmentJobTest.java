@@ -0,0 +1,103 @@
+package com.amazonaws.samples.cdk.templates.flink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.flink.runtime.testutils.MiniClusterResourceConfiguration;
+import org.apache.flink.streaming.api.CheckpointingMode;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.test.util.MiniClusterWithClientResource;
+import org.apache.flink.util.CloseableIterator;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import com.amazonaws.samples.cdk.templates.producer.OrderRecord;
+import com.amazonaws.samples.cdk.templates.producer.SyntheticOrderGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Runs OrderEnrichmentJob.enrich end to end on a Flink MiniCluster, with
+ * in-memory sources and the results collected back to the client. The
+ * broadcast catalog leaves out the last 10% of the products, so both the
+ * broadcast join and AsyncProductLookup are exercised. Every ITEM record must
+ * come back exactly once, with its product's name, in the enriched JSON format.
+ */
+public class OrderEnrichmentJobTest {
+
+	private static final int PARALLELISM = 2;
+	private static final int PRODUCTS = 1000;
+
+	@ClassRule
+	public static final MiniClusterWithClientResource FLINK = new MiniClusterWithClientResource(
+			new MiniClusterResourceConfiguration.Builder()
+					.setNumberTaskManagers(1)
+					.setNumberSlotsPerTaskManager(PARALLELISM)
+					.build());
+
+	@Test
+	public void enrichesEveryItemExactlyOnce() throws Exception {
+		List<Product> allProducts = new ArrayList<Product>(PRODUCTS);
+		List<Product> broadcastProducts = new ArrayList<Product>(PRODUCTS);
+		for (int id = 1; id <= PRODUCTS; id++) {
+			Product product = new Product(id, "product-" + id, id % 100 + 0.99f);
+			allProducts.add(product);
+			if (id <= PRODUCTS * 9 / 10) {
+				broadcastProducts.add(product);
+			}
+		}
+
+		List<OrderRecord> orders = new SyntheticOrderGenerator(42, 4, PRODUCTS).nextRecords(20000);
+		Map<String, Integer> expected = new HashMap<String, Integer>();
+		for (OrderRecord order : orders) {
+			if ("ITEM".equals(order.getRecordType())) {
+				expected.merge(key(order.getOrderId(), order.getItemId()), 1, Integer::sum);
+			}
+		}
+		assertFalse(expected.isEmpty());
+
+		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+		env.setParallelism(PARALLELISM);
+		env.enableCheckpointing(500, CheckpointingMode.EXACTLY_ONCE);
+
+		DataStream<OrderRecord> orderStream = env.fromCollection(orders).rebalance();
+		DataStream<Product> products = env.addSource(new ProductRefreshSource(new InMemoryProductCatalog(broadcastProducts), 0)).setParallelism(1);
+		DataStream<EnrichedOrder> enriched = OrderEnrichmentJob.enrich(orderStream, products, new InMemoryProductCatalog(allProducts), 5000, 100, 4);
+
+		EnrichedOrderSerializer serializer = new EnrichedOrderSerializer();
+		ObjectMapper objectMapper = new ObjectMapper();
+		try (CloseableIterator<EnrichedOrder> results = enriched.executeAndCollect("OrderEnrichmentJobTest")) {
+			while (results.hasNext()) {
+				EnrichedOrder result = results.next();
+				OrderRecord order = result.getOrder();
+				String key = key(order.getOrderId(), order.getItemId());
+				Integer remaining = expected.get(key);
+				assertNotNull("unexpected or duplicate item " + key, remaining);
+				if (remaining == 1) {
+					expected.remove(key);
+				} else {
+					expected.put(key, remaining - 1);
+				}
+
+				JsonNode json = objectMapper.readTree(serializer.serialize(result));
+				assertEquals("product-" + order.getItemId(), json.path("productName").asText(null));
+				assertEquals(order.getOrderId(), json.path("orderId").asInt());
+				assertFalse(json.path("event_ts").isMissingNode());
+			}
+		}
+		assertTrue(expected.size() + " items missing", expected.isEmpty());
+	}
+
+	private static String key(final int orderId, final int itemId) {
+		return orderId + "|" + itemId;
+	}
+
+}
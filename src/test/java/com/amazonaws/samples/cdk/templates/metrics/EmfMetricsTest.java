@@ -0,0 +1,112 @@
+package com.amazonaws.samples.cdk.templates.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class EmfMetricsTest {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final EmfMetrics metrics = new EmfMetrics("OrderETL/Sink", Collections.singletonMap("FunctionName", "sink"));
+
+	@Test
+	public void writesTheMetricDirectiveAndValues() throws Exception {
+		metrics.count("BatchRecords", 3);
+		metrics.count("BatchRecords", 2);
+		metrics.value("DecodeTime", 120L, MetricUnit.MICROSECONDS);
+		metrics.value("HotKeyTopShare", 12.5, MetricUnit.PERCENT);
+		metrics.property("HotKey", "1234");
+
+		JsonNode root = MAPPER.readTree(metrics.serialize(1585735200000L));
+		assertEquals(1585735200000L, root.path("_aws").path("Timestamp").asLong());
+		JsonNode directive = root.path("_aws").path("CloudWatchMetrics").get(0);
+		assertEquals("OrderETL/Sink", directive.path("Namespace").asText());
+		assertEquals("FunctionName", directive.path("Dimensions").get(0).get(0).asText());
+		assertEquals("sink", root.path("FunctionName").asText());
+
+		JsonNode definitions = directive.path("Metrics");
+		assertEquals(3, definitions.size());
+		assertDefinition(definitions.get(0), "BatchRecords", "Count");
+		assertDefinition(definitions.get(1), "DecodeTime", "Microseconds");
+		assertDefinition(definitions.get(2), "HotKeyTopShare", "Percent");
+		assertEquals(5, root.path("BatchRecords").asLong());
+		assertEquals(120, root.path("DecodeTime").asLong());
+		assertEquals(12.5, root.path("HotKeyTopShare").asDouble(), 0);
+		assertEquals("1234", root.path("HotKey").asText());
+	}
+
+	@Test
+	public void writesHistogramsAsValuesAndCounts() throws Exception {
+		for (long latency : new long[] { 5, 5, 5, 40, 40, 900 }) {
+			metrics.record("WriteLatency", latency, MetricUnit.MICROSECONDS);
+		}
+
+		JsonNode root = MAPPER.readTree(metrics.serialize(0));
+		JsonNode definitions = root.path("_aws").path("CloudWatchMetrics").get(0).path("Metrics");
+		assertEquals(1, definitions.size());
+		assertDefinition(definitions.get(0), "WriteLatency", "Microseconds");
+
+		JsonNode latency = root.path("WriteLatency");
+		assertEquals("[5,40,900]", latency.path("Values").toString());
+		assertEquals("[3,2,1]", latency.path("Counts").toString());
+		assertEquals(900, latency.path("Max").asLong());
+		assertEquals(5, latency.path("Min").asLong());
+		assertEquals(6, latency.path("Count").asLong());
+		assertEquals(995, latency.path("Sum").asLong());
+		assertFalse(root.has("WriteLatencyP99"));
+	}
+
+	@Test
+	public void mergesBucketsPastTheValuesLimit() throws Exception {
+		for (long latency = 0; latency < 1000; latency++) {
+			metrics.record("ArrivalLag", latency, MetricUnit.MILLISECONDS);
+		}
+
+		JsonNode lag = MAPPER.readTree(metrics.serialize(0)).path("ArrivalLag");
+		JsonNode values = lag.path("Values");
+		JsonNode counts = lag.path("Counts");
+		assertTrue(values.size() <= EmfMetrics.MAX_HISTOGRAM_VALUES);
+		assertEquals(values.size(), counts.size());
+		long total = 0;
+		long previous = -1;
+		for (int i = 0; i < values.size(); i++) {
+			assertTrue(values.get(i).asLong() > previous);
+			previous = values.get(i).asLong();
+			total += counts.get(i).asLong();
+		}
+		assertEquals(1000, total);
+		assertEquals(999, previous);
+	}
+
+	@Test
+	public void flushWritesOneLineAndStartsOver() {
+		List<String> lines = new ArrayList<String>();
+		metrics.flush(lines::add);
+		assertTrue(lines.isEmpty());
+
+		metrics.count("BatchRecords", 1);
+		metrics.record("WriteLatency", 10, MetricUnit.MICROSECONDS);
+		metrics.flush(lines::add);
+		assertEquals(1, lines.size());
+		assertTrue(metrics.isEmpty());
+
+		metrics.flush(lines::add);
+		assertEquals(1, lines.size());
+	}
+
+	private static void assertDefinition(final JsonNode definition, final String name, final String unit) {
+		assertEquals(name, definition.path("Name").asText());
+		assertEquals(unit, definition.path("Unit").asText());
+	}
+
+}
@@ -0,0 +1,199 @@
+package com.amazonaws.samples.cdk.templates.planning;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class CapacityPlannerTest {
+
+	private final CapacityPlanner planner = new CapacityPlanner();
+
+	@Test
+	public void plansPassTheirOwnChecksAcrossLoads() {
+		double[] ordersPerSecond = { 1, 10, 100, 500, 1000, 2500, 5000, 7000 };
+		CapacityPlan previous = null;
+		for (double orders : ordersPerSecond) {
+			PipelineLoad load = new PipelineLoad(orders, 3, 300, 5000);
+			CapacityPlan plan = planner.plan(load);
+			planner.check(plan, load);
+
+			double records = load.getRecordsPerSecond();
+			assertTrue(plan.toString(), records / plan.getOrderStreamShards() <= CapacityPlanner.SHARD_WRITE_RECORDS_PER_SEC);
+			assertTrue(plan.toString(), records / plan.getOrderEnrichedStreamShards() <= CapacityPlanner.SHARD_WRITE_RECORDS_PER_SEC);
+			assertTrue(plan.toString(), plan.getTableWriteCapacity() >= records);
+			if (previous != null) {
+				assertTrue(plan.toString(), plan.getOrderStreamShards() >= previous.getOrderStreamShards());
+				assertTrue(plan.toString(), plan.getOrderEnrichedStreamShards() >= previous.getOrderEnrichedStreamShards());
+				assertTrue(plan.toString(), plan.getTableWriteCapacity() >= previous.getTableWriteCapacity());
+			}
+			previous = plan;
+		}
+	}
+
+	@Test
+	public void plansAcrossLatencySlos() {
+		long[] slos = { 3000, 5000, 10000, 60000 };
+		for (long slo : slos) {
+			PipelineLoad load = new PipelineLoad(1000, 3, 300, slo);
+			CapacityPlan plan = planner.plan(load);
+			//the sink's share of the SLO covers one poll, the batching window and the batch of conditional puts
+			assertTrue(plan.toString(), 1000 + plan.getSinkBatchingWindowSeconds() * 1000
+					+ 20 + plan.getSinkBatchSize() * CapacityPlanner.PUT_ITEM_MILLIS / CapacityPlanner.PUT_ITEM_CONCURRENCY <= slo / 2.0);
+		}
+	}
+
+	@Test
+	public void batchWriteModeSizesTheBatchOnBatchWriteItemCost() {
+		//(2500 ms - 1000 ms poll - 20 ms invocation) at 0.5 ms per record
+		CapacityPlan plan = new CapacityPlanner(CapacityPlanner.WRITE_MODE_BATCH).plan(new PipelineLoad(1000, 3, 300, 5000));
+		assertEquals(2960, plan.getSinkBatchSize());
+		assertEquals(1, plan.getSinkParallelizationFactor());
+	}
+
+	@Test
+	public void conditionalWriteModeSizesTheBatchOnConcurrentPuts() {
+		//the default write mode: 10 ms puts, 16 in flight, 0.625 ms per record
+		PipelineLoad load = new PipelineLoad(1000, 3, 300, 5000);
+		CapacityPlan plan = new CapacityPlanner(CapacityPlanner.WRITE_MODE_CONDITIONAL).plan(load);
+		assertEquals(2368, plan.getSinkBatchSize());
+		assertEquals(plan.toString(), planner.plan(load).toString());
+	}
+
+	@Test
+	public void conditionalWriteModeWaitsForTheLargestOrder() {
+		//600 records per order: 6 s of puts one after another, longer than the batch's concurrent puts
+		PipelineLoad load = new PipelineLoad(10, 599, 300, 5000);
+		CapacityPlanner batchPlanner = new CapacityPlanner(CapacityPlanner.WRITE_MODE_BATCH);
+		CapacityPlanner conditionalPlanner = new CapacityPlanner(CapacityPlanner.WRITE_MODE_CONDITIONAL);
+		CapacityPlan batch = batchPlanner.plan(load);
+		CapacityPlan conditional = conditionalPlanner.plan(load);
+
+		assertEquals(1, batch.getSinkParallelizationFactor());
+		assertEquals(3, conditional.getSinkParallelizationFactor());
+		assertTrue(conditional.toString(), conditional.getSinkTimeoutSeconds() > batch.getSinkTimeoutSeconds());
+		try {
+			conditionalPlanner.check(batch, load);
+			fail("a plan sized for BatchWriteItem should undersize conditional puts");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("sink throughput"));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownWriteModes() {
+		new CapacityPlanner("transact");
+	}
+
+	@Test
+	public void sizesTableWritesAtTargetUtilization() {
+		//4000 records/s of one write unit each, at 70% utilization
+		CapacityPlan plan = planner.plan(new PipelineLoad(1000, 3, 300, 5000));
+		assertEquals(5715, plan.getTableWriteCapacity());
+	}
+
+	@Test
+	public void smallLoadsKeepTheMinimumSizing() {
+		CapacityPlan plan = planner.plan(new PipelineLoad(1, 1, 100, 5000));
+		assertEquals(1, plan.getOrderStreamShards());
+		assertEquals(1, plan.getOrderEnrichedStreamShards());
+		assertEquals(1, plan.getSinkParallelizationFactor());
+		assertEquals(5, plan.getTableWriteCapacity());
+	}
+
+	@Test
+	public void rejectsLoadsOverTheTableWriteQuota() {
+		try {
+			planner.plan(new PipelineLoad(100000, 3, 300, 5000));
+			fail("571k WCU should exceed the table write quota");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("table write quota"));
+		}
+	}
+
+	@Test
+	public void rejectsOrdersThatOverloadOneOrderIdPartition() {
+		try {
+			//an order's records share a partition key: 600 items of 2 write units each
+			planner.plan(new PipelineLoad(1, 600, 1500, 5000));
+			fail("1202 write units for one orderId should exceed the partition limit");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("write units per orderId"));
+		}
+	}
+
+	@Test
+	public void directTopologyAddsShardsToTheStreamTheSinkReads() {
+		//20 ms per record: one sink slot carries about 50 records/s, so both topologies run out of parallelization
+		CapacityPlanner slowSink = new CapacityPlanner(0.7, 0.7, 64, 20, 20, 5);
+		PipelineLoad load = new PipelineLoad(1000, 3, 300, 5000);
+
+		CapacityPlan enriched = slowSink.plan(load, CapacityPlanner.TOPOLOGY_ENRICHED);
+		CapacityPlan direct = slowSink.plan(load, CapacityPlanner.TOPOLOGY_DIRECT);
+		assertEquals(CapacityPlanner.MAX_PARALLELIZATION_FACTOR, enriched.getSinkParallelizationFactor());
+		assertEquals(CapacityPlanner.MAX_PARALLELIZATION_FACTOR, direct.getSinkParallelizationFactor());
+		assertTrue(enriched.toString(), enriched.getOrderEnrichedStreamShards() > enriched.getOrderStreamShards());
+		assertEquals(enriched.getOrderEnrichedStreamShards(), direct.getOrderStreamShards());
+		assertEquals(direct.getOrderStreamShards() * CapacityPlanner.MAX_PARALLELIZATION_FACTOR, direct.getSinkConcurrency(CapacityPlanner.TOPOLOGY_DIRECT));
+
+		slowSink.check(direct, load, CapacityPlanner.TOPOLOGY_DIRECT);
+		try {
+			//the enriched plan leaves OrderStream at its write sizing, too few slots for a sink reading it
+			slowSink.check(enriched, load, CapacityPlanner.TOPOLOGY_DIRECT);
+			fail("the enriched plan should undersize a direct sink");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("sink throughput"));
+		}
+	}
+
+	@Test
+	public void directTopologySizesTheSinkPayloadOnRawRecords() {
+		//7 KB records: the enriched batch is held to the 6 MB payload, the raw one a little less so
+		PipelineLoad load = new PipelineLoad(10, 3, 7000, 60000);
+		CapacityPlan enriched = planner.plan(load, CapacityPlanner.TOPOLOGY_ENRICHED);
+		CapacityPlan direct = planner.plan(load, CapacityPlanner.TOPOLOGY_DIRECT);
+		assertTrue(direct + " vs " + enriched, direct.getSinkBatchSize() > enriched.getSinkBatchSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownTopologies() {
+		planner.plan(new PipelineLoad(100, 3, 300, 5000), "fanout");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsSlosShorterThanTheSinkPollInterval() {
+		planner.plan(new PipelineLoad(100, 3, 300, 2000));
+	}
+
+	@Test
+	public void checkRejectsUndersizedTableCapacity() {
+		PipelineLoad load = new PipelineLoad(1000, 3, 300, 5000);
+		CapacityPlan plan = planner.plan(load);
+		CapacityPlan undersized = new CapacityPlan(plan.getOrderStreamShards(), plan.getOrderEnrichedStreamShards(),
+				plan.getSinkBatchSize(), plan.getSinkBatchingWindowSeconds(), plan.getSinkParallelizationFactor(),
+				plan.getSinkMemoryMb(), plan.getSinkTimeoutSeconds(), plan.getTableReadCapacity(), 500);
+		try {
+			planner.check(undersized, load);
+			fail("500 WCU should not carry 4000 records/s");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("table write capacity"));
+		}
+	}
+
+	@Test
+	public void checkRejectsTooFewShards() {
+		PipelineLoad load = new PipelineLoad(1000, 3, 300, 5000);
+		CapacityPlan plan = planner.plan(load);
+		CapacityPlan oneShard = new CapacityPlan(1, plan.getOrderEnrichedStreamShards(),
+				plan.getSinkBatchSize(), plan.getSinkBatchingWindowSeconds(), plan.getSinkParallelizationFactor(),
+				plan.getSinkMemoryMb(), plan.getSinkTimeoutSeconds(), plan.getTableReadCapacity(), plan.getTableWriteCapacity());
+		try {
+			planner.check(oneShard, load);
+			fail("one shard should not carry 4000 records/s");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("order stream records per shard"));
+		}
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.amazonaws.samples.cdk.templates.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.samples.cdk.templates.schema.Compression;
+import com.amazonaws.samples.cdk.templates.schema.RecordBatchCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares bytes per record and encode/decode throughput of the JSON payload
+ * against the binary record format and LZ4-compressed binary batches.
+ *
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.amazonaws.samples.cdk.templates.producer.WireFormatComparison [-Dexec.args="records batchSize"]
+ */
+public class WireFormatComparison {
+
+	public static void main(final String[] args) throws Exception {
+		int recordCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+		List<OrderRecord> records = new SyntheticOrderGenerator(42, 3, 1000).nextRecords(recordCount);
+		ObjectMapper objectMapper = new ObjectMapper();
+		RecordBatchCodec plainBatch = new RecordBatchCodec(OrderRecordCodec.BINARY, Compression.NONE);
+		RecordBatchCodec lz4Batch = new RecordBatchCodec(OrderRecordCodec.BINARY, Compression.LZ4);
+
+		//warm up the JIT before measuring
+		for (int round = 0; round < 3; round++) {
+			json(objectMapper, records);
+			binary(records);
+			batch(plainBatch, records, batchSize);
+			batch(lz4Batch, records, batchSize);
+		}
+
+		System.out.println(String.format("%-24s %12s %10s %14s %14s", "format", "bytes/record", "ratio", "encode rec/s", "decode rec/s"));
+		long[] jsonResult = json(objectMapper, records);
+		print("json", jsonResult, jsonResult[0], recordCount);
+		print("binary", binary(records), jsonResult[0], recordCount);
+		print("binary batch " + batchSize, batch(plainBatch, records, batchSize), jsonResult[0], recordCount);
+		print("binary batch " + batchSize + " lz4", batch(lz4Batch, records, batchSize), jsonResult[0], recordCount);
+	}
+
+	private static long[] json(final ObjectMapper objectMapper, final List<OrderRecord> records) throws Exception {
+		List<byte[]> encoded = new ArrayList<byte[]>(records.size());
+		long bytes = 0;
+		long start = System.nanoTime();
+		for (OrderRecord record : records) {
+			byte[] data = objectMapper.writeValueAsBytes(record);
+			bytes += data.length;
+			encoded.add(data);
+		}
+		long encodeNanos = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (byte[] data : encoded) {
+			objectMapper.readValue(data, OrderRecord.class);
+		}
+		return new long[] { bytes, encodeNanos, System.nanoTime() - start };
+	}
+
+	private static long[] binary(final List<OrderRecord> records) {
+		List<byte[]> encoded = new ArrayList<byte[]>(records.size());
+		long bytes = 0;
+		long start = System.nanoTime();
+		for (OrderRecord record : records) {
+			byte[] data = OrderRecordCodec.toBinary(record);
+			bytes += data.length;
+			encoded.add(data);
+		}
+		long encodeNanos = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (byte[] data : encoded) {
+			OrderRecordCodec.fromBinary(data);
+		}
+		return new long[] { bytes, encodeNanos, System.nanoTime() - start };
+	}
+
+	private static long[] batch(final RecordBatchCodec codec, final List<OrderRecord> records, final int batchSize) {
+		List<byte[]> encoded = new ArrayList<byte[]>(records.size() / batchSize + 1);
+		long bytes = 0;
+		long start = System.nanoTime();
+		for (int from = 0; from < records.size(); from += batchSize) {
+			List<Object[]> values = new ArrayList<Object[]>(batchSize);
+			for (OrderRecord record : records.subList(from, Math.min(from + batchSize, records.size()))) {
+				values.add(OrderRecordCodec.toValues(record));
+			}
+			byte[] data = codec.encode(values);
+			bytes += data.length;
+			encoded.add(data);
+		}
+		long encodeNanos = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (byte[] data : encoded) {
+			for (Object[] values : codec.decode(data)) {
+				OrderRecordCodec.fromValues(values);
+			}
+		}
+		return new long[] { bytes, encodeNanos, System.nanoTime() - start };
+	}
+
+	private static void print(final String format, final long[] result, final long jsonBytes, final int recordCount) {
+		System.out.println(String.format("%-24s %12.1f %9.2fx %14.0f %14.0f", format,
+				(double) result[0] / recordCount,
+				(double) jsonBytes / result[0],
+				recordCount / (result[1] / 1e9),
+				recordCount / (result[2] / 1e9)));
+	}
+
+}
@@ -0,0 +1,182 @@
+package com.amazonaws.samples.cdk.templates.scaling;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataResponse;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataResult;
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.kinesis.model.AddTagsToStreamRequest;
+import software.amazon.awssdk.services.kinesis.model.DescribeStreamSummaryResponse;
+import software.amazon.awssdk.services.kinesis.model.LimitExceededException;
+import software.amazon.awssdk.services.kinesis.model.ListTagsForStreamResponse;
+import software.amazon.awssdk.services.kinesis.model.StreamDescriptionSummary;
+import software.amazon.awssdk.services.kinesis.model.StreamStatus;
+import software.amazon.awssdk.services.kinesis.model.Tag;
+import software.amazon.awssdk.services.kinesis.model.UpdateShardCountRequest;
+
+public class ShardScalingHandlerTest {
+
+	private static final Instant START = Instant.parse("2020-04-01T03:00:00Z");
+
+	@Test
+	public void zeroFillsMinutesWithoutDatapoints() {
+		double[] rates = ShardScalingHandler.perSecond(START,
+				Arrays.asList(START.plusSeconds(60), START.plusSeconds(240)),
+				Arrays.asList(600.0, 1200.0), 5);
+		assertArrayEquals(new double[] { 0, 10, 0, 0, 20 }, rates, 0);
+	}
+
+	@Test
+	public void alignsSeriesByTimestamp() {
+		//records has a datapoint for minute 0 that bytes lacks; both still index minute 3 at 3
+		double[] bytes = ShardScalingHandler.perSecond(START,
+				Arrays.asList(START.plusSeconds(120), START.plusSeconds(180)), Arrays.asList(60.0, 120.0), 4);
+		double[] records = ShardScalingHandler.perSecond(START,
+				Arrays.asList(START, START.plusSeconds(180)), Arrays.asList(60.0, 180.0), 4);
+		assertEquals(bytes.length, records.length);
+		assertEquals(2, bytes[3], 0);
+		assertEquals(3, records[3], 0);
+		assertEquals(0, bytes[0], 0);
+	}
+
+	@Test
+	public void ignoresDatapointsOutsideTheWindow() {
+		double[] rates = ShardScalingHandler.perSecond(START,
+				Arrays.asList(START.minusSeconds(60), START.plusSeconds(600)), Arrays.asList(60.0, 60.0), 10);
+		assertArrayEquals(new double[10], rates, 0);
+	}
+
+	@Test
+	public void idleStreamScalesDown() {
+		double[] idle = ShardScalingHandler.perSecond(START, Collections.<Instant>emptyList(), Collections.<Double>emptyList(), 10);
+		ScalingDecision decision = new ShardScalingPolicy(1, 64).decide(8, idle, idle, 2 * 3600 * 1000L, 0);
+		assertTrue(decision.toString(), decision.isScaling());
+		assertEquals(4, decision.getTargetShards());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void policyRejectsMisalignedSeries() {
+		new ShardScalingPolicy(1, 64).decide(2, new double[10], new double[9], 0, 0);
+	}
+
+	@Test
+	public void tagsTheStreamBeforeUpdatingItsShardCount() {
+		FakeKinesis kinesis = new FakeKinesis(StreamStatus.ACTIVE, 2, "0");
+		String result = handler(kinesis, 1800).handleRequest(Collections.<String, Object>emptyMap(), null);
+
+		assertEquals(result, Arrays.asList("describeStreamSummary", "listTagsForStream", "addTagsToStream", "updateShardCount"), kinesis.calls);
+		assertEquals(4, kinesis.targetShards);
+		long tagged = Long.parseLong(kinesis.tagValues.get(0));
+		assertTrue(System.currentTimeMillis() - tagged < 60000);
+	}
+
+	@Test
+	public void restoresTheCooldownTagWhenTheUpdateLimitIsReached() {
+		FakeKinesis kinesis = new FakeKinesis(StreamStatus.ACTIVE, 2, "1234");
+		kinesis.updateFailure = LimitExceededException.builder().message("Rate exceeded for stream").build();
+		String result = handler(kinesis, 1800).handleRequest(Collections.<String, Object>emptyMap(), null);
+
+		assertTrue(result, result.contains("limit exceeded"));
+		assertEquals(Arrays.asList("describeStreamSummary", "listTagsForStream", "addTagsToStream", "updateShardCount",
+				"addTagsToStream"), kinesis.calls);
+		assertEquals("1234", kinesis.tagValues.get(1));
+	}
+
+	@Test
+	public void leavesAStreamThatIsNotActiveAlone() {
+		FakeKinesis kinesis = new FakeKinesis(StreamStatus.UPDATING, 2, "0");
+		handler(kinesis, 1800).handleRequest(Collections.<String, Object>emptyMap(), null);
+		assertEquals(Arrays.asList("describeStreamSummary"), kinesis.calls);
+	}
+
+	@Test
+	public void doesNotTagWhenNotScaling() {
+		FakeKinesis kinesis = new FakeKinesis(StreamStatus.ACTIVE, 2, "0");
+		handler(kinesis, 1000).handleRequest(Collections.<String, Object>emptyMap(), null);
+		assertFalse(kinesis.calls.contains("addTagsToStream"));
+		assertFalse(kinesis.calls.contains("updateShardCount"));
+	}
+
+	/** Records the Kinesis calls the handler makes, in order. */
+	private static final class FakeKinesis {
+		final List<String> calls = new ArrayList<String>();
+		final List<String> tagValues = new ArrayList<String>();
+		final StreamStatus status;
+		final int openShards;
+		final String lastScaled;
+		RuntimeException updateFailure;
+		int targetShards;
+
+		FakeKinesis(final StreamStatus status, final int openShards, final String lastScaled) {
+			this.status = status;
+			this.openShards = openShards;
+			this.lastScaled = lastScaled;
+		}
+
+		KinesisClient client() {
+			return (KinesisClient) Proxy.newProxyInstance(KinesisClient.class.getClassLoader(), new Class<?>[] { KinesisClient.class },
+					(proxy, method, args) -> {
+						switch (method.getName()) {
+						case "describeStreamSummary":
+							calls.add(method.getName());
+							return DescribeStreamSummaryResponse.builder().streamDescriptionSummary(StreamDescriptionSummary.builder()
+									.streamStatus(status).openShardCount(openShards).build()).build();
+						case "listTagsForStream":
+							calls.add(method.getName());
+							return ListTagsForStreamResponse.builder()
+									.tags(Tag.builder().key(ShardScalingHandler.LAST_SCALED_TAG).value(lastScaled).build()).build();
+						case "addTagsToStream":
+							calls.add(method.getName());
+							tagValues.add(((AddTagsToStreamRequest) args[0]).tags().get(ShardScalingHandler.LAST_SCALED_TAG));
+							return null;
+						case "updateShardCount":
+							calls.add(method.getName());
+							targetShards = ((UpdateShardCountRequest) args[0]).targetShardCount();
+							if (updateFailure != null) {
+								throw updateFailure;
+							}
+							return null;
+						default:
+							throw new UnsupportedOperationException(method.getName());
+						}
+					});
+		}
+	}
+
+	/** IncomingRecords at recordsPerSec for every minute around now; IncomingBytes missing, so zero-filled. */
+	private static ShardScalingHandler handler(final FakeKinesis kinesis, final double recordsPerSec) {
+		List<Instant> timestamps = new ArrayList<Instant>();
+		List<Double> sums = new ArrayList<Double>();
+		Instant minute = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+		for (int i = 20; i >= 0; i--) {
+			timestamps.add(minute.minusSeconds(60L * i));
+			sums.add(recordsPerSec * 60);
+		}
+		GetMetricDataResponse metrics = GetMetricDataResponse.builder()
+				.metricDataResults(MetricDataResult.builder().id("records").timestamps(timestamps).values(sums).build())
+				.build();
+		CloudWatchClient cloudWatch = (CloudWatchClient) Proxy.newProxyInstance(CloudWatchClient.class.getClassLoader(),
+				new Class<?>[] { CloudWatchClient.class }, (proxy, method, args) -> {
+					if ("getMetricData".equals(method.getName())) {
+						return metrics;
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+		return new ShardScalingHandler(kinesis.client(), cloudWatch, "OrderStream", new ShardScalingPolicy(1, 64));
+	}
+
+}
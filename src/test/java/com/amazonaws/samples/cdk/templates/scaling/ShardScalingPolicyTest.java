@@ -0,0 +1,140 @@
+package com.amazonaws.samples.cdk.templates.scaling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ShardScalingPolicyTest {
+
+	private static final long MINUTE = 60 * 1000L;
+	private static final long NOW = 1585735200000L;
+	private static final long LONG_AGO = NOW - 24 * 60 * MINUTE;
+
+	//defaults: scale up at 75%, down at 25%, target 50%, 3 periods, 5/30 minute cooldowns
+	private final ShardScalingPolicy policy = new ShardScalingPolicy(1, 64);
+
+	@Test
+	public void rampScalesUpToTheTargetUtilization() {
+		ScalingDecision decision = decide(policy, 4, LONG_AGO, 1, 1, 1, 1.5, 2, 2.5, 3, 3.1, 3.2, 3.3);
+		assertScaling(decision, 4, 7);
+	}
+
+	@Test
+	public void singleMinuteSpikeDoesNotScale() {
+		assertNotScaling(decide(policy, 4, LONG_AGO, 1, 1, 1, 1, 1, 1, 1, 1, 8, 1), "utilization within thresholds");
+		assertNotScaling(decide(policy, 4, LONG_AGO, 1, 1, 1, 1, 1, 1, 1, 8, 8, 1), "utilization within thresholds");
+	}
+
+	@Test
+	public void shortIdleGapDoesNotScaleDown() {
+		assertNotScaling(decide(policy, 8, LONG_AGO, 4, 4, 4, 4, 4, 4, 4, 0, 0, 4), "utilization within thresholds");
+	}
+
+	@Test
+	public void sustainedIdleScalesDown() {
+		assertScaling(decide(policy, 8, LONG_AGO, 4, 4, 4, 4, 4, 4, 4, 1, 1, 1), 8, 4);
+	}
+
+	@Test
+	public void bytesOrRecordsWhicheverBindsFirst() {
+		double[] bytes = { 0, 0, 3.5 * ShardScalingPolicy.BYTES_PER_SHARD_PER_SEC, 3.5 * ShardScalingPolicy.BYTES_PER_SHARD_PER_SEC,
+				3.5 * ShardScalingPolicy.BYTES_PER_SHARD_PER_SEC };
+		double[] records = { 0, 0, 100, 100, 100 };
+		assertScaling(policy.decide(4, bytes, records, NOW, LONG_AGO), 4, 7);
+	}
+
+	@Test
+	public void scaleUpWaitsOutItsCooldown() {
+		double[] load = { 1, 1, 3.5, 3.5, 3.5 };
+		assertNotScaling(decide(policy, 4, NOW - 5 * MINUTE + 1, load), "scale up cooldown");
+		assertScaling(decide(policy, 4, NOW - 5 * MINUTE, load), 4, 7);
+	}
+
+	@Test
+	public void scaleDownWaitsOutItsLongerCooldown() {
+		double[] idle = { 4, 4, 0, 0, 0 };
+		assertNotScaling(decide(policy, 8, NOW - 10 * MINUTE, idle), "scale down cooldown");
+		assertNotScaling(decide(policy, 8, NOW - 30 * MINUTE + 1, idle), "scale down cooldown");
+		assertScaling(decide(policy, 8, NOW - 30 * MINUTE, idle), 8, 4);
+	}
+
+	@Test
+	public void scaleUpIsAllowedWhileScaleDownStillCoolsDown() {
+		assertScaling(decide(policy, 4, NOW - 10 * MINUTE, 1, 1, 3.5, 3.5, 3.5), 4, 7);
+	}
+
+	@Test
+	public void stepIsAtMostDoubleTheOpenShards() {
+		assertScaling(decide(policy, 4, LONG_AGO, 0, 0, 20, 25, 30), 4, 8);
+	}
+
+	@Test
+	public void stepIsAtLeastHalfTheOpenShards() {
+		assertScaling(decide(policy, 16, LONG_AGO, 8, 8, 0, 0, 0), 16, 8);
+		//odd counts round the half up, as UpdateShardCount does
+		assertScaling(decide(policy, 5, LONG_AGO, 1, 1, 0, 0, 0), 5, 3);
+	}
+
+	@Test
+	public void targetIsClampedToMaxShards() {
+		ShardScalingPolicy bounded = new ShardScalingPolicy(2, 6);
+		assertScaling(decide(bounded, 4, LONG_AGO, 0, 0, 3.5, 3.5, 3.5), 4, 6);
+		assertNotScaling(decide(bounded, 6, LONG_AGO, 0, 0, 6, 6, 6), "shard count bounded");
+	}
+
+	@Test
+	public void targetIsClampedToMinShards() {
+		ShardScalingPolicy bounded = new ShardScalingPolicy(3, 16);
+		assertScaling(decide(bounded, 4, LONG_AGO, 0, 0, 0, 0, 0), 4, 3);
+		assertNotScaling(decide(bounded, 3, LONG_AGO, 0, 0, 0, 0, 0), "shard count bounded");
+	}
+
+	@Test
+	public void shardCountOutsideBoundsIsCorrectedFirst() {
+		ShardScalingPolicy bounded = new ShardScalingPolicy(4, 8);
+		//cooldowns and utilization do not apply
+		assertScaling(decide(bounded, 2, NOW, 0, 0, 0), 2, 4);
+		assertScaling(decide(bounded, 20, NOW, 0, 0, 0), 20, 10);
+		assertScaling(decide(bounded, 12, NOW, 0, 0, 0), 12, 8);
+	}
+
+	@Test
+	public void needsEvaluationPeriodsOfData() {
+		assertNotScaling(decide(policy, 4, LONG_AGO, 3.5, 3.5), "not enough datapoints");
+	}
+
+	@Test
+	public void onlyTheLastEvaluationPeriodsCount() {
+		//an old burst followed by normal traffic leaves the stream alone
+		assertNotScaling(decide(policy, 4, LONG_AGO, 8, 8, 8, 8, 2, 2, 2), "utilization within thresholds");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsThresholdsOutOfOrder() {
+		new ShardScalingPolicy(1, 8, 0.5, 0.25, 0.75, 3, 0, 0);
+	}
+
+	/** Drives the policy with a per-minute series of shard loads carried as records per second. */
+	private static ScalingDecision decide(final ShardScalingPolicy policy, final int shards, final long lastScaled,
+			final double... shardLoads) {
+		double[] records = new double[shardLoads.length];
+		for (int i = 0; i < shardLoads.length; i++) {
+			records[i] = shardLoads[i] * ShardScalingPolicy.RECORDS_PER_SHARD_PER_SEC;
+		}
+		return policy.decide(shards, new double[shardLoads.length], records, NOW, lastScaled);
+	}
+
+	private static void assertScaling(final ScalingDecision decision, final int from, final int to) {
+		assertTrue(decision.toString(), decision.isScaling());
+		assertEquals(from, decision.getCurrentShards());
+		assertEquals(decision.toString(), to, decision.getTargetShards());
+	}
+
+	private static void assertNotScaling(final ScalingDecision decision, final String reason) {
+		assertFalse(decision.toString(), decision.isScaling());
+		assertEquals(reason, decision.getReason());
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.amazonaws.samples.cdk.templates.schema;
+
+public enum Compression {
+
+	NONE(0), LZ4(1);
+
+	private final int id;
+
+	Compression(final int id) {
+		this.id = id;
+	}
+
+	int getId() {
+		return id;
+	}
+
+	static Compression fromId(final int id) {
+		for (Compression compression : values()) {
+			if (compression.id == id) {
+				return compression;
+			}
+		}
+		throw new IllegalArgumentException("unknown compression " + id);
+	}
+
+}
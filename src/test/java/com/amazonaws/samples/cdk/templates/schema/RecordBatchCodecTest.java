@@ -0,0 +1,110 @@
+package com.amazonaws.samples.cdk.templates.schema;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RecordBatchCodecTest {
+
+	private static final BinaryRecordCodec ORDER_BINARY = new BinaryRecordCodec(OrderSchema.ORDER_COLUMNS);
+
+	@Test
+	public void roundTripsPlainAndLz4Batches() {
+		List<Object[]> records = records(200);
+		for (Compression compression : Compression.values()) {
+			RecordBatchCodec codec = new RecordBatchCodec(ORDER_BINARY, compression);
+			List<Object[]> decoded = codec.decode(codec.encode(records));
+			assertEquals(compression.name(), records.size(), decoded.size());
+			for (int i = 0; i < records.size(); i++) {
+				assertArrayEquals(compression.name(), records.get(i), decoded.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void rejectsUncompressedLengthOverTheRecordLimit() {
+		WireBuffer header = header(Compression.LZ4, 1, RecordBatchCodec.MAX_RAW_LENGTH + 1L);
+		assertRejected(header.toByteArray());
+	}
+
+	@Test
+	public void rejectsNegativeUncompressedLength() {
+		//a 10-byte varint with the top bit set decodes to a negative long
+		WireBuffer header = header(Compression.NONE, 1, -1L);
+		assertRejected(header.toByteArray());
+	}
+
+	@Test
+	public void rejectsMoreRecordsThanBytes() {
+		WireBuffer header = header(Compression.NONE, 1000, 10);
+		header.writeBytes(new byte[10], 0, 10);
+		assertRejected(header.toByteArray());
+	}
+
+	@Test
+	public void rejectsLz4BlockThatDoesNotMatchItsHeader() {
+		RecordBatchCodec codec = new RecordBatchCodec(ORDER_BINARY, Compression.LZ4);
+		byte[] batch = codec.encode(records(50));
+
+		byte[] truncated = Arrays.copyOf(batch, batch.length / 2);
+		assertRejected(truncated);
+
+		byte[] corrupted = batch.clone();
+		for (int i = 8; i < corrupted.length; i += 3) {
+			corrupted[i] = (byte) 0xFF;
+		}
+		assertRejected(corrupted);
+	}
+
+	@Test
+	public void rejectsRecordLengthPastTheBlock() {
+		WireBuffer block = new WireBuffer(16);
+		block.writeVarint(200);
+		block.writeBytes(new byte[] { (byte) BinaryRecordCodec.MAGIC }, 0, 1);
+		WireBuffer batch = header(Compression.NONE, 1, block.position());
+		batch.writeBytes(block.toByteArray(), 0, block.position());
+		assertRejected(batch.toByteArray());
+	}
+
+	private static List<Object[]> records(final int count) {
+		List<Object[]> records = new ArrayList<Object[]>(count);
+		for (int i = 0; i < count; i++) {
+			Object[] values = new Object[OrderSchema.ORDER_COLUMNS.size()];
+			values[0] = 1000 + i / 4;
+			values[1] = i % 4;
+			values[2] = 1 + i % 3;
+			values[3] = 9.5f;
+			values[4] = "NEW";
+			values[5] = "2020-04-01 10:15:30.123";
+			values[6] = i % 4 == 0 ? "ORDER" : "ITEM";
+			values[12] = i % 2 == 0 ? "WA" : "OR";
+			records.add(values);
+		}
+		return records;
+	}
+
+	private static WireBuffer header(final Compression compression, final long count, final long rawLength) {
+		WireBuffer out = new WireBuffer(32);
+		out.writeByte(RecordBatchCodec.MAGIC);
+		out.writeByte(compression.getId());
+		out.writeVarint(count);
+		out.writeVarint(rawLength);
+		return out;
+	}
+
+	private static void assertRejected(final byte[] data) {
+		try {
+			new RecordBatchCodec(ORDER_BINARY, Compression.NONE).decode(data);
+			fail("malformed batch was decoded");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+}
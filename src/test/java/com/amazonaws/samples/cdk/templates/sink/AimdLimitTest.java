@@ -0,0 +1,93 @@
+package com.amazonaws.samples.cdk.templates.sink;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AimdLimitTest {
+
+	@Test
+	public void windowOfSuccessesAddsAboutOneSlot() {
+		AimdLimit limit = new AimdLimit(1, 4, 64);
+		for (int i = 0; i < 4; i++) {
+			limit.onSuccess();
+		}
+		//4 + 1/4 + 1/4.25 + ... stays just under 5
+		assertEquals(4, limit.getLimit());
+		limit.onSuccess();
+		assertEquals(5, limit.getLimit());
+	}
+
+	@Test
+	public void throttleHalvesTheLimit() {
+		AimdLimit limit = new AimdLimit(1, 16, 64);
+		limit.onThrottle();
+		assertEquals(8, limit.getLimit());
+	}
+
+	@Test
+	public void ignoresTheRestOfTheWindowAfterACut() {
+		AimdLimit limit = new AimdLimit(1, 16, 64);
+		limit.onThrottle();
+		//the other 15 requests in flight at the old limit complete without moving it
+		for (int i = 0; i < 15; i++) {
+			if (i % 2 == 0) {
+				limit.onThrottle();
+			} else {
+				limit.onSuccess();
+			}
+		}
+		assertEquals(8, limit.getLimit());
+		limit.onThrottle();
+		assertEquals(4, limit.getLimit());
+	}
+
+	@Test
+	public void staysWithinBounds() {
+		AimdLimit limit = new AimdLimit(2, 4, 6);
+		for (int i = 0; i < 1000; i++) {
+			limit.onSuccess();
+		}
+		assertEquals(6, limit.getLimit());
+
+		for (int i = 0; i < 100; i++) {
+			limit.onThrottle();
+		}
+		assertEquals(2, limit.getLimit());
+	}
+
+	@Test
+	public void sameOutcomesGiveSameLimits() {
+		boolean[] outcomes = new boolean[200];
+		for (int i = 0; i < outcomes.length; i++) {
+			outcomes[i] = i % 37 == 0 || i % 53 == 0;
+		}
+		assertArrayEquals(replay(outcomes), replay(outcomes));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInitialLimitOutsideBounds() {
+		new AimdLimit(4, 2, 8);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsBackoffRatioOfOne() {
+		new AimdLimit(1, 2, 8, 1.0);
+	}
+
+	private static int[] replay(final boolean[] throttled) {
+		AimdLimit limit = new AimdLimit(1, 16, 64);
+		int[] limits = new int[throttled.length];
+		for (int i = 0; i < throttled.length; i++) {
+			if (throttled[i]) {
+				limit.onThrottle();
+			} else {
+				limit.onSuccess();
+			}
+			limits[i] = limit.getLimit();
+		}
+		return limits;
+	}
+
+}
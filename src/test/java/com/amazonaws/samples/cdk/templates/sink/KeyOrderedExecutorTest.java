@@ -0,0 +1,152 @@
+package com.amazonaws.samples.cdk.templates.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+public class KeyOrderedExecutorTest {
+
+	/** Queues tasks until the test runs them, one step at a time. */
+	private static final class SteppedExecutor implements Executor {
+		private final ArrayDeque<Runnable> queued = new ArrayDeque<Runnable>();
+
+		@Override
+		public void execute(final Runnable task) {
+			queued.add(task);
+		}
+
+		int queued() {
+			return queued.size();
+		}
+
+		void step() {
+			queued.poll().run();
+		}
+
+		void drain() {
+			while (!queued.isEmpty()) {
+				step();
+			}
+		}
+	}
+
+	private final SteppedExecutor workers = new SteppedExecutor();
+	private final List<String> ran = new ArrayList<String>();
+
+	@Test
+	public void runsOneTaskPerKeyInSubmissionOrder() {
+		KeyOrderedExecutor<String> executor = executor(new AimdLimit(1, 8, 8));
+		submit(executor, "A", "a1");
+		submit(executor, "A", "a2");
+		submit(executor, "A", "a3");
+
+		assertEquals(1, workers.queued());
+		workers.step();
+		assertEquals(Arrays.asList("a1"), ran);
+		assertEquals(1, workers.queued());
+		workers.drain();
+		assertEquals(Arrays.asList("a1", "a2", "a3"), ran);
+		assertEquals(1, executor.getMaxObservedInFlight());
+	}
+
+	@Test
+	public void runsDifferentKeysConcurrently() {
+		KeyOrderedExecutor<String> executor = executor(new AimdLimit(1, 8, 8));
+		submit(executor, "A", "a1");
+		submit(executor, "B", "b1");
+		submit(executor, "C", "c1");
+
+		assertEquals(3, workers.queued());
+		assertEquals(3, executor.getInFlight());
+		workers.drain();
+		assertEquals(Arrays.asList("a1", "b1", "c1"), ran);
+		assertEquals(0, executor.getInFlight());
+	}
+
+	@Test
+	public void boundsTasksInFlightByTheLimit() {
+		KeyOrderedExecutor<String> executor = executor(new AimdLimit(1, 2, 2));
+		for (String key : new String[] { "A", "B", "C", "D" }) {
+			submit(executor, key, key.toLowerCase());
+		}
+
+		assertEquals(2, workers.queued());
+		workers.drain();
+		assertEquals(Arrays.asList("a", "b", "c", "d"), ran);
+		assertEquals(2, executor.getMaxObservedInFlight());
+	}
+
+	@Test
+	public void busyKeyDoesNotStarveOthers() {
+		KeyOrderedExecutor<String> executor = executor(new AimdLimit(1, 1, 1));
+		submit(executor, "A", "a1");
+		submit(executor, "A", "a2");
+		submit(executor, "A", "a3");
+		submit(executor, "B", "b1");
+
+		workers.drain();
+		assertEquals(Arrays.asList("a1", "b1", "a2", "a3"), ran);
+	}
+
+	@Test
+	public void throttledResultsShrinkTheLimitAndSuccessesGrowIt() {
+		AimdLimit limit = new AimdLimit(1, 4, 8);
+		KeyOrderedExecutor<String> executor = executor(limit);
+		submit(executor, "A", "throttled");
+		workers.drain();
+		assertEquals(2, limit.getLimit());
+
+		//the cut ignores the other 3 completions of the old window of 4, then 3 successes take 2 to 3.24
+		for (int i = 0; i < 6; i++) {
+			submit(executor, "K" + i, "ok");
+		}
+		assertEquals(2, workers.queued());
+		workers.drain();
+		assertEquals(3, limit.getLimit());
+	}
+
+	@Test
+	public void failedTaskCompletesExceptionallyAndReleasesItsKey() throws Exception {
+		AimdLimit limit = new AimdLimit(1, 4, 8);
+		KeyOrderedExecutor<String> executor = executor(limit);
+		CompletableFuture<String> failed = executor.submit("A", () -> {
+			throw new IllegalStateException("boom");
+		});
+		CompletableFuture<String> next = submit(executor, "A", "a2");
+
+		workers.drain();
+		assertTrue(failed.isCompletedExceptionally());
+		try {
+			failed.get();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertEquals("a2", next.get());
+		assertFalse(next.isCompletedExceptionally());
+		//only a2 counted as a success: 4 + 1/4
+		assertEquals(4, limit.getLimit());
+		assertEquals(0, executor.getInFlight());
+	}
+
+	private KeyOrderedExecutor<String> executor(final AimdLimit limit) {
+		return new KeyOrderedExecutor<String>(workers, limit, "throttled"::equals);
+	}
+
+	private CompletableFuture<String> submit(final KeyOrderedExecutor<String> executor, final String key, final String name) {
+		return executor.submit(key, () -> {
+			ran.add(name);
+			return name;
+		});
+	}
+
+}